@@ -0,0 +1,61 @@
+package com.dcarriba.benchmarks.jmh;
+
+import com.dcarriba.bitpacking.factory.CompressionStatistics;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.bitpacking.factory.SelectionPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AutoSelectionBenchmarks} measures with JMH the cost of choosing the compression version of an array with
+ * {@link CompressionVersion#AUTO}, i.e. of the statistics pass of {@link CompressionStatistics} (sampled above
+ * {@link CompressionStatistics#SAMPLING_THRESHOLD} values) and of the selection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx3g"})
+public class AutoSelectionBenchmarks {
+    /** Maximum number of bits of the values (except the outliers of the skewed distribution), from 1 to 31 */
+    @Param({"4", "24"})
+    public int bitWidth;
+
+    /** Number of values of the array */
+    @Param({"1000", "1000000", "10000000"})
+    public int arraySize;
+
+    /** Distribution of the values */
+    @Param({"UNIFORM", "SKEWED", "SORTED"})
+    public Distribution distribution;
+
+    /** How the compression version is chosen */
+    @Param({"SMALLEST_SIZE", "FASTEST_TRANSMISSION"})
+    public SelectionPolicy policy;
+
+    /** Array to analyze */
+    private int[] array;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        array = distribution.generate(arraySize, bitWidth);
+    }
+
+    @Benchmark
+    public CompressionVersion select() {
+        return CompressionStatistics.of(array, false).select(policy);
+    }
+}
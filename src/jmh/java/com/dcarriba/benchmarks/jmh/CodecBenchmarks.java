@@ -0,0 +1,150 @@
+package com.dcarriba.benchmarks.jmh;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.IntCursor;
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CodecBenchmarks} measures the operations of every {@link BitPacking} compression version with JMH, for
+ * different bit widths, array sizes and distributions of the values.
+ * <p>
+ * The bulk operations (compress, decompress, sum, cursor scan) are measured per call, and the access operations (get,
+ * gather, decodeRange) per accessed value, using {@link OperationsPerInvocation}. Every result is returned or given to
+ * a {@link Blackhole}, so that no operation can be removed as dead code.
+ * </p>
+ * <p>
+ * The default parameters keep the suite short; larger arrays (up to 100 million values, within the 3 GB heap of the
+ * forked JVM) are measured with e.g. {@code -p arraySize=100000000}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "-Xmx3g"})
+public class CodecBenchmarks {
+    /** Number of values accessed by each invocation of the access benchmarks */
+    private static final int ACCESS_COUNT = 1024;
+
+    /** Compression version (any {@link CompressionVersion} except AUTO) */
+    @Param({"WITH_OVERLAP", "WITHOUT_OVERLAP", "WITH_OVERLAP_64", "WITHOUT_OVERLAP_64", "WITH_OVERFLOW_AREA",
+            "WITH_BLOCKED_FRAME_OF_REFERENCE", "WITH_DELTA_ENCODING", "WITH_INTERLEAVED_LANES"})
+    public CompressionVersion compressionVersion;
+
+    /** Maximum number of bits of the values (except the outliers of the skewed distribution), from 1 to 31 */
+    @Param({"4", "12", "24"})
+    public int bitWidth;
+
+    /** Number of values of the array (at least {@link #ACCESS_COUNT}, the length of the decoded ranges) */
+    @Param({"10000", "1000000"})
+    public int arraySize;
+
+    /** Distribution of the values */
+    @Param({"UNIFORM", "SKEWED", "SORTED", "RANDOM_WALK"})
+    public Distribution distribution;
+
+    /** Array to compress */
+    private int[] array;
+    /** Compression object, holding the compressed array */
+    private BitPacking bitPacking;
+    /** Array receiving the decompressed values */
+    private int[] decompressed;
+    /** Random indices of the accessed values */
+    private int[] indices;
+    /** Random start indices of the decoded ranges */
+    private int[] rangeStarts;
+    /** Array receiving the accessed values */
+    private int[] accessed;
+    /** Number of decoded ranges so far, selecting the next start index */
+    private int rangeCount;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        array = distribution.generate(arraySize, bitWidth);
+        bitPacking = BitPackingFactory.createBitPacking(compressionVersion);
+        bitPacking.compress(array);
+        decompressed = new int[arraySize];
+
+        SplittableRandom random = new SplittableRandom(arraySize);
+        indices = new int[ACCESS_COUNT];
+        for (int k = 0; k < ACCESS_COUNT; k++) indices[k] = random.nextInt(arraySize);
+        rangeStarts = new int[ACCESS_COUNT];
+        for (int k = 0; k < ACCESS_COUNT; k++) rangeStarts[k] = random.nextInt(arraySize - ACCESS_COUNT + 1);
+        accessed = new int[ACCESS_COUNT];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        bitPacking.close();
+    }
+
+    @Benchmark
+    public int compress() {
+        bitPacking.compress(array);
+        return bitPacking.getCompressedLength();
+    }
+
+    @Benchmark
+    public int[] decompress() {
+        bitPacking.decompress(decompressed);
+        return decompressed;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESS_COUNT)
+    public void get(Blackhole blackhole) {
+        for (int index : indices) {
+            blackhole.consume(bitPacking.get(index));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESS_COUNT)
+    public int[] gather() {
+        bitPacking.gather(indices, accessed);
+        return accessed;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCESS_COUNT)
+    public int[] decodeRange() {
+        int from = rangeStarts[rangeCount++ & (ACCESS_COUNT - 1)];
+        bitPacking.decodeRange(from, from + ACCESS_COUNT, accessed, 0);
+        return accessed;
+    }
+
+    @Benchmark
+    public long sum() {
+        return bitPacking.sum();
+    }
+
+    @Benchmark
+    public int cursorScan() {
+        int checksum = 0;
+        IntCursor cursor = bitPacking.cursor();
+        while (cursor.hasNext()) {
+            checksum += cursor.nextInt();
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,88 @@
+package com.dcarriba.benchmarks.jmh;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * {@link Distribution} is an enum class specifying the distributions of the values of the arrays used by the JMH
+ * benchmarks. The arrays are generated from a fixed seed, so that every run (and every compression version) uses the
+ * same values.
+ */
+public enum Distribution {
+    /** Uniformly distributed values, needing at most bitWidth bits */
+    UNIFORM {
+        @Override
+        void fill(int[] array, int bitWidth, SplittableRandom random) {
+            int bound = bound(bitWidth);
+            for (int i = 0; i < array.length; i++) array[i] = random.nextInt(bound);
+        }
+    },
+    /** Uniformly distributed values needing at most bitWidth bits, with 1% of outliers (up to Integer.MAX_VALUE) */
+    SKEWED {
+        @Override
+        void fill(int[] array, int bitWidth, SplittableRandom random) {
+            int bound = bound(bitWidth);
+            for (int i = 0; i < array.length; i++) {
+                array[i] = random.nextInt(100) == 0 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(bound);
+            }
+        }
+    },
+    /** Uniformly distributed values needing at most bitWidth bits, sorted in ascending order */
+    SORTED {
+        @Override
+        void fill(int[] array, int bitWidth, SplittableRandom random) {
+            UNIFORM.fill(array, bitWidth, random);
+            Arrays.parallelSort(array);
+        }
+    },
+    /** Random walk (steps between -16 and 16) inside the values needing at most bitWidth bits */
+    RANDOM_WALK {
+        @Override
+        void fill(int[] array, int bitWidth, SplittableRandom random) {
+            int max = bound(bitWidth) - 1;
+            int value = max / 2;
+            for (int i = 0; i < array.length; i++) {
+                value = Math.max(0, Math.min(max, value + random.nextInt(33) - 16));
+                array[i] = value;
+            }
+        }
+    };
+
+    /** Seed of the generated arrays */
+    private static final long SEED = 42;
+
+    /**
+     * Fills the array with values of this distribution
+     *
+     * @param array the array to fill
+     * @param bitWidth maximum number of bits of the values (except the outliers), from 1 to 31
+     * @param random source of the random values
+     */
+    abstract void fill(int[] array, int bitWidth, SplittableRandom random);
+
+    /**
+     * Generates a new array of values of this distribution
+     *
+     * @param length length of the array
+     * @param bitWidth maximum number of bits of the values (except the outliers), from 1 to 31
+     * @return the generated array
+     * @throws IllegalArgumentException if bitWidth isn't between 1 and 31
+     */
+    public int[] generate(int length, int bitWidth) {
+        if (bitWidth < 1 || bitWidth > 31) {
+            throw new IllegalArgumentException("bitWidth must be between 1 and 31");
+        }
+
+        int[] array = new int[length];
+        fill(array, bitWidth, new SplittableRandom(SEED));
+        return array;
+    }
+
+    /**
+     * @param bitWidth maximum number of bits of the values
+     * @return The exclusive upper bound of the values needing at most bitWidth bits
+     */
+    private static int bound(int bitWidth) {
+        return bitWidth == 31 ? Integer.MAX_VALUE : 1 << bitWidth;
+    }
+}
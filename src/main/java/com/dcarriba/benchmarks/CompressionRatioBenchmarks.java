@@ -3,22 +3,29 @@ package com.dcarriba.benchmarks;
 import com.dcarriba.bitpacking.BitPacking;
 import com.dcarriba.bitpacking.factory.BitPackingFactory;
 import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.bitpacking.factory.SelectionPolicy;
 
 /**
  * {@link CompressionRatioBenchmarks} is a class providing benchmarks in form the compression ratio
  * (i.e. the percentage of how much the array got compressed) for {@link BitPacking} implementations.
  */
 public class CompressionRatioBenchmarks {
-    /** BitPacking object used for the benchmarks */
-    private final BitPacking bitPacking;
+    /**
+     * Compression version used for the benchmarks ({@link CompressionVersion#AUTO} is resolved for each array)
+     */
+    private final CompressionVersion compressionVersion;
 
     /**
      * Constructor for {@link CompressionRatioBenchmarks}
      *
-     * @param compressionVersion compression version used for the benchmarks
+     * @param compressionVersion compression version used for the benchmarks ({@link CompressionVersion#AUTO}
+     *                           chooses the version giving the smallest compressed array)
      */
     public CompressionRatioBenchmarks(CompressionVersion compressionVersion) {
-        this.bitPacking = BitPackingFactory.createBitPacking(compressionVersion);
+        if (compressionVersion == null) {
+            throw new IllegalArgumentException("compressionVersion can't be null");
+        }
+        this.compressionVersion = compressionVersion;
     }
 
     /**
@@ -32,8 +39,10 @@ public class CompressionRatioBenchmarks {
             throw new IllegalArgumentException("The array can't be null or empty.");
         }
 
+        BitPacking bitPacking = BitPackingFactory.createBitPacking(compressionVersion, array, false,
+                SelectionPolicy.SMALLEST_SIZE);
         bitPacking.compress(array);
 
-        return (double) bitPacking.getCompressedArray().length / array.length;
+        return (double) bitPacking.getCompressedLength() / array.length;
     }
 }
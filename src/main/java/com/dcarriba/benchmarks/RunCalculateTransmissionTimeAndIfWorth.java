@@ -32,41 +32,39 @@ public class RunCalculateTransmissionTimeAndIfWorth {
         System.out.println("***     Transmission Time calculation      ***\n" +
                            "*** and if the compression is worth or not ***\n");
 
+        CompressionVersion[] compressionVersions = CompressionVersion.concreteValues();
+
         for (int arraySize : arraySizes) {
 
             System.out.println("=== Using an array with size " + arraySize + " ===");
-            System.out.printf("%-20s %-12s %-21s %-21s %-21s%n", "Max Possible Value", "T_without", "With Overlap", "Without Overlap", "With Overflow Area");
-            System.out.printf("%-20s %-12s %-10s %-10s %-10s %-10s %-10s %-10s%n", "", "", "T_time", "is worth?", "T_time", "is worth?", "T_time", "is worth?");
+            System.out.printf("%-20s %-12s", "Max Possible Value", "T_without");
+            for (CompressionVersion compressionVersion : compressionVersions) {
+                System.out.printf(" %-21s", compressionVersion.getDisplayName());
+            }
+            System.out.printf("%n%-20s %-12s", "", "");
+            for (int v = 0; v < compressionVersions.length; v++) {
+                System.out.printf(" %-10s %-10s", "T_time", "is worth?");
+            }
+            System.out.println();
 
             for (int maxValue : maxValues) {
 
                 int[] array = new int[arraySize];
                 Utilities.initializeArrayWithRandomPositiveValues(array, maxValue);
 
-                CalculateTransmissionTimeAndIfWorth withOverlap = new CalculateTransmissionTimeAndIfWorth(CompressionVersion.WITH_OVERLAP);
-                CalculateTransmissionTimeAndIfWorth withoutOverlap = new CalculateTransmissionTimeAndIfWorth(CompressionVersion.WITHOUT_OVERLAP);
-                CalculateTransmissionTimeAndIfWorth withOverflowArea = new CalculateTransmissionTimeAndIfWorth(CompressionVersion.WITH_OVERFLOW_AREA);
+                CalculateTransmissionTimeAndIfWorth withoutCompression = new CalculateTransmissionTimeAndIfWorth(compressionVersions[0]);
+                System.out.printf("%-20d %-12.6f", maxValue, withoutCompression.getTransmissionTimeWithoutCompression(array));
 
-                // Calculate transmission times for each compression version
-                double transmissionTimeWithoutCompression = withOverlap.getTransmissionTimeWithoutCompression(array);
-                double transmissionTimeWithCompressionWithOverlap = withOverlap.getTransmissionTimeWithCompression(array);
-                double transmissionTimeWithCompressionWithoutOverlap = withoutOverlap.getTransmissionTimeWithCompression(array);
-                double transmissionTimeWithCompressionWithOverflowArea = withOverflowArea.getTransmissionTimeWithCompression(array);
+                // Calculate the transmission time and checks if compression is worthwhile for each version
+                for (CompressionVersion compressionVersion : compressionVersions) {
+                    CalculateTransmissionTimeAndIfWorth calculation = new CalculateTransmissionTimeAndIfWorth(compressionVersion);
 
-                // Check if compression is worthwhile for each version
-                boolean isCompressionWorthWithOverlap = withOverlap.isCompressionWorth(array);
-                boolean isCompressionWorthWithoutOverlap = withoutOverlap.isCompressionWorth(array);
-                boolean isCompressionWorthWithOverflowArea = withOverflowArea.isCompressionWorth(array);
+                    double transmissionTimeWithCompression = calculation.getTransmissionTimeWithCompression(array);
+                    boolean isCompressionWorth = calculation.isCompressionWorth(array);
 
-                System.out.printf("%-20d %-12.6f %-10.6f %-10b %-10.6f %-10b %-10.6f %-10b%n",
-                        maxValue,
-                        transmissionTimeWithoutCompression,
-                        transmissionTimeWithCompressionWithOverlap,
-                        isCompressionWorthWithOverlap,
-                        transmissionTimeWithCompressionWithoutOverlap,
-                        isCompressionWorthWithoutOverlap,
-                        transmissionTimeWithCompressionWithOverflowArea,
-                        isCompressionWorthWithOverflowArea);
+                    System.out.printf(" %-10.6f %-10b", transmissionTimeWithCompression, isCompressionWorth);
+                }
+                System.out.println();
             }
             System.out.println();
         }
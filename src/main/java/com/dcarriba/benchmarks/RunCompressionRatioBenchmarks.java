@@ -5,6 +5,8 @@ import com.dcarriba.bitpacking.factory.CompressionVersion;
 import com.dcarriba.config.Config;
 import com.dcarriba.utilities.Utilities;
 
+import java.util.function.Consumer;
+
 /**
  * {@link RunCompressionRatioBenchmarks} is a class to run the {@link CompressionRatioBenchmarks} of {@link BitPacking}
  * objects (i.e. {@link BitPacking} compression versions).
@@ -31,53 +33,161 @@ public class RunCompressionRatioBenchmarks {
             Integer.MAX_VALUE
     };
 
+    /** Defines the different percentages of outliers for the benchmarks with skewed values */
+    private static final double[] outlierPercentages = {0.1, 1, 5, 10, 25};
+    /** Defines the maximum value of the non-outlier values for the benchmarks with skewed values */
+    private static final int skewedMaxValue = 1000;
+
+    /** Defines the different maximum steps between two consecutive values for the benchmarks with time series */
+    private static final int[] timeSeriesMaxSteps = {1, 10, 100, 1000, 10000};
+
+    /** Defines the different maximum gaps between two consecutive values for the benchmarks with sorted arrays */
+    private static final int[] sortedMaxGaps = {1, 10, 100, 1000, 100000};
+
     /**
      * Static method to run the benchmarks
      */
     public static void run() {
         System.out.println("*** Compression Ratio Benchmarks ***\n");
         // Initializes benchmarks for all bitpacking compression versions
-        CompressionRatioBenchmarks withOverlapBenchmarks = new CompressionRatioBenchmarks(CompressionVersion.WITH_OVERLAP);
-        CompressionRatioBenchmarks withoutOverlapBenchmarks = new CompressionRatioBenchmarks(CompressionVersion.WITHOUT_OVERLAP);
-        CompressionRatioBenchmarks withOverflowAreaBenchmarks = new CompressionRatioBenchmarks(CompressionVersion.WITH_OVERFLOW_AREA);
+        CompressionVersion[] compressionVersions = CompressionVersion.values();
+        CompressionRatioBenchmarks[] benchmarks = new CompressionRatioBenchmarks[compressionVersions.length];
+        for (int i = 0; i < compressionVersions.length; i++) {
+            benchmarks[i] = new CompressionRatioBenchmarks(compressionVersions[i]);
+        }
 
         // Runs the actual benchmarks
         System.out.println("Results of the compression ratio benchmarks, using randomly generated arrays\nwith different possible maximum values:\n");
-        runCompressionRatioBenchmarks(withOverlapBenchmarks, withoutOverlapBenchmarks, withOverflowAreaBenchmarks);
+        runCompressionRatioBenchmarks(benchmarks);
+
+        System.out.println("\nResults of the compression ratio benchmarks, using randomly generated arrays\nwith values " +
+                "lower than " + skewedMaxValue + " and different percentages of outliers (up to Integer.MAX_VALUE):\n");
+        runSkewedCompressionRatioBenchmarks(benchmarks);
+
+        System.out.println("\nResults of the compression ratio benchmarks, using randomly generated time series\n" +
+                "(random walks around Integer.MAX_VALUE / 2) with different maximum steps:\n");
+        runTimeSeriesCompressionRatioBenchmarks(benchmarks);
+
+        System.out.println("\nResults of the compression ratio benchmarks, using randomly generated sorted arrays\n" +
+                "with different maximum gaps between consecutive values:\n");
+        runSortedCompressionRatioBenchmarks(benchmarks);
     }
 
     /**
      * Runs the compression ratio benchmarks
      *
-     * @param withOverlapBenchmarks      CompressionRatioBenchmarks object for the BitPackingWithOverlap version
-     * @param withoutOverlapBenchmarks   CompressionRatioBenchmarks object for the BitPackingWithoutOverlap version
-     * @param withOverflowAreaBenchmarks CompressionRatioBenchmarks object for the BitPackingWithOverflowArea version
+     * @param benchmarks CompressionRatioBenchmarks objects for all compression versions
      */
-    private static void runCompressionRatioBenchmarks(CompressionRatioBenchmarks withOverlapBenchmarks, CompressionRatioBenchmarks withoutOverlapBenchmarks, CompressionRatioBenchmarks withOverflowAreaBenchmarks) {
+    private static void runCompressionRatioBenchmarks(CompressionRatioBenchmarks[] benchmarks) {
         System.out.println("=== Average Compression Ratio (average over " + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
-        System.out.printf("%-23s %-18s %-18s %-18s%n", "Max Possible Value", "With Overlap", "Without Overlap", "With Overflow Area");
+        printHeader("Max Possible Value");
 
         for (int maxValue : maxValues) {
-            int[] array = new int[arraySize];
-
-            double totalCompressRatioWithOverlap = 0;
-            double totalCompressRatioWithoutOverlap = 0;
-            double totalCompressRatioWithOverflowArea = 0;
-
-            // Runs the benchmarks multiple times for better accuracy
-            for (int i = 0; i < Config.RUN_BENCHMARKS_REPETITIONS; i++) {
-                Utilities.initializeArrayWithRandomPositiveValues(array, maxValue);
-                totalCompressRatioWithOverlap += withOverlapBenchmarks.compressionRatio(array);
-                totalCompressRatioWithoutOverlap += withoutOverlapBenchmarks.compressionRatio(array);
-                totalCompressRatioWithOverflowArea += withOverflowAreaBenchmarks.compressionRatio(array);
+            double[] averages = runCompressionRatioBenchmarks(benchmarks,
+                    array -> Utilities.initializeArrayWithRandomPositiveValues(array, maxValue));
+            printRow(String.valueOf(maxValue), averages);
+        }
+    }
+
+    /**
+     * Runs the compression ratio benchmarks on skewed arrays, i.e. arrays with small values and a few large outliers
+     *
+     * @param benchmarks CompressionRatioBenchmarks objects for all compression versions
+     */
+    private static void runSkewedCompressionRatioBenchmarks(CompressionRatioBenchmarks[] benchmarks) {
+        System.out.println("=== Average Compression Ratio (average over " + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
+        printHeader("Outliers (in %)");
+
+        for (double outlierPercentage : outlierPercentages) {
+            double[] averages = runCompressionRatioBenchmarks(benchmarks, array -> Utilities
+                    .initializeArrayWithRandomSkewedValues(array, skewedMaxValue, Integer.MAX_VALUE, outlierPercentage));
+            printRow(String.format("%.1f", outlierPercentage), averages);
+        }
+    }
+
+    /**
+     * Runs the compression ratio benchmarks on time series, i.e. arrays where consecutive values are close
+     *
+     * @param benchmarks CompressionRatioBenchmarks objects for all compression versions
+     */
+    private static void runTimeSeriesCompressionRatioBenchmarks(CompressionRatioBenchmarks[] benchmarks) {
+        System.out.println("=== Average Compression Ratio (average over " + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
+        printHeader("Max Step");
+
+        for (int maxStep : timeSeriesMaxSteps) {
+            double[] averages = runCompressionRatioBenchmarks(benchmarks,
+                    array -> Utilities.initializeArrayWithRandomWalkValues(array, Integer.MAX_VALUE / 2, maxStep));
+            printRow(String.valueOf(maxStep), averages);
+        }
+    }
+
+    /**
+     * Runs the compression ratio benchmarks on sorted arrays (like sorted IDs or timestamps)
+     *
+     * @param benchmarks CompressionRatioBenchmarks objects for all compression versions
+     */
+    private static void runSortedCompressionRatioBenchmarks(CompressionRatioBenchmarks[] benchmarks) {
+        System.out.println("=== Average Compression Ratio (average over " + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
+        printHeader("Max Gap");
+
+        for (int maxGap : sortedMaxGaps) {
+            double[] averages = runCompressionRatioBenchmarks(benchmarks,
+                    array -> Utilities.initializeArrayWithRandomSortedValues(array, maxGap));
+            printRow(String.valueOf(maxGap), averages);
+        }
+    }
+
+    /**
+     * Runs the compression ratio benchmarks multiple times for all compression versions
+     *
+     * @param benchmarks CompressionRatioBenchmarks objects for all compression versions
+     * @param arrayInitializer function initializing the array with random values
+     * @return the average compression ratio for each compression version
+     */
+    private static double[] runCompressionRatioBenchmarks(CompressionRatioBenchmarks[] benchmarks, Consumer<int[]> arrayInitializer) {
+        int[] array = new int[arraySize];
+        double[] totals = new double[benchmarks.length];
+
+        // Runs the benchmarks multiple times for better accuracy
+        for (int i = 0; i < Config.RUN_BENCHMARKS_REPETITIONS; i++) {
+            arrayInitializer.accept(array);
+            for (int v = 0; v < benchmarks.length; v++) {
+                totals[v] += benchmarks[v].compressionRatio(array);
             }
+        }
+
+        // Computes the average ratio from all repetitions
+        for (int v = 0; v < totals.length; v++) {
+            totals[v] /= Config.RUN_BENCHMARKS_REPETITIONS;
+        }
 
-            // Computes the average ratio from all repetitions
-            double avgCompressRatioWithOverlap = totalCompressRatioWithOverlap / (double) Config.RUN_BENCHMARKS_REPETITIONS;
-            double avgCompressRatioWithoutOverlap = totalCompressRatioWithoutOverlap / (double) Config.RUN_BENCHMARKS_REPETITIONS;
-            double avgCompressRatioWithOverflowArea = totalCompressRatioWithOverflowArea / (double) Config.RUN_BENCHMARKS_REPETITIONS;
+        return totals;
+    }
 
-            System.out.printf("%-23d %-18.2f %-18.2f %-18.2f%n", maxValue, avgCompressRatioWithOverlap, avgCompressRatioWithoutOverlap, avgCompressRatioWithOverflowArea);
+    /**
+     * Prints the header of a result table, with one column per compression version
+     *
+     * @param firstColumn name of the first column
+     */
+    private static void printHeader(String firstColumn) {
+        System.out.printf("%-23s", firstColumn);
+        for (CompressionVersion compressionVersion : CompressionVersion.values()) {
+            System.out.printf(" %-20s", compressionVersion.getDisplayName());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Prints a row of a result table
+     *
+     * @param firstColumn value of the first column
+     * @param averages average compression ratio for each compression version
+     */
+    private static void printRow(String firstColumn, double[] averages) {
+        System.out.printf("%-23s", firstColumn);
+        for (double average : averages) {
+            System.out.printf(" %-20.2f", average);
         }
+        System.out.println();
     }
 }
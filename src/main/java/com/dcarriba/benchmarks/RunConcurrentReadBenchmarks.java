@@ -0,0 +1,123 @@
+package com.dcarriba.benchmarks;
+
+import com.dcarriba.bitpacking.BitPackingEncoder;
+import com.dcarriba.bitpacking.CompressedIntArray;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.config.Config;
+import com.dcarriba.utilities.Utilities;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * {@link RunConcurrentReadBenchmarks} is a class to measure, for all compression versions, the throughput of
+ * {@link CompressedIntArray#get(int)} when a single immutable {@link CompressedIntArray} is shared by several reader
+ * threads. Since the readers share no mutable state, the throughput should grow linearly with the number of threads,
+ * up to the number of available processors.
+ */
+public class RunConcurrentReadBenchmarks {
+    /** Defines the array size used for the concurrent read benchmarks */
+    private static final int arraySize = 1 << 22;
+
+    /** Defines the number of reads of each reader thread */
+    private static final int readsPerThread = 1 << 22;
+
+    /**
+     * Static method to run the benchmarks
+     */
+    public static void run() {
+        System.out.println("*** Concurrent Read Benchmarks ***\n");
+
+        int[] array = new int[arraySize];
+        Utilities.initializeArrayWithRandomPositiveValues(array, 1 << 16);
+
+        CompressionVersion[] compressionVersions = CompressionVersion.concreteValues();
+        CompressedIntArray[] compressedArrays = new CompressedIntArray[compressionVersions.length];
+        for (int v = 0; v < compressionVersions.length; v++) {
+            compressedArrays[v] = new BitPackingEncoder(compressionVersions[v]).encode(array);
+        }
+
+        int availableProcessors = Runtime.getRuntime().availableProcessors();
+        System.out.println("Results of the concurrent read benchmarks, using random reads of a randomly generated\n"
+                + "array of " + arraySize + " values (lower than 65536), shared by all reader threads ("
+                + availableProcessors + " available processors):\n");
+        System.out.println("=== Average Throughput (in millions of reads per second, all threads together) "
+                + "(average over " + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
+        System.out.printf("%-12s", "Threads");
+        for (CompressionVersion compressionVersion : compressionVersions) {
+            System.out.printf(" %-20s", compressionVersion.getDisplayName());
+        }
+        System.out.println();
+
+        for (int threadCount = 1; threadCount <= Math.max(2 * availableProcessors, 4); threadCount *= 2) {
+            System.out.printf("%-12d", threadCount);
+            for (CompressedIntArray compressedArray : compressedArrays) {
+                // Warm-up run, not measured
+                measure(compressedArray, threadCount);
+
+                long totalTime = 0;
+                for (int i = 0; i < Config.RUN_BENCHMARKS_REPETITIONS; i++) {
+                    totalTime += measure(compressedArray, threadCount);
+                }
+
+                double reads = (double) readsPerThread * threadCount * Config.RUN_BENCHMARKS_REPETITIONS;
+                // Number of reads per micro-second is the number of millions of reads per second
+                System.out.printf(" %-20.2f", reads / (totalTime / 1000.0));
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * Reads random values of the shared compressed array from several threads started at the same time
+     *
+     * @param compressedArray the compressed array shared by all threads
+     * @param threadCount number of reader threads
+     * @return the time (in ns) needed by all threads to finish their reads
+     */
+    private static long measure(CompressedIntArray compressedArray, int threadCount) {
+        CountDownLatch ready = new CountDownLatch(threadCount);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+
+        for (int t = 0; t < threadCount; t++) {
+            // The indexes are generated before the measurement
+            Random random = new Random(t);
+            int[] indexes = new int[readsPerThread];
+            for (int k = 0; k < readsPerThread; k++) {
+                indexes[k] = random.nextInt(arraySize);
+            }
+
+            threads[t] = new Thread(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                int checksum = 0;
+                for (int index : indexes) {
+                    checksum += compressedArray.get(index);
+                }
+                // Uses the read values, so that the reads can't be optimized away
+                if (checksum == 42) System.out.print("");
+            });
+            threads[t].start();
+        }
+
+        try {
+            ready.await();
+            long startTime = System.nanoTime();
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            return System.nanoTime() - startTime;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the reader threads", e);
+        }
+    }
+}
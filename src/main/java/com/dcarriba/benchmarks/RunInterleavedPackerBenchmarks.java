@@ -0,0 +1,135 @@
+package com.dcarriba.benchmarks;
+
+import com.dcarriba.bitpacking.kernels.BitPackingKernels;
+import com.dcarriba.bitpacking.simd.InterleavedPacker;
+import com.dcarriba.bitpacking.simd.InterleavedPackers;
+import com.dcarriba.config.Config;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * {@link RunInterleavedPackerBenchmarks} is a class to compare, for every bit size, the throughput of the
+ * {@link InterleavedPacker} implementations with the scalar {@link BitPackingKernels}.
+ */
+public class RunInterleavedPackerBenchmarks {
+    /** Number of values packed and unpacked by each measurement (a multiple of 128) */
+    private static final int valueCount = 1 << 20;
+
+    /** Interface of a pack or unpack method, as used by the measurements */
+    private interface Kernel {
+        void run(int bitSize, int[] in, int inPos, int[] out, int outPos);
+    }
+
+    /**
+     * Static method to run the benchmarks
+     */
+    public static void run() {
+        System.out.println("*** SIMD Interleaved Packer Benchmarks ***\n");
+
+        InterleavedPacker vector = InterleavedPackers.vector();
+        if (vector == null) {
+            System.out.println("The jdk.incubator.vector module isn't available (use \"./gradlew runWithVectorApi\"),\n" +
+                    "only the scalar implementations are measured.\n");
+        }
+
+        // Each implementation packs a block of 128 values per call (the kernels are called 4 times)
+        String[] names = vector == null
+                ? new String[]{"Kernels", "Scalar"}
+                : new String[]{"Kernels", "Scalar", vector.getName()};
+        Kernel kernelsPack = (bitSize, in, inPos, out, outPos) -> {
+            for (int i = 0; i < 4; i++) BitPackingKernels.pack(bitSize, in, inPos + 32 * i, out, outPos + bitSize * i);
+        };
+        Kernel kernelsUnpack = (bitSize, in, inPos, out, outPos) -> {
+            for (int i = 0; i < 4; i++) BitPackingKernels.unpack(bitSize, in, inPos + bitSize * i, out, outPos + 32 * i);
+        };
+        InterleavedPacker scalar = InterleavedPackers.scalar();
+        Kernel[] packs = vector == null
+                ? new Kernel[]{kernelsPack, scalar::pack}
+                : new Kernel[]{kernelsPack, scalar::pack, vector::pack};
+        Kernel[] unpacks = vector == null
+                ? new Kernel[]{kernelsUnpack, scalar::unpack}
+                : new Kernel[]{kernelsUnpack, scalar::unpack, vector::unpack};
+
+        // We do a warm-up phase before doing the real measurements
+        System.out.println("Warming up the JVM for better results...");
+        for (int bitSize = 1; bitSize <= 32; bitSize++) {
+            measure(packs, unpacks, bitSize);
+        }
+        System.out.println("Warm-up completed.\n");
+
+        System.out.println("=== Average Pack / Unpack Throughput (in millions of values per second) (average over "
+                + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
+        System.out.printf("%-12s", "Bit Size");
+        for (String name : names) {
+            System.out.printf(" %-18s %-18s", name + " pack", name + " unpack");
+        }
+        System.out.println();
+
+        for (int bitSize = 1; bitSize <= 32; bitSize++) {
+            double[][] throughputs = measure(packs, unpacks, bitSize);
+            System.out.printf("%-12d", bitSize);
+            for (int v = 0; v < names.length; v++) {
+                System.out.printf(" %-18.2f %-18.2f", throughputs[0][v], throughputs[1][v]);
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * Measures the throughput of the pack and unpack methods of each implementation, for the given bit size
+     *
+     * @param packs pack method of each implementation
+     * @param unpacks unpack method of each implementation
+     * @param bitSize number of bits of each value
+     * @return the average pack (first row) and unpack (second row) throughput of each implementation
+     */
+    private static double[][] measure(Kernel[] packs, Kernel[] unpacks, int bitSize) {
+        Random random = new Random();
+        int[] values = new int[valueCount];
+        for (int i = 0; i < valueCount; i++) {
+            values[i] = random.nextInt() >>> (32 - bitSize);
+        }
+        int[] packed = new int[valueCount / 32 * bitSize];
+        int[] unpacked = new int[valueCount];
+
+        double[][] totals = new double[2][packs.length];
+        for (int r = 0; r < Config.RUN_BENCHMARKS_REPETITIONS; r++) {
+            for (int v = 0; v < packs.length; v++) {
+                Arrays.fill(packed, 0);
+                totals[0][v] += measureTime(packs[v], bitSize, values, packed, valueCount / 32 * bitSize);
+                totals[1][v] += measureTime(unpacks[v], bitSize, packed, unpacked, valueCount);
+            }
+        }
+
+        // Number of values per micro-second is the number of millions of values per second
+        for (double[] row : totals) {
+            for (int v = 0; v < row.length; v++) {
+                row[v] = (double) valueCount * Config.RUN_BENCHMARKS_REPETITIONS / (row[v] / 1000.0);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Measures the time needed to run a pack or unpack method on all blocks of the input array
+     *
+     * @param kernel the pack or unpack method
+     * @param bitSize number of bits of each value
+     * @param in input array
+     * @param out output array
+     * @param outLength number of integers written in the output array for all blocks
+     * @return time needed (in ns)
+     */
+    private static long measureTime(Kernel kernel, int bitSize, int[] in, int[] out, int outLength) {
+        int blockCount = valueCount / InterleavedPacker.BLOCK_SIZE;
+        int inStep = in.length / blockCount;
+        int outStep = outLength / blockCount;
+
+        long startTime = System.nanoTime();
+        for (int b = 0; b < blockCount; b++) {
+            kernel.run(bitSize, in, b * inStep, out, b * outStep);
+        }
+        return System.nanoTime() - startTime;
+    }
+}
@@ -0,0 +1,103 @@
+package com.dcarriba.benchmarks;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.config.Config;
+import com.dcarriba.utilities.Utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * {@link RunParallelBenchmarks} is a class to measure how the compression and decompression throughput of the
+ * {@link BitPacking} versions supporting the parallel mode scale with the number of threads.
+ */
+public class RunParallelBenchmarks {
+    /** Defines the array size used for the parallel benchmarks */
+    private static final int arraySize = 20_000_000;
+
+    /** Defines the compression versions supporting the parallel mode */
+    private static final CompressionVersion[] compressionVersions = {
+            CompressionVersion.WITH_OVERLAP,
+            CompressionVersion.WITHOUT_OVERLAP,
+            CompressionVersion.WITH_INTERLEAVED_LANES
+    };
+
+    /**
+     * Static method to run the benchmarks
+     */
+    public static void run() {
+        System.out.println("*** Parallel Benchmarks ***\n");
+
+        int[] array = new int[arraySize];
+        int[] decompressedArray = new int[arraySize];
+        Utilities.initializeArrayWithRandomPositiveValues(array, 1 << 20);
+
+        System.out.println("Results of the parallel benchmarks, using a randomly generated array of " + arraySize
+                + " values\n(on " + Runtime.getRuntime().availableProcessors() + " available processors):\n");
+        System.out.println("=== Average Throughput (in millions of values per second) (average over "
+                + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
+        System.out.printf("%-12s", "Threads");
+        for (CompressionVersion compressionVersion : compressionVersions) {
+            System.out.printf(" %-28s %-28s", compressionVersion.getDisplayName() + " compress",
+                    compressionVersion.getDisplayName() + " decompress");
+        }
+        System.out.println();
+
+        for (int threads : getThreadCounts()) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            System.out.printf("%-12d", threads);
+
+            for (CompressionVersion compressionVersion : compressionVersions) {
+                BitPacking bitPacking = BitPackingFactory.createParallelBitPacking(compressionVersion, false, pool);
+
+                // Warm-up run, not measured
+                bitPacking.compress(array);
+                bitPacking.decompress(decompressedArray);
+
+                long compressionTime = 0;
+                long decompressionTime = 0;
+                for (int i = 0; i < Config.RUN_BENCHMARKS_REPETITIONS; i++) {
+                    long startTime = System.nanoTime();
+                    bitPacking.compress(array);
+                    long middleTime = System.nanoTime();
+                    bitPacking.decompress(decompressedArray);
+                    long endTime = System.nanoTime();
+
+                    compressionTime += middleTime - startTime;
+                    decompressionTime += endTime - middleTime;
+                }
+
+                System.out.printf(" %-28.2f %-28.2f", throughput(compressionTime), throughput(decompressionTime));
+            }
+            System.out.println();
+
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @return The numbers of threads to measure: powers of 2 up to the number of available processors, and the
+     * number of available processors itself
+     */
+    private static List<Integer> getThreadCounts() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        List<Integer> threadCounts = new ArrayList<>();
+        for (int threads = 1; threads < processors; threads *= 2) {
+            threadCounts.add(threads);
+        }
+        threadCounts.add(processors);
+        return threadCounts;
+    }
+
+    /**
+     * @param totalTime total time (in ns) of all repetitions
+     * @return Number of millions of values compressed or decompressed per second
+     */
+    private static double throughput(long totalTime) {
+        // Number of values per micro-second is the number of millions of values per second
+        return (double) arraySize * Config.RUN_BENCHMARKS_REPETITIONS / (totalTime / 1000.0);
+    }
+}
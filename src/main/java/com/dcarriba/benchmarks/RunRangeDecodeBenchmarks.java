@@ -0,0 +1,115 @@
+package com.dcarriba.benchmarks;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.config.Config;
+import com.dcarriba.utilities.Utilities;
+
+import java.util.Random;
+
+/**
+ * {@link RunRangeDecodeBenchmarks} is a class to compare, for all {@link BitPacking} versions, the throughput of
+ * decoding windows of consecutive values with {@link BitPacking#decodeRange(int, int, int[], int)} against calling
+ * {@link BitPacking#get(int)} for each value of the window.
+ */
+public class RunRangeDecodeBenchmarks {
+    /** Defines the array size used for the range decode benchmarks */
+    private static final int arraySize = 1 << 22;
+
+    /** Defines the different window sizes */
+    private static final int[] windowSizes = {16, 256, 4096, 65536, 1 << 20};
+
+    /**
+     * Static method to run the benchmarks
+     */
+    public static void run() {
+        System.out.println("*** Range Decode Benchmarks ***\n");
+
+        int[] array = new int[arraySize];
+        Utilities.initializeArrayWithRandomPositiveValues(array, 1 << 16);
+
+        CompressionVersion[] compressionVersions = CompressionVersion.concreteValues();
+        BitPacking[] bitPackings = new BitPacking[compressionVersions.length];
+        for (int v = 0; v < compressionVersions.length; v++) {
+            bitPackings[v] = BitPackingFactory.createBitPacking(compressionVersions[v]);
+            bitPackings[v].compress(array);
+        }
+
+        System.out.println("Results of the range decode benchmarks, using random windows of a randomly generated array\n"
+                + "of " + arraySize + " values (lower than 65536):\n");
+        System.out.println("=== Average Throughput (in millions of values per second) (average over "
+                + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
+        System.out.printf("%-12s", "Window Size");
+        for (CompressionVersion compressionVersion : compressionVersions) {
+            System.out.printf(" %-24s %-24s", compressionVersion.getDisplayName() + " get",
+                    compressionVersion.getDisplayName() + " range");
+        }
+        System.out.println();
+
+        int[] window = new int[windowSizes[windowSizes.length - 1]];
+        for (int windowSize : windowSizes) {
+            System.out.printf("%-12d", windowSize);
+            for (BitPacking bitPacking : bitPackings) {
+                // Warm-up run, not measured
+                measure(bitPacking, windowSize, window, false);
+                measure(bitPacking, windowSize, window, true);
+
+                long getTime = 0;
+                long rangeTime = 0;
+                for (int i = 0; i < Config.RUN_BENCHMARKS_REPETITIONS; i++) {
+                    getTime += measure(bitPacking, windowSize, window, false);
+                    rangeTime += measure(bitPacking, windowSize, window, true);
+                }
+
+                System.out.printf(" %-24.2f %-24.2f", throughput(getTime), throughput(rangeTime));
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * Decodes arraySize values, in windows of windowSize consecutive values starting at random offsets
+     *
+     * @param bitPacking the {@link BitPacking} object, after compression
+     * @param windowSize number of consecutive values of each window
+     * @param window array receiving the values of each window
+     * @param useDecodeRange if decodeRange is used, instead of get for each value
+     * @return the time (in ns) needed to decode all windows
+     */
+    private static long measure(BitPacking bitPacking, int windowSize, int[] window, boolean useDecodeRange) {
+        Random random = new Random(windowSize);
+        int windowCount = arraySize / windowSize;
+        int[] offsets = new int[windowCount];
+        for (int w = 0; w < windowCount; w++) {
+            offsets[w] = random.nextInt(arraySize - windowSize + 1);
+        }
+
+        int checksum = 0;
+        long startTime = System.nanoTime();
+        for (int offset : offsets) {
+            if (useDecodeRange) {
+                bitPacking.decodeRange(offset, offset + windowSize, window, 0);
+            } else {
+                for (int i = 0; i < windowSize; i++) {
+                    window[i] = bitPacking.get(offset + i);
+                }
+            }
+            checksum += window[windowSize - 1];
+        }
+        long endTime = System.nanoTime();
+
+        // Uses the decoded values, so that the decoding can't be optimized away
+        if (checksum == 42) System.out.print("");
+        return endTime - startTime;
+    }
+
+    /**
+     * @param totalTime total time (in ns) of all repetitions
+     * @return Number of millions of values decoded per second
+     */
+    private static double throughput(long totalTime) {
+        // Number of values per micro-second is the number of millions of values per second
+        return (double) arraySize * Config.RUN_BENCHMARKS_REPETITIONS / (totalTime / 1000.0);
+    }
+}
@@ -0,0 +1,163 @@
+package com.dcarriba.benchmarks;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.config.Config;
+import com.dcarriba.utilities.Utilities;
+
+import java.util.Random;
+
+/**
+ * {@link RunSortedSearchBenchmarks} is a class to compare, for all {@link BitPacking} versions, the throughput of the
+ * lower bound lookups in sorted arrays: with {@link BitPacking#lowerBound(int)} (using the skip index built in sorted
+ * mode), with a binary search calling {@link BitPacking#get(int)}, and with a binary search on the decompressed array.
+ */
+public class RunSortedSearchBenchmarks {
+    /** Defines the array size used for the sorted search benchmarks */
+    private static final int arraySize = 1 << 22;
+
+    /** Defines the number of lookups of each measure */
+    private static final int lookupCount = 1 << 20;
+
+    /** Defines the different maximum gaps between two consecutive values */
+    private static final int[] maxGaps = {1, 100, 10000};
+
+    /**
+     * Static method to run the benchmarks
+     */
+    public static void run() {
+        System.out.println("*** Sorted Search Benchmarks ***\n");
+
+        CompressionVersion[] compressionVersions = CompressionVersion.concreteValues();
+        BitPacking[] bitPackings = new BitPacking[compressionVersions.length];
+        for (int v = 0; v < compressionVersions.length; v++) {
+            bitPackings[v] = BitPackingFactory.createBitPacking(compressionVersions[v]);
+        }
+
+        System.out.println("Results of the sorted search benchmarks, using random keys in randomly generated sorted\n"
+                + "arrays of " + arraySize + " values with different maximum gaps between consecutive values:\n");
+        System.out.println("=== Average Throughput (in millions of lookups per second) (average over "
+                + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
+        System.out.printf("%-12s %-12s", "Max Gap", "int[]");
+        for (CompressionVersion compressionVersion : compressionVersions) {
+            System.out.printf(" %-24s %-24s", compressionVersion.getDisplayName() + " get",
+                    compressionVersion.getDisplayName() + " lowerBound");
+        }
+        System.out.println();
+
+        int[] array = new int[arraySize];
+        for (int maxGap : maxGaps) {
+            Utilities.initializeArrayWithRandomSortedValues(array, maxGap);
+            int[] keys = generateKeys(array);
+
+            // Warm-up run, not measured
+            measureArray(array, keys);
+            long arrayTime = 0;
+            for (int i = 0; i < Config.RUN_BENCHMARKS_REPETITIONS; i++) {
+                arrayTime += measureArray(array, keys);
+            }
+            System.out.printf("%-12d %-12.2f", maxGap, throughput(arrayTime));
+
+            for (BitPacking bitPacking : bitPackings) {
+                bitPacking.compress(array, true);
+
+                // Warm-up run, not measured
+                measure(bitPacking, keys, false);
+                measure(bitPacking, keys, true);
+
+                long getTime = 0;
+                long lowerBoundTime = 0;
+                for (int i = 0; i < Config.RUN_BENCHMARKS_REPETITIONS; i++) {
+                    getTime += measure(bitPacking, keys, false);
+                    lowerBoundTime += measure(bitPacking, keys, true);
+                }
+
+                System.out.printf(" %-24.2f %-24.2f", throughput(getTime), throughput(lowerBoundTime));
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * @param array the sorted array
+     * @return Random keys between the smallest and the largest value of the array
+     */
+    private static int[] generateKeys(int[] array) {
+        Random random = new Random(arraySize);
+        int[] keys = new int[lookupCount];
+        long range = (long) array[arraySize - 1] - array[0] + 1;
+        for (int k = 0; k < lookupCount; k++) {
+            keys[k] = (int) (array[0] + (long) (random.nextDouble() * range));
+        }
+        return keys;
+    }
+
+    /**
+     * Looks up all keys with a binary search on the decompressed array
+     *
+     * @param array the sorted array
+     * @param keys the searched keys
+     * @return the time (in ns) needed to look up all keys
+     */
+    private static long measureArray(int[] array, int[] keys) {
+        int checksum = 0;
+        long startTime = System.nanoTime();
+        for (int key : keys) {
+            int from = 0;
+            int to = array.length;
+            while (from < to) {
+                int middle = (from + to) >>> 1;
+                if (array[middle] < key) from = middle + 1;
+                else to = middle;
+            }
+            checksum += from;
+        }
+        long endTime = System.nanoTime();
+
+        // Uses the results, so that the lookups can't be optimized away
+        if (checksum == 42) System.out.print("");
+        return endTime - startTime;
+    }
+
+    /**
+     * Looks up all keys in the compressed array
+     *
+     * @param bitPacking the {@link BitPacking} object, after a compression in sorted mode
+     * @param keys the searched keys
+     * @param useLowerBound if lowerBound is used, instead of a binary search calling get
+     * @return the time (in ns) needed to look up all keys
+     */
+    private static long measure(BitPacking bitPacking, int[] keys, boolean useLowerBound) {
+        int checksum = 0;
+        long startTime = System.nanoTime();
+        for (int key : keys) {
+            if (useLowerBound) {
+                checksum += bitPacking.lowerBound(key);
+            } else {
+                int from = 0;
+                int to = bitPacking.getOriginalLength();
+                while (from < to) {
+                    int middle = (from + to) >>> 1;
+                    if (bitPacking.get(middle) < key) from = middle + 1;
+                    else to = middle;
+                }
+                checksum += from;
+            }
+        }
+        long endTime = System.nanoTime();
+
+        // Uses the results, so that the lookups can't be optimized away
+        if (checksum == 42) System.out.print("");
+        return endTime - startTime;
+    }
+
+    /**
+     * @param totalTime total time (in ns) of all repetitions
+     * @return Number of millions of lookups per second
+     */
+    private static double throughput(long totalTime) {
+        // Number of lookups per micro-second is the number of millions of lookups per second
+        return (double) lookupCount * Config.RUN_BENCHMARKS_REPETITIONS / (totalTime / 1000.0);
+    }
+}
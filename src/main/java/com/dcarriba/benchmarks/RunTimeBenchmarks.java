@@ -5,6 +5,8 @@ import com.dcarriba.bitpacking.factory.CompressionVersion;
 import com.dcarriba.config.Config;
 import com.dcarriba.utilities.Utilities;
 
+import java.util.function.ToLongBiFunction;
+
 /**
  * {@link RunTimeBenchmarks} is a class to run the {@link TimeBenchmarks} of {@link BitPacking} objects (i.e.
  * {@link BitPacking} compression versions).
@@ -12,6 +14,10 @@ import com.dcarriba.utilities.Utilities;
 public class RunTimeBenchmarks {
     /** Defines the different array sizes for the benchmarks */
     private static final int[] arraySizes = {100, 500, 1000, 5000};
+    /** Defines the array sizes for the benchmarks showing how the get time scales with the array size */
+    private static final int[] getScalingArraySizes = {1_000, 10_000, 100_000, 1_000_000};
+    /** Defines the array sizes for the compression throughput and allocation benchmarks */
+    private static final int[] throughputArraySizes = {100_000, 1_000_000, 10_000_000};
 
     /**
      * Static method to run the benchmarks
@@ -20,45 +26,43 @@ public class RunTimeBenchmarks {
         System.out.println("*** Time Benchmarks ***\n");
 
         // Initializes benchmarks for all bitpacking compression versions
-        TimeBenchmarks withOverlapBenchmarks = new TimeBenchmarks(CompressionVersion.WITH_OVERLAP);
-        TimeBenchmarks withoutOverlapBenchmarks = new TimeBenchmarks(CompressionVersion.WITHOUT_OVERLAP);
-        TimeBenchmarks withOverflowAreaBenchmarks = new TimeBenchmarks(CompressionVersion.WITH_OVERFLOW_AREA);
+        CompressionVersion[] compressionVersions = CompressionVersion.concreteValues();
+        TimeBenchmarks[] benchmarks = new TimeBenchmarks[compressionVersions.length];
+        for (int i = 0; i < compressionVersions.length; i++) {
+            benchmarks[i] = new TimeBenchmarks(compressionVersions[i]);
+        }
 
         // We do a warm-up phase before doing the real measurements
-        warmUpBenchmark(withOverlapBenchmarks, withoutOverlapBenchmarks, withOverflowAreaBenchmarks);
+        warmUpBenchmark(benchmarks);
 
         // Runs the actual benchmarks
         System.out.println("Results of the time measurements benchmarks, using randomly generated arrays\nat different sizes:\n");
-        runCompressionTimeBenchmarks(withOverlapBenchmarks, withoutOverlapBenchmarks, withOverflowAreaBenchmarks);
-        runDecompressionTimeBenchmarks(withOverlapBenchmarks, withoutOverlapBenchmarks, withOverflowAreaBenchmarks);
-        runGetTimeBenchmarks(withOverlapBenchmarks, withoutOverlapBenchmarks, withOverflowAreaBenchmarks);
+        runCompressionTimeBenchmarks(benchmarks);
+        runDecompressionTimeBenchmarks(benchmarks);
+        runGetTimeBenchmarks(benchmarks);
+        runGetScalingBenchmarks(benchmarks);
+        runCompressionThroughputBenchmarks(benchmarks);
+        runDecompressionThroughputBenchmarks(benchmarks);
     }
 
     /**
      * Performs a warm-up for the JVM, for more accurate time measurements
      *
-     * @param withOverlapBenchmarks TimeBenchmarks object for the BitPackingWithOverlap version
-     * @param withoutOverlapBenchmarks TimeBenchmarks object for the BitPackingWithoutOverlap version
-     * @param withOverflowAreaBenchmarks TimeBenchmarks object for the BitPackingWithOverflowArea version
+     * @param benchmarks TimeBenchmarks objects for all compression versions
      */
-    private static void warmUpBenchmark(TimeBenchmarks withOverlapBenchmarks, TimeBenchmarks withoutOverlapBenchmarks, TimeBenchmarks withOverflowAreaBenchmarks) {
+    private static void warmUpBenchmark(TimeBenchmarks[] benchmarks) {
         System.out.println("Warming up the JVM for better results...");
 
-
         for (int size : arraySizes) {
             int[] array = new int[size];
             for (int i = 0; i < Config.RUN_BENCHMARKS_REPETITIONS; i++) {
                 Utilities.initializeArrayWithRandomPositiveValues(array);
 
-                withOverlapBenchmarks.compressionTime(array);
-                withoutOverlapBenchmarks.compressionTime(array);
-                withOverflowAreaBenchmarks.compressionTime(array);
-                withOverlapBenchmarks.decompressionTime(array);
-                withoutOverlapBenchmarks.decompressionTime(array);
-                withOverflowAreaBenchmarks.decompressionTime(array);
-                withOverlapBenchmarks.getTime(array);
-                withoutOverlapBenchmarks.getTime(array);
-                withOverflowAreaBenchmarks.getTime(array);
+                for (TimeBenchmarks timeBenchmarks : benchmarks) {
+                    timeBenchmarks.compressionTime(array);
+                    timeBenchmarks.decompressionTime(array);
+                    timeBenchmarks.getTime(array);
+                }
             }
         }
 
@@ -68,105 +72,191 @@ public class RunTimeBenchmarks {
     /**
      * Runs the compression benchmarks
      *
-     * @param withOverlapBenchmarks TimeBenchmarks object for the BitPackingWithOverlap version
-     * @param withoutOverlapBenchmarks TimeBenchmarks object for the BitPackingWithoutOverlap version
-     * @param withOverflowAreaBenchmarks TimeBenchmarks object for the BitPackingWithOverflowArea version
+     * @param benchmarks TimeBenchmarks objects for all compression versions
      */
-    private static void runCompressionTimeBenchmarks(TimeBenchmarks withOverlapBenchmarks, TimeBenchmarks withoutOverlapBenchmarks, TimeBenchmarks withOverflowAreaBenchmarks) {
+    private static void runCompressionTimeBenchmarks(TimeBenchmarks[] benchmarks) {
         System.out.println("=== Average Compression Time (in micro-seconds) (average over " + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
-        System.out.printf("%-12s %-18s %-18s %-18s%n", "Array Size", "With Overlap", "Without Overlap", "With Overflow Area");
+        printHeader("Array Size");
 
         for (int size : arraySizes) {
-            int[] array = new int[size];
-
-            long totalCompressWithOverlap = 0;
-            long totalCompressWithoutOverlap = 0;
-            long totalCompressWithOverflowArea = 0;
-
-            // Runs the benchmarks multiple times for better accuracy
-            for (int i = 0; i < Config.RUN_BENCHMARKS_REPETITIONS; i++) {
-                Utilities.initializeArrayWithRandomPositiveValues(array);
-                totalCompressWithOverlap += withOverlapBenchmarks.compressionTime(array);
-                totalCompressWithoutOverlap += withoutOverlapBenchmarks.compressionTime(array);
-                totalCompressWithOverflowArea += withOverflowAreaBenchmarks.compressionTime(array);
-            }
-
             // Computes average time (and converts from ns to µs)
-            double avgCompressWithOverlap = totalCompressWithOverlap / (double) Config.RUN_BENCHMARKS_REPETITIONS / 1000;
-            double avgCompressWithoutOverlap = totalCompressWithoutOverlap / (double) Config.RUN_BENCHMARKS_REPETITIONS / 1000;
-            double avgCompressWithOverflowArea = totalCompressWithOverflowArea / (double) Config.RUN_BENCHMARKS_REPETITIONS / 1000;
-
-            System.out.printf("%-12d %-18.2f %-18.2f %-18.2f%n", size, avgCompressWithOverlap, avgCompressWithoutOverlap, avgCompressWithOverflowArea);
+            double[] totals = runTimeBenchmarks(benchmarks, size, TimeBenchmarks::compressionTime);
+            printRow(size, totals, Config.RUN_BENCHMARKS_REPETITIONS * 1000.0);
         }
     }
 
     /**
      * Runs the decompression benchmarks
      *
-     * @param withOverlapBenchmarks TimeBenchmarks object for the BitPackingWithOverlap version
-     * @param withoutOverlapBenchmarks TimeBenchmarks object for the BitPackingWithoutOverlap version
-     * @param withOverflowAreaBenchmarks TimeBenchmarks object for the BitPackingWithOverflowArea version
+     * @param benchmarks TimeBenchmarks objects for all compression versions
      */
-    private static void runDecompressionTimeBenchmarks(TimeBenchmarks withOverlapBenchmarks, TimeBenchmarks withoutOverlapBenchmarks, TimeBenchmarks withOverflowAreaBenchmarks) {
+    private static void runDecompressionTimeBenchmarks(TimeBenchmarks[] benchmarks) {
         System.out.println("\n=== Average Decompression Time (in micro-seconds) (average over " + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
-        System.out.printf("%-12s %-18s %-18s %-18s%n", "Array Size", "With Overlap", "Without Overlap", "With Overflow Area");
+        printHeader("Array Size");
 
         for (int size : arraySizes) {
-            int[] array = new int[size];
-
-            long totalDecompressWithOverlap = 0;
-            long totalDecompressWithoutOverlap = 0;
-            long totalDecompressWithOverflowArea = 0;
-
-            // Runs the benchmarks multiple times for better accuracy
-            for (int i = 0; i < Config.RUN_BENCHMARKS_REPETITIONS; i++) {
-                Utilities.initializeArrayWithRandomPositiveValues(array);
-                totalDecompressWithOverlap += withOverlapBenchmarks.decompressionTime(array);
-                totalDecompressWithoutOverlap += withoutOverlapBenchmarks.decompressionTime(array);
-                totalDecompressWithOverflowArea += withOverflowAreaBenchmarks.decompressionTime(array);
-            }
-
             // Computes average time (and converts from ns to µs)
-            double avgDecompressWithOverlap = totalDecompressWithOverlap / (double) Config.RUN_BENCHMARKS_REPETITIONS / 1000;
-            double avgDecompressWithoutOverlap = totalDecompressWithoutOverlap / (double) Config.RUN_BENCHMARKS_REPETITIONS / 1000;
-            double avgDecompressWithOverflowArea = totalDecompressWithOverflowArea / (double) Config.RUN_BENCHMARKS_REPETITIONS / 1000;
-
-            System.out.printf("%-12d %-18.2f %-18.2f %-18.2f%n", size, avgDecompressWithOverlap, avgDecompressWithoutOverlap, avgDecompressWithOverflowArea);
+            double[] totals = runTimeBenchmarks(benchmarks, size, TimeBenchmarks::decompressionTime);
+            printRow(size, totals, Config.RUN_BENCHMARKS_REPETITIONS * 1000.0);
         }
     }
 
     /**
      * Runs the benchmarks for the get method
      *
-     * @param withOverlapBenchmarks TimeBenchmarks object for the BitPackingWithOverlap version
-     * @param withoutOverlapBenchmarks TimeBenchmarks object for the BitPackingWithoutOverlap version
-     * @param withOverflowAreaBenchmarks TimeBenchmarks object for the BitPackingWithOverflowArea version
+     * @param benchmarks TimeBenchmarks objects for all compression versions
      */
-    private static void runGetTimeBenchmarks(TimeBenchmarks withOverlapBenchmarks, TimeBenchmarks withoutOverlapBenchmarks, TimeBenchmarks withOverflowAreaBenchmarks) {
+    private static void runGetTimeBenchmarks(TimeBenchmarks[] benchmarks) {
         System.out.println("\n=== Average Get Time (in nano-seconds) (average over " + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
-        System.out.printf("%-12s %-18s %-18s %-18s%n", "Array Size", "With Overlap", "Without Overlap", "With Overflow Area");
+        printHeader("Array Size");
 
         for (int size : arraySizes) {
+            // Computes average time (and keeps the result in ns)
+            double[] totals = runTimeBenchmarks(benchmarks, size, TimeBenchmarks::getTime);
+            printRow(size, totals, Config.RUN_BENCHMARKS_REPETITIONS);
+        }
+    }
+
+    /**
+     * Runs the benchmarks for the get method on larger arrays, to show that the time of a single get stays the same
+     * when the array size grows
+     *
+     * @param benchmarks TimeBenchmarks objects for all compression versions
+     */
+    private static void runGetScalingBenchmarks(TimeBenchmarks[] benchmarks) {
+        System.out.println("\n=== Average Get Time on growing arrays (in nano-seconds) (average over " + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
+        printHeader("Array Size");
+
+        for (int size : getScalingArraySizes) {
+            // Computes average time (and keeps the result in ns)
+            double[] totals = runTimeBenchmarks(benchmarks, size, TimeBenchmarks::getTime);
+            printRow(size, totals, Config.RUN_BENCHMARKS_REPETITIONS);
+        }
+    }
+
+    /**
+     * Runs the compression throughput benchmarks on large arrays, and measures the memory allocated by a compression
+     *
+     * @param benchmarks TimeBenchmarks objects for all compression versions
+     */
+    private static void runCompressionThroughputBenchmarks(TimeBenchmarks[] benchmarks) {
+        System.out.println("\n=== Average Compression Throughput (in millions of values per second) (average over " + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
+        printHeader("Array Size");
+
+        for (int size : throughputArraySizes) {
+            double[] totals = runTimeBenchmarks(benchmarks, size, TimeBenchmarks::compressionTime);
+            printThroughputRow(size, totals);
+        }
+
+        System.out.println("\n=== Memory allocated by a compression (in bytes per value) ===");
+        printHeader("Array Size");
+
+        for (int size : throughputArraySizes) {
             int[] array = new int[size];
+            Utilities.initializeArrayWithRandomPositiveValues(array);
 
-            long totalGetWithOverlap = 0;
-            long totalGetWithoutOverlap = 0;
-            long totalGetWithOverflowArea = 0;
+            double[] allocatedBytes = new double[benchmarks.length];
+            for (int v = 0; v < benchmarks.length; v++) {
+                allocatedBytes[v] = benchmarks[v].compressionAllocatedBytes(array);
+            }
 
-            // Runs the benchmarks multiple times for better accuracy
-            for (int i = 0; i < Config.RUN_BENCHMARKS_REPETITIONS; i++) {
-                Utilities.initializeArrayWithRandomPositiveValues(array);
-                totalGetWithOverlap += withOverlapBenchmarks.getTime(array);
-                totalGetWithoutOverlap += withoutOverlapBenchmarks.getTime(array);
-                totalGetWithOverflowArea += withOverflowAreaBenchmarks.getTime(array);
+            printRow(size, allocatedBytes, size);
+        }
+
+        System.out.println("\n=== Memory allocated by a compression reusing the previous compressed array (in bytes per value) ===");
+        printHeader("Array Size");
+
+        for (int size : throughputArraySizes) {
+            int[] array = new int[size];
+            Utilities.initializeArrayWithRandomPositiveValues(array);
+
+            double[] allocatedBytes = new double[benchmarks.length];
+            for (int v = 0; v < benchmarks.length; v++) {
+                allocatedBytes[v] = benchmarks[v].reusingCompressionAllocatedBytes(array);
             }
 
-            // Computes average time (and keeps the result in ns)
-            double avgGetWithOverlap = totalGetWithOverlap / (double) Config.RUN_BENCHMARKS_REPETITIONS;
-            double avgGetWithoutOverlap = totalGetWithoutOverlap / (double) Config.RUN_BENCHMARKS_REPETITIONS;
-            double avgGetWithOverflowArea = totalGetWithOverflowArea / (double) Config.RUN_BENCHMARKS_REPETITIONS;
+            printRow(size, allocatedBytes, size);
+        }
+    }
+
+    /**
+     * Runs the decompression throughput benchmarks on large arrays
+     *
+     * @param benchmarks TimeBenchmarks objects for all compression versions
+     */
+    private static void runDecompressionThroughputBenchmarks(TimeBenchmarks[] benchmarks) {
+        System.out.println("\n=== Average Decompression Throughput (in millions of values per second) (average over " + Config.RUN_BENCHMARKS_REPETITIONS + " repetitions) ===");
+        printHeader("Array Size");
+
+        for (int size : throughputArraySizes) {
+            double[] totals = runTimeBenchmarks(benchmarks, size, TimeBenchmarks::decompressionTime);
+            printThroughputRow(size, totals);
+        }
+    }
+
+    /**
+     * Runs a time measurement multiple times for all compression versions, on randomly generated arrays
+     *
+     * @param benchmarks TimeBenchmarks objects for all compression versions
+     * @param size size of the randomly generated arrays
+     * @param measurement the time measurement to run
+     * @return the total measured time (over all repetitions) for each compression version
+     */
+    private static double[] runTimeBenchmarks(TimeBenchmarks[] benchmarks, int size, ToLongBiFunction<TimeBenchmarks, int[]> measurement) {
+        int[] array = new int[size];
+        double[] totals = new double[benchmarks.length];
 
-            System.out.printf("%-12d %-18.2f %-18.2f %-18.2f%n", size, avgGetWithOverlap, avgGetWithoutOverlap, avgGetWithOverflowArea);
+        // Runs the benchmarks multiple times for better accuracy
+        for (int i = 0; i < Config.RUN_BENCHMARKS_REPETITIONS; i++) {
+            Utilities.initializeArrayWithRandomPositiveValues(array);
+            for (int v = 0; v < benchmarks.length; v++) {
+                totals[v] += measurement.applyAsLong(benchmarks[v], array);
+            }
+        }
+
+        return totals;
+    }
+
+    /**
+     * Prints the header of a result table, with one column per compression version
+     *
+     * @param firstColumn name of the first column
+     */
+    private static void printHeader(String firstColumn) {
+        System.out.printf("%-12s", firstColumn);
+        for (CompressionVersion compressionVersion : CompressionVersion.concreteValues()) {
+            System.out.printf(" %-20s", compressionVersion.getDisplayName());
+        }
+        System.out.println();
+    }
+
+    /**
+     * Prints a row of a result table
+     *
+     * @param size array size of the row
+     * @param totals total of the measurements for each compression version
+     * @param divisor number by which each total is divided before being printed
+     */
+    private static void printRow(int size, double[] totals, double divisor) {
+        System.out.printf("%-12d", size);
+        for (double total : totals) {
+            System.out.printf(" %-20.2f", total / divisor);
+        }
+        System.out.println();
+    }
+
+    /**
+     * Prints a row of a throughput table
+     *
+     * @param size array size of the row
+     * @param totals total time (in ns) of all repetitions for each compression version
+     */
+    private static void printThroughputRow(int size, double[] totals) {
+        System.out.printf("%-12d", size);
+        for (double total : totals) {
+            // Number of values per micro-second is the number of millions of values per second
+            System.out.printf(" %-20.2f", (double) size * Config.RUN_BENCHMARKS_REPETITIONS / (total / 1000.0));
         }
+        System.out.println();
     }
 }
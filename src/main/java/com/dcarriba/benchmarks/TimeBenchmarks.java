@@ -4,6 +4,8 @@ import com.dcarriba.bitpacking.BitPacking;
 import com.dcarriba.bitpacking.factory.BitPackingFactory;
 import com.dcarriba.bitpacking.factory.CompressionVersion;
 
+import java.lang.management.ManagementFactory;
+
 /**
  * {@link TimeBenchmarks} is a class providing benchmarks in form of time measurements for {@link BitPacking}
  * implementations
@@ -11,6 +13,8 @@ import com.dcarriba.bitpacking.factory.CompressionVersion;
 public class TimeBenchmarks {
     /** BitPacking object used for the benchmarks */
     private final BitPacking bitPacking;
+    /** Array receiving the decompressed values, reused by all measurements with arrays of the same size */
+    private int[] decompressedArray = new int[0];
 
     /**
      * Constructor for {@link TimeBenchmarks}
@@ -51,7 +55,9 @@ public class TimeBenchmarks {
         }
 
         bitPacking.compress(array);
-        int[] decompressedArray = new int[array.length];
+        if (decompressedArray.length != array.length) {
+            decompressedArray = new int[array.length];
+        }
 
         long startTime = System.nanoTime();
         bitPacking.decompress(decompressedArray);
@@ -81,4 +87,56 @@ public class TimeBenchmarks {
 
         return (endTime - startTime) / array.length;
     }
+
+    /**
+     * Measures the number of bytes allocated on the heap by the current thread during the compression
+     *
+     * @param array input array for the measurement
+     * @return number of bytes allocated during the compression, or -1 if the JVM can't measure it
+     */
+    public long compressionAllocatedBytes(int[] array) {
+        if (array == null || array.length == 0) {
+            throw new IllegalArgumentException("The array can't be null or empty.");
+        }
+
+        return allocatedBytes(() -> bitPacking.compress(array));
+    }
+
+    /**
+     * Measures the number of bytes allocated on the heap by the current thread during a compression reusing the
+     * compressed array of the previous one (see {@link BitPacking#compressReusingBuffer(int[])})
+     *
+     * @param array input array for the measurement
+     * @return number of bytes allocated during the compression, or -1 if the JVM can't measure it
+     */
+    public long reusingCompressionAllocatedBytes(int[] array) {
+        if (array == null || array.length == 0) {
+            throw new IllegalArgumentException("The array can't be null or empty.");
+        }
+
+        // The first compression allocates the buffer reused by the measured one
+        bitPacking.compressReusingBuffer(array);
+        return allocatedBytes(() -> bitPacking.compressReusingBuffer(array));
+    }
+
+    /**
+     * Measures the number of bytes allocated on the heap by the current thread while running an action
+     *
+     * @param action the measured action
+     * @return number of bytes allocated by the action, or -1 if the JVM can't measure it
+     */
+    private static long allocatedBytes(Runnable action) {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadMXBean)
+                || !threadMXBean.isThreadAllocatedMemorySupported()) {
+            return -1;
+        }
+
+        long threadId = Thread.currentThread().getId();
+
+        long startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+        action.run();
+        long endBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+
+        return endBytes - startBytes;
+    }
 }
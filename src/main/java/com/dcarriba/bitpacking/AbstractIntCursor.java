@@ -0,0 +1,59 @@
+package com.dcarriba.bitpacking;
+
+import java.util.NoSuchElementException;
+
+/**
+ * {@link AbstractIntCursor} is the base of the {@link IntCursor} implementations, keeping the position of the cursor
+ * and checking the end of its range.
+ */
+public abstract class AbstractIntCursor implements IntCursor {
+    /** Index of the next value */
+    private int position;
+    /** Index after the last value of the range */
+    private final int end;
+
+    /**
+     * Constructor for {@link AbstractIntCursor}
+     *
+     * @param from index of the first value of the range
+     * @param to index after the last value of the range
+     */
+    protected AbstractIntCursor(int from, int to) {
+        this.position = from;
+        this.end = to;
+    }
+
+    @Override
+    public int position() {
+        return position;
+    }
+
+    /**
+     * @return Index after the last value of the range
+     */
+    protected int end() {
+        return end;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return position < end;
+    }
+
+    @Override
+    public int nextInt() {
+        if (position >= end) {
+            throw new NoSuchElementException();
+        }
+        int value = readNext();
+        position++;
+        return value;
+    }
+
+    /**
+     * Reads the value at {@link #position()}, which is inside the range, and moves to the next one
+     *
+     * @return the value at {@link #position()}
+     */
+    protected abstract int readNext();
+}
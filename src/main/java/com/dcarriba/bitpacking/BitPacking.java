@@ -1,29 +1,226 @@
 package com.dcarriba.bitpacking;
 
+import com.dcarriba.bitpacking.storage.StorageType;
+import com.dcarriba.bitpacking.storage.WordStorage;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
 /**
  * Abstract {@link BitPacking} class, a compression method based the number of bits used.
  * Compression and decompression methods need to be implemented.
+ * <p>
+ * By default only non-negative integers can be compressed. In signed mode, negative integers are also accepted: they
+ * are zigzag encoded (0, -1, 1, -2, 2, ... are mapped to 0, 1, 2, 3, 4, ...) while being packed, so that small
+ * negative values still need few bits, and decoded back while being unpacked.
+ * </p>
+ * <p>
+ * Versions keeping their compressed data outside of the Java heap release it when they are closed.
+ * </p>
+ * <p>
+ * A {@link BitPacking} object is both the codec and the result of its last compression, and isn't thread-safe: to
+ * share compressed data between threads, use the immutable {@link CompressedIntArray} (created by a
+ * {@link BitPackingEncoder} or copied from a {@link BitPacking} object).
+ * </p>
  */
-public abstract class BitPacking {
+public abstract class BitPacking implements AutoCloseable {
+    /** Number of values decoded at once by the default searches and aggregations */
+    private static final int SEARCH_WINDOW_SIZE = 1024;
+    /** Number of bits added to the required bit size when the values are repacked to a wider bit size by set */
+    protected static final int WIDTH_PROMOTION_HEADROOM = 2;
+    /** Number of values between two consecutive samples of the skip index built in sorted mode */
+    private static final int SKIP_INDEX_INTERVAL = 128;
+
+    /** If negative integers can be compressed (using a zigzag encoding) */
+    private final boolean signed;
     /** Array containing the compressed data */
     private int[] compressedArray;
+    /** Number of integers of the compressed array used by the compressed data (the array may be larger) */
+    private int compressedLength;
+    /**
+     * Storage containing the compressed data instead of the compressed array (e.g. off-heap), the words split into
+     * their high and low halves giving the same integers as the compressed array
+     */
+    private WordStorage compressedStorage;
+    /** Array the next compression writes into if it is large enough, or null to allocate a new one */
+    private int[] targetBuffer;
+    /** If the next compression must write into the target buffer, i.e. if it can't allocate a new array */
+    private boolean targetBufferRequired;
     /** Original number of integers in the array before compression */
     private int originalLength;
     /** New number of bits each value will be coded on */
     private int bitSize;
+    /** Every {@link #SKIP_INDEX_INTERVAL}-th value, uncompressed, if the array was compressed in sorted mode */
+    private int[] skipIndex;
 
     /**
+     * Constructor for a {@link BitPacking} compressing only non-negative integers
+     */
+    protected BitPacking() {
+        this(false);
+    }
+
+    /**
+     * Constructor for {@link BitPacking}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     */
+    protected BitPacking(boolean signed) {
+        this.signed = signed;
+    }
+
+    /**
+     * @return If negative integers can be compressed (using a zigzag encoding)
+     */
+    public boolean isSigned() {
+        return signed;
+    }
+
+    /**
+     * @return Where the compressed data is kept (on the heap by default)
+     */
+    public StorageType getStorageType() {
+        return StorageType.HEAP;
+    }
+
+    /**
+     * Returns the compressed data. The versions keeping it outside of an int array (in 64-bit words, off-heap or in a
+     * mapped file) return a new copy of all of it at each call: {@link #copyCompressedArray(int, int, int[], int)}
+     * reads a part of the compressed data without copying the rest.
+     *
      * @return Array containing the compressed data
      */
     public int[] getCompressedArray() {
+        if (compressedStorage != null) {
+            int[] copy = new int[compressedLength];
+            compressedStorage.readInts(0, compressedLength, copy, 0);
+            return copy;
+        }
         return compressedArray;
     }
 
     /**
-     * @param compressedArray Array containing the compressed data
+     * Copies the integers of the compressed data from index from (inclusive) to index to (exclusive) into the array
+     * given as parameter, without copying the whole compressed data like {@link #getCompressedArray()} may do.
+     *
+     * @param from index of the first integer of the compressed data to copy
+     * @param to index after the last integer of the compressed data to copy
+     * @param dest array receiving the integers
+     * @param destOff index of dest at which the first integer is placed
+     */
+    public void copyCompressedArray(int from, int to, int[] dest, int destOff) {
+        if (from < 0 || to > getCompressedLength() || from > to) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+
+        if (dest == null || destOff < 0 || destOff > dest.length - (to - from)) {
+            throw new IllegalArgumentException("Output array must have room for " + (to - from)
+                    + " integers after the offset");
+        }
+
+        checkCompressedData();
+
+        if (from < to) {
+            copyCompressedInts(from, to, dest, destOff);
+        }
+    }
+
+    /**
+     * Copies integers of the compressed data, the arguments being already checked by
+     * {@link #copyCompressedArray(int, int, int[], int)}. By default, they are copied from the compressed array.
+     *
+     * @param from index of the first integer of the compressed data to copy
+     * @param to index after the last integer of the compressed data to copy
+     * @param dest array receiving the integers
+     * @param destOff index of dest at which the first integer is placed
+     */
+    protected void copyCompressedInts(int from, int to, int[] dest, int destOff) {
+        if (compressedStorage != null) {
+            compressedStorage.readInts(from, to, dest, destOff);
+        } else {
+            System.arraycopy(compressedArray, from, dest, destOff, to - from);
+        }
+    }
+
+    /**
+     * @param compressedArray Array containing the compressed data, entirely used
      */
     protected void setCompressedArray(int[] compressedArray) {
+        setCompressedArray(compressedArray, compressedArray == null ? 0 : compressedArray.length);
+    }
+
+    /**
+     * @param compressedArray Array containing the compressed data
+     * @param compressedLength Number of integers of the array used by the compressed data
+     */
+    protected void setCompressedArray(int[] compressedArray, int compressedLength) {
+        if (compressedStorage != null) {
+            compressedStorage.close();
+            compressedStorage = null;
+        }
         this.compressedArray = compressedArray;
+        this.compressedLength = compressedLength;
+    }
+
+    /**
+     * @return Storage containing the compressed data instead of the compressed array, or null if the compressed data
+     * is in the compressed array
+     */
+    protected WordStorage getCompressedStorage() {
+        return compressedStorage;
+    }
+
+    /**
+     * Keeps the compressed data in a storage instead of the compressed array. The previous storage (if any) is
+     * closed.
+     *
+     * @param compressedStorage storage containing the compressed data, split into integers like the compressed array
+     * @param compressedLength Number of integers used by the compressed data
+     */
+    protected void setCompressedStorage(WordStorage compressedStorage, int compressedLength) {
+        if (this.compressedStorage != null && this.compressedStorage != compressedStorage) {
+            this.compressedStorage.close();
+        }
+        this.compressedStorage = compressedStorage;
+        this.compressedArray = null;
+        this.compressedLength = compressedLength;
+    }
+
+    /**
+     * @return Number of integers used by the compressed data, at the beginning of the compressed array (which may be
+     * larger, e.g. when a buffer is reused)
+     */
+    public int getCompressedLength() {
+        return compressedLength;
+    }
+
+    /**
+     * Returns the array a compression writes its compressed data into: the buffer given to
+     * {@link #compress(int[], int[])} or the array reused by {@link #compressReusingBuffer(int[])} when it is large
+     * enough, else a new array. The first length integers of the array are 0.
+     *
+     * @param length number of integers needed by the compressed data
+     * @return an array of at least length integers, starting with length integers equal to 0
+     * @throws IllegalArgumentException if the buffer given to {@link #compress(int[], int[])} is too small
+     */
+    protected int[] allocateCompressedArray(int length) {
+        int[] buffer = targetBuffer;
+        targetBuffer = null;
+
+        if (buffer != null && buffer.length >= length) {
+            Arrays.fill(buffer, 0, length, 0);
+            return buffer;
+        }
+        if (targetBufferRequired) {
+            // The previous compressed data may already be partially replaced, it is discarded
+            setCompressedArray(null);
+            throw new IllegalArgumentException("The buffer is too small: " + length + " integers are needed.");
+        }
+        return new int[length];
     }
 
     /**
@@ -38,6 +235,8 @@ public abstract class BitPacking {
      */
     protected void setOriginalLength(int originalLength) {
         this.originalLength = originalLength;
+        // Every compression sets the original length, and the skip index only describes the values it was built from
+        this.skipIndex = null;
     }
 
     /**
@@ -56,19 +255,266 @@ public abstract class BitPacking {
 
     /**
      * Calculates the number of bits needed to represent the largest integer of the array.
+     * In signed mode, the number of bits needed to represent the largest zigzag encoded integer is calculated.
      *
-     * @param array The input array with only non-negative integers
+     * @param array The input array with only non-negative integers (unless in signed mode)
      * @return The number of bits required to represent the largest value
-     * @throws IllegalArgumentException if the array is null or contains negative numbers
+     * @throws IllegalArgumentException if the array is null or contains negative numbers (unless in signed mode)
      */
     protected int calculateBitSize(int[] array) {
         if (array == null) throw new IllegalArgumentException("Input array can't be null.");
-        int max = 1; // At least 1 bit, needed if all values are "0"
-        for (int value : array) {
-            if (value < 0) throw new IllegalArgumentException("Values can't be negative.");
-            max = Math.max(max, value);
+
+        return calculateBitSize(array, 0, array.length);
+    }
+
+    /**
+     * Calculates the number of bits needed to represent the largest integer of a range of the array.
+     * In signed mode, the number of bits needed to represent the largest zigzag encoded integer is calculated.
+     *
+     * @param array The input array with only non-negative integers (unless in signed mode)
+     * @param from index of the first value of the range
+     * @param to index after the last value of the range
+     * @return The number of bits required to represent the largest value of the range
+     * @throws IllegalArgumentException if the range contains negative numbers (unless in signed mode)
+     */
+    protected int calculateBitSize(int[] array, int from, int to) {
+        // The largest value has the same number of bits as all values combined with a bitwise or
+        int bits = 1; // At least 1 bit, needed if all values are "0"
+        if (signed) {
+            for (int i = from; i < to; i++) bits |= encode(array[i]);
+        } else {
+            for (int i = from; i < to; i++) {
+                int value = array[i];
+                if (value < 0) throw new IllegalArgumentException("Values can't be negative.");
+                bits |= value;
+            }
+        }
+        return 32 - Integer.numberOfLeadingZeros(bits);
+    }
+
+    /**
+     * Calculates the number of bits needed to represent the largest integer of the remaining values of the buffer
+     * (without changing its position). In signed mode, the number of bits needed to represent the largest zigzag
+     * encoded integer is calculated.
+     *
+     * @param buffer The input buffer with only non-negative integers (unless in signed mode)
+     * @return The number of bits required to represent the largest value
+     * @throws IllegalArgumentException if the buffer contains negative numbers (unless in signed mode)
+     */
+    protected int calculateBufferBitSize(IntBuffer buffer) {
+        int bits = 1; // At least 1 bit, needed if all values are "0"
+        for (int i = buffer.position(); i < buffer.limit(); i++) {
+            int value = buffer.get(i);
+            if (value < 0 && !signed) throw new IllegalArgumentException("Values can't be negative.");
+            bits |= encode(value);
         }
-        return 32 - Integer.numberOfLeadingZeros(max);
+        return 32 - Integer.numberOfLeadingZeros(bits);
+    }
+
+    /**
+     * Maps a value to the unsigned integer which is actually packed, i.e. zigzag encodes the value in signed mode.
+     *
+     * @param value the value to compress
+     * @return the value to pack
+     */
+    protected final int encode(int value) {
+        return signed ? (value << 1) ^ (value >> 31) : value;
+    }
+
+    /**
+     * Maps an unpacked unsigned integer back to the original value, i.e. zigzag decodes the value in signed mode.
+     *
+     * @param value the unpacked value
+     * @return the original value
+     */
+    protected final int decode(int value) {
+        return signed ? (value >>> 1) ^ -(value & 1) : value;
+    }
+
+    /**
+     * Calculates the number of bits needed to represent a single non-negative integer.
+     *
+     * @param value The non-negative (or zigzag encoded) integer
+     * @return The number of bits required to represent the value (at least 1, needed if the value is "0")
+     */
+    protected static int calculateBitSize(int value) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(value));
+    }
+
+    /**
+     * Writes the lowest bitCount bits of a value at the given bit position of the compressed array.
+     * Bits are written from the most significant to the least significant bit of each integer, and the value may
+     * overlap to the next integer.
+     *
+     * @param compressedArray array in which the value is written
+     * @param bitPosition position (in bits) at which the value is written
+     * @param value value to write
+     * @param bitCount number of bits to write (between 1 and 32)
+     */
+    protected static void writeBits(int[] compressedArray, long bitPosition, int value, int bitCount) {
+        int intIndex = (int) (bitPosition >>> 5);
+        int bitOffset = (int) (bitPosition & 31);
+
+        // Places the value inside a 64-bit window starting at the beginning of the integer at intIndex
+        long bits = (value & (-1L >>> (64 - bitCount))) << (64 - bitOffset - bitCount);
+
+        compressedArray[intIndex] |= (int) (bits >>> 32);
+        if (bitOffset + bitCount > 32) {
+            compressedArray[intIndex + 1] |= (int) bits;
+        }
+    }
+
+    /**
+     * Overwrites bitCount bits at the given bit position of the compressed array with the lowest bitCount bits of a
+     * value, leaving the surrounding bits unchanged (unlike {@link #writeBits(int[], long, int, int)}, the bits don't
+     * need to be 0 beforehand).
+     *
+     * @param compressedArray array in which the value is written
+     * @param bitPosition position (in bits) at which the value is written
+     * @param value value to write
+     * @param bitCount number of bits to write (between 1 and 32)
+     */
+    protected static void overwriteBits(int[] compressedArray, long bitPosition, int value, int bitCount) {
+        int intIndex = (int) (bitPosition >>> 5);
+        int bitOffset = (int) (bitPosition & 31);
+
+        // Places the value and its mask inside a 64-bit window starting at the beginning of the integer at intIndex
+        int shift = 64 - bitOffset - bitCount;
+        long mask = (-1L >>> (64 - bitCount)) << shift;
+        long bits = (value & (-1L >>> (64 - bitCount))) << shift;
+
+        compressedArray[intIndex] = (compressedArray[intIndex] & ~(int) (mask >>> 32)) | (int) (bits >>> 32);
+        if (bitOffset + bitCount > 32) {
+            compressedArray[intIndex + 1] = (compressedArray[intIndex + 1] & ~(int) mask) | (int) bits;
+        }
+    }
+
+    /**
+     * Reads bitCount bits at the given bit position of the compressed array.
+     *
+     * @param compressedArray array from which the value is read
+     * @param bitPosition position (in bits) at which the value is read
+     * @param bitCount number of bits to read (between 1 and 32)
+     * @return the value that was read
+     */
+    protected static int readBits(int[] compressedArray, long bitPosition, int bitCount) {
+        int intIndex = (int) (bitPosition >>> 5);
+        int bitOffset = (int) (bitPosition & 31);
+
+        // 64-bit window containing the integer at intIndex followed by the next one (if needed)
+        long window = (long) compressedArray[intIndex] << 32;
+        if (bitOffset + bitCount > 32) {
+            window |= compressedArray[intIndex + 1] & 0xFFFFFFFFL;
+        }
+
+        return (int) ((window >>> (64 - bitOffset - bitCount)) & (-1L >>> (64 - bitCount)));
+    }
+
+    /**
+     * Reads count consecutive values of bitCount bits each, starting at the given bit position of the compressed
+     * array. The compressed array is read sequentially through a 64-bit buffer, so each integer is only loaded once.
+     *
+     * @param compressedArray array from which the values are read
+     * @param bitPosition position (in bits) of the first value
+     * @param bitCount number of bits of each value (between 1 and 32)
+     * @param array array receiving the values
+     * @param offset index of the array at which the first value is placed
+     * @param count number of values to read
+     */
+    protected static void readBits(int[] compressedArray, long bitPosition, int bitCount, int[] array, int offset,
+                                   int count) {
+        if (count <= 0) return;
+
+        int intIndex = (int) (bitPosition >>> 5);
+        int bitOffset = (int) (bitPosition & 31);
+
+        // The buffered bits are aligned on the most significant bit of the buffer
+        long buffer = (compressedArray[intIndex++] & 0xFFFFFFFFL) << (32 + bitOffset);
+        int bufferedBits = 32 - bitOffset;
+
+        for (int i = offset; i < offset + count; i++) {
+            // Loads the next integer right after the buffered bits if they don't contain the whole value
+            if (bufferedBits < bitCount) {
+                buffer |= (compressedArray[intIndex++] & 0xFFFFFFFFL) << (32 - bufferedBits);
+                bufferedBits += 32;
+            }
+
+            array[i] = (int) (buffer >>> (64 - bitCount));
+            buffer <<= bitCount;
+            bufferedBits -= bitCount;
+        }
+    }
+
+    /**
+     * Reads an integer of the compressed data, from the compressed array or from the compressed storage.
+     *
+     * @param index index of the integer
+     * @return the integer of the compressed data at the given index
+     */
+    protected final int readCompressedInt(int index) {
+        WordStorage storage = compressedStorage;
+        return storage == null ? compressedArray[index] : storage.readBits(32L * index, 32);
+    }
+
+    /**
+     * Reads bitCount bits at the given bit position of the compressed data, from the compressed array or from the
+     * compressed storage.
+     *
+     * @param bitPosition position (in bits) at which the value is read
+     * @param bitCount number of bits to read (between 1 and 32)
+     * @return the value that was read
+     */
+    protected final int readCompressedBits(long bitPosition, int bitCount) {
+        WordStorage storage = compressedStorage;
+        return storage == null
+                ? readBits(compressedArray, bitPosition, bitCount)
+                : storage.readBits(bitPosition, bitCount);
+    }
+
+    /**
+     * Reads count consecutive values of bitCount bits each, starting at the given bit position of the compressed
+     * data, from the compressed array or from the compressed storage.
+     *
+     * @param bitPosition position (in bits) of the first value
+     * @param bitCount number of bits of each value (between 1 and 32)
+     * @param array array receiving the values
+     * @param offset index of the array at which the first value is placed
+     * @param count number of values to read
+     */
+    protected final void readCompressedBits(long bitPosition, int bitCount, int[] array, int offset, int count) {
+        WordStorage storage = compressedStorage;
+        if (storage == null) {
+            readBits(compressedArray, bitPosition, bitCount, array, offset, count);
+        } else {
+            storage.readBits(bitPosition, bitCount, array, offset, count);
+        }
+    }
+
+    /**
+     * Overwrites bitCount bits at the given bit position of the compressed data, in the compressed array or in the
+     * compressed storage.
+     *
+     * @param bitPosition position (in bits) at which the value is written
+     * @param value value to write
+     * @param bitCount number of bits to write (between 1 and 32)
+     */
+    protected final void overwriteCompressedBits(long bitPosition, int value, int bitCount) {
+        WordStorage storage = compressedStorage;
+        if (storage == null) {
+            overwriteBits(compressedArray, bitPosition, value, bitCount);
+        } else {
+            storage.overwriteBits(bitPosition, value, bitCount);
+        }
+    }
+
+    /**
+     * @param bitPosition position (in bits) of the first value
+     * @return a {@link BitReader} reading consecutive values of the compressed data, from the compressed array or
+     * from the compressed storage
+     */
+    protected final BitReader createBitReader(long bitPosition) {
+        WordStorage storage = compressedStorage;
+        return storage == null ? new BitReader(compressedArray, bitPosition) : new BitReader(storage, bitPosition);
     }
 
     /**
@@ -78,6 +524,114 @@ public abstract class BitPacking {
      */
     public abstract void compress(int[] array);
 
+    /**
+     * Compresses the array using the BitPacking compression method. In sorted mode, the array must be sorted in
+     * increasing order, and a small skip index (every {@value #SKIP_INDEX_INTERVAL}-th value, uncompressed) is built,
+     * so that {@link #lowerBound(int)} and {@link #upperBound(int)} only need to decode a few values.
+     *
+     * @param array Array to be compressed
+     * @param sorted if the array is sorted, and the skip index must be built
+     * @throws IllegalArgumentException if the array isn't sorted in sorted mode
+     */
+    public void compress(int[] array, boolean sorted) {
+        if (!sorted) {
+            compress(array);
+            return;
+        }
+
+        if (array == null || array.length == 0) {
+            throw new IllegalArgumentException("The array can't be null or empty.");
+        }
+        for (int i = 1; i < array.length; i++) {
+            if (array[i - 1] > array[i]) throw new IllegalArgumentException("The array must be sorted.");
+        }
+
+        compress(array);
+
+        int[] samples = new int[(array.length + SKIP_INDEX_INTERVAL - 1) / SKIP_INDEX_INTERVAL];
+        for (int j = 0; j < samples.length; j++) {
+            samples[j] = array[j * SKIP_INDEX_INTERVAL];
+        }
+        skipIndex = samples;
+    }
+
+    /**
+     * Compresses the array into the buffer given as parameter instead of a new array, so that a compression loop
+     * doesn't allocate anything. The buffer becomes the compressed array, and must not be modified while it is used.
+     * <p>
+     * Versions keeping their compressed data outside of an int array don't support this method.
+     * </p>
+     *
+     * @param array Array to be compressed
+     * @param buffer Array receiving the compressed data, at its beginning
+     * @return the number of integers of the buffer used by the compressed data
+     * @throws IllegalArgumentException if the buffer is null or too small, in which case no compressed data is
+     * available anymore
+     */
+    public int compress(int[] array, int[] buffer) {
+        if (buffer == null) throw new IllegalArgumentException("The buffer can't be null.");
+
+        return compressInto(array, buffer, true);
+    }
+
+    /**
+     * Compresses the array, reusing the compressed array of the previous compression when it is large enough instead
+     * of allocating a new one. The previous compressed array must not be used anymore.
+     *
+     * @param array Array to be compressed
+     * @return the number of integers of the compressed array used by the compressed data
+     */
+    public int compressReusingBuffer(int[] array) {
+        return compressInto(array, compressedArray, false);
+    }
+
+    /**
+     * Compresses the array, allocating its compressed array with {@link #allocateCompressedArray(int)}
+     *
+     * @param array Array to be compressed
+     * @param buffer Array the compression writes into if it is large enough, or null
+     * @param required if the compression must write into the buffer
+     * @return the number of integers used by the compressed data
+     */
+    private int compressInto(int[] array, int[] buffer, boolean required) {
+        targetBuffer = buffer;
+        targetBufferRequired = required;
+        try {
+            compress(array);
+        } finally {
+            targetBuffer = null;
+            targetBufferRequired = false;
+        }
+        return getCompressedLength();
+    }
+
+    /**
+     * @return If the array was compressed in sorted mode, i.e. if the skip index is available
+     */
+    public boolean isSorted() {
+        return skipIndex != null;
+    }
+
+    /**
+     * Compresses the remaining values of the buffer (from its position to its limit) using the BitPacking compression
+     * method. The position of the buffer isn't changed.
+     * <p>
+     * By default, the values are first copied into an array. Implementations able to read the values directly from
+     * the buffer (e.g. a direct buffer filled by native I/O) should override this method.
+     * </p>
+     *
+     * @param buffer Buffer containing the values to be compressed
+     */
+    public void compressBuffer(IntBuffer buffer) {
+        if (buffer == null || !buffer.hasRemaining()) {
+            throw new IllegalArgumentException("The buffer can't be null or empty.");
+        }
+
+        int[] array = new int[buffer.remaining()];
+        buffer.get(buffer.position(), array);
+        compress(array);
+    }
+
     /**
      * Decompresses the compressed array into the array given as parameter.
      *
@@ -88,17 +642,662 @@ public abstract class BitPacking {
             throw new IllegalArgumentException("Output array must have length " + getOriginalLength());
         }
 
-        if (getCompressedArray() == null) {
+        decompress(array, 0);
+    }
+
+    /**
+     * Decompresses the compressed array into the array given as parameter, starting at the given offset. This allows
+     * the decompressed values to be placed inside a larger (and reusable) array.
+     *
+     * @param array Array receiving the decompressed array
+     * @param offset Index of the array at which the first decompressed value is placed
+     */
+    public void decompress(int[] array, int offset) {
+        if (array == null || offset < 0 || offset > array.length - getOriginalLength()) {
+            throw new IllegalArgumentException("Output array must have room for " + getOriginalLength()
+                    + " values after the offset");
+        }
+
+        checkCompressedData();
+
+        decompressValues(array, offset);
+    }
+
+    /**
+     * Returns the parameters of the layout of the compressed data which can't be derived from the original length and
+     * the bit size (e.g. the bit sizes of an overflow area), so that the compressed data can be stored and restored by
+     * {@link BitPackingFile}.
+     *
+     * @return the parameters of the layout (none by default)
+     */
+    protected int[] getLayoutParameters() {
+        return new int[0];
+    }
+
+    /**
+     * Restores compressed data previously produced by the same version of {@link BitPacking}, as if it had just been
+     * compressed. Versions with layout parameters (see {@link #getLayoutParameters()}) or additional state must
+     * override this method.
+     *
+     * @param compressedArray array containing the compressed data
+     * @param originalLength original number of integers in the array before compression
+     * @param bitSize number of bits each value is coded on
+     * @param layoutParameters parameters of the layout, as returned by {@link #getLayoutParameters()}
+     * @throws IllegalArgumentException if the layout parameters aren't the expected ones
+     */
+    protected void restore(int[] compressedArray, int originalLength, int bitSize, int[] layoutParameters) {
+        if (layoutParameters.length != getLayoutParameters().length) {
+            throw new IllegalArgumentException("Expected " + getLayoutParameters().length + " layout parameters");
+        }
+
+        // Off-heap, the compressed data is copied into a compressed storage
+        StorageType storageType = getStorageType();
+        if (storageType == StorageType.HEAP) {
+            setCompressedArray(compressedArray);
+        } else {
+            setCompressedStorage(storageType.copyOf(compressedArray, compressedArray.length), compressedArray.length);
+        }
+        setOriginalLength(originalLength);
+        setBitSize(bitSize);
+    }
+
+    /**
+     * Restores compressed data previously produced by the same version of {@link BitPacking} and kept in a storage,
+     * like {@link #restore(int[], int, int, int[])}. The storage is kept as is, whatever the storage type used by
+     * {@link #compress(int[])}, and released when this object is closed or compresses another array: all versions
+     * can read their compressed data from a storage (e.g. a read-only view of a mapped file).
+     *
+     * @param compressedStorage storage containing the compressed data
+     * @param compressedLength number of integers used by the compressed data
+     * @param originalLength original number of integers in the array before compression
+     * @param bitSize number of bits each value is coded on
+     * @param layoutParameters parameters of the layout, as returned by {@link #getLayoutParameters()}
+     * @throws IllegalArgumentException if the layout parameters aren't the expected ones
+     */
+    protected void restore(WordStorage compressedStorage, int compressedLength, int originalLength, int bitSize,
+                           int[] layoutParameters) {
+        if (layoutParameters.length != getLayoutParameters().length) {
+            throw new IllegalArgumentException("Expected " + getLayoutParameters().length + " layout parameters");
+        }
+
+        setCompressedStorage(compressedStorage, compressedLength);
+        setOriginalLength(originalLength);
+        setBitSize(bitSize);
+    }
+
+    /**
+     * @return If the compressed data is available, i.e. if a compression has been performed
+     */
+    protected boolean hasCompressedData() {
+        return compressedArray != null || compressedStorage != null;
+    }
+
+    /**
+     * @throws IllegalStateException if no compression has been performed
+     */
+    private void checkCompressedData() {
+        if (!hasCompressedData()) {
             throw new IllegalStateException("Compressed data is not available. Ensure that compression has been" +
                     "performed before decompression.");
         }
+    }
 
+    /**
+     * Decompresses all values into the array given as parameter, starting at the given offset. The parameters are
+     * already checked by {@link #decompress(int[], int)}.
+     * <p>
+     * By default, all values are read one by one using {@link #get(int)}. Implementations should override this
+     * method with a sequential decompression.
+     * </p>
+     *
+     * @param array Array receiving the decompressed array
+     * @param offset Index of the array at which the first decompressed value is placed
+     */
+    protected void decompressValues(int[] array, int offset) {
         // We get all values from the compressed array and put them into the result array
-        for (int i = 0; i < array.length; i++) {
-            array[i] = get(i);
+        for (int i = 0; i < getOriginalLength(); i++) {
+            array[offset + i] = get(i);
+        }
+    }
+
+    /**
+     * Decodes the values from index from (inclusive) to index to (exclusive) into the array given as parameter,
+     * without going through {@link #get(int)} for each value.
+     *
+     * @param from index of the first value to decode
+     * @param to index after the last value to decode
+     * @param dest array receiving the values
+     * @param destOff index of dest at which the first value is placed
+     */
+    public void decodeRange(int from, int to, int[] dest, int destOff) {
+        if (from < 0 || to > getOriginalLength() || from > to) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+
+        if (dest == null || destOff < 0 || destOff > dest.length - (to - from)) {
+            throw new IllegalArgumentException("Output array must have room for " + (to - from)
+                    + " values after the offset");
+        }
+
+        checkCompressedData();
+
+        if (from < to) {
+            decodeRangeValues(from, to, dest, destOff);
+        }
+    }
+
+    /**
+     * Decodes a non-empty range of the values into the array given as parameter. The parameters are already checked
+     * by {@link #decodeRange(int, int, int[], int)}.
+     * <p>
+     * By default, the values are read with a cursor (see {@link #createCursor(int, int)}). Implementations should
+     * override this method with a decompression of the whole range at once.
+     * </p>
+     *
+     * @param from index of the first value to decode
+     * @param to index after the last value to decode
+     * @param dest array receiving the values
+     * @param destOff index of dest at which the first value is placed
+     */
+    protected void decodeRangeValues(int from, int to, int[] dest, int destOff) {
+        IntCursor cursor = createCursor(from, to);
+        for (int i = destOff; i < destOff + to - from; i++) {
+            dest[i] = cursor.nextInt();
         }
     }
 
+    /**
+     * Gathers the values at the given (possibly unsorted and repeated) indices: out[k] receives the value at index
+     * indices[k].
+     * <p>
+     * Unsorted indices are first sorted, so that the compressed data is read in increasing order, and the values are
+     * then written back in the order of the indices.
+     * </p>
+     *
+     * @param indices indices of the wanted values
+     * @param out array receiving the values (at least as long as indices)
+     */
+    public void gather(int[] indices, int[] out) {
+        if (indices == null || out == null || out.length < indices.length) {
+            throw new IllegalArgumentException("Output array must have room for all indices");
+        }
+
+        checkCompressedData();
+
+        // Checks the indices, and if they are already sorted
+        boolean sorted = true;
+        for (int k = 0; k < indices.length; k++) {
+            if (indices[k] < 0 || indices[k] >= getOriginalLength()) {
+                throw new IndexOutOfBoundsException("Index out of bounds");
+            }
+            if (k > 0 && indices[k] < indices[k - 1]) sorted = false;
+        }
+
+        if (sorted) {
+            gatherSortedValues(indices, out);
+            return;
+        }
+
+        // Sorts the indices together with their position (an index in the high half, its position in the low half)
+        long[] keys = new long[indices.length];
+        for (int k = 0; k < indices.length; k++) {
+            keys[k] = ((long) indices[k] << 32) | k;
+        }
+        Arrays.sort(keys);
+
+        int[] sortedIndices = new int[indices.length];
+        for (int k = 0; k < keys.length; k++) {
+            sortedIndices[k] = (int) (keys[k] >>> 32);
+        }
+
+        int[] values = new int[indices.length];
+        gatherSortedValues(sortedIndices, values);
+
+        // Writes the values back in the order of the indices
+        for (int k = 0; k < keys.length; k++) {
+            out[(int) keys[k]] = values[k];
+        }
+    }
+
+    /**
+     * Gathers the values at the given sorted indices. The indices are already checked by {@link #gather(int[], int[])}.
+     * <p>
+     * By default, the values are read one by one using {@link #get(int)}. Implementations where consecutive lookups
+     * can share work (e.g. when the values depend on the previous values of their block) should override this method.
+     * </p>
+     *
+     * @param sortedIndices indices of the wanted values, in increasing order
+     * @param out array receiving the values
+     */
+    protected void gatherSortedValues(int[] sortedIndices, int[] out) {
+        for (int k = 0; k < sortedIndices.length; k++) {
+            out[k] = get(sortedIndices[k]);
+        }
+    }
+
+    /**
+     * Returns the index of the first occurrence of the value, searching the compressed data without decompressing it
+     * into a full array.
+     *
+     * @param value the value to search
+     * @return the index of the first occurrence of the value, or -1 if the value isn't found
+     */
+    public int indexOf(int value) {
+        checkCompressedData();
+
+        // Negative values can't be compressed in unsigned mode
+        if (value < 0 && !signed) return -1;
+
+        return indexOfValue(value);
+    }
+
+    /**
+     * @param value the value to search
+     * @return If the value is found in the compressed data (see {@link #indexOf(int)})
+     */
+    public boolean contains(int value) {
+        return indexOf(value) >= 0;
+    }
+
+    /**
+     * Counts the occurrences of the value, searching the compressed data without decompressing it into a full array.
+     *
+     * @param value the value to count
+     * @return the number of occurrences of the value
+     */
+    public int count(int value) {
+        checkCompressedData();
+
+        // Negative values can't be compressed in unsigned mode
+        if (value < 0 && !signed) return 0;
+
+        return countValue(value);
+    }
+
+    /**
+     * Returns the index of the first occurrence of the value. The compressed data is already checked by
+     * {@link #indexOf(int)}.
+     * <p>
+     * By default, the values are decoded window by window with {@link #decodeRangeValues(int, int, int[], int)}.
+     * Implementations should override this method with a search on the packed values.
+     * </p>
+     *
+     * @param value the value to search (non-negative unless in signed mode)
+     * @return the index of the first occurrence of the value, or -1 if the value isn't found
+     */
+    protected int indexOfValue(int value) {
+        int[] window = new int[Math.min(SEARCH_WINDOW_SIZE, getOriginalLength())];
+        for (int from = 0; from < getOriginalLength(); from += window.length) {
+            int count = Math.min(window.length, getOriginalLength() - from);
+            decodeRangeValues(from, from + count, window, 0);
+            for (int k = 0; k < count; k++) {
+                if (window[k] == value) return from + k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Counts the occurrences of the value. The compressed data is already checked by {@link #count(int)}.
+     * <p>
+     * By default, the values are decoded window by window with {@link #decodeRangeValues(int, int, int[], int)}.
+     * Implementations should override this method with a search on the packed values.
+     * </p>
+     *
+     * @param value the value to count (non-negative unless in signed mode)
+     * @return the number of occurrences of the value
+     */
+    protected int countValue(int value) {
+        int[] occurrences = {0};
+        forEachWindow((window, from, count) -> {
+            for (int k = 0; k < count; k++) {
+                if (window[k] == value) occurrences[0]++;
+            }
+        });
+        return occurrences[0];
+    }
+
+    /**
+     * Computes the sum of all values directly from the compressed data.
+     *
+     * @return the sum of all values
+     */
+    public long sum() {
+        checkCompressedData();
+        return sumValues();
+    }
+
+    /**
+     * Computes the smallest value directly from the compressed data.
+     *
+     * @return the smallest value
+     */
+    public int min() {
+        checkCompressedData();
+        return minValue();
+    }
+
+    /**
+     * Computes the largest value directly from the compressed data.
+     *
+     * @return the largest value
+     */
+    public int max() {
+        checkCompressedData();
+        return maxValue();
+    }
+
+    /**
+     * Counts the values in the range [lo, hi) directly from the compressed data.
+     *
+     * @param lo smallest value of the range (inclusive)
+     * @param hi end of the range (exclusive)
+     * @return the number of values v such that lo &lt;= v &lt; hi
+     */
+    public int countInRange(int lo, int hi) {
+        checkCompressedData();
+        if (lo >= hi) return 0;
+
+        return countInRangeValues(lo, hi);
+    }
+
+    /**
+     * Selects the values in the range [lo, hi) directly from the compressed data, so that the next stages only need
+     * to decode the selected values.
+     *
+     * @param lo smallest value of the range (inclusive)
+     * @param hi end of the range (exclusive)
+     * @return a bitmap where the bit i is set if the i-th value v is such that lo &lt;= v &lt; hi
+     */
+    public BitSet filter(int lo, int hi) {
+        checkCompressedData();
+        BitSet selection = new BitSet(getOriginalLength());
+        if (lo < hi) {
+            filterValues(lo, hi, selection);
+        }
+        return selection;
+    }
+
+    /**
+     * Selects the values in the range [lo, hi), like {@link #filter(int, int)}, but returns their positions.
+     *
+     * @param lo smallest value of the range (inclusive)
+     * @param hi end of the range (exclusive)
+     * @return the indexes of the values v such that lo &lt;= v &lt; hi, in increasing order
+     */
+    public int[] filterPositions(int lo, int hi) {
+        return filter(lo, hi).stream().toArray();
+    }
+
+    /**
+     * Computes the sum of all values. The compressed data is already checked by {@link #sum()}.
+     * <p>
+     * By default, the values are decoded window by window with {@link #decodeRangeValues(int, int, int[], int)}.
+     * </p>
+     *
+     * @return the sum of all values
+     */
+    protected long sumValues() {
+        long[] sum = {0};
+        forEachWindow((window, from, count) -> {
+            for (int k = 0; k < count; k++) sum[0] += window[k];
+        });
+        return sum[0];
+    }
+
+    /**
+     * Computes the smallest value. The compressed data is already checked by {@link #min()}.
+     * <p>
+     * By default, the values are decoded window by window with {@link #decodeRangeValues(int, int, int[], int)}.
+     * </p>
+     *
+     * @return the smallest value
+     */
+    protected int minValue() {
+        int[] min = {Integer.MAX_VALUE};
+        forEachWindow((window, from, count) -> {
+            for (int k = 0; k < count; k++) min[0] = Math.min(min[0], window[k]);
+        });
+        return min[0];
+    }
+
+    /**
+     * Computes the largest value. The compressed data is already checked by {@link #max()}.
+     * <p>
+     * By default, the values are decoded window by window with {@link #decodeRangeValues(int, int, int[], int)}.
+     * </p>
+     *
+     * @return the largest value
+     */
+    protected int maxValue() {
+        int[] max = {Integer.MIN_VALUE};
+        forEachWindow((window, from, count) -> {
+            for (int k = 0; k < count; k++) max[0] = Math.max(max[0], window[k]);
+        });
+        return max[0];
+    }
+
+    /**
+     * Counts the values in the non-empty range [lo, hi). The compressed data is already checked by
+     * {@link #countInRange(int, int)}.
+     * <p>
+     * By default, the values are decoded window by window with {@link #decodeRangeValues(int, int, int[], int)}.
+     * </p>
+     *
+     * @param lo smallest value of the range (inclusive)
+     * @param hi end of the range (exclusive), greater than lo
+     * @return the number of values v such that lo &lt;= v &lt; hi
+     */
+    protected int countInRangeValues(int lo, int hi) {
+        int[] occurrences = {0};
+        forEachWindow((window, from, count) -> {
+            for (int k = 0; k < count; k++) {
+                if (window[k] >= lo && window[k] < hi) occurrences[0]++;
+            }
+        });
+        return occurrences[0];
+    }
+
+    /**
+     * Selects the values in the non-empty range [lo, hi). The compressed data is already checked by
+     * {@link #filter(int, int)}.
+     * <p>
+     * By default, the values are decoded window by window with {@link #decodeRangeValues(int, int, int[], int)}.
+     * </p>
+     *
+     * @param lo smallest value of the range (inclusive)
+     * @param hi end of the range (exclusive), greater than lo
+     * @param selection bitmap in which the bits of the selected values are set
+     */
+    protected void filterValues(int lo, int hi, BitSet selection) {
+        forEachWindow((window, from, count) -> {
+            for (int k = 0; k < count; k++) {
+                if (window[k] >= lo && window[k] < hi) selection.set(from + k);
+            }
+        });
+    }
+
+    /**
+     * Action applied to each window of values decoded by {@link #forEachWindow(WindowAction)}
+     */
+    private interface WindowAction {
+        /**
+         * @param window array containing the values of the window
+         * @param from index of the first value of the window
+         * @param count number of values of the window
+         */
+        void accept(int[] window, int from, int count);
+    }
+
+    /**
+     * Decodes all values window by window with {@link #decodeRangeValues(int, int, int[], int)}, so that only a small
+     * array is needed
+     *
+     * @param action action applied to each window
+     */
+    private void forEachWindow(WindowAction action) {
+        int[] window = new int[Math.min(SEARCH_WINDOW_SIZE, getOriginalLength())];
+        for (int from = 0; from < getOriginalLength(); from += window.length) {
+            int count = Math.min(window.length, getOriginalLength() - from);
+            decodeRangeValues(from, from + count, window, 0);
+            action.accept(window, from, count);
+        }
+    }
+
+    /**
+     * Finds the first value greater than or equal to the key, in an array compressed in sorted mode. The skip index is
+     * searched first, then only the values between two of its samples are read.
+     *
+     * @param key the searched key
+     * @return the index of the first value v such that v &gt;= key, or the original length if there is none
+     * @throws IllegalStateException if the array wasn't compressed in sorted mode
+     */
+    public int lowerBound(int key) {
+        return searchBound(key, false);
+    }
+
+    /**
+     * Finds the first value strictly greater than the key, in an array compressed in sorted mode. The skip index is
+     * searched first, then only the values between two of its samples are read.
+     *
+     * @param key the searched key
+     * @return the index of the first value v such that v &gt; key, or the original length if there is none
+     * @throws IllegalStateException if the array wasn't compressed in sorted mode
+     */
+    public int upperBound(int key) {
+        return searchBound(key, true);
+    }
+
+    /**
+     * Finds the first value after the key (strictly or not), using the skip index
+     *
+     * @param key the searched key
+     * @param strict if the value must be strictly greater than the key
+     * @return the index of the first value after the key, or the original length if there is none
+     */
+    private int searchBound(int key, boolean strict) {
+        checkCompressedData();
+        if (skipIndex == null) {
+            throw new IllegalStateException("The array wasn't compressed in sorted mode.");
+        }
+
+        // First sample after the key: the searched value is this sample, or between it and the previous sample
+        int sample = firstAfter(skipIndex, key, strict);
+        if (sample == 0) return 0;
+
+        // Binary search between the two samples, which only reads a few values close to each other
+        int from = (sample - 1) * SKIP_INDEX_INTERVAL + 1;
+        int to = Math.min(sample * SKIP_INDEX_INTERVAL, getOriginalLength());
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            int value = get(middle);
+            if (value < key || (strict && value == key)) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Binary search of the first value after the key (strictly or not), in a sorted array
+     *
+     * @param values the sorted array
+     * @param key the searched key
+     * @param strict if the value must be strictly greater than the key
+     * @return the index of the first value after the key, or the length of the array if there is none
+     */
+    private static int firstAfter(int[] values, int key, boolean strict) {
+        int from = 0;
+        int to = values.length;
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (values[middle] < key || (strict && values[middle] == key)) {
+                from = middle + 1;
+            } else {
+                to = middle;
+            }
+        }
+        return from;
+    }
+
+    /**
+     * Checks if the value can be coded on the bit size, i.e. if it may be found in versions where all values are
+     * coded on the same number of bits
+     *
+     * @param value the value to search
+     * @return If the (zigzag encoded) value fits in {@link #getBitSize()} bits
+     */
+    protected final boolean fitsBitSize(int value) {
+        return getBitSize() == 32 || (encode(value) >>> getBitSize()) == 0;
+    }
+
+    /**
+     * Returns a cursor over all values, in order.
+     *
+     * @return a cursor starting at the first value
+     */
+    public IntCursor cursor() {
+        return cursor(0, getOriginalLength());
+    }
+
+    /**
+     * Returns a cursor over the values from index from (inclusive) to index to (exclusive), in order.
+     *
+     * @param from index of the first value
+     * @param to index after the last value
+     * @return a cursor starting at the value at index from
+     */
+    public IntCursor cursor(int from, int to) {
+        if (from < 0 || to > getOriginalLength() || from > to) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+
+        checkCompressedData();
+
+        return createCursor(from, to);
+    }
+
+    /**
+     * @return An iterator over all values, in order (a cursor starting at the first value)
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return cursor();
+    }
+
+    /**
+     * Returns a sequential stream of all values. The stream can be made parallel, each part of a parallel stream then
+     * decodes its own range of the compressed data.
+     *
+     * @return a stream of all values, in order
+     */
+    public IntStream stream() {
+        checkCompressedData();
+
+        return StreamSupport.intStream(new BitPackingSpliterator(this, 0, getOriginalLength()), false);
+    }
+
+    /**
+     * Creates a cursor over a range of the values. The parameters are already checked by {@link #cursor(int, int)}.
+     * <p>
+     * By default, the values are read one by one using {@link #get(int)}. Implementations should override this method
+     * with a cursor reading the compressed data sequentially.
+     * </p>
+     *
+     * @param from index of the first value
+     * @param to index after the last value
+     * @return a cursor starting at the value at index from
+     */
+    protected IntCursor createCursor(int from, int to) {
+        return new AbstractIntCursor(from, to) {
+            @Override
+            protected int readNext() {
+                return get(position());
+            }
+        };
+    }
+
     /**
      * Returns the value of the i-th element in the compressed array.
      *
@@ -106,4 +1305,68 @@ public abstract class BitPacking {
      * @return value of the i-th element
      */
     public abstract int get(int i);
+
+    /**
+     * Replaces the value of the i-th element directly in the compressed data. If the array was compressed in sorted
+     * mode and stays sorted, the skip index is kept up to date, else it is discarded.
+     *
+     * @param i index of the element
+     * @param value new value of the element (non-negative unless in signed mode)
+     * @throws IllegalStateException if no compression has been performed
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     * @throws IllegalArgumentException if the value is negative (unless in signed mode)
+     */
+    public void set(int i, int value) {
+        checkCompressedData();
+        if (i < 0 || i >= getOriginalLength()) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+        if (value < 0 && !signed) throw new IllegalArgumentException("Values can't be negative.");
+
+        // The skip index is saved, since a repack to a wider bit size is a new compression
+        int[] samples = skipIndex;
+        if (samples != null) {
+            boolean staysSorted = (i == 0 || get(i - 1) <= value)
+                    && (i == getOriginalLength() - 1 || value <= get(i + 1));
+            if (!staysSorted) {
+                samples = null;
+            } else if (i % SKIP_INDEX_INTERVAL == 0) {
+                samples[i / SKIP_INDEX_INTERVAL] = value;
+            }
+        }
+
+        setValue(i, value);
+        skipIndex = samples;
+    }
+
+    /**
+     * Replaces the value of the i-th element. The parameters and the compressed data are already checked by
+     * {@link #set(int, int)}.
+     * <p>
+     * By default, all values are decompressed, patched and compressed again. Implementations should override this
+     * method with a write in place, only repacking the values when the new value doesn't fit the layout.
+     * </p>
+     *
+     * @param i index of the element
+     * @param value new value of the element
+     */
+    protected void setValue(int i, int value) {
+        int[] array = new int[getOriginalLength()];
+        decompressValues(array, 0);
+        array[i] = value;
+        compress(array);
+    }
+
+    /**
+     * Releases the resources holding the compressed data. By default, only a compressed storage needs to be released,
+     * the compressed data isn't available anymore afterwards.
+     */
+    @Override
+    public void close() {
+        if (compressedStorage != null) {
+            compressedStorage.close();
+            compressedStorage = null;
+            compressedLength = 0;
+        }
+    }
 }
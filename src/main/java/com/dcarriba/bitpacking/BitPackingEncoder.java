@@ -0,0 +1,100 @@
+package com.dcarriba.bitpacking;
+
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.bitpacking.factory.SelectionPolicy;
+
+/**
+ * {@link BitPackingEncoder} compresses arrays into immutable {@link CompressedIntArray} objects.
+ * <p>
+ * The encoder is stateless: each array is compressed by a new {@link BitPacking} object, owned by the resulting
+ * {@link CompressedIntArray}. A single encoder can therefore be used by several threads at the same time, and the
+ * arrays it returns are never changed by the next compressions.
+ * </p>
+ * <p>
+ * With {@link CompressionVersion#AUTO}, the compression version is chosen for each array according to a
+ * {@link SelectionPolicy}, and is returned by {@link CompressedIntArray#getCompressionVersion()}.
+ * </p>
+ */
+public final class BitPackingEncoder {
+    /** Compression version used to compress the arrays */
+    private final CompressionVersion compressionVersion;
+    /** If negative integers can be compressed (using a zigzag encoding) */
+    private final boolean signed;
+    /** How the compression version of each array is chosen, with {@link CompressionVersion#AUTO} */
+    private final SelectionPolicy policy;
+
+    /**
+     * Constructor for a {@link BitPackingEncoder} compressing only non-negative integers
+     *
+     * @param compressionVersion compression version used to compress the arrays
+     */
+    public BitPackingEncoder(CompressionVersion compressionVersion) {
+        this(compressionVersion, false);
+    }
+
+    /**
+     * Constructor for {@link BitPackingEncoder}
+     *
+     * @param compressionVersion compression version used to compress the arrays
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     */
+    public BitPackingEncoder(CompressionVersion compressionVersion, boolean signed) {
+        this(compressionVersion, signed, SelectionPolicy.SMALLEST_SIZE);
+    }
+
+    /**
+     * Constructor for {@link BitPackingEncoder}
+     *
+     * @param compressionVersion compression version used to compress the arrays
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     * @param policy how the compression version of each array is chosen, with {@link CompressionVersion#AUTO}
+     */
+    public BitPackingEncoder(CompressionVersion compressionVersion, boolean signed, SelectionPolicy policy) {
+        if (compressionVersion == null) {
+            throw new IllegalArgumentException("compressionVersion can't be null");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("policy can't be null");
+        }
+
+        this.compressionVersion = compressionVersion;
+        this.signed = signed;
+        this.policy = policy;
+    }
+
+    /**
+     * @return Compression version used to compress the arrays
+     */
+    public CompressionVersion getCompressionVersion() {
+        return compressionVersion;
+    }
+
+    /**
+     * @return If negative integers can be compressed (using a zigzag encoding)
+     */
+    public boolean isSigned() {
+        return signed;
+    }
+
+    /**
+     * @return How the compression version of each array is chosen, with {@link CompressionVersion#AUTO}
+     */
+    public SelectionPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Compresses the array into a new immutable {@link CompressedIntArray}.
+     *
+     * @param array Array to be compressed
+     * @return the compressed array
+     * @throws IllegalArgumentException if the array is null, empty or contains negative numbers (unless in signed
+     * mode)
+     */
+    public CompressedIntArray encode(int[] array) {
+        BitPacking bitPacking = BitPackingFactory.createBitPacking(compressionVersion, array, signed, policy);
+        bitPacking.compress(array);
+        return new CompressedIntArray(BitPackingFactory.getCompressionVersion(bitPacking), bitPacking);
+    }
+}
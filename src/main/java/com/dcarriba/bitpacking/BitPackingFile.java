@@ -0,0 +1,255 @@
+package com.dcarriba.bitpacking;
+
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link BitPackingFile} stores the result of a {@link BitPacking} compression in a file, and reads it back either
+ * on the heap ({@link #read(Path)}) or lazily through a memory mapping ({@link #map(Path)}).
+ * <p>
+ * All numbers of the file are big-endian. The file is made of:
+ * </p>
+ * <ul>
+ *     <li>the magic number {@link #MAGIC} ("BPCK") and the format version {@link #FORMAT_VERSION},</li>
+ *     <li>the name of the {@link CompressionVersion} (its length in bytes, followed by its ASCII characters),</li>
+ *     <li>the flags (bit 0 set in signed mode), the original length and the bit size,</li>
+ *     <li>the number of layout parameters of the compression version (e.g. the bit sizes of an overflow area),
+ *     followed by the parameters,</li>
+ *     <li>the length of the compressed array (in 32-bit integers),</li>
+ *     <li>padding up to a multiple of 8 bytes, followed by the compressed array (the payload).</li>
+ * </ul>
+ */
+public final class BitPackingFile {
+    /** Magic number at the beginning of every file ("BPCK") */
+    public static final int MAGIC = 0x4250434B;
+    /** Version of the file format */
+    public static final int FORMAT_VERSION = 1;
+
+    /** Flag set in signed mode */
+    private static final int FLAG_SIGNED = 1;
+    /** Maximum length of the name of a compression version */
+    private static final int MAX_NAME_LENGTH = 64;
+    /** Maximum number of layout parameters of a compression version */
+    private static final int MAX_PARAMETER_COUNT = 16;
+    /** Number of bytes of the payload written or read at once */
+    private static final int IO_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Header of a file, i.e. everything before the payload
+     *
+     * @param compressionVersion compression version of the compressed data
+     * @param signed if the compressed data was compressed in signed mode
+     * @param originalLength original number of integers in the array before compression
+     * @param bitSize number of bits each value is coded on
+     * @param layoutParameters parameters of the layout of the compression version
+     * @param payloadLength length of the compressed array (in 32-bit integers)
+     * @param payloadOffset position (in bytes) of the payload inside the file
+     */
+    record Header(CompressionVersion compressionVersion, boolean signed, int originalLength, int bitSize,
+                  int[] layoutParameters, int payloadLength, long payloadOffset) {}
+
+    private BitPackingFile() {}
+
+    /**
+     * Writes the compressed data of a {@link BitPacking} object into a file (replacing it if it already exists).
+     *
+     * @param bitPacking the {@link BitPacking} object, after a compression
+     * @param path path of the file
+     * @throws IOException if the file can't be written
+     */
+    public static void write(BitPacking bitPacking, Path path) throws IOException {
+        if (bitPacking == null || path == null) {
+            throw new IllegalArgumentException("bitPacking and path can't be null");
+        }
+        if (!bitPacking.hasCompressedData()) {
+            throw new IllegalStateException("Compressed data is not available. Ensure that compression has been" +
+                    "performed before writing it.");
+        }
+
+        CompressionVersion compressionVersion = BitPackingFactory.getCompressionVersion(bitPacking);
+        int[] layoutParameters = bitPacking.getLayoutParameters();
+        // The compressed array may be larger than the compressed data (e.g. a reused buffer)
+        int compressedLength = bitPacking.getCompressedLength();
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        header.writeInt(MAGIC);
+        header.writeInt(FORMAT_VERSION);
+        byte[] name = compressionVersion.name().getBytes(StandardCharsets.US_ASCII);
+        header.writeInt(name.length);
+        header.write(name);
+        header.writeInt(bitPacking.isSigned() ? FLAG_SIGNED : 0);
+        header.writeInt(bitPacking.getOriginalLength());
+        header.writeInt(bitPacking.getBitSize());
+        header.writeInt(layoutParameters.length);
+        for (int parameter : layoutParameters) {
+            header.writeInt(parameter);
+        }
+        header.writeInt(compressedLength);
+        // Aligns the payload on 8 bytes, so that it can be read as 64-bit words
+        while (header.size() % 8 != 0) {
+            header.writeByte(0);
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, ByteBuffer.wrap(headerBytes.toByteArray()));
+
+            // Writes the payload chunk by chunk, copying only one chunk of the compressed data at a time (it may be
+            // kept off-heap)
+            ByteBuffer chunk = ByteBuffer.allocate(IO_CHUNK_SIZE);
+            int[] ints = new int[IO_CHUNK_SIZE / Integer.BYTES];
+            for (int i = 0; i < compressedLength; ) {
+                int count = Math.min(ints.length, compressedLength - i);
+                bitPacking.copyCompressedArray(i, i + count, ints, 0);
+                chunk.clear();
+                chunk.asIntBuffer().put(ints, 0, count);
+                chunk.limit(count * Integer.BYTES);
+                writeFully(channel, chunk);
+                i += count;
+            }
+        }
+    }
+
+    /**
+     * Reads a file written by {@link #write(BitPacking, Path)} into a new {@link BitPacking} object of the same
+     * compression version, with the compressed data on the heap.
+     *
+     * @param path path of the file
+     * @return the {@link BitPacking} object, as if it had just compressed the data
+     * @throws IOException if the file can't be read or isn't a valid file
+     */
+    public static BitPacking read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Header header = readHeader(channel);
+
+            // Reads the payload chunk by chunk
+            int[] compressedArray = new int[header.payloadLength()];
+            channel.position(header.payloadOffset());
+            ByteBuffer chunk = ByteBuffer.allocate(IO_CHUNK_SIZE);
+            for (int i = 0; i < compressedArray.length; ) {
+                int count = Math.min(IO_CHUNK_SIZE / Integer.BYTES, compressedArray.length - i);
+                chunk.clear();
+                chunk.limit(count * Integer.BYTES);
+                readFully(channel, chunk);
+                chunk.flip();
+                chunk.asIntBuffer().get(compressedArray, i, count);
+                i += count;
+            }
+
+            BitPacking bitPacking = BitPackingFactory.createBitPacking(header.compressionVersion(), header.signed());
+            try {
+                bitPacking.restore(compressedArray, header.originalLength(), header.bitSize(),
+                        header.layoutParameters());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid BitPacking file: " + e.getMessage(), e);
+            }
+            return bitPacking;
+        }
+    }
+
+    /**
+     * Opens a file written by {@link #write(BitPacking, Path)} through a memory mapping. The payload isn't loaded
+     * into the heap: the values are read from the mapping when they are accessed, so opening even a very large file
+     * is immediate.
+     *
+     * @param path path of the file
+     * @return the read-only {@link MappedBitPacking} object, which must be closed to release the mapping
+     * @throws IOException if the file can't be read or isn't a valid file
+     */
+    public static MappedBitPacking map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            return new MappedBitPacking(readHeader(channel), channel);
+        }
+    }
+
+    /**
+     * Reads and checks the header of a file
+     *
+     * @param channel channel of the file, at its beginning
+     * @return the header of the file
+     * @throws IOException if the file can't be read or isn't a valid file
+     */
+    private static Header readHeader(FileChannel channel) throws IOException {
+        DataInputStream input = new DataInputStream(Channels.newInputStream(channel));
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a BitPacking file");
+            }
+            int formatVersion = input.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported BitPacking file format version " + formatVersion);
+            }
+
+            int nameLength = input.readInt();
+            if (nameLength <= 0 || nameLength > MAX_NAME_LENGTH) {
+                throw new IOException("Invalid BitPacking file: invalid compression version");
+            }
+            byte[] name = new byte[nameLength];
+            input.readFully(name);
+            CompressionVersion compressionVersion;
+            try {
+                compressionVersion = CompressionVersion.valueOf(new String(name, StandardCharsets.US_ASCII));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid BitPacking file: unknown compression version", e);
+            }
+            // AUTO is never written, the file always contains the chosen compression version
+            if (!compressionVersion.isConcrete()) {
+                throw new IOException("Invalid BitPacking file: unknown compression version");
+            }
+
+            boolean signed = (input.readInt() & FLAG_SIGNED) != 0;
+            int originalLength = input.readInt();
+            int bitSize = input.readInt();
+            int parameterCount = input.readInt();
+            if (originalLength <= 0 || bitSize < 0 || bitSize > 32 || parameterCount < 0
+                    || parameterCount > MAX_PARAMETER_COUNT) {
+                throw new IOException("Invalid BitPacking file: invalid header");
+            }
+            int[] layoutParameters = new int[parameterCount];
+            for (int i = 0; i < parameterCount; i++) {
+                layoutParameters[i] = input.readInt();
+            }
+            int payloadLength = input.readInt();
+
+            // Header size, rounded up to a multiple of 8 bytes
+            long headerSize = 4L * (8 + parameterCount) + nameLength;
+            long payloadOffset = (headerSize + 7) / 8 * 8;
+            if (payloadLength < 0 || channel.size() < payloadOffset + 4L * payloadLength) {
+                throw new IOException("Invalid BitPacking file: truncated payload");
+            }
+
+            return new Header(compressionVersion, signed, originalLength, bitSize, layoutParameters, payloadLength,
+                    payloadOffset);
+        } catch (EOFException e) {
+            throw new IOException("Invalid BitPacking file: truncated header", e);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Invalid BitPacking file: truncated payload");
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.dcarriba.bitpacking;
+
+import java.util.Spliterator;
+import java.util.function.IntConsumer;
+
+/**
+ * {@link BitPackingSpliterator} is a {@link Spliterator.OfInt} over a range of the values of a {@link BitPacking}
+ * object. The range is split in halves until a cursor is created, so each part of a parallel stream decodes its own
+ * range with its own {@link IntCursor}.
+ */
+class BitPackingSpliterator implements Spliterator.OfInt {
+    /** Ranges smaller than this are not split anymore */
+    private static final int MIN_SPLIT_SIZE = 1 << 12;
+
+    private final BitPacking bitPacking;
+    /** Index of the first value not yet traversed (until the cursor is created) */
+    private int from;
+    /** Index after the last value of the range */
+    private final int to;
+    /** Cursor over the range, created on the first traversal */
+    private IntCursor cursor;
+
+    BitPackingSpliterator(BitPacking bitPacking, int from, int to) {
+        this.bitPacking = bitPacking;
+        this.from = from;
+        this.to = to;
+    }
+
+    private IntCursor cursor() {
+        if (cursor == null) {
+            cursor = bitPacking.cursor(from, to);
+        }
+        return cursor;
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+        IntCursor cursor = cursor();
+        if (!cursor.hasNext()) return false;
+
+        action.accept(cursor.nextInt());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+        IntCursor cursor = cursor();
+        while (cursor.hasNext()) {
+            action.accept(cursor.nextInt());
+        }
+    }
+
+    @Override
+    public Spliterator.OfInt trySplit() {
+        if (cursor != null || to - from < 2 * MIN_SPLIT_SIZE) return null;
+
+        int middle = (from + to) >>> 1;
+        BitPackingSpliterator prefix = new BitPackingSpliterator(bitPacking, from, middle);
+        from = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return to - (cursor == null ? from : cursor.position());
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+    }
+}
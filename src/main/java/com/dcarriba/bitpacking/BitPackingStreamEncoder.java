@@ -0,0 +1,189 @@
+package com.dcarriba.bitpacking;
+
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.bitpacking.factory.SelectionPolicy;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * {@link BitPackingStreamEncoder} compresses values as they arrive, without needing the whole array up front.
+ * <p>
+ * The values are buffered until a chunk of {@link #getChunkSize()} values is complete. The chunk is then compressed
+ * by a new {@link BitPacking} object of the chosen compression version, which is given to the sink. Each chunk is
+ * therefore self-describing: it has its own length and its own bit size, chosen from the values of the chunk only.
+ * The memory used by the encoder is proportional to the chunk size, not to the number of values. With
+ * {@link CompressionVersion#AUTO}, the compression version of each chunk is also chosen from its values (the one
+ * giving the smallest compressed chunk).
+ * </p>
+ * <p>
+ * The last (possibly incomplete) chunk is emitted by {@link #finish()}, after which no value can be appended.
+ * </p>
+ */
+public class BitPackingStreamEncoder {
+    /** Default number of values inside each chunk */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 16;
+
+    /** Compression version used to compress each chunk */
+    private final CompressionVersion compressionVersion;
+    /** If negative integers can be compressed */
+    private final boolean signed;
+    /** Receives each compressed chunk */
+    private final Consumer<BitPacking> sink;
+    /** Values of the current chunk */
+    private final int[] buffer;
+    /** Number of values inside the current chunk */
+    private int bufferedCount;
+    /** Number of values appended so far */
+    private long valueCount;
+    /** Number of chunks emitted so far */
+    private int chunkCount;
+    /** If {@link #finish()} has been called */
+    private boolean finished;
+
+    /**
+     * Constructor for a {@link BitPackingStreamEncoder} compressing only non-negative integers, in chunks of
+     * {@link #DEFAULT_CHUNK_SIZE} values
+     *
+     * @param compressionVersion compression version used to compress each chunk
+     * @param sink receives each compressed chunk
+     */
+    public BitPackingStreamEncoder(CompressionVersion compressionVersion, Consumer<BitPacking> sink) {
+        this(compressionVersion, false, DEFAULT_CHUNK_SIZE, sink);
+    }
+
+    /**
+     * Constructor for {@link BitPackingStreamEncoder}
+     *
+     * @param compressionVersion compression version used to compress each chunk
+     * @param signed if negative integers can be compressed
+     * @param chunkSize number of values inside each chunk (except the last one)
+     * @param sink receives each compressed chunk
+     */
+    public BitPackingStreamEncoder(CompressionVersion compressionVersion, boolean signed, int chunkSize,
+                                   Consumer<BitPacking> sink) {
+        if (compressionVersion == null || sink == null) {
+            throw new IllegalArgumentException("compressionVersion and sink can't be null");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+
+        this.compressionVersion = compressionVersion;
+        this.signed = signed;
+        this.sink = sink;
+        this.buffer = new int[chunkSize];
+    }
+
+    /**
+     * Appends a value, and emits the current chunk if it is complete
+     *
+     * @param value the value to append
+     * @throws IllegalArgumentException if the value is negative (unless in signed mode)
+     * @throws IllegalStateException if the encoder is already finished
+     */
+    public void append(int value) {
+        checkNotFinished();
+        if (value < 0 && !signed) throw new IllegalArgumentException("Values can't be negative.");
+
+        buffer[bufferedCount++] = value;
+        valueCount++;
+        if (bufferedCount == buffer.length) {
+            emitChunk();
+        }
+    }
+
+    /**
+     * Appends len values of the array, starting at index off, and emits the chunks which are complete
+     *
+     * @param array array containing the values to append
+     * @param off index of the first value to append
+     * @param len number of values to append
+     * @throws IllegalArgumentException if a value is negative (unless in signed mode), in which case no value is
+     * appended
+     * @throws IllegalStateException if the encoder is already finished
+     */
+    public void append(int[] array, int off, int len) {
+        if (array == null) throw new IllegalArgumentException("Input array can't be null.");
+        if (off < 0 || len < 0 || off > array.length - len) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+        checkNotFinished();
+        if (!signed) {
+            for (int i = off; i < off + len; i++) {
+                if (array[i] < 0) throw new IllegalArgumentException("Values can't be negative.");
+            }
+        }
+
+        // Fills the current chunk as many times as needed
+        while (len > 0) {
+            int count = Math.min(len, buffer.length - bufferedCount);
+            System.arraycopy(array, off, buffer, bufferedCount, count);
+            bufferedCount += count;
+            valueCount += count;
+            off += count;
+            len -= count;
+
+            if (bufferedCount == buffer.length) {
+                emitChunk();
+            }
+        }
+    }
+
+    /**
+     * Emits the last chunk (if it contains values). No value can be appended afterwards.
+     *
+     * @return the total number of values appended
+     */
+    public long finish() {
+        if (!finished) {
+            if (bufferedCount > 0) {
+                emitChunk();
+            }
+            finished = true;
+        }
+        return valueCount;
+    }
+
+    /**
+     * @return Number of values appended so far
+     */
+    public long getValueCount() {
+        return valueCount;
+    }
+
+    /**
+     * @return Number of chunks emitted so far
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * @return Number of values inside each chunk (except the last one)
+     */
+    public int getChunkSize() {
+        return buffer.length;
+    }
+
+    /**
+     * Compresses the current chunk and gives it to the sink
+     */
+    private void emitChunk() {
+        // The buffer is reused by the next chunk, the compressed chunk doesn't keep a reference to it
+        int[] values = bufferedCount == buffer.length ? buffer : Arrays.copyOf(buffer, bufferedCount);
+        BitPacking chunk = BitPackingFactory.createBitPacking(compressionVersion, values, signed,
+                SelectionPolicy.SMALLEST_SIZE);
+        chunk.compress(values);
+        bufferedCount = 0;
+        chunkCount++;
+        sink.accept(chunk);
+    }
+
+    private void checkNotFinished() {
+        if (finished) {
+            throw new IllegalStateException("The encoder is already finished");
+        }
+    }
+}
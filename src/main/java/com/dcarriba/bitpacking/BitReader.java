@@ -0,0 +1,107 @@
+package com.dcarriba.bitpacking;
+
+import com.dcarriba.bitpacking.storage.WordStorage;
+
+/**
+ * {@link BitReader} reads consecutive values of an array compressed from the most significant to the least significant
+ * bit of each integer (like {@link BitPacking#readBits(int[], long, int)}), through a 64-bit buffer. Each integer of
+ * the array is only loaded once, and only when one of its bits is needed.
+ * <p>
+ * The values can also be read from a {@link WordStorage}, whose words split into their high and low halves give the
+ * same integers.
+ * </p>
+ */
+public final class BitReader {
+    /** Array from which the values are read, or null if they are read from the storage */
+    private final int[] array;
+    /** Storage from which the values are read, or null if they are read from the array */
+    private final WordStorage storage;
+    /** Index of the next integer to load */
+    private int intIndex;
+    /** Buffered bits, aligned on the most significant bit */
+    private long buffer;
+    /** Number of buffered bits */
+    private int bufferedBits;
+
+    /**
+     * Constructor for {@link BitReader}
+     *
+     * @param array array from which the values are read
+     * @param bitPosition position (in bits) of the first value
+     */
+    public BitReader(int[] array, long bitPosition) {
+        this(array, null, bitPosition);
+    }
+
+    /**
+     * Constructor for a {@link BitReader} reading the values from a {@link WordStorage}
+     *
+     * @param storage storage from which the values are read
+     * @param bitPosition position (in bits) of the first value
+     */
+    public BitReader(WordStorage storage, long bitPosition) {
+        this(null, storage, bitPosition);
+    }
+
+    /**
+     * Constructor for {@link BitReader}
+     *
+     * @param array array from which the values are read, or null
+     * @param storage storage from which the values are read if array is null
+     * @param bitPosition position (in bits) of the first value
+     */
+    private BitReader(int[] array, WordStorage storage, long bitPosition) {
+        this.array = array;
+        this.storage = storage;
+        this.intIndex = (int) (bitPosition >>> 5);
+
+        // Discards the bits before the first value
+        int bitOffset = (int) (bitPosition & 31);
+        if (bitOffset != 0) {
+            buffer = nextInt() << (32 + bitOffset);
+            bufferedBits = 32 - bitOffset;
+        }
+    }
+
+    /**
+     * @return The next integer, as an unsigned value
+     */
+    private long nextInt() {
+        int value = array != null ? array[intIndex] : storage.readBits((long) intIndex << 5, 32);
+        intIndex++;
+        return value & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Reads the next value
+     *
+     * @param bitCount number of bits of the value (between 1 and 32)
+     * @return the value that was read
+     */
+    public int read(int bitCount) {
+        if (bufferedBits < bitCount) {
+            buffer |= nextInt() << (32 - bufferedBits);
+            bufferedBits += 32;
+        }
+
+        int value = (int) (buffer >>> (64 - bitCount));
+        buffer <<= bitCount;
+        bufferedBits -= bitCount;
+        return value;
+    }
+
+    /**
+     * Skips the next bits
+     *
+     * @param bitCount number of bits to skip (between 0 and 32)
+     */
+    public void skip(int bitCount) {
+        if (bufferedBits < bitCount) {
+            buffer |= nextInt() << (32 - bufferedBits);
+            bufferedBits += 32;
+        }
+
+        buffer <<= bitCount;
+        bufferedBits -= bitCount;
+    }
+}
@@ -0,0 +1,44 @@
+package com.dcarriba.bitpacking;
+
+/**
+ * {@link BufferedIntCursor} is an {@link IntCursor} decoding several values at once into a small buffer (e.g. a whole
+ * block of a block based layout), and then returning them one by one.
+ */
+public abstract class BufferedIntCursor extends AbstractIntCursor {
+    /** Decoded values */
+    private final int[] buffer;
+    /** Index of the next value inside the buffer */
+    private int bufferPosition;
+    /** Number of decoded values inside the buffer */
+    private int bufferLength;
+
+    /**
+     * Constructor for {@link BufferedIntCursor}
+     *
+     * @param from index of the first value of the range
+     * @param to index after the last value of the range
+     * @param bufferSize maximum number of values decoded at once
+     */
+    protected BufferedIntCursor(int from, int to, int bufferSize) {
+        super(from, to);
+        this.buffer = new int[bufferSize];
+    }
+
+    @Override
+    protected int readNext() {
+        if (bufferPosition == bufferLength) {
+            bufferLength = fill(position(), buffer);
+            bufferPosition = 0;
+        }
+        return buffer[bufferPosition++];
+    }
+
+    /**
+     * Decodes the next values into the buffer, the value at the given position being placed at index 0
+     *
+     * @param position index of the first value to decode (before {@link #end()})
+     * @param buffer array receiving the values
+     * @return the number of values decoded (at least 1, and at most up to {@link #end()})
+     */
+    protected abstract int fill(int position, int[] buffer);
+}
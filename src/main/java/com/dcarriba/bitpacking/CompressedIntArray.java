@@ -0,0 +1,248 @@
+package com.dcarriba.bitpacking;
+
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.bitpacking.storage.StorageType;
+import com.dcarriba.bitpacking.storage.WordStorage;
+
+import java.util.stream.IntStream;
+
+/**
+ * {@link CompressedIntArray} is an immutable array of integers, compressed by one of the {@link BitPacking} versions.
+ * <p>
+ * A {@link BitPacking} object is both the codec and the result of the last compression, which every compression
+ * replaces. A {@link CompressedIntArray} is only the result: it is created once (by a {@link BitPackingEncoder} or by
+ * {@link #copyOf(BitPacking)}) and never changes afterwards. All its fields are final, so once it is created, the
+ * compressed data they refer to is safely published to any thread: it can be shared between reader threads without
+ * synchronization, while a writer thread compresses the next arrays.
+ * </p>
+ */
+public final class CompressedIntArray {
+    /** Compression version of the compressed data */
+    private final CompressionVersion compressionVersion;
+    /** Object holding the compressed data, owned by this array, never exposed nor modified after the construction */
+    private final BitPacking bitPacking;
+    /** Number of integers of the array */
+    private final int length;
+    /** Number of bits each value is coded on */
+    private final int bitSize;
+
+    /**
+     * Constructor for {@link CompressedIntArray}
+     *
+     * @param compressionVersion compression version of the compressed data
+     * @param bitPacking object holding the compressed data, which must not be used by anything else afterwards
+     */
+    CompressedIntArray(CompressionVersion compressionVersion, BitPacking bitPacking) {
+        this.compressionVersion = compressionVersion;
+        this.bitPacking = bitPacking;
+        this.length = bitPacking.getOriginalLength();
+        this.bitSize = bitPacking.getBitSize();
+    }
+
+    /**
+     * Creates an immutable copy of the compressed data of a {@link BitPacking} object, which can still be used
+     * (and compress other arrays) afterwards. The copy keeps its compressed data in the same type of storage: an
+     * off-heap copy is released once the {@link CompressedIntArray} is garbage collected.
+     *
+     * @param bitPacking the {@link BitPacking} object, after compression
+     * @return the immutable copy of its compressed data
+     * @throws IllegalArgumentException if bitPacking is null
+     * @throws IllegalStateException if no compression has been performed
+     */
+    public static CompressedIntArray copyOf(BitPacking bitPacking) {
+        if (bitPacking == null) {
+            throw new IllegalArgumentException("bitPacking can't be null");
+        }
+        if (!bitPacking.hasCompressedData()) {
+            throw new IllegalStateException("Compressed data is not available. Ensure that compression has been " +
+                    "performed before copying it.");
+        }
+
+        CompressionVersion compressionVersion = BitPackingFactory.getCompressionVersion(bitPacking);
+
+        // The copy keeps its compressed data in the same type of storage, words kept in a storage are copied directly
+        BitPacking copy = BitPackingFactory.createBitPacking(compressionVersion, bitPacking.isSigned(),
+                bitPacking.getStorageType());
+        WordStorage storage = bitPacking.getCompressedStorage();
+        if (storage != null) {
+            int wordCount = (int) (((long) bitPacking.getCompressedLength() + 1) / 2);
+            copy.restore(copy.getStorageType().copyOf(storage, wordCount), bitPacking.getCompressedLength(),
+                    bitPacking.getOriginalLength(), bitPacking.getBitSize(), bitPacking.getLayoutParameters());
+        } else {
+            int[] compressedArray = new int[bitPacking.getCompressedLength()];
+            bitPacking.copyCompressedArray(0, compressedArray.length, compressedArray, 0);
+            copy.restore(compressedArray, bitPacking.getOriginalLength(), bitPacking.getBitSize(),
+                    bitPacking.getLayoutParameters());
+        }
+        return new CompressedIntArray(compressionVersion, copy);
+    }
+
+    /**
+     * @return Compression version of the compressed data
+     */
+    public CompressionVersion getCompressionVersion() {
+        return compressionVersion;
+    }
+
+    /**
+     * @return Where the compressed data is kept
+     */
+    public StorageType getStorageType() {
+        return bitPacking.getStorageType();
+    }
+
+    /**
+     * @return If negative integers can be contained (using a zigzag encoding)
+     */
+    public boolean isSigned() {
+        return bitPacking.isSigned();
+    }
+
+    /**
+     * @return Number of integers of the array
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return Number of bits each value is coded on
+     */
+    public int getBitSize() {
+        return bitSize;
+    }
+
+    /**
+     * @return Number of integers used by the compressed data
+     */
+    public int getCompressedLength() {
+        return bitPacking.getCompressedLength();
+    }
+
+    /**
+     * @return A copy of the compressed data
+     */
+    public int[] getCompressedArray() {
+        int[] compressedArray = new int[bitPacking.getCompressedLength()];
+        bitPacking.copyCompressedArray(0, compressedArray.length, compressedArray, 0);
+        return compressedArray;
+    }
+
+    /**
+     * Copies a part of the compressed data, see {@link BitPacking#copyCompressedArray(int, int, int[], int)}.
+     *
+     * @param from index of the first integer of the compressed data to copy
+     * @param to index after the last integer of the compressed data to copy
+     * @param dest array receiving the integers
+     * @param destOff index of dest at which the first integer is placed
+     */
+    public void copyCompressedArray(int from, int to, int[] dest, int destOff) {
+        bitPacking.copyCompressedArray(from, to, dest, destOff);
+    }
+
+    /**
+     * Returns the value of the i-th element.
+     *
+     * @param i index of the wanted element
+     * @return value of the i-th element
+     * @throws IndexOutOfBoundsException if the index is out of bounds
+     */
+    public int get(int i) {
+        return bitPacking.get(i);
+    }
+
+    /**
+     * Decodes the values in the range [from, to) into the destination array, see
+     * {@link BitPacking#decodeRange(int, int, int[], int)}.
+     *
+     * @param from index of the first value to decode
+     * @param to index after the last value to decode
+     * @param dest array receiving the decoded values
+     * @param destOff index of the destination array at which the first value is placed
+     */
+    public void decodeRange(int from, int to, int[] dest, int destOff) {
+        bitPacking.decodeRange(from, to, dest, destOff);
+    }
+
+    /**
+     * @return A new array containing all values
+     */
+    public int[] toArray() {
+        int[] array = new int[length];
+        bitPacking.decompress(array);
+        return array;
+    }
+
+    /**
+     * Returns a cursor over the values of the range [from, to), in order.
+     *
+     * @param from index of the first value
+     * @param to index after the last value
+     * @return a cursor starting at the value at index from
+     */
+    public IntCursor cursor(int from, int to) {
+        return bitPacking.cursor(from, to);
+    }
+
+    /**
+     * @return A sequential stream of all values, in order
+     */
+    public IntStream stream() {
+        return bitPacking.stream();
+    }
+
+    /**
+     * @param value the searched value
+     * @return the index of the first occurrence of the value, or -1 if it isn't contained
+     */
+    public int indexOf(int value) {
+        return bitPacking.indexOf(value);
+    }
+
+    /**
+     * @param value the searched value
+     * @return If the value is contained
+     */
+    public boolean contains(int value) {
+        return bitPacking.contains(value);
+    }
+
+    /**
+     * @param value the value to count
+     * @return the number of occurrences of the value
+     */
+    public int count(int value) {
+        return bitPacking.count(value);
+    }
+
+    /**
+     * @return the sum of all values
+     */
+    public long sum() {
+        return bitPacking.sum();
+    }
+
+    /**
+     * @return the smallest value
+     */
+    public int min() {
+        return bitPacking.min();
+    }
+
+    /**
+     * @return the largest value
+     */
+    public int max() {
+        return bitPacking.max();
+    }
+
+    /**
+     * @param lo smallest value of the range (inclusive)
+     * @param hi end of the range (exclusive)
+     * @return the number of values v such that lo &lt;= v &lt; hi
+     */
+    public int countInRange(int lo, int hi) {
+        return bitPacking.countInRange(lo, hi);
+    }
+}
@@ -0,0 +1,17 @@
+package com.dcarriba.bitpacking;
+
+import java.util.PrimitiveIterator;
+
+/**
+ * {@link IntCursor} iterates over a range of the values of a {@link BitPacking} object, in order, without boxing them.
+ * <p>
+ * Unlike successive calls to {@link BitPacking#get(int)}, a cursor keeps its position inside the compressed data, so
+ * moving to the next value usually only costs a shift and a mask.
+ * </p>
+ */
+public interface IntCursor extends PrimitiveIterator.OfInt {
+    /**
+     * @return Index of the value returned by the next call to {@link #nextInt()}
+     */
+    int position();
+}
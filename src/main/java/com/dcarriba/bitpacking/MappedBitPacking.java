@@ -0,0 +1,273 @@
+package com.dcarriba.bitpacking;
+
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.bitpacking.storage.DirectBuffers;
+import com.dcarriba.bitpacking.storage.WordStorage;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+
+/**
+ * {@link MappedBitPacking} is a read-only {@link BitPacking} reading its compressed data directly from a file written
+ * by {@link BitPackingFile}, through a memory mapping. Nothing is loaded into the heap: {@link #get(int)} and
+ * {@link #decodeRange(int, int, int[], int)} read the values from the mapping.
+ * <p>
+ * The mapping is read through a read-only {@link WordStorage}, restored into the {@link BitPacking} of the compression
+ * version of the file (its codec): all reads and aggregations are delegated to the codec, so that the layout of each
+ * version is only decoded by its own class.
+ * </p>
+ * <p>
+ * The payload is mapped in chunks of {@link #CHUNK_INTS} integers, since a single mapping is limited to 2 GB.
+ * Closing a {@link MappedBitPacking} unmaps the file, it can't be used anymore afterwards.
+ * </p>
+ */
+public final class MappedBitPacking extends BitPacking {
+    /** Number of bits of the index of an integer inside its chunk */
+    private static final int CHUNK_SHIFT = 28;
+    /** Number of integers inside each mapped chunk (1 GB) */
+    public static final int CHUNK_INTS = 1 << CHUNK_SHIFT;
+
+    /** Compression version of the compressed data */
+    private final CompressionVersion compressionVersion;
+    /** Parameters of the layout of the compression version */
+    private final int[] layoutParameters;
+    /** Length of the compressed data (in 32-bit integers) */
+    private final int payloadLength;
+    /** Mapped chunks of the file, null once closed */
+    private MappedByteBuffer[] mappings;
+    /** Big-endian integer views of the mapped chunks */
+    private IntBuffer[] chunks;
+    /** Version reading the mapping through a {@link MappedWordStorage} */
+    private final BitPacking codec;
+
+    /**
+     * Maps the payload of a file
+     *
+     * @param header header of the file
+     * @param channel channel of the file
+     * @throws IOException if the file can't be mapped
+     */
+    MappedBitPacking(BitPackingFile.Header header, FileChannel channel) throws IOException {
+        super(header.signed());
+        this.compressionVersion = header.compressionVersion();
+        this.layoutParameters = header.layoutParameters().clone();
+        this.payloadLength = header.payloadLength();
+        setOriginalLength(header.originalLength());
+        setBitSize(header.bitSize());
+
+        int chunkCount = Math.max(1, (int) (((long) payloadLength + CHUNK_INTS - 1) >>> CHUNK_SHIFT));
+        mappings = new MappedByteBuffer[chunkCount];
+        chunks = new IntBuffer[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            long start = (long) c * CHUNK_INTS;
+            long size = Math.min(CHUNK_INTS, payloadLength - start);
+            mappings[c] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    header.payloadOffset() + start * Integer.BYTES, size * Integer.BYTES);
+            chunks[c] = mappings[c].asIntBuffer();
+        }
+
+        try {
+            this.codec = createCodec();
+        } catch (IllegalArgumentException e) {
+            close();
+            throw new IOException("Invalid BitPacking file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return The version of the compressed data, reading the mapping through a {@link MappedWordStorage}
+     */
+    private BitPacking createCodec() {
+        BitPacking bitPacking = BitPackingFactory.createBitPacking(compressionVersion, isSigned());
+        bitPacking.restore(new MappedWordStorage(), payloadLength, getOriginalLength(), getBitSize(),
+                layoutParameters);
+        return bitPacking;
+    }
+
+    /**
+     * @return Compression version of the compressed data
+     */
+    public CompressionVersion getCompressionVersion() {
+        return compressionVersion;
+    }
+
+    /**
+     * A {@link MappedBitPacking} is read-only
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public void compress(int[] array) {
+        throw new UnsupportedOperationException("A MappedBitPacking is read-only");
+    }
+
+    /**
+     * Copies the whole compressed data from the mapping into a new array at each call,
+     * {@link #copyCompressedArray(int, int, int[], int)} copies a part of it without loading the rest.
+     *
+     * @return Array containing the compressed data
+     */
+    @Override
+    public int[] getCompressedArray() {
+        checkOpen();
+        int[] compressedArray = new int[payloadLength];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c].get(0, compressedArray, c * CHUNK_INTS, chunks[c].limit());
+        }
+        return compressedArray;
+    }
+
+    @Override
+    public int getCompressedLength() {
+        return payloadLength;
+    }
+
+    @Override
+    protected void copyCompressedInts(int from, int to, int[] dest, int destOff) {
+        // Copies the part of each chunk overlapping the requested integers
+        while (from < to) {
+            IntBuffer chunk = chunks[from >>> CHUNK_SHIFT];
+            int index = from & (CHUNK_INTS - 1);
+            int count = Math.min(to - from, chunk.limit() - index);
+            chunk.get(index, dest, destOff, count);
+            from += count;
+            destOff += count;
+        }
+    }
+
+    @Override
+    protected int[] getLayoutParameters() {
+        return layoutParameters.clone();
+    }
+
+    @Override
+    protected boolean hasCompressedData() {
+        return chunks != null;
+    }
+
+    @Override
+    protected IntCursor createCursor(int from, int to) {
+        return codec.createCursor(from, to);
+    }
+
+    @Override
+    public int get(int i) {
+        if (i < 0 || i >= getOriginalLength()) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+        checkOpen();
+
+        return codec.get(i);
+    }
+
+    @Override
+    protected void decodeRangeValues(int from, int to, int[] dest, int destOff) {
+        codec.decodeRangeValues(from, to, dest, destOff);
+    }
+
+    @Override
+    protected void decompressValues(int[] array, int offset) {
+        codec.decompressValues(array, offset);
+    }
+
+    @Override
+    protected void gatherSortedValues(int[] sortedIndices, int[] out) {
+        codec.gatherSortedValues(sortedIndices, out);
+    }
+
+    @Override
+    protected int indexOfValue(int value) {
+        return codec.indexOfValue(value);
+    }
+
+    @Override
+    protected int countValue(int value) {
+        return codec.countValue(value);
+    }
+
+    @Override
+    protected long sumValues() {
+        return codec.sumValues();
+    }
+
+    @Override
+    protected int minValue() {
+        return codec.minValue();
+    }
+
+    @Override
+    protected int maxValue() {
+        return codec.maxValue();
+    }
+
+    @Override
+    protected int countInRangeValues(int lo, int hi) {
+        return codec.countInRangeValues(lo, hi);
+    }
+
+    @Override
+    protected void filterValues(int lo, int hi, BitSet selection) {
+        codec.filterValues(lo, hi, selection);
+    }
+
+    /**
+     * Unmaps the file. The {@link MappedBitPacking} can't be used anymore afterwards.
+     */
+    @Override
+    public void close() {
+        if (mappings == null) return;
+
+        codec.close();
+        chunks = null;
+        for (MappedByteBuffer mapping : mappings) {
+            DirectBuffers.release(mapping);
+        }
+        mappings = null;
+    }
+
+    /**
+     * @param index index of the integer inside the payload
+     * @return the integer of the payload at the given index
+     */
+    private int getInt(long index) {
+        return chunks[(int) (index >>> CHUNK_SHIFT)].get((int) (index & (CHUNK_INTS - 1)));
+    }
+
+    /**
+     * Read-only {@link WordStorage} over the mapped payload, each word being made of two consecutive integers of the
+     * payload (the last word is completed with 0 when the payload has an odd length)
+     */
+    private final class MappedWordStorage implements WordStorage {
+        @Override
+        public int getWordCount() {
+            return (int) (((long) payloadLength + 1) / 2);
+        }
+
+        @Override
+        public long getWord(int index) {
+            long intIndex = 2L * index;
+            long low = intIndex + 1 < payloadLength ? getInt(intIndex + 1) & 0xFFFFFFFFL : 0;
+            return ((long) getInt(intIndex) << 32) | low;
+        }
+
+        @Override
+        public void setWord(int index, long word) {
+            throw new UnsupportedOperationException("A MappedBitPacking is read-only");
+        }
+
+        @Override
+        public void readInts(long from, long to, int[] dest, int destOff) {
+            copyCompressedInts((int) from, (int) to, dest, destOff);
+        }
+    }
+
+    private void checkOpen() {
+        if (chunks == null) {
+            throw new IllegalStateException("The MappedBitPacking is closed");
+        }
+    }
+}
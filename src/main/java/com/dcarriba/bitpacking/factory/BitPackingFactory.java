@@ -1,9 +1,19 @@
 package com.dcarriba.bitpacking.factory;
 
 import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.MappedBitPacking;
+import com.dcarriba.bitpacking.simd.InterleavedPackers;
+import com.dcarriba.bitpacking.storage.StorageType;
+import com.dcarriba.bitpacking.versions.BitPackingWithBlockedFrameOfReference;
+import com.dcarriba.bitpacking.versions.BitPackingWithDeltaEncoding;
+import com.dcarriba.bitpacking.versions.BitPackingWithInterleavedLanes;
 import com.dcarriba.bitpacking.versions.BitPackingWithOverflowArea;
 import com.dcarriba.bitpacking.versions.BitPackingWithOverlap;
+import com.dcarriba.bitpacking.versions.BitPackingWithOverlap64;
 import com.dcarriba.bitpacking.versions.BitPackingWithoutOverlap;
+import com.dcarriba.bitpacking.versions.BitPackingWithoutOverlap64;
+
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * {@link BitPackingFactory} is a factory to create a {@link BitPacking} object.
@@ -17,21 +27,207 @@ public class BitPackingFactory {
      * @return the wanted Bit Packing compression object
      */
     public static BitPacking createBitPacking(CompressionVersion compressionVersion) {
+        return createBitPacking(compressionVersion, false);
+    }
+
+    /**
+     * Creates a new Bit Packing compression object based on the given parameters
+     *
+     * @param compressionVersion specifies with version of the Bit Packing compression should be created
+     * @param signed if the Bit Packing compression object should also accept negative integers
+     * @return the wanted Bit Packing compression object
+     */
+    public static BitPacking createBitPacking(CompressionVersion compressionVersion, boolean signed) {
         if (compressionVersion == null) {
             throw new IllegalArgumentException("compressionVersion can't be null");
         }
 
         switch (compressionVersion){
             case WITH_OVERLAP -> {
-                return new BitPackingWithOverlap();
+                return new BitPackingWithOverlap(signed);
             }
             case WITHOUT_OVERLAP -> {
-                return new BitPackingWithoutOverlap();
+                return new BitPackingWithoutOverlap(signed);
+            }
+            case WITH_OVERLAP_64 -> {
+                return new BitPackingWithOverlap64(signed);
+            }
+            case WITHOUT_OVERLAP_64 -> {
+                return new BitPackingWithoutOverlap64(signed);
             }
             case WITH_OVERFLOW_AREA -> {
-                return new BitPackingWithOverflowArea();
+                return new BitPackingWithOverflowArea(signed);
             }
+            case WITH_BLOCKED_FRAME_OF_REFERENCE -> {
+                return new BitPackingWithBlockedFrameOfReference(signed);
+            }
+            case WITH_DELTA_ENCODING -> {
+                return new BitPackingWithDeltaEncoding(signed);
+            }
+            case WITH_INTERLEAVED_LANES -> {
+                return new BitPackingWithInterleavedLanes(signed);
+            }
+            case AUTO -> throw new IllegalArgumentException("AUTO needs the array to compress, use "
+                    + "createBitPacking(CompressionVersion, int[], boolean, SelectionPolicy)");
             default -> throw new IllegalArgumentException("compressionVersion is not correct");
         }
     }
+
+    /**
+     * Chooses the compression version of an array, from its {@link CompressionStatistics}
+     *
+     * @param array the array to compress
+     * @param signed if the array will be compressed in signed mode
+     * @param policy how the compression version is chosen
+     * @return the chosen compression version (never {@link CompressionVersion#AUTO})
+     * @throws IllegalArgumentException if the array is null, empty or contains negative numbers (unless in signed
+     * mode), or if policy is null
+     */
+    public static CompressionVersion selectCompressionVersion(int[] array, boolean signed, SelectionPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("policy can't be null");
+        }
+
+        return CompressionStatistics.of(array, signed).select(policy);
+    }
+
+    /**
+     * Creates a new Bit Packing compression object of the compression version chosen for the array
+     * ({@link CompressionVersion#AUTO}). The array isn't compressed yet, and the chosen compression version is
+     * returned by {@link #getCompressionVersion(BitPacking)}.
+     *
+     * @param array the array to compress
+     * @param signed if the Bit Packing compression object should also accept negative integers
+     * @param policy how the compression version is chosen
+     * @return the Bit Packing compression object of the chosen compression version
+     * @throws IllegalArgumentException if the array is null, empty or contains negative numbers (unless in signed
+     * mode), or if policy is null
+     */
+    public static BitPacking createBitPacking(int[] array, boolean signed, SelectionPolicy policy) {
+        return createBitPacking(selectCompressionVersion(array, signed, policy), signed);
+    }
+
+    /**
+     * Creates a new Bit Packing compression object to compress an array, resolving {@link CompressionVersion#AUTO} to
+     * the compression version chosen for the array before creating it. The array isn't compressed yet, and the
+     * concrete compression version is returned by {@link #getCompressionVersion(BitPacking)}.
+     *
+     * @param compressionVersion specifies with version of the Bit Packing compression should be created
+     * @param array the array to compress (only analyzed with {@link CompressionVersion#AUTO})
+     * @param signed if the Bit Packing compression object should also accept negative integers
+     * @param policy how the compression version is chosen with {@link CompressionVersion#AUTO}
+     * @return the Bit Packing compression object of the given or chosen compression version
+     * @throws IllegalArgumentException if compressionVersion is null, or with {@link CompressionVersion#AUTO} if the
+     * array is null, empty or contains negative numbers (unless in signed mode), or if policy is null
+     */
+    public static BitPacking createBitPacking(CompressionVersion compressionVersion, int[] array, boolean signed,
+                                              SelectionPolicy policy) {
+        if (compressionVersion == CompressionVersion.AUTO) {
+            return createBitPacking(array, signed, policy);
+        }
+        return createBitPacking(compressionVersion, signed);
+    }
+
+    /**
+     * Returns the compression version of a Bit Packing compression object, or of the compressed data mapped by a
+     * {@link MappedBitPacking}
+     *
+     * @param bitPacking the Bit Packing compression object
+     * @return the compression version of the object
+     */
+    public static CompressionVersion getCompressionVersion(BitPacking bitPacking) {
+        if (bitPacking == null) {
+            throw new IllegalArgumentException("bitPacking can't be null");
+        }
+
+        if (bitPacking instanceof MappedBitPacking mapped) return mapped.getCompressionVersion();
+        if (bitPacking instanceof BitPackingWithOverlap) return CompressionVersion.WITH_OVERLAP;
+        if (bitPacking instanceof BitPackingWithoutOverlap) return CompressionVersion.WITHOUT_OVERLAP;
+        if (bitPacking instanceof BitPackingWithOverlap64) return CompressionVersion.WITH_OVERLAP_64;
+        if (bitPacking instanceof BitPackingWithoutOverlap64) return CompressionVersion.WITHOUT_OVERLAP_64;
+        if (bitPacking instanceof BitPackingWithOverflowArea) return CompressionVersion.WITH_OVERFLOW_AREA;
+        if (bitPacking instanceof BitPackingWithBlockedFrameOfReference) {
+            return CompressionVersion.WITH_BLOCKED_FRAME_OF_REFERENCE;
+        }
+        if (bitPacking instanceof BitPackingWithDeltaEncoding) return CompressionVersion.WITH_DELTA_ENCODING;
+        if (bitPacking instanceof BitPackingWithInterleavedLanes) return CompressionVersion.WITH_INTERLEAVED_LANES;
+        throw new IllegalArgumentException("bitPacking isn't a known compression version");
+    }
+
+    /**
+     * Creates a new Bit Packing compression object compressing and decompressing large arrays in parallel
+     *
+     * @param compressionVersion specifies with version of the Bit Packing compression should be created (only
+     *                           {@link CompressionVersion#WITH_OVERLAP}, {@link CompressionVersion#WITHOUT_OVERLAP}
+     *                           and {@link CompressionVersion#WITH_INTERLEAVED_LANES} support the parallel mode)
+     * @param signed if the Bit Packing compression object should also accept negative integers
+     * @param pool pool running the compression and decompression tasks
+     * @return the wanted Bit Packing compression object
+     */
+    public static BitPacking createParallelBitPacking(CompressionVersion compressionVersion, boolean signed,
+                                                      ForkJoinPool pool) {
+        if (compressionVersion == null) {
+            throw new IllegalArgumentException("compressionVersion can't be null");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("pool can't be null");
+        }
+
+        switch (compressionVersion) {
+            case WITH_OVERLAP -> {
+                return new BitPackingWithOverlap(signed, pool);
+            }
+            case WITHOUT_OVERLAP -> {
+                return new BitPackingWithoutOverlap(signed, pool);
+            }
+            case WITH_INTERLEAVED_LANES -> {
+                return new BitPackingWithInterleavedLanes(signed, InterleavedPackers.fastest(), pool);
+            }
+            default -> throw new IllegalArgumentException("compressionVersion doesn't support the parallel mode");
+        }
+    }
+
+    /**
+     * Creates a new Bit Packing compression object keeping its compressed data in the given type of storage
+     *
+     * @param compressionVersion specifies with version of the Bit Packing compression should be created (only
+     *                           {@link CompressionVersion#WITH_OVERLAP}, {@link CompressionVersion#WITHOUT_OVERLAP},
+     *                           {@link CompressionVersion#WITH_OVERFLOW_AREA},
+     *                           {@link CompressionVersion#WITH_OVERLAP_64} and
+     *                           {@link CompressionVersion#WITHOUT_OVERLAP_64} support an off-heap storage)
+     * @param signed if the Bit Packing compression object should also accept negative integers
+     * @param storageType where the compressed data is stored
+     * @return the wanted Bit Packing compression object
+     */
+    public static BitPacking createBitPacking(CompressionVersion compressionVersion, boolean signed,
+                                              StorageType storageType) {
+        if (storageType == null) {
+            throw new IllegalArgumentException("storageType can't be null");
+        }
+        if (storageType == StorageType.HEAP) {
+            return createBitPacking(compressionVersion, signed);
+        }
+        if (compressionVersion == null) {
+            throw new IllegalArgumentException("compressionVersion can't be null");
+        }
+
+        switch (compressionVersion) {
+            case WITH_OVERLAP -> {
+                return new BitPackingWithOverlap(signed, storageType);
+            }
+            case WITHOUT_OVERLAP -> {
+                return new BitPackingWithoutOverlap(signed, storageType);
+            }
+            case WITH_OVERFLOW_AREA -> {
+                return new BitPackingWithOverflowArea(signed, storageType);
+            }
+            case WITH_OVERLAP_64 -> {
+                return new BitPackingWithOverlap64(signed, storageType);
+            }
+            case WITHOUT_OVERLAP_64 -> {
+                return new BitPackingWithoutOverlap64(signed, storageType);
+            }
+            default -> throw new IllegalArgumentException("compressionVersion doesn't support this storage type");
+        }
+    }
 }
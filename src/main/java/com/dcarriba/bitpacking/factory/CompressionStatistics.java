@@ -0,0 +1,389 @@
+package com.dcarriba.bitpacking.factory;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.versions.BitPackingWithBlockedFrameOfReference;
+import com.dcarriba.bitpacking.versions.BitPackingWithDeltaEncoding;
+import com.dcarriba.bitpacking.versions.BitPackingWithOverflowArea;
+
+/**
+ * {@link CompressionStatistics} gathers, in a single pass over an array, the statistics needed to predict the size of
+ * the compressed array for every {@link CompressionVersion}, and chooses a version according to a
+ * {@link SelectionPolicy}.
+ * <p>
+ * The array is analyzed block by block, with the blocks of {@link BitPackingWithBlockedFrameOfReference#BLOCK_SIZE}
+ * values of the blocked versions. For each block the statistics are:
+ * </p>
+ * <ul>
+ *     <li>the histogram of the number of bits needed by each value (zigzag encoded in signed mode), which gives the
+ *     sizes of all versions coding every value on the same number of bits, and the size of
+ *     {@link BitPackingWithOverflowArea} (using the same choice of the regular bit size),</li>
+ *     <li>the number of bits of the block relative to its minimum value, and relative to its smallest delta, which
+ *     give the sizes of {@link BitPackingWithBlockedFrameOfReference} and {@link BitPackingWithDeltaEncoding}.</li>
+ * </ul>
+ * <p>
+ * Arrays of up to {@link #SAMPLING_THRESHOLD} values are fully analyzed, and the predicted sizes are exact. Longer
+ * arrays are only sampled (2048 evenly spaced blocks), and the predicted sizes are estimated from the sample.
+ * </p>
+ * <p>
+ * The times are modeled from approximate per-value compression and decompression times of each version (measured
+ * with the time benchmarks), plus the time to read or write the compressed array. They are only used to rank the
+ * versions, not as actual time predictions.
+ * </p>
+ */
+public final class CompressionStatistics {
+    /** Arrays longer than this number of values are only sampled */
+    public static final int SAMPLING_THRESHOLD = 1 << 20;
+
+    /** Transmission rate used by default to model the transmission time: 10 Mbps (10 million bits per second) */
+    public static final double DEFAULT_TRANSMISSION_RATE = 10_000_000;
+
+    /** Number of values inside each analyzed block (the same for all blocked versions) */
+    private static final int BLOCK_SIZE = BitPackingWithBlockedFrameOfReference.BLOCK_SIZE;
+
+    /** Number of integers used by a complete block of the blocked versions for each bit of its bit size */
+    private static final int INTS_PER_BLOCK_BIT = BLOCK_SIZE / 32;
+
+    /** Number of blocks analyzed in a sampled array */
+    private static final int SAMPLED_BLOCK_COUNT = 2048;
+
+    /** Modeled time (in ns) to read or write one integer of the compressed array */
+    private static final double NANOS_PER_COMPRESSED_INT = 0.25;
+
+    /** Number of values of the array */
+    private final int length;
+    /** Number of analyzed values (the length of the array, unless it is sampled) */
+    private final int analyzedLength;
+    /** Number of analyzed blocks */
+    private final int analyzedBlockCount;
+    /** Histogram of the number of bits needed by each analyzed value */
+    private final int[] bitSizeHistogram = new int[33];
+    /** Number of bits needed by the largest analyzed value */
+    private int maxBitSize;
+    /** Sum of the bit sizes of the analyzed blocks, relative to the minimum value of each block */
+    private long frameOfReferenceBitSizeSum;
+    /** Bit size of the last analyzed block, relative to its minimum value */
+    private int lastFrameOfReferenceBitSize;
+    /** Sum of the bit sizes of the analyzed blocks, relative to the smallest delta of each block */
+    private long deltaBitSizeSum;
+    /** Bit size of the last analyzed block, relative to its smallest delta */
+    private int lastDeltaBitSize;
+
+    /**
+     * Analyzes the array, see {@link #of(int[], boolean)}
+     *
+     * @param array the array to analyze
+     * @param signed if the array will be compressed in signed mode
+     */
+    private CompressionStatistics(int[] array, boolean signed) {
+        length = array.length;
+        int blockCount = (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        boolean sampled = length > SAMPLING_THRESHOLD;
+        analyzedBlockCount = sampled ? SAMPLED_BLOCK_COUNT : blockCount;
+
+        int analyzed = 0;
+        for (int k = 0; k < analyzedBlockCount; k++) {
+            // Evenly spaced blocks when the array is sampled
+            int block = sampled ? (int) ((long) k * blockCount / SAMPLED_BLOCK_COUNT) : k;
+            int start = block * BLOCK_SIZE;
+            int end = Math.min(start + BLOCK_SIZE, length);
+            analyzeBlock(array, start, end, signed);
+            analyzed += end - start;
+        }
+        analyzedLength = analyzed;
+    }
+
+    /**
+     * Analyzes the values of a block
+     *
+     * @param array the analyzed array
+     * @param start index of the first value of the block
+     * @param end index after the last value of the block
+     * @param signed if the array will be compressed in signed mode
+     */
+    private void analyzeBlock(int[] array, int start, int end, boolean signed) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        int minDelta = 0;
+        int maxDelta = 0;
+        if (end - start > 1) {
+            minDelta = Integer.MAX_VALUE;
+            maxDelta = Integer.MIN_VALUE;
+        }
+
+        for (int i = start; i < end; i++) {
+            int value = array[i];
+            if (value < 0 && !signed) throw new IllegalArgumentException("Values can't be negative.");
+
+            int bitSize = calculateBitSize(signed ? (value << 1) ^ (value >> 31) : value);
+            bitSizeHistogram[bitSize]++;
+            maxBitSize = Math.max(maxBitSize, bitSize);
+
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (i > start) {
+                int delta = value - array[i - 1];
+                minDelta = Math.min(minDelta, delta);
+                maxDelta = Math.max(maxDelta, delta);
+            }
+        }
+
+        // Same bit sizes as the blocked versions: differences read as unsigned integers, 0 bits if they are all 0
+        lastFrameOfReferenceBitSize = 32 - Integer.numberOfLeadingZeros(max - min);
+        frameOfReferenceBitSizeSum += lastFrameOfReferenceBitSize;
+        lastDeltaBitSize = 32 - Integer.numberOfLeadingZeros(maxDelta - minDelta);
+        deltaBitSizeSum += lastDeltaBitSize;
+    }
+
+    /**
+     * Analyzes an array, in a single pass (or on a sample of the array if it is longer than
+     * {@link #SAMPLING_THRESHOLD} values)
+     *
+     * @param array the array to analyze
+     * @param signed if the array will be compressed in signed mode
+     * @return the statistics of the array
+     * @throws IllegalArgumentException if the array is null, empty or contains negative numbers (unless in signed
+     * mode)
+     */
+    public static CompressionStatistics of(int[] array, boolean signed) {
+        if (array == null || array.length == 0) {
+            throw new IllegalArgumentException("The array can't be null or empty.");
+        }
+
+        return new CompressionStatistics(array, signed);
+    }
+
+    /**
+     * @return Number of values of the array
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return If only a sample of the array was analyzed, i.e. if the predicted sizes are estimations
+     */
+    public boolean isSampled() {
+        return analyzedLength < length;
+    }
+
+    /**
+     * @return Number of bits needed by the largest analyzed value (zigzag encoded in signed mode)
+     */
+    public int getMaxBitSize() {
+        return maxBitSize;
+    }
+
+    /**
+     * @return A copy of the histogram of the number of bits needed by each analyzed value (index 1 to 32)
+     */
+    public int[] getBitSizeHistogram() {
+        return bitSizeHistogram.clone();
+    }
+
+    /**
+     * Predicts the number of integers of the compressed array (exact unless the array is sampled)
+     *
+     * @param compressionVersion the compression version (not {@link CompressionVersion#AUTO})
+     * @return the predicted value of {@link BitPacking#getCompressedLength()} after compressing the array
+     * @throws IllegalArgumentException if compressionVersion is null or {@link CompressionVersion#AUTO}
+     */
+    public long predictCompressedLength(CompressionVersion compressionVersion) {
+        if (compressionVersion == null) {
+            throw new IllegalArgumentException("compressionVersion can't be null");
+        }
+
+        long bitSize = maxBitSize;
+        return switch (compressionVersion) {
+            case WITH_OVERLAP, WITH_INTERLEAVED_LANES -> (length * bitSize + 31) / 32;
+            case WITHOUT_OVERLAP -> {
+                int valuesPerInt = (int) (32 / bitSize);
+                yield ((long) length + valuesPerInt - 1) / valuesPerInt;
+            }
+            case WITH_OVERLAP_64 -> 2 * ((length * bitSize + 63) / 64);
+            case WITHOUT_OVERLAP_64 -> {
+                int valuesPerWord = (int) (64 / bitSize);
+                yield 2 * (((long) length + valuesPerWord - 1) / valuesPerWord);
+            }
+            case WITH_OVERFLOW_AREA -> (predictOverflowAreaBits() + 31) / 32;
+            case WITH_BLOCKED_FRAME_OF_REFERENCE ->
+                    predictBlockedLength(2, frameOfReferenceBitSizeSum, lastFrameOfReferenceBitSize);
+            case WITH_DELTA_ENCODING -> predictBlockedLength(3, deltaBitSizeSum, lastDeltaBitSize);
+            default -> throw new IllegalArgumentException("compressionVersion must be a concrete compression version");
+        };
+    }
+
+    /**
+     * Predicts the total number of bits of {@link BitPackingWithOverflowArea}, choosing the regular bit size the
+     * same way (the one with the smallest total number of bits)
+     *
+     * @return the predicted number of bits of the slots and of the overflow area
+     */
+    private long predictOverflowAreaBits() {
+        // Without overflow area, every value is coded on maxBitSize bits
+        long bestTotalBits = (long) length * maxBitSize;
+
+        long overflowCount = 0;
+        for (int bitSize = maxBitSize - 1; bitSize >= 1; bitSize--) {
+            overflowCount += scaledCount(bitSizeHistogram[bitSize + 1]);
+
+            // Without any overflow value, the index bit size is 32 (like in the compression), which never pays off
+            int indexBitSize = calculateBitSize((int) (overflowCount - 1));
+            long totalBits = (long) length * (1 + Math.max(bitSize, indexBitSize)) + overflowCount * maxBitSize;
+            bestTotalBits = Math.min(bestTotalBits, totalBits);
+        }
+        return bestTotalBits;
+    }
+
+    /**
+     * Predicts the number of integers of a blocked version (header followed by the packed blocks)
+     *
+     * @param headerIntsPerBlock number of integers of the header for each block
+     * @param bitSizeSum sum of the bit sizes of the analyzed blocks
+     * @param lastBitSize bit size of the last analyzed block
+     * @return the predicted number of integers of the compressed array
+     */
+    private long predictBlockedLength(int headerIntsPerBlock, long bitSizeSum, int lastBitSize) {
+        int blockCount = (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        long headerLength = (long) headerIntsPerBlock * blockCount + 1;
+
+        if (isSampled()) {
+            return headerLength + Math.round((double) INTS_PER_BLOCK_BIT * bitSizeSum * blockCount
+                    / analyzedBlockCount);
+        }
+
+        // Only the last block may be incomplete, and thus need less integers
+        int lastBlockLength = length - (blockCount - 1) * BLOCK_SIZE;
+        return headerLength + INTS_PER_BLOCK_BIT * (bitSizeSum - lastBitSize)
+                + ((long) lastBlockLength * lastBitSize + 31) / 32;
+    }
+
+    /**
+     * @param analyzedCount number of analyzed values
+     * @return the estimated number of such values in the whole array
+     */
+    private long scaledCount(int analyzedCount) {
+        return isSampled() ? Math.round((double) analyzedCount * length / analyzedLength) : analyzedCount;
+    }
+
+    /**
+     * Models the time needed to decompress the whole array
+     *
+     * @param compressionVersion the compression version (not {@link CompressionVersion#AUTO})
+     * @return the modeled decompression time (in ns)
+     * @throws IllegalArgumentException if compressionVersion is null or {@link CompressionVersion#AUTO}
+     */
+    public double modelDecompressionTime(CompressionVersion compressionVersion) {
+        return length * decompressionNanosPerValue(compressionVersion)
+                + predictCompressedLength(compressionVersion) * NANOS_PER_COMPRESSED_INT;
+    }
+
+    /**
+     * Models the time needed to compress the array, to send the compressed array and to decompress it
+     *
+     * @param compressionVersion the compression version (not {@link CompressionVersion#AUTO})
+     * @param transmissionRate transmission rate (in bits per second)
+     * @return the modeled transmission time (in seconds)
+     * @throws IllegalArgumentException if compressionVersion is null or {@link CompressionVersion#AUTO}, or if the
+     * transmission rate isn't positive
+     */
+    public double modelTransmissionTime(CompressionVersion compressionVersion, double transmissionRate) {
+        if (!(transmissionRate > 0)) {
+            throw new IllegalArgumentException("The transmission rate must be positive.");
+        }
+
+        long compressedLength = predictCompressedLength(compressionVersion);
+        double compressionTime = length * compressionNanosPerValue(compressionVersion)
+                + compressedLength * NANOS_PER_COMPRESSED_INT;
+        return (compressionTime + modelDecompressionTime(compressionVersion)) / 1_000_000_000.0
+                + compressedLength * 32 / transmissionRate;
+    }
+
+    /**
+     * Chooses the compression version of the array, using the {@link #DEFAULT_TRANSMISSION_RATE} for
+     * {@link SelectionPolicy#FASTEST_TRANSMISSION}
+     *
+     * @param policy how the compression version is chosen
+     * @return the chosen compression version
+     * @throws IllegalArgumentException if policy is null
+     */
+    public CompressionVersion select(SelectionPolicy policy) {
+        return select(policy, DEFAULT_TRANSMISSION_RATE);
+    }
+
+    /**
+     * Chooses the compression version of the array. When several versions have the same cost, the one with the
+     * smallest compressed array is chosen (the first one of {@link CompressionVersion#concreteValues()} if they also
+     * have the same size).
+     *
+     * @param policy how the compression version is chosen
+     * @param transmissionRate transmission rate (in bits per second) used for
+     *                         {@link SelectionPolicy#FASTEST_TRANSMISSION}
+     * @return the chosen compression version
+     * @throws IllegalArgumentException if policy is null, or if the transmission rate isn't positive
+     */
+    public CompressionVersion select(SelectionPolicy policy, double transmissionRate) {
+        if (policy == null) {
+            throw new IllegalArgumentException("policy can't be null");
+        }
+        if (!(transmissionRate > 0)) {
+            throw new IllegalArgumentException("The transmission rate must be positive.");
+        }
+
+        CompressionVersion best = null;
+        double bestCost = Double.POSITIVE_INFINITY;
+        long bestLength = Long.MAX_VALUE;
+        for (CompressionVersion compressionVersion : CompressionVersion.concreteValues()) {
+            long compressedLength = predictCompressedLength(compressionVersion);
+            double cost = switch (policy) {
+                case SMALLEST_SIZE -> compressedLength;
+                case FASTEST_DECODE -> modelDecompressionTime(compressionVersion);
+                case FASTEST_TRANSMISSION -> modelTransmissionTime(compressionVersion, transmissionRate);
+            };
+
+            if (cost < bestCost || (cost == bestCost && compressedLength < bestLength)) {
+                best = compressionVersion;
+                bestCost = cost;
+                bestLength = compressedLength;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param compressionVersion the compression version
+     * @return the approximate time (in ns) to decompress one value
+     */
+    private static double decompressionNanosPerValue(CompressionVersion compressionVersion) {
+        return switch (compressionVersion) {
+            case WITH_OVERLAP, WITH_BLOCKED_FRAME_OF_REFERENCE -> 1.5;
+            case WITH_OVERLAP_64, WITH_DELTA_ENCODING, WITH_INTERLEAVED_LANES -> 2.5;
+            case WITH_OVERFLOW_AREA -> 3;
+            case WITHOUT_OVERLAP, WITHOUT_OVERLAP_64 -> 6;
+            default -> throw new IllegalArgumentException("compressionVersion must be a concrete compression version");
+        };
+    }
+
+    /**
+     * @param compressionVersion the compression version
+     * @return the approximate time (in ns) to compress one value
+     */
+    private static double compressionNanosPerValue(CompressionVersion compressionVersion) {
+        return switch (compressionVersion) {
+            case WITH_OVERLAP, WITH_INTERLEAVED_LANES -> 2;
+            case WITH_OVERLAP_64 -> 3;
+            case WITH_BLOCKED_FRAME_OF_REFERENCE, WITH_DELTA_ENCODING -> 4;
+            case WITHOUT_OVERLAP -> 5;
+            case WITHOUT_OVERLAP_64 -> 6;
+            case WITH_OVERFLOW_AREA -> 7;
+            default -> throw new IllegalArgumentException("compressionVersion must be a concrete compression version");
+        };
+    }
+
+    /**
+     * @param value The non-negative (or zigzag encoded) integer
+     * @return The number of bits required to represent the value (at least 1, like {@link BitPacking})
+     */
+    private static int calculateBitSize(int value) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(value));
+    }
+}
@@ -2,11 +2,72 @@ package com.dcarriba.bitpacking.factory;
 
 import com.dcarriba.bitpacking.BitPacking;
 
+import java.util.Arrays;
+
 /**
  * {@link CompressionVersion} is an enum class specifying the available {@link BitPacking} versions.
  */
 public enum CompressionVersion {
-    WITH_OVERLAP,
-    WITHOUT_OVERLAP,
-    WITH_OVERFLOW_AREA
+    WITH_OVERLAP("With Overlap"),
+    WITHOUT_OVERLAP("Without Overlap"),
+    WITH_OVERLAP_64("With Overlap 64"),
+    WITHOUT_OVERLAP_64("Without Overlap 64"),
+    WITH_OVERFLOW_AREA("With Overflow Area"),
+    WITH_BLOCKED_FRAME_OF_REFERENCE("Blocked FOR"),
+    WITH_DELTA_ENCODING("Delta Encoding"),
+    WITH_INTERLEAVED_LANES("SIMD Interleaved"),
+    /**
+     * Not a compression version by itself: the version is chosen for each array from its {@link CompressionStatistics},
+     * according to a {@link SelectionPolicy} (see {@link BitPackingFactory#createBitPacking(int[], boolean,
+     * SelectionPolicy)}), and is resolved by {@link BitPackingFactory#createBitPacking(CompressionVersion, int[],
+     * boolean, SelectionPolicy)} before creating the Bit Packing compression object
+     */
+    AUTO("Auto", false);
+
+    /** Name of the compression version, as displayed in the benchmarks */
+    private final String displayName;
+    /** If the compression version is implemented by a {@link BitPacking} class */
+    private final boolean concrete;
+
+    /**
+     * Constructor for a concrete {@link CompressionVersion}
+     *
+     * @param displayName name of the compression version, as displayed in the benchmarks
+     */
+    CompressionVersion(String displayName) {
+        this(displayName, true);
+    }
+
+    /**
+     * Constructor for {@link CompressionVersion}
+     *
+     * @param displayName name of the compression version, as displayed in the benchmarks
+     * @param concrete if the compression version is implemented by a {@link BitPacking} class
+     */
+    CompressionVersion(String displayName, boolean concrete) {
+        this.displayName = displayName;
+        this.concrete = concrete;
+    }
+
+    /**
+     * @return All concrete compression versions, i.e. all compression versions except {@link #AUTO}
+     */
+    public static CompressionVersion[] concreteValues() {
+        return Arrays.stream(values()).filter(CompressionVersion::isConcrete).toArray(CompressionVersion[]::new);
+    }
+
+    /**
+     * @return If the compression version is implemented by a {@link BitPacking} class (false for {@link #AUTO}, which
+     * is only resolved to a concrete compression version for a given array)
+     */
+    public boolean isConcrete() {
+        return concrete;
+    }
+
+    /**
+     * @return Name of the compression version, as displayed in the benchmarks
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
 }
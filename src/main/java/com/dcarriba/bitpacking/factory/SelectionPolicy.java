@@ -0,0 +1,17 @@
+package com.dcarriba.bitpacking.factory;
+
+/**
+ * {@link SelectionPolicy} is an enum class specifying how {@link CompressionVersion#AUTO} chooses the compression
+ * version of an array, from the sizes and the times modeled by {@link CompressionStatistics}.
+ */
+public enum SelectionPolicy {
+    /** Chooses the compression version with the smallest compressed array */
+    SMALLEST_SIZE,
+    /** Chooses the compression version with the smallest modeled decompression time */
+    FASTEST_DECODE,
+    /**
+     * Chooses the compression version with the smallest modeled transmission time, i.e. the time to compress the array,
+     * to send the compressed array and to decompress it
+     */
+    FASTEST_TRANSMISSION
+}
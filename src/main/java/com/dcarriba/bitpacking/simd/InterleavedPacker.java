@@ -0,0 +1,50 @@
+package com.dcarriba.bitpacking.simd;
+
+/**
+ * {@link InterleavedPacker} packs and unpacks blocks of {@link #BLOCK_SIZE} values with a lane interleaved layout
+ * (like SIMD-BP128), so that a whole vector of values can be shifted and masked at once.
+ * <p>
+ * The j-th value of a block belongs to the lane j % {@link #LANES}. Each lane packs its 32 values on bitSize bits
+ * (from the most significant to the least significant bit of each integer, like the other {@code BitPacking}
+ * versions), and the k-th integer of all lanes are stored next to each other. A block of 128 values coded on bitSize
+ * bits therefore fills exactly 4 * bitSize integers, and the k-th packed integer of the 4 lanes is a single
+ * 128-bit vector.
+ * </p>
+ */
+public interface InterleavedPacker {
+    /** Number of lanes of the layout (4 lanes of 32 bits, i.e. 128-bit vectors) */
+    int LANES = 4;
+
+    /** Number of values inside each block */
+    int BLOCK_SIZE = 128;
+
+    /** Number of values packed by each lane of a block */
+    int VALUES_PER_LANE = BLOCK_SIZE / LANES;
+
+    /**
+     * Packs a block of 128 values on bitSize bits each, into 4 * bitSize integers.
+     *
+     * @param bitSize number of bits of each value (between 1 and 32)
+     * @param in array containing the values to pack
+     * @param inPos index of the first value to pack
+     * @param out array receiving the packed values (the written integers must be 0)
+     * @param outPos index of the first integer written
+     */
+    void pack(int bitSize, int[] in, int inPos, int[] out, int outPos);
+
+    /**
+     * Unpacks a block of 128 values coded on bitSize bits each, from 4 * bitSize integers.
+     *
+     * @param bitSize number of bits of each value (between 1 and 32)
+     * @param in array containing the packed values
+     * @param inPos index of the first integer read
+     * @param out array receiving the unpacked values
+     * @param outPos index of the first value written
+     */
+    void unpack(int bitSize, int[] in, int inPos, int[] out, int outPos);
+
+    /**
+     * @return Name of the packer, as displayed in the benchmarks
+     */
+    String getName();
+}
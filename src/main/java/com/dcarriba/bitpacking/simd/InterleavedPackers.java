@@ -0,0 +1,54 @@
+package com.dcarriba.bitpacking.simd;
+
+/**
+ * {@link InterleavedPackers} gives access to the available {@link InterleavedPacker} implementations.
+ */
+public final class InterleavedPackers {
+    /** Packer using only scalar operations, always available */
+    private static final InterleavedPacker SCALAR = new ScalarInterleavedPacker();
+    /** Packer using the Vector API, or null if the jdk.incubator.vector module isn't available */
+    private static final InterleavedPacker VECTOR = loadVectorPacker();
+
+    private InterleavedPackers() {}
+
+    /**
+     * @return The packer using only scalar operations
+     */
+    public static InterleavedPacker scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * @return The packer using the Vector API, or null if the jdk.incubator.vector module isn't available
+     */
+    public static InterleavedPacker vector() {
+        return VECTOR;
+    }
+
+    /**
+     * @return The packer using the Vector API if it is available, else the packer using only scalar operations
+     */
+    public static InterleavedPacker fastest() {
+        return VECTOR != null ? VECTOR : SCALAR;
+    }
+
+    /**
+     * Loads the packer using the Vector API. The class is loaded by reflection, so that a missing
+     * jdk.incubator.vector module only disables this packer instead of failing the whole program.
+     *
+     * @return the packer using the Vector API, or null if it can't be loaded
+     */
+    private static InterleavedPacker loadVectorPacker() {
+        try {
+            Class<?> packerClass = Class.forName(InterleavedPackers.class.getPackageName() + ".VectorInterleavedPacker");
+            InterleavedPacker packer = (InterleavedPacker) packerClass.getDeclaredConstructor().newInstance();
+
+            // Makes sure the Vector API actually works before using it
+            int[] block = new int[InterleavedPacker.BLOCK_SIZE];
+            packer.unpack(1, new int[InterleavedPacker.LANES], 0, block, 0);
+            return packer;
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.dcarriba.bitpacking.simd;
+
+/**
+ * {@link ScalarInterleavedPacker} is the {@link InterleavedPacker} packing the lanes one after the other, using only
+ * scalar operations. It is used when the Vector API isn't available.
+ */
+public class ScalarInterleavedPacker implements InterleavedPacker {
+
+    @Override
+    public void pack(int bitSize, int[] in, int inPos, int[] out, int outPos) {
+        checkBitSize(bitSize);
+        int mask = (int) (-1L >>> (64 - bitSize));
+
+        for (int lane = 0; lane < LANES; lane++) {
+            int outIndex = outPos + lane;
+            int word = 0;
+            int bitOffset = 0;
+
+            for (int k = 0; k < VALUES_PER_LANE; k++) {
+                int value = in[inPos + k * LANES + lane] & mask;
+                int end = bitOffset + bitSize;
+
+                if (end < 32) {
+                    word |= value << (32 - end);
+                    bitOffset = end;
+                } else if (end == 32) {
+                    out[outIndex] = word | value;
+                    outIndex += LANES;
+                    word = 0;
+                    bitOffset = 0;
+                } else {
+                    // The value overlaps to the next integer of the lane
+                    out[outIndex] = word | (value >>> (end - 32));
+                    outIndex += LANES;
+                    word = value << (64 - end);
+                    bitOffset = end - 32;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void unpack(int bitSize, int[] in, int inPos, int[] out, int outPos) {
+        checkBitSize(bitSize);
+        int mask = (int) (-1L >>> (64 - bitSize));
+
+        for (int lane = 0; lane < LANES; lane++) {
+            int inIndex = inPos + lane;
+            int bitOffset = 0;
+
+            for (int k = 0; k < VALUES_PER_LANE; k++) {
+                int end = bitOffset + bitSize;
+                int value;
+
+                if (end < 32) {
+                    value = (in[inIndex] >>> (32 - end)) & mask;
+                    bitOffset = end;
+                } else if (end == 32) {
+                    value = in[inIndex] & mask;
+                    inIndex += LANES;
+                    bitOffset = 0;
+                } else {
+                    // The value overlaps to the next integer of the lane
+                    value = ((in[inIndex] << (end - 32)) | (in[inIndex + LANES] >>> (64 - end))) & mask;
+                    inIndex += LANES;
+                    bitOffset = end - 32;
+                }
+
+                out[outPos + k * LANES + lane] = value;
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Scalar";
+    }
+
+    /**
+     * @param bitSize number of bits of each value
+     * @throws IllegalArgumentException if the bit size isn't between 1 and 32
+     */
+    static void checkBitSize(int bitSize) {
+        if (bitSize < 1 || bitSize > 32) {
+            throw new IllegalArgumentException("bitSize must be between 1 and 32");
+        }
+    }
+}
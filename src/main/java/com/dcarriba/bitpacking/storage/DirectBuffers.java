@@ -0,0 +1,53 @@
+package com.dcarriba.bitpacking.storage;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link DirectBuffers} releases the memory of direct (and memory-mapped) {@link ByteBuffer}s without waiting for the
+ * garbage collector.
+ */
+public final class DirectBuffers {
+    /** Unsafe instance used to release the direct buffers, or null if it isn't available */
+    private static final Object UNSAFE;
+    /** Unsafe.invokeCleaner method releasing a direct buffer, or null if it isn't available */
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafe = theUnsafe.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // The buffers will be released by the garbage collector
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private DirectBuffers() {}
+
+    /**
+     * Releases the memory of a direct buffer (or unmaps a memory-mapped buffer) when the JVM allows it, else the
+     * memory is released when the buffer is garbage collected. The buffer (and all its views) can't be used anymore
+     * afterwards.
+     *
+     * @param buffer the direct buffer to release
+     */
+    public static void release(ByteBuffer buffer) {
+        if (INVOKE_CLEANER == null || buffer == null || !buffer.isDirect()) return;
+
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            // The buffer will be released by the garbage collector
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.dcarriba.bitpacking.storage;
+
+/**
+ * {@link LongArrayWordStorage} is a {@link WordStorage} backed by a {@code long[]} on the heap.
+ */
+public class LongArrayWordStorage implements WordStorage {
+    /** Array containing the words */
+    private final long[] words;
+
+    /**
+     * Constructor for {@link LongArrayWordStorage}, with all words set to 0
+     *
+     * @param wordCount number of 64-bit words of the storage
+     */
+    public LongArrayWordStorage(int wordCount) {
+        if (wordCount < 0) {
+            throw new IllegalArgumentException("wordCount can't be negative");
+        }
+        this.words = new long[wordCount];
+    }
+
+    @Override
+    public int getWordCount() {
+        return words.length;
+    }
+
+    @Override
+    public long getWord(int index) {
+        return words[index];
+    }
+
+    @Override
+    public void setWord(int index, long word) {
+        words[index] = word;
+    }
+}
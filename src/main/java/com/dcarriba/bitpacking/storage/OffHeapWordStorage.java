@@ -0,0 +1,115 @@
+package com.dcarriba.bitpacking.storage;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * {@link OffHeapWordStorage} is a {@link WordStorage} backed by direct {@link ByteBuffer}s, i.e. by memory outside of
+ * the Java heap, which isn't scanned nor moved by the garbage collector.
+ * <p>
+ * A direct buffer can't hold more than 2 GB, so the words are split into chunks of at most 2^27 words (1 GB) each.
+ * The memory is released as soon as {@link #close()} is called (see {@link DirectBuffers#release(ByteBuffer)}).
+ * </p>
+ */
+public class OffHeapWordStorage implements WordStorage {
+    /** Default number of words of each chunk (1 GB) */
+    private static final int DEFAULT_CHUNK_SHIFT = 27;
+
+    /** Number of words of the storage */
+    private final int wordCount;
+    /** Log2 of the number of words of each chunk */
+    private final int chunkShift;
+    /** Direct buffers of all chunks, or null once the storage is closed */
+    private ByteBuffer[] buffers;
+    /** Views of the chunks as words, or null once the storage is closed */
+    private LongBuffer[] chunks;
+
+    /**
+     * Constructor for {@link OffHeapWordStorage}, with all words set to 0
+     *
+     * @param wordCount number of 64-bit words of the storage
+     */
+    public OffHeapWordStorage(int wordCount) {
+        this(wordCount, DEFAULT_CHUNK_SHIFT);
+    }
+
+    /**
+     * Constructor for {@link OffHeapWordStorage}, with all words set to 0
+     *
+     * @param wordCount number of 64-bit words of the storage
+     * @param chunkShift log2 of the number of words of each chunk (at most 27)
+     */
+    OffHeapWordStorage(int wordCount, int chunkShift) {
+        if (wordCount < 0) {
+            throw new IllegalArgumentException("wordCount can't be negative");
+        }
+        if (chunkShift < 0 || chunkShift > DEFAULT_CHUNK_SHIFT) {
+            throw new IllegalArgumentException("chunkShift must be between 0 and " + DEFAULT_CHUNK_SHIFT);
+        }
+
+        this.wordCount = wordCount;
+        this.chunkShift = chunkShift;
+
+        int chunkSize = 1 << chunkShift;
+        int chunkCount = (int) (((long) wordCount + chunkSize - 1) >>> chunkShift);
+        buffers = new ByteBuffer[chunkCount];
+        chunks = new LongBuffer[chunkCount];
+        for (int c = 0; c < chunkCount; c++) {
+            int words = Math.min(chunkSize, wordCount - c * chunkSize);
+
+            // Direct buffers are filled with 0 when allocated
+            buffers[c] = ByteBuffer.allocateDirect(words * Long.BYTES).order(ByteOrder.nativeOrder());
+            chunks[c] = buffers[c].asLongBuffer();
+        }
+    }
+
+    @Override
+    public int getWordCount() {
+        return wordCount;
+    }
+
+    @Override
+    public long getWord(int index) {
+        return getChunks()[index >>> chunkShift].get(index & ((1 << chunkShift) - 1));
+    }
+
+    @Override
+    public void setWord(int index, long word) {
+        getChunks()[index >>> chunkShift].put(index & ((1 << chunkShift) - 1), word);
+    }
+
+    /**
+     * @return If the memory of the storage is still available
+     */
+    public boolean isOpen() {
+        return chunks != null;
+    }
+
+    /**
+     * Releases the memory of the storage. The storage can't be used anymore afterwards.
+     */
+    @Override
+    public void close() {
+        if (buffers == null) return;
+
+        for (ByteBuffer buffer : buffers) {
+            DirectBuffers.release(buffer);
+        }
+
+        buffers = null;
+        chunks = null;
+    }
+
+    /**
+     * @return Views of the chunks as words
+     * @throws IllegalStateException if the storage is closed
+     */
+    private LongBuffer[] getChunks() {
+        LongBuffer[] chunks = this.chunks;
+        if (chunks == null) {
+            throw new IllegalStateException("The storage is closed.");
+        }
+        return chunks;
+    }
+}
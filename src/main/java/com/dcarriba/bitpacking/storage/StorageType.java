@@ -0,0 +1,53 @@
+package com.dcarriba.bitpacking.storage;
+
+/**
+ * {@link StorageType} is an enum class specifying where a {@link WordStorage} is allocated.
+ */
+public enum StorageType {
+    /** Words stored in a {@code long[]} on the Java heap */
+    HEAP,
+    /** Words stored in direct buffers, outside of the Java heap */
+    OFF_HEAP;
+
+    /**
+     * Allocates a new storage of this type, with all words set to 0
+     *
+     * @param wordCount number of 64-bit words of the storage
+     * @return the new storage
+     */
+    public WordStorage allocate(int wordCount) {
+        return switch (this) {
+            case HEAP -> new LongArrayWordStorage(wordCount);
+            case OFF_HEAP -> new OffHeapWordStorage(wordCount);
+        };
+    }
+
+    /**
+     * Allocates a new storage of this type containing 32-bit integers (the words split into their high and low halves
+     * give the integers, followed by a padding of 0 if their number is odd)
+     *
+     * @param array array containing the integers
+     * @param length number of integers of the array to copy
+     * @return the new storage
+     */
+    public WordStorage copyOf(int[] array, int length) {
+        WordStorage storage = allocate((int) (((long) length + 1) / 2));
+        storage.writeInts(0, array, 0, length);
+        return storage;
+    }
+
+    /**
+     * Allocates a new storage of this type containing the first words of another storage
+     *
+     * @param source storage containing the words
+     * @param wordCount number of words of the new storage (the words after the end of source are 0)
+     * @return the new storage
+     */
+    public WordStorage copyOf(WordStorage source, int wordCount) {
+        WordStorage storage = allocate(wordCount);
+        for (int i = 0; i < Math.min(wordCount, source.getWordCount()); i++) {
+            storage.setWord(i, source.getWord(i));
+        }
+        return storage;
+    }
+}
@@ -0,0 +1,189 @@
+package com.dcarriba.bitpacking.storage;
+
+/**
+ * {@link WordStorage} is the storage of compressed data made of 64-bit words.
+ * <p>
+ * Bits are stored from the most significant to the least significant bit of each word (like the 32-bit integers of
+ * the other {@code BitPacking} versions), so that splitting each word into its high and low 32-bit halves gives the
+ * same bits as a 32-bit layout. A value of at most 32 bits is read with a single 64-bit load (plus a shift), unless it
+ * overlaps to the next word.
+ * </p>
+ * <p>
+ * Storages holding memory outside of the Java heap release it when they are closed.
+ * </p>
+ */
+public interface WordStorage extends AutoCloseable {
+
+    /**
+     * @return Number of 64-bit words of the storage
+     */
+    int getWordCount();
+
+    /**
+     * @param index index of the word
+     * @return The word at the given index
+     */
+    long getWord(int index);
+
+    /**
+     * @param index index of the word
+     * @param word new value of the word
+     */
+    void setWord(int index, long word);
+
+    /**
+     * Reads bitCount bits at the given bit position of the storage.
+     *
+     * @param bitPosition position (in bits) at which the value is read
+     * @param bitCount number of bits to read (between 1 and 32)
+     * @return the value that was read
+     */
+    default int readBits(long bitPosition, int bitCount) {
+        int wordIndex = (int) (bitPosition >>> 6);
+        int bitOffset = (int) (bitPosition & 63);
+
+        // Aligns the value on the most significant bit of the word, then moves it to the least significant bits
+        long value = (getWord(wordIndex) << bitOffset) >>> (64 - bitCount);
+
+        // The value overlaps to the next word
+        if (bitOffset + bitCount > 64) {
+            value |= getWord(wordIndex + 1) >>> (128 - bitOffset - bitCount);
+        }
+
+        return (int) value;
+    }
+
+    /**
+     * Writes the lowest bitCount bits of a value at the given bit position of the storage. The written bits must be 0
+     * before.
+     *
+     * @param bitPosition position (in bits) at which the value is written
+     * @param value value to write
+     * @param bitCount number of bits to write (between 1 and 32)
+     */
+    default void writeBits(long bitPosition, int value, int bitCount) {
+        int wordIndex = (int) (bitPosition >>> 6);
+        int end = (int) (bitPosition & 63) + bitCount;
+        long bits = value & (-1L >>> (64 - bitCount));
+
+        if (end <= 64) {
+            setWord(wordIndex, getWord(wordIndex) | (bits << (64 - end)));
+        } else {
+            // The value overlaps to the next word
+            setWord(wordIndex, getWord(wordIndex) | (bits >>> (end - 64)));
+            setWord(wordIndex + 1, getWord(wordIndex + 1) | (bits << (128 - end)));
+        }
+    }
+
+    /**
+     * Overwrites bitCount bits at the given bit position of the storage with the lowest bitCount bits of a value,
+     * leaving the surrounding bits unchanged (unlike {@link #writeBits(long, int, int)}, the bits don't need to be 0
+     * beforehand).
+     *
+     * @param bitPosition position (in bits) at which the value is written
+     * @param value value to write
+     * @param bitCount number of bits to write (between 1 and 32)
+     */
+    default void overwriteBits(long bitPosition, int value, int bitCount) {
+        int wordIndex = (int) (bitPosition >>> 6);
+        int end = (int) (bitPosition & 63) + bitCount;
+        long mask = -1L >>> (64 - bitCount);
+        long bits = value & mask;
+
+        if (end <= 64) {
+            setWord(wordIndex, (getWord(wordIndex) & ~(mask << (64 - end))) | (bits << (64 - end)));
+        } else {
+            // The value overlaps to the next word
+            setWord(wordIndex, (getWord(wordIndex) & ~(mask >>> (end - 64))) | (bits >>> (end - 64)));
+            setWord(wordIndex + 1, (getWord(wordIndex + 1) & ~(mask << (128 - end))) | (bits << (128 - end)));
+        }
+    }
+
+    /**
+     * Reads count consecutive values of bitCount bits each, starting at the given bit position of the storage. Each
+     * word is only loaded once.
+     *
+     * @param bitPosition position (in bits) of the first value
+     * @param bitCount number of bits of each value (between 1 and 32)
+     * @param array array receiving the values
+     * @param offset index of the array at which the first value is placed
+     * @param count number of values to read
+     */
+    default void readBits(long bitPosition, int bitCount, int[] array, int offset, int count) {
+        if (count <= 0) return;
+
+        int wordIndex = (int) (bitPosition >>> 6);
+        int bitOffset = (int) (bitPosition & 63);
+
+        // The buffered bits are aligned on the most significant bit of the word
+        long word = getWord(wordIndex++) << bitOffset;
+        int bufferedBits = 64 - bitOffset;
+
+        for (int i = offset; i < offset + count; i++) {
+            if (bufferedBits >= bitCount) {
+                array[i] = (int) (word >>> (64 - bitCount));
+                word <<= bitCount;
+                bufferedBits -= bitCount;
+            } else {
+                // The value overlaps to the next word: its first bits are the buffered bits, followed by 0
+                long next = getWord(wordIndex++);
+                int missingBits = bitCount - bufferedBits;
+                array[i] = (int) ((word >>> (64 - bitCount)) | (next >>> (64 - missingBits)));
+                word = next << missingBits;
+                bufferedBits = 64 - missingBits;
+            }
+        }
+    }
+
+    /**
+     * Reads the 32-bit integers from index from (inclusive) to index to (exclusive) of the words split into their high
+     * and low halves (the high half of each word first).
+     *
+     * @param from index of the first integer to read
+     * @param to index after the last integer to read
+     * @param dest array receiving the integers
+     * @param destOff index of dest at which the first integer is placed
+     */
+    default void readInts(long from, long to, int[] dest, int destOff) {
+        for (long i = from; i < to; i++) {
+            long word = getWord((int) (i >>> 1));
+            dest[destOff++] = (i & 1) == 0 ? (int) (word >>> 32) : (int) word;
+        }
+    }
+
+    /**
+     * Writes integers at the 32-bit integers from index from of the words split into their high and low halves (the
+     * high half of each word first), replacing their previous value.
+     *
+     * @param from index of the first integer to write
+     * @param src array containing the integers
+     * @param srcOff index of src of the first integer
+     * @param length number of integers to write
+     */
+    default void writeInts(long from, int[] src, int srcOff, int length) {
+        for (long i = from; i < from + length; i++) {
+            int wordIndex = (int) (i >>> 1);
+            long word = getWord(wordIndex);
+            long value = src[srcOff++] & 0xFFFFFFFFL;
+            setWord(wordIndex, (i & 1) == 0
+                    ? (word & 0xFFFFFFFFL) | (value << 32)
+                    : (word & 0xFFFFFFFF00000000L) | value);
+        }
+    }
+
+    /**
+     * @return The words of the storage split into 32-bit integers (the high half of each word first)
+     */
+    default int[] toIntArray() {
+        int[] array = new int[2 * getWordCount()];
+        readInts(0, array.length, array, 0);
+        return array;
+    }
+
+    /**
+     * Releases the resources of the storage. By default, nothing needs to be released.
+     */
+    @Override
+    default void close() {
+    }
+}
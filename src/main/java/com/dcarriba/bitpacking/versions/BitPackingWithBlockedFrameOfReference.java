@@ -0,0 +1,494 @@
+package com.dcarriba.bitpacking.versions;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.BitReader;
+import com.dcarriba.bitpacking.BufferedIntCursor;
+import com.dcarriba.bitpacking.IntCursor;
+import com.dcarriba.bitpacking.kernels.BitPackingKernels;
+import com.dcarriba.bitpacking.storage.WordStorage;
+
+import java.util.BitSet;
+
+/**
+ * {@link BitPackingWithBlockedFrameOfReference} is a {@link BitPacking} implementation where the array is split into
+ * blocks of {@link #BLOCK_SIZE} values, and each block is coded relatively to its own minimum value (its frame of
+ * reference), on its own number of bits.
+ * <p>
+ * A single large value therefore only affects the number of bits of its own block. The compressed array is made of:
+ * </p>
+ * <ul>
+ *     <li>the minimum value (base) of each block,</li>
+ *     <li>for each block, the sum of the bit sizes of all previous blocks (plus this sum for all blocks at the end),
+ *     which gives both the bit size of each block and the position of its values,</li>
+ *     <li>the values of each block minus its base, packed like {@link BitPackingWithOverlap}. Since a complete block
+ *     of 128 values coded on w bits fills exactly 4 * w integers, every block starts at the beginning of an
+ *     integer.</li>
+ * </ul>
+ * <p>
+ * The i-th value is found in constant time by reading the header of its block.
+ * </p>
+ * <p>
+ * When the compressed data is kept in a storage (e.g. a mapped file), the headers are copied once on the heap, and the
+ * values of each block are copied before being unpacked.
+ * </p>
+ * <p>
+ * In signed mode no zigzag encoding is needed: the difference between a value and the minimum of its block is always
+ * non-negative, and is read as an unsigned integer.
+ * </p>
+ */
+public class BitPackingWithBlockedFrameOfReference extends BitPacking {
+    /** Number of values inside each block */
+    public static final int BLOCK_SIZE = 128;
+
+    /** Number of integers used by a complete block for each bit of its bit size */
+    private static final int INTS_PER_BLOCK_BIT = BLOCK_SIZE / 32;
+
+    /** Buffers receiving the values of a block copied from a storage, reused by each thread */
+    private static final ThreadLocal<int[]> BLOCK_BUFFERS = ThreadLocal.withInitial(() -> new int[BLOCK_SIZE]);
+
+    /** Number of blocks */
+    private int blockCount;
+    /** Copy of the headers of the blocks when the compressed data is kept in a storage, else null */
+    private int[] storageHeader;
+
+    /**
+     * Constructor for a {@link BitPackingWithBlockedFrameOfReference} compressing only non-negative integers
+     */
+    public BitPackingWithBlockedFrameOfReference() {
+        super();
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithBlockedFrameOfReference}
+     *
+     * @param signed if negative integers can be compressed
+     */
+    public BitPackingWithBlockedFrameOfReference(boolean signed) {
+        super(signed);
+    }
+
+    @Override
+    public void compress(int[] array) {
+        if (array == null || array.length == 0) {
+            throw new IllegalArgumentException("The array can't be null or empty.");
+        }
+
+        // The layout is computed in local variables: an invalid array leaves the previous compressed data untouched
+        int blockCount = (array.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int headerLength = 2 * blockCount + 1;
+
+        int[] bases = new int[blockCount];
+        int[] cumulativeBitSizes = new int[blockCount + 1];
+        int maxBitSize = 0;
+
+        // Pass 1: finds the base and the bit size of each block
+        for (int block = 0; block < blockCount; block++) {
+            int start = block * BLOCK_SIZE;
+            int end = Math.min(start + BLOCK_SIZE, array.length);
+
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = start; i < end; i++) {
+                int value = array[i];
+                if (value < 0 && !isSigned()) throw new IllegalArgumentException("Values can't be negative.");
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+
+            // A block where all values are equal needs 0 bits. The difference between the maximum and the minimum is
+            // read as an unsigned integer, it may need all 32 bits in signed mode
+            int bitSize = 32 - Integer.numberOfLeadingZeros(max - min);
+
+            bases[block] = min;
+            cumulativeBitSizes[block + 1] = cumulativeBitSizes[block] + bitSize;
+            maxBitSize = Math.max(maxBitSize, bitSize);
+        }
+
+        // Only the last block may be incomplete, and thus need less integers
+        int lastBlockLength = array.length - (blockCount - 1) * BLOCK_SIZE;
+        int lastBlockBitSize = cumulativeBitSizes[blockCount] - cumulativeBitSizes[blockCount - 1];
+        int compressedArrayLength = headerLength
+                + INTS_PER_BLOCK_BIT * cumulativeBitSizes[blockCount - 1]
+                + (int) (((long) lastBlockLength * lastBlockBitSize + 31) / 32);
+
+        int[] compressedArray = allocateCompressedArray(compressedArrayLength);
+        System.arraycopy(bases, 0, compressedArray, 0, blockCount);
+        System.arraycopy(cumulativeBitSizes, 0, compressedArray, blockCount, blockCount + 1);
+
+        // Pass 2: compresses the values of each block minus its base
+        int[] blockValues = new int[BLOCK_SIZE];
+        for (int block = 0; block < blockCount; block++) {
+            int bitSize = cumulativeBitSizes[block + 1] - cumulativeBitSizes[block];
+            if (bitSize == 0) continue;
+
+            int start = block * BLOCK_SIZE;
+            int length = Math.min(BLOCK_SIZE, array.length - start);
+            int base = bases[block];
+            int intIndex = headerLength + INTS_PER_BLOCK_BIT * cumulativeBitSizes[block];
+
+            for (int i = 0; i < length; i++) {
+                blockValues[i] = array[start + i] - base;
+            }
+
+            if (length == BLOCK_SIZE) {
+                for (int i = 0; i < BLOCK_SIZE; i += BitPackingKernels.GROUP_SIZE) {
+                    BitPackingKernels.pack(bitSize, blockValues, i, compressedArray, intIndex);
+                    intIndex += bitSize;
+                }
+            } else {
+                for (int i = 0; i < length; i++) {
+                    writeBits(compressedArray, (long) intIndex * 32 + (long) i * bitSize, blockValues[i], bitSize);
+                }
+            }
+        }
+
+        this.blockCount = blockCount;
+        storageHeader = null;
+        setOriginalLength(array.length);
+        setBitSize(maxBitSize);
+        setCompressedArray(compressedArray, compressedArrayLength);
+    }
+
+    @Override
+    protected void decompressValues(int[] array, int offset) {
+        int[] header = getHeader();
+
+        for (int block = 0; block < blockCount; block++) {
+            decompressBlock(header, block, array, offset + block * BLOCK_SIZE);
+        }
+    }
+
+    /**
+     * Decompresses all values of a block into the array given as parameter
+     *
+     * @param header the headers of the blocks, as returned by {@link #getHeader()}
+     * @param block index of the block
+     * @param array array receiving the values of the block
+     * @param start index of the array at which the first value of the block is placed
+     */
+    private void decompressBlock(int[] header, int block, int[] array, int start) {
+        int blockLength = Math.min(BLOCK_SIZE, getOriginalLength() - block * BLOCK_SIZE);
+        int base = header[block];
+        int bitSize = getBlockBitSize(header, block);
+        int intIndex = getHeaderLength() + INTS_PER_BLOCK_BIT * header[blockCount + block];
+
+        if (bitSize == 0) {
+            for (int i = start; i < start + blockLength; i++) array[i] = base;
+            return;
+        }
+
+        if (blockLength == BLOCK_SIZE) {
+            // The kernels unpack from an array: a block kept in a storage is copied first
+            int[] compressedArray;
+            if (getCompressedStorage() == null) {
+                compressedArray = getCompressedArray();
+            } else {
+                compressedArray = BLOCK_BUFFERS.get();
+                copyCompressedInts(intIndex, intIndex + INTS_PER_BLOCK_BIT * bitSize, compressedArray, 0);
+                intIndex = 0;
+            }
+
+            for (int i = 0; i < BLOCK_SIZE; i += BitPackingKernels.GROUP_SIZE) {
+                BitPackingKernels.unpack(bitSize, compressedArray, intIndex, array, start + i);
+                intIndex += bitSize;
+            }
+        } else {
+            readCompressedBits((long) intIndex * 32, bitSize, array, start, blockLength);
+        }
+
+        // Adds the base of the block back to its values
+        for (int i = start; i < start + blockLength; i++) array[i] += base;
+    }
+
+    @Override
+    protected void decodeRangeValues(int from, int to, int[] dest, int destOff) {
+        int[] header = getHeader();
+        int headerLength = getHeaderLength();
+
+        for (int block = from / BLOCK_SIZE; block * BLOCK_SIZE < to; block++) {
+            int blockStart = block * BLOCK_SIZE;
+            int blockEnd = Math.min(blockStart + BLOCK_SIZE, getOriginalLength());
+            int start = Math.max(from, blockStart);
+            int end = Math.min(to, blockEnd);
+
+            if (start == blockStart && end == blockEnd) {
+                // The whole block is decompressed directly into the output array
+                decompressBlock(header, block, dest, destOff + blockStart - from);
+                continue;
+            }
+
+            // Only the first and the last block may be partially decompressed, reading only the values of the range
+            int base = header[block];
+            int bitSize = getBlockBitSize(header, block);
+            int destStart = destOff + start - from;
+            if (bitSize == 0) {
+                for (int i = destStart; i < destStart + end - start; i++) dest[i] = base;
+                continue;
+            }
+
+            long blockPosition = (long) (headerLength + INTS_PER_BLOCK_BIT * header[blockCount + block]) * 32;
+            readCompressedBits(blockPosition + (long) (start - blockStart) * bitSize, bitSize, dest, destStart,
+                    end - start);
+            for (int i = destStart; i < destStart + end - start; i++) dest[i] += base;
+        }
+    }
+
+    @Override
+    protected IntCursor createCursor(int from, int to) {
+        int[] header = getHeader();
+
+        // Decompresses one block at a time
+        return new BufferedIntCursor(from, to, BLOCK_SIZE) {
+            @Override
+            protected int fill(int position, int[] buffer) {
+                int block = position / BLOCK_SIZE;
+                decompressBlock(header, block, buffer, 0);
+
+                // Only the first block may be read from its middle
+                int indexInBlock = position % BLOCK_SIZE;
+                int count = Math.min(BLOCK_SIZE - indexInBlock, end() - position);
+                if (indexInBlock != 0) {
+                    System.arraycopy(buffer, indexInBlock, buffer, 0, count);
+                }
+                return count;
+            }
+        };
+    }
+
+    @Override
+    protected int indexOfValue(int value) {
+        return searchBlocks(value, false);
+    }
+
+    @Override
+    protected int countValue(int value) {
+        return searchBlocks(value, true);
+    }
+
+    /**
+     * Searches a value block by block. A block is skipped using only its header when the value is outside of its
+     * range [base, base + 2^bitSize), else its values minus the base are compared with the value minus the base.
+     *
+     * @param value the value to search
+     * @param count if all occurrences are counted, instead of returning the first one
+     * @return the number of occurrences of the value if count is true, else the index of its first occurrence (or -1)
+     */
+    private int searchBlocks(int value, boolean count) {
+        int[] header = getHeader();
+        int headerLength = getHeaderLength();
+        int occurrences = 0;
+
+        for (int block = 0; block < blockCount; block++) {
+            int base = header[block];
+            int bitSize = getBlockBitSize(header, block);
+            int blockLength = Math.min(BLOCK_SIZE, getOriginalLength() - block * BLOCK_SIZE);
+
+            // The difference is read as an unsigned integer, like the values of the block
+            int key = value - base;
+            if (bitSize < 32 && (key >>> bitSize) != 0) continue;
+
+            if (bitSize == 0) {
+                // All values of the block are equal to the base
+                if (!count) return block * BLOCK_SIZE;
+                occurrences += blockLength;
+                continue;
+            }
+
+            long blockPosition = 32L * (headerLength + INTS_PER_BLOCK_BIT * header[blockCount + block]);
+            BitReader reader = createBitReader(blockPosition);
+            for (int i = 0; i < blockLength; i++) {
+                if (reader.read(bitSize) == key) {
+                    if (!count) return block * BLOCK_SIZE + i;
+                    occurrences++;
+                }
+            }
+        }
+
+        return count ? occurrences : -1;
+    }
+
+    @Override
+    protected long sumValues() {
+        int[] header = getHeader();
+        int[] blockValues = new int[BLOCK_SIZE];
+        long sum = 0;
+
+        for (int block = 0; block < blockCount; block++) {
+            int blockLength = Math.min(BLOCK_SIZE, getOriginalLength() - block * BLOCK_SIZE);
+            if (getBlockBitSize(header, block) == 0) {
+                // All values of the block are equal to the base
+                sum += (long) header[block] * blockLength;
+                continue;
+            }
+
+            decompressBlock(header, block, blockValues, 0);
+            for (int i = 0; i < blockLength; i++) sum += blockValues[i];
+        }
+        return sum;
+    }
+
+    /**
+     * The base of each block is the smallest value of the block: only the headers are read.
+     */
+    @Override
+    protected int minValue() {
+        int[] header = getHeader();
+        int min = Integer.MAX_VALUE;
+        for (int block = 0; block < blockCount; block++) {
+            min = Math.min(min, header[block]);
+        }
+        return min;
+    }
+
+    /**
+     * Only the blocks which may contain a value larger than the current maximum are decompressed, according to their
+     * base and their bit size.
+     */
+    @Override
+    protected int maxValue() {
+        int[] header = getHeader();
+        int[] blockValues = new int[BLOCK_SIZE];
+        int max = Integer.MIN_VALUE;
+
+        for (int block = 0; block < blockCount; block++) {
+            int base = header[block];
+            int bitSize = getBlockBitSize(header, block);
+            if (bitSize == 0 || getBlockUpperBound(base, bitSize) <= max) {
+                max = Math.max(max, base);
+                continue;
+            }
+
+            int blockLength = Math.min(BLOCK_SIZE, getOriginalLength() - block * BLOCK_SIZE);
+            decompressBlock(header, block, blockValues, 0);
+            for (int i = 0; i < blockLength; i++) max = Math.max(max, blockValues[i]);
+        }
+        return max;
+    }
+
+    /**
+     * The blocks entirely outside of the range are skipped and the blocks entirely inside of it are counted, according
+     * to their base and their bit size, without being decompressed.
+     */
+    @Override
+    protected int countInRangeValues(int lo, int hi) {
+        int[] header = getHeader();
+        int[] blockValues = new int[BLOCK_SIZE];
+        int occurrences = 0;
+
+        for (int block = 0; block < blockCount; block++) {
+            int base = header[block];
+            long upperBound = getBlockUpperBound(base, getBlockBitSize(header, block));
+            int blockLength = Math.min(BLOCK_SIZE, getOriginalLength() - block * BLOCK_SIZE);
+
+            if (upperBound < lo || base >= hi) continue;
+            if (base >= lo && upperBound < hi) {
+                occurrences += blockLength;
+                continue;
+            }
+
+            decompressBlock(header, block, blockValues, 0);
+            for (int i = 0; i < blockLength; i++) {
+                if (blockValues[i] >= lo && blockValues[i] < hi) occurrences++;
+            }
+        }
+        return occurrences;
+    }
+
+    /**
+     * The blocks entirely outside of the range are skipped and the blocks entirely inside of it are selected,
+     * according to their base and their bit size, without being decompressed.
+     */
+    @Override
+    protected void filterValues(int lo, int hi, BitSet selection) {
+        int[] header = getHeader();
+        int[] blockValues = new int[BLOCK_SIZE];
+
+        for (int block = 0; block < blockCount; block++) {
+            int base = header[block];
+            long upperBound = getBlockUpperBound(base, getBlockBitSize(header, block));
+            int blockStart = block * BLOCK_SIZE;
+            int blockLength = Math.min(BLOCK_SIZE, getOriginalLength() - blockStart);
+
+            if (upperBound < lo || base >= hi) continue;
+            if (base >= lo && upperBound < hi) {
+                selection.set(blockStart, blockStart + blockLength);
+                continue;
+            }
+
+            decompressBlock(header, block, blockValues, 0);
+            for (int i = 0; i < blockLength; i++) {
+                if (blockValues[i] >= lo && blockValues[i] < hi) selection.set(blockStart + i);
+            }
+        }
+    }
+
+    @Override
+    public int get(int i) {
+        if (i < 0 || i >= getOriginalLength()) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+
+        int[] header = getHeader();
+
+        // Reads the header of the block containing the i-th value
+        int block = i / BLOCK_SIZE;
+        int base = header[block];
+        int bitSize = getBlockBitSize(header, block);
+
+        if (bitSize == 0) {
+            return base;
+        }
+
+        long blockStart = (long) (getHeaderLength() + INTS_PER_BLOCK_BIT * header[blockCount + block]) * 32;
+        return base + readCompressedBits(blockStart + (long) (i % BLOCK_SIZE) * bitSize, bitSize);
+    }
+
+    @Override
+    protected void restore(int[] compressedArray, int originalLength, int bitSize, int[] layoutParameters) {
+        super.restore(compressedArray, originalLength, bitSize, layoutParameters);
+        blockCount = (originalLength + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        storageHeader = null;
+    }
+
+    @Override
+    protected void restore(WordStorage compressedStorage, int compressedLength, int originalLength, int bitSize,
+                           int[] layoutParameters) {
+        super.restore(compressedStorage, compressedLength, originalLength, bitSize, layoutParameters);
+        blockCount = (originalLength + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        storageHeader = new int[getHeaderLength()];
+        copyCompressedInts(0, storageHeader.length, storageHeader, 0);
+    }
+
+    /**
+     * @return The headers of the blocks, at the beginning of the compressed array, or their copy when the compressed
+     * data is kept in a storage
+     */
+    private int[] getHeader() {
+        return getCompressedStorage() == null ? getCompressedArray() : storageHeader;
+    }
+
+    /**
+     * @return Number of integers at the beginning of the compressed array used by the headers of the blocks
+     */
+    private int getHeaderLength() {
+        return 2 * blockCount + 1;
+    }
+
+    /**
+     * @param header the headers of the blocks, as returned by {@link #getHeader()}
+     * @param block index of the block
+     * @return Number of bits the values of the block are coded on
+     */
+    private int getBlockBitSize(int[] header, int block) {
+        return header[blockCount + block + 1] - header[blockCount + block];
+    }
+
+    /**
+     * @param base base of the block
+     * @param bitSize number of bits the values of the block are coded on
+     * @return Largest value the block may contain, according to its base and its bit size
+     */
+    private static long getBlockUpperBound(int base, int bitSize) {
+        return base + (1L << bitSize) - 1;
+    }
+}
@@ -0,0 +1,380 @@
+package com.dcarriba.bitpacking.versions;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.BitReader;
+import com.dcarriba.bitpacking.BufferedIntCursor;
+import com.dcarriba.bitpacking.IntCursor;
+import com.dcarriba.bitpacking.kernels.BitPackingKernels;
+import com.dcarriba.bitpacking.storage.WordStorage;
+
+/**
+ * {@link BitPackingWithDeltaEncoding} is a {@link BitPacking} implementation for sorted and near-sorted arrays, where
+ * the differences (deltas) between consecutive values are compressed instead of the values themselves.
+ * <p>
+ * The array is split into blocks of {@link #BLOCK_SIZE} values. Each block keeps its first value as an absolute
+ * checkpoint, and the deltas of the block are coded relatively to the smallest delta of the block (so near-sorted
+ * arrays with a few negative deltas are still compressed well). The compressed array is made of:
+ * </p>
+ * <ul>
+ *     <li>the first value of each block,</li>
+ *     <li>the smallest delta of each block,</li>
+ *     <li>for each block, the sum of the bit sizes of all previous blocks (plus this sum for all blocks at the end),
+ *     which gives both the bit size of each block and the position of its deltas,</li>
+ *     <li>the deltas of each block minus its smallest delta, packed like {@link BitPackingWithOverlap}. The first
+ *     delta of each block is always 0, so a complete block of 128 deltas coded on w bits fills exactly 4 * w
+ *     integers.</li>
+ * </ul>
+ * <p>
+ * The i-th value is found by adding at most 127 deltas to the checkpoint of its block, instead of adding all
+ * deltas from the beginning of the array.
+ * </p>
+ * <p>
+ * When the compressed data is kept in a storage (e.g. a mapped file), the headers are copied once on the heap, and the
+ * deltas of each block are copied before being unpacked.
+ * </p>
+ * <p>
+ * In signed mode no zigzag encoding is needed: deltas are computed modulo 2^32 and coded relatively to the smallest
+ * delta of their block, so they are always read as unsigned integers.
+ * </p>
+ */
+public class BitPackingWithDeltaEncoding extends BitPacking {
+    /** Number of values inside each block */
+    public static final int BLOCK_SIZE = 128;
+
+    /** Number of integers used by a complete block for each bit of its bit size */
+    private static final int INTS_PER_BLOCK_BIT = BLOCK_SIZE / 32;
+
+    /** Buffers receiving the deltas of a block copied from a storage, reused by each thread */
+    private static final ThreadLocal<int[]> BLOCK_BUFFERS = ThreadLocal.withInitial(() -> new int[BLOCK_SIZE]);
+
+    /** Number of blocks */
+    private int blockCount;
+    /** Copy of the headers of the blocks when the compressed data is kept in a storage, else null */
+    private int[] storageHeader;
+
+    /**
+     * Constructor for a {@link BitPackingWithDeltaEncoding} compressing only non-negative integers
+     */
+    public BitPackingWithDeltaEncoding() {
+        super();
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithDeltaEncoding}
+     *
+     * @param signed if negative integers can be compressed
+     */
+    public BitPackingWithDeltaEncoding(boolean signed) {
+        super(signed);
+    }
+
+    @Override
+    public void compress(int[] array) {
+        if (array == null || array.length == 0) {
+            throw new IllegalArgumentException("The array can't be null or empty.");
+        }
+
+        // The layout is computed in local variables: an invalid array leaves the previous compressed data untouched
+        int blockCount = (array.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int headerLength = 3 * blockCount + 1;
+
+        int[] minDeltas = new int[blockCount];
+        int[] cumulativeBitSizes = new int[blockCount + 1];
+        int maxBitSize = 0;
+
+        // Pass 1: finds the smallest delta and the bit size of each block
+        for (int block = 0; block < blockCount; block++) {
+            int start = block * BLOCK_SIZE;
+            int end = Math.min(start + BLOCK_SIZE, array.length);
+
+            if (array[start] < 0 && !isSigned()) throw new IllegalArgumentException("Values can't be negative.");
+
+            int minDelta = 0;
+            int maxDelta = 0;
+            if (end - start > 1) {
+                minDelta = Integer.MAX_VALUE;
+                maxDelta = Integer.MIN_VALUE;
+                for (int i = start + 1; i < end; i++) {
+                    if (array[i] < 0 && !isSigned()) throw new IllegalArgumentException("Values can't be negative.");
+                    int delta = array[i] - array[i - 1];
+                    minDelta = Math.min(minDelta, delta);
+                    maxDelta = Math.max(maxDelta, delta);
+                }
+            }
+
+            // The difference between two deltas is read as an unsigned integer, it may need all 32 bits
+            int bitSize = 32 - Integer.numberOfLeadingZeros(maxDelta - minDelta);
+
+            minDeltas[block] = minDelta;
+            cumulativeBitSizes[block + 1] = cumulativeBitSizes[block] + bitSize;
+            maxBitSize = Math.max(maxBitSize, bitSize);
+        }
+
+        // Only the last block may be incomplete, and thus need less integers
+        int lastBlockLength = array.length - (blockCount - 1) * BLOCK_SIZE;
+        int lastBlockBitSize = cumulativeBitSizes[blockCount] - cumulativeBitSizes[blockCount - 1];
+        int compressedArrayLength = headerLength
+                + INTS_PER_BLOCK_BIT * cumulativeBitSizes[blockCount - 1]
+                + (int) (((long) lastBlockLength * lastBlockBitSize + 31) / 32);
+
+        int[] compressedArray = allocateCompressedArray(compressedArrayLength);
+        System.arraycopy(minDeltas, 0, compressedArray, blockCount, blockCount);
+        System.arraycopy(cumulativeBitSizes, 0, compressedArray, 2 * blockCount, blockCount + 1);
+
+        // Pass 2: stores the checkpoint of each block and compresses its deltas
+        int[] blockDeltas = new int[BLOCK_SIZE];
+        for (int block = 0; block < blockCount; block++) {
+            int start = block * BLOCK_SIZE;
+            compressedArray[block] = array[start];
+
+            int bitSize = cumulativeBitSizes[block + 1] - cumulativeBitSizes[block];
+            if (bitSize == 0) continue;
+
+            int length = Math.min(BLOCK_SIZE, array.length - start);
+            int minDelta = minDeltas[block];
+            int intIndex = headerLength + INTS_PER_BLOCK_BIT * cumulativeBitSizes[block];
+
+            blockDeltas[0] = 0;
+            for (int i = 1; i < length; i++) {
+                blockDeltas[i] = array[start + i] - array[start + i - 1] - minDelta;
+            }
+
+            if (length == BLOCK_SIZE) {
+                for (int i = 0; i < BLOCK_SIZE; i += BitPackingKernels.GROUP_SIZE) {
+                    BitPackingKernels.pack(bitSize, blockDeltas, i, compressedArray, intIndex);
+                    intIndex += bitSize;
+                }
+            } else {
+                for (int i = 1; i < length; i++) {
+                    writeBits(compressedArray, (long) intIndex * 32 + (long) i * bitSize, blockDeltas[i], bitSize);
+                }
+            }
+        }
+
+        this.blockCount = blockCount;
+        storageHeader = null;
+        setOriginalLength(array.length);
+        setBitSize(maxBitSize);
+        setCompressedArray(compressedArray, compressedArrayLength);
+    }
+
+    @Override
+    protected void decompressValues(int[] array, int offset) {
+        int[] header = getHeader();
+
+        for (int block = 0; block < blockCount; block++) {
+            decompressBlock(header, block, array, offset + block * BLOCK_SIZE);
+        }
+    }
+
+    /**
+     * Decompresses all values of a block into the array given as parameter
+     *
+     * @param header the headers of the blocks, as returned by {@link #getHeader()}
+     * @param block index of the block
+     * @param array array receiving the values of the block
+     * @param start index of the array at which the first value of the block is placed
+     */
+    private void decompressBlock(int[] header, int block, int[] array, int start) {
+        int blockLength = Math.min(BLOCK_SIZE, getOriginalLength() - block * BLOCK_SIZE);
+        int minDelta = header[blockCount + block];
+        int bitSize = getBlockBitSize(header, block);
+        int intIndex = getHeaderLength() + INTS_PER_BLOCK_BIT * header[2 * blockCount + block];
+
+        // Unpacks the deltas of the block directly into the output array
+        if (bitSize == 0) {
+            for (int i = start; i < start + blockLength; i++) array[i] = 0;
+        } else if (blockLength == BLOCK_SIZE) {
+            // The kernels unpack from an array: a block kept in a storage is copied first
+            int[] compressedArray;
+            if (getCompressedStorage() == null) {
+                compressedArray = getCompressedArray();
+            } else {
+                compressedArray = BLOCK_BUFFERS.get();
+                copyCompressedInts(intIndex, intIndex + INTS_PER_BLOCK_BIT * bitSize, compressedArray, 0);
+                intIndex = 0;
+            }
+
+            for (int i = 0; i < BLOCK_SIZE; i += BitPackingKernels.GROUP_SIZE) {
+                BitPackingKernels.unpack(bitSize, compressedArray, intIndex, array, start + i);
+                intIndex += bitSize;
+            }
+        } else {
+            readCompressedBits((long) intIndex * 32, bitSize, array, start, blockLength);
+        }
+
+        // Replaces the deltas by the values, starting from the checkpoint of the block
+        array[start] = header[block];
+        for (int i = start + 1; i < start + blockLength; i++) {
+            array[i] += array[i - 1] + minDelta;
+        }
+    }
+
+    @Override
+    protected void decodeRangeValues(int from, int to, int[] dest, int destOff) {
+        int[] header = getHeader();
+        int[] blockValues = null;
+
+        for (int block = from / BLOCK_SIZE; block * BLOCK_SIZE < to; block++) {
+            int blockStart = block * BLOCK_SIZE;
+            int blockEnd = Math.min(blockStart + BLOCK_SIZE, getOriginalLength());
+            int start = Math.max(from, blockStart);
+            int end = Math.min(to, blockEnd);
+
+            if (start == blockStart && end == blockEnd) {
+                // The whole block is decompressed directly into the output array
+                decompressBlock(header, block, dest, destOff + blockStart - from);
+            } else {
+                // Only the first and the last block may be partially decompressed
+                if (blockValues == null) blockValues = new int[BLOCK_SIZE];
+                decompressBlock(header, block, blockValues, 0);
+                System.arraycopy(blockValues, start - blockStart, dest, destOff + start - from, end - start);
+            }
+        }
+    }
+
+    @Override
+    protected IntCursor createCursor(int from, int to) {
+        int[] header = getHeader();
+
+        // Decompresses one block at a time, so each delta is only added once
+        return new BufferedIntCursor(from, to, BLOCK_SIZE) {
+            @Override
+            protected int fill(int position, int[] buffer) {
+                int block = position / BLOCK_SIZE;
+                decompressBlock(header, block, buffer, 0);
+
+                // Only the first block may be read from its middle
+                int indexInBlock = position % BLOCK_SIZE;
+                int count = Math.min(BLOCK_SIZE - indexInBlock, end() - position);
+                if (indexInBlock != 0) {
+                    System.arraycopy(buffer, indexInBlock, buffer, 0, count);
+                }
+                return count;
+            }
+        };
+    }
+
+    @Override
+    protected void gatherSortedValues(int[] sortedIndices, int[] out) {
+        int[] header = getHeader();
+        int headerLength = getHeaderLength();
+
+        // Inside a block, each value continues from the previous one instead of adding the deltas from the checkpoint
+        int currentBlock = -1;
+        int currentIndex = 0;
+        int value = 0;
+        int minDelta = 0;
+        int bitSize = 0;
+        long deltasPosition = 0;
+        for (int k = 0; k < sortedIndices.length; k++) {
+            int i = sortedIndices[k];
+            int block = i / BLOCK_SIZE;
+            int indexInBlock = i % BLOCK_SIZE;
+
+            if (block != currentBlock) {
+                currentBlock = block;
+                currentIndex = 0;
+                value = header[block];
+                minDelta = header[blockCount + block];
+                bitSize = getBlockBitSize(header, block);
+                deltasPosition = 32L * (headerLength + INTS_PER_BLOCK_BIT * header[2 * blockCount + block]);
+            }
+
+            if (indexInBlock > currentIndex) {
+                value += (indexInBlock - currentIndex) * minDelta;
+                if (bitSize != 0) {
+                    value += sumBits(deltasPosition + (long) (currentIndex + 1) * bitSize, bitSize,
+                            indexInBlock - currentIndex);
+                }
+                currentIndex = indexInBlock;
+            }
+
+            out[k] = value;
+        }
+    }
+
+    @Override
+    public int get(int i) {
+        if (i < 0 || i >= getOriginalLength()) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+
+        int[] header = getHeader();
+
+        // Reads the header of the block containing the i-th value
+        int block = i / BLOCK_SIZE;
+        int indexInBlock = i % BLOCK_SIZE;
+        int value = header[block] + indexInBlock * header[blockCount + block];
+        int bitSize = getBlockBitSize(header, block);
+
+        if (bitSize == 0 || indexInBlock == 0) {
+            return value;
+        }
+
+        // Adds the deltas of the block up to the i-th value (the first delta of each block is always 0)
+        long bitPosition = (long) (getHeaderLength() + INTS_PER_BLOCK_BIT * header[2 * blockCount + block]) * 32
+                + bitSize;
+        return value + sumBits(bitPosition, bitSize, indexInBlock);
+    }
+
+    /**
+     * Sums count consecutive values of bitCount bits each, starting at the given bit position of the compressed data.
+     * The compressed data is read sequentially through the 64-bit buffer of a {@link BitReader}.
+     *
+     * @param bitPosition position (in bits) of the first value
+     * @param bitCount number of bits of each value (between 1 and 32)
+     * @param count number of values to sum (at least 1)
+     * @return the sum of the values (modulo 2^32)
+     */
+    private int sumBits(long bitPosition, int bitCount, int count) {
+        BitReader reader = createBitReader(bitPosition);
+
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += reader.read(bitCount);
+        }
+
+        return sum;
+    }
+
+    @Override
+    protected void restore(int[] compressedArray, int originalLength, int bitSize, int[] layoutParameters) {
+        super.restore(compressedArray, originalLength, bitSize, layoutParameters);
+        blockCount = (originalLength + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        storageHeader = null;
+    }
+
+    @Override
+    protected void restore(WordStorage compressedStorage, int compressedLength, int originalLength, int bitSize,
+                           int[] layoutParameters) {
+        super.restore(compressedStorage, compressedLength, originalLength, bitSize, layoutParameters);
+        blockCount = (originalLength + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        storageHeader = new int[getHeaderLength()];
+        copyCompressedInts(0, storageHeader.length, storageHeader, 0);
+    }
+
+    /**
+     * @return The headers of the blocks, at the beginning of the compressed array, or their copy when the compressed
+     * data is kept in a storage
+     */
+    private int[] getHeader() {
+        return getCompressedStorage() == null ? getCompressedArray() : storageHeader;
+    }
+
+    /**
+     * @return Number of integers at the beginning of the compressed array used by the headers of the blocks
+     */
+    private int getHeaderLength() {
+        return 3 * blockCount + 1;
+    }
+
+    /**
+     * @param header the headers of the blocks, as returned by {@link #getHeader()}
+     * @param block index of the block
+     * @return Number of bits the deltas of the block are coded on
+     */
+    private int getBlockBitSize(int[] header, int block) {
+        return header[2 * blockCount + block + 1] - header[2 * blockCount + block];
+    }
+}
@@ -0,0 +1,318 @@
+package com.dcarriba.bitpacking.versions;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.BufferedIntCursor;
+import com.dcarriba.bitpacking.IntCursor;
+import com.dcarriba.bitpacking.simd.InterleavedPacker;
+import com.dcarriba.bitpacking.simd.InterleavedPackers;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * {@link BitPackingWithInterleavedLanes} is a {@link BitPacking} implementation where all values are coded on the same
+ * number of bits (like {@link BitPackingWithOverlap}), but complete blocks of {@link InterleavedPacker#BLOCK_SIZE}
+ * values are packed with the lane interleaved layout of {@link InterleavedPacker}, so that they can be compressed and
+ * decompressed with SIMD instructions.
+ * <p>
+ * The Vector API packer is used when the {@code jdk.incubator.vector} module is available, else the scalar packer
+ * (both produce the same compressed array). The last values (if the array length isn't a multiple of 128) are packed
+ * after the blocks, like {@link BitPackingWithOverlap}.
+ * </p>
+ * <p>
+ * When the compressed data is kept in a storage (e.g. a mapped file), each block is copied before being unpacked.
+ * </p>
+ * <p>
+ * In parallel mode, large arrays are split into chunks of {@link ParallelRanges#CHUNK_SIZE} values, which are
+ * compressed (and decompressed) by the tasks of a {@link ForkJoinPool} into disjoint integers of the compressed array.
+ * </p>
+ */
+public class BitPackingWithInterleavedLanes extends BitPacking {
+    /** Buffers receiving the integers of a block copied from a storage, reused by each thread */
+    private static final ThreadLocal<int[]> BLOCK_BUFFERS =
+            ThreadLocal.withInitial(() -> new int[InterleavedPacker.LANES * 32]);
+
+    /** Packer used for the complete blocks */
+    private final InterleavedPacker packer;
+    /** Pool running the compression and decompression tasks, or null to run them sequentially */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor for a {@link BitPackingWithInterleavedLanes} compressing only non-negative integers
+     */
+    public BitPackingWithInterleavedLanes() {
+        this(false);
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithInterleavedLanes}, using the fastest available packer
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     */
+    public BitPackingWithInterleavedLanes(boolean signed) {
+        this(signed, InterleavedPackers.fastest());
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithInterleavedLanes}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     * @param packer packer used for the complete blocks
+     */
+    public BitPackingWithInterleavedLanes(boolean signed, InterleavedPacker packer) {
+        this(signed, packer, null);
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithInterleavedLanes}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     * @param packer packer used for the complete blocks
+     * @param pool pool running the compression and decompression tasks, or null to run them sequentially
+     */
+    public BitPackingWithInterleavedLanes(boolean signed, InterleavedPacker packer, ForkJoinPool pool) {
+        super(signed);
+        if (packer == null) {
+            throw new IllegalArgumentException("packer can't be null");
+        }
+        this.packer = packer;
+        this.pool = pool;
+    }
+
+    /**
+     * @return Packer used for the complete blocks
+     */
+    public InterleavedPacker getPacker() {
+        return packer;
+    }
+
+    @Override
+    public void compress(int[] array) {
+        if (array == null || array.length == 0) {
+            throw new IllegalArgumentException("The array can't be null or empty.");
+        }
+
+        // Number of bits needed to represent the largest value of the array
+        int bitSize = ParallelRanges.max(pool, array.length, (from, to) -> calculateBitSize(array, from, to));
+
+        setBitSize(bitSize);
+        setOriginalLength(array.length);
+
+        // Number of 32-bit integers needed for all compressed values
+        int compressedArrayLength = (int) (((long) array.length * bitSize + 31) / 32);
+
+        int[] compressedArray = allocateCompressedArray(compressedArrayLength);
+
+        // Compresses the array chunk by chunk (the chunks are compressed in parallel in parallel mode)
+        ParallelRanges.forEach(pool, array.length,
+                (from, to) -> compressRange(array, from, to, compressedArray, bitSize));
+
+        setCompressedArray(compressedArray, compressedArrayLength);
+    }
+
+    /**
+     * Compresses a range of the array, starting at the beginning of a block of 128 values
+     *
+     * @param array array to be compressed
+     * @param from index of the first value of the range (a multiple of 128)
+     * @param to index after the last value of the range
+     * @param compressedArray array receiving the compressed values
+     * @param bitSize number of bits each value is coded on
+     */
+    private void compressRange(int[] array, int from, int to, int[] compressedArray, int bitSize) {
+        // Compresses the complete blocks with the packer. In signed mode, the values are first zigzag encoded
+        int blocksEnd = to - (to - from) % InterleavedPacker.BLOCK_SIZE;
+        int[] encodedBlock = isSigned() ? new int[InterleavedPacker.BLOCK_SIZE] : null;
+        int intIndex = from / InterleavedPacker.BLOCK_SIZE * InterleavedPacker.LANES * bitSize;
+        for (int i = from; i < blocksEnd; i += InterleavedPacker.BLOCK_SIZE) {
+            if (isSigned()) {
+                for (int j = 0; j < InterleavedPacker.BLOCK_SIZE; j++) encodedBlock[j] = encode(array[i + j]);
+                packer.pack(bitSize, encodedBlock, 0, compressedArray, intIndex);
+            } else {
+                packer.pack(bitSize, array, i, compressedArray, intIndex);
+            }
+            intIndex += InterleavedPacker.LANES * bitSize;
+        }
+
+        // Compresses the remaining values one by one
+        for (int i = blocksEnd; i < to; i++) {
+            writeBits(compressedArray, (long) i * bitSize, encode(array[i]), bitSize);
+        }
+    }
+
+    @Override
+    protected void decompressValues(int[] array, int offset) {
+        ParallelRanges.forEach(pool, getOriginalLength(), (from, to) -> decompressRange(array, offset, from, to));
+    }
+
+    /**
+     * Decompresses a range of the values, starting at the beginning of a block of 128 values
+     *
+     * @param array array receiving the decompressed values
+     * @param offset index of the array at which the first value of the compressed array is placed
+     * @param from index of the first value of the range (a multiple of 128)
+     * @param to index after the last value of the range
+     */
+    private void decompressRange(int[] array, int offset, int from, int to) {
+        int bitSize = getBitSize();
+
+        // Decompresses the complete blocks with the packer
+        int blocksEnd = to - (to - from) % InterleavedPacker.BLOCK_SIZE;
+        int intIndex = from / InterleavedPacker.BLOCK_SIZE * InterleavedPacker.LANES * bitSize;
+        for (int i = from; i < blocksEnd; i += InterleavedPacker.BLOCK_SIZE) {
+            unpackBlock(bitSize, intIndex, array, offset + i);
+            intIndex += InterleavedPacker.LANES * bitSize;
+        }
+
+        // Decompresses the remaining values, which start at the beginning of an integer
+        readCompressedBits((long) intIndex * 32, bitSize, array, offset + blocksEnd, to - blocksEnd);
+
+        if (isSigned()) {
+            for (int i = offset + from; i < offset + to; i++) array[i] = decode(array[i]);
+        }
+    }
+
+    @Override
+    protected void decodeRangeValues(int from, int to, int[] dest, int destOff) {
+        int bitSize = getBitSize();
+        int blocksEnd = getOriginalLength() - getOriginalLength() % InterleavedPacker.BLOCK_SIZE;
+        int[] blockValues = null;
+
+        // Unpacks the blocks of the range with the packer
+        int i = from;
+        while (i < Math.min(to, blocksEnd)) {
+            int blockStart = i - i % InterleavedPacker.BLOCK_SIZE;
+            int end = Math.min(to, blockStart + InterleavedPacker.BLOCK_SIZE);
+            int intIndex = blockStart / InterleavedPacker.BLOCK_SIZE * InterleavedPacker.LANES * bitSize;
+
+            if (i == blockStart && end - i == InterleavedPacker.BLOCK_SIZE) {
+                unpackBlock(bitSize, intIndex, dest, destOff + i - from);
+            } else if (end - i < InterleavedPacker.VALUES_PER_LANE) {
+                // A few values of a block are read one by one, instead of unpacking the whole block
+                for (int k = i; k < end; k++) dest[destOff + k - from] = readValue(bitSize, k);
+            } else {
+                // Only the first and the last block may be partially unpacked
+                if (blockValues == null) blockValues = new int[InterleavedPacker.BLOCK_SIZE];
+                unpackBlock(bitSize, intIndex, blockValues, 0);
+                System.arraycopy(blockValues, i - blockStart, dest, destOff + i - from, end - i);
+            }
+            i = end;
+        }
+
+        // Decompresses the remaining values like BitPackingWithOverlap
+        readCompressedBits((long) i * bitSize, bitSize, dest, destOff + i - from, to - i);
+
+        if (isSigned()) {
+            for (int k = destOff; k < destOff + to - from; k++) dest[k] = decode(dest[k]);
+        }
+    }
+
+    @Override
+    protected IntCursor createCursor(int from, int to) {
+        int bitSize = getBitSize();
+        int blocksEnd = getOriginalLength() - getOriginalLength() % InterleavedPacker.BLOCK_SIZE;
+
+        // Unpacks one block at a time with the packer, and the remaining values like BitPackingWithOverlap
+        return new BufferedIntCursor(from, to, InterleavedPacker.BLOCK_SIZE) {
+            @Override
+            protected int fill(int position, int[] buffer) {
+                int count;
+                if (position < blocksEnd) {
+                    int block = position / InterleavedPacker.BLOCK_SIZE;
+                    unpackBlock(bitSize, block * InterleavedPacker.LANES * bitSize, buffer, 0);
+
+                    // Only the first block may be read from its middle
+                    int indexInBlock = position % InterleavedPacker.BLOCK_SIZE;
+                    count = Math.min(InterleavedPacker.BLOCK_SIZE - indexInBlock, end() - position);
+                    if (indexInBlock != 0) {
+                        System.arraycopy(buffer, indexInBlock, buffer, 0, count);
+                    }
+                } else {
+                    count = end() - position;
+                    readCompressedBits((long) position * bitSize, bitSize, buffer, 0, count);
+                }
+
+                if (isSigned()) {
+                    for (int i = 0; i < count; i++) buffer[i] = decode(buffer[i]);
+                }
+                return count;
+            }
+        };
+    }
+
+    /**
+     * Values needing more bits than the bit size can't be found, else the values are decoded window by window
+     */
+    @Override
+    protected int indexOfValue(int value) {
+        return fitsBitSize(value) ? super.indexOfValue(value) : -1;
+    }
+
+    /**
+     * Values needing more bits than the bit size can't be found, else the values are decoded window by window
+     */
+    @Override
+    protected int countValue(int value) {
+        return fitsBitSize(value) ? super.countValue(value) : 0;
+    }
+
+    @Override
+    public int get(int i) {
+        if (i < 0 || i >= getOriginalLength()) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+
+        return decode(readValue(getBitSize(), i));
+    }
+
+    /**
+     * Unpacks a complete block with the packer. The packer reads an array: a block kept in a storage is copied first.
+     *
+     * @param bitSize number of bits each value is coded on
+     * @param intIndex index of the first integer of the block in the compressed data
+     * @param dest array receiving the 128 values of the block
+     * @param destOff index of dest at which the first value is placed
+     */
+    private void unpackBlock(int bitSize, int intIndex, int[] dest, int destOff) {
+        if (getCompressedStorage() == null) {
+            packer.unpack(bitSize, getCompressedArray(), intIndex, dest, destOff);
+        } else {
+            int[] blockInts = BLOCK_BUFFERS.get();
+            copyCompressedInts(intIndex, intIndex + InterleavedPacker.LANES * bitSize, blockInts, 0);
+            packer.unpack(bitSize, blockInts, 0, dest, destOff);
+        }
+    }
+
+    /**
+     * Reads the i-th packed value (before the zigzag decoding)
+     *
+     * @param bitSize number of bits each value is coded on
+     * @param i index of the value
+     * @return the packed value
+     */
+    private int readValue(int bitSize, int i) {
+        int block = i / InterleavedPacker.BLOCK_SIZE;
+        int blocksEnd = getOriginalLength() - getOriginalLength() % InterleavedPacker.BLOCK_SIZE;
+
+        // The remaining values are stored like BitPackingWithOverlap
+        if (i >= blocksEnd) {
+            return readCompressedBits((long) i * bitSize, bitSize);
+        }
+
+        // Finds the lane of the value, and its position inside the lane
+        int indexInBlock = i % InterleavedPacker.BLOCK_SIZE;
+        int lane = indexInBlock % InterleavedPacker.LANES;
+        int bitPosition = (indexInBlock / InterleavedPacker.LANES) * bitSize;
+        int bitOffset = bitPosition & 31;
+        int intIndex = block * InterleavedPacker.LANES * bitSize + (bitPosition >>> 5) * InterleavedPacker.LANES + lane;
+
+        int mask = (int) (-1L >>> (64 - bitSize));
+        int end = bitOffset + bitSize;
+        if (end <= 32) {
+            return (readCompressedInt(intIndex) >>> (32 - end)) & mask;
+        }
+
+        // The value overlaps to the next integer of its lane
+        return ((readCompressedInt(intIndex) << (end - 32))
+                | (readCompressedInt(intIndex + InterleavedPacker.LANES) >>> (64 - end))) & mask;
+    }
+}
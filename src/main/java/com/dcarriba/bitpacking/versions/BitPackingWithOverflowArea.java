@@ -1,9 +1,15 @@
 package com.dcarriba.bitpacking.versions;
 
+import com.dcarriba.bitpacking.AbstractIntCursor;
 import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.BitReader;
+import com.dcarriba.bitpacking.IntCursor;
+import com.dcarriba.bitpacking.storage.StorageType;
+import com.dcarriba.bitpacking.storage.WordStorage;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
 
 /**
  * {@link BitPackingWithOverflowArea} is a {@link BitPacking} compression with overflow areas.
@@ -21,14 +27,93 @@ import java.util.List;
  *  represent the sequence of numbers 1, 2, 3, 1024, 4, 5, 2048 as 0-1, 0-2, 0-3, 1-0, 0-4, 0-5, 1-1, 1024, 2048"
  *  - Jean-Charles Régin
  *  </p>
+ * <p>
+ * To keep a constant time access to any value, every value is coded on a slot of the same size: 1 leading bit
+ * followed by max(k', number of bits of an overflow index) bits. The i-th slot therefore always starts at bit
+ * i * slotBitSize, and the overflow area starts right after the last slot.
+ * </p>
+ * <p>
+ * The number of bits k' of the regular values is chosen from the histogram of the number of bits of all values, so
+ * that the total number of bits (leading bits, regular values, overflow indexes and overflow area) is minimal. If no
+ * overflow area pays off, the values are simply packed on k bits without any leading bit, like
+ * {@link BitPackingWithOverlap}.
+ * </p>
+ * <p>
+ * The compressed data can also be kept off-heap (see {@link StorageType}), in a {@link WordStorage} whose words split
+ * into 32-bit integers give the compressed array. An off-heap storage is released by {@link #close()}.
+ * </p>
  */
 public class BitPackingWithOverflowArea extends BitPacking {
+    /**
+     * Histogram of the number of bits needed by each value, reused by all compressions of a thread so that a
+     * compression loop doesn't allocate it every time
+     */
+    private static final ThreadLocal<int[]> BIT_SIZE_HISTOGRAMS = ThreadLocal.withInitial(() -> new int[33]);
+
+    /** Where the compressed data is kept: in an int array on the heap, or in an off-heap storage */
+    private final StorageType storageType;
+
     /** New number of bits each regular value will be coded on */
     private int regularValueBitSize;
     /** New number of bits each value inside the overflow area will be coded on */
     private int overflowAreaValueBitSize;
     /** New number of bits each index of overflow values will be coded on */
     private int overflowValueIndexBitSize;
+    /** Number of bits of each slot (1 leading bit followed by a regular value or an overflow index) */
+    private int slotBitSize;
+    /** Number of values inside the overflow area (0 if the values are packed without overflow area) */
+    private int overflowAreaLength;
+    /**
+     * If the overflow values are stored in the same order as their references, each of them being referred to by
+     * exactly one slot (no longer the case once {@link #set(int, int)} has added or released overflow values)
+     */
+    private boolean overflowAreaInOrder;
+
+    /**
+     * Constructor for a {@link BitPackingWithOverflowArea} compressing only non-negative integers
+     */
+    public BitPackingWithOverflowArea() {
+        this(false);
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithOverflowArea}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     */
+    public BitPackingWithOverflowArea(boolean signed) {
+        this(signed, StorageType.HEAP);
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithOverflowArea}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     * @param storageType where the compressed data is kept
+     */
+    public BitPackingWithOverflowArea(boolean signed, StorageType storageType) {
+        super(signed);
+        if (storageType == null) {
+            throw new IllegalArgumentException("storageType can't be null");
+        }
+        this.storageType = storageType;
+    }
+
+    @Override
+    public StorageType getStorageType() {
+        return storageType;
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the compressed data is kept off-heap
+     */
+    @Override
+    public int compress(int[] array, int[] buffer) {
+        if (storageType != StorageType.HEAP) {
+            throw new UnsupportedOperationException("The compressed data is kept off-heap, not in an int buffer");
+        }
+        return super.compress(array, buffer);
+    }
 
     @Override
     public void compress(int[] array) {
@@ -36,257 +121,615 @@ public class BitPackingWithOverflowArea extends BitPacking {
             throw new IllegalArgumentException("The array can't be null or empty.");
         }
 
-        setOriginalLength(array.length);
-
-        int maxValue = 0;
-        for (int value : array) maxValue = Math.max(maxValue, value);
-
-        overflowAreaValueBitSize = calculateBitSize(new int[]{maxValue});
+        compressBuffer(IntBuffer.wrap(array));
+    }
 
-        List<Integer> regularValues = new ArrayList<>();
-        List<Integer> overflowAreaValues = new ArrayList<>();
+    /**
+     * Compresses the remaining values of the buffer directly from the buffer, without copying them into an array.
+     * The position of the buffer isn't changed.
+     *
+     * @param buffer Buffer containing the values to be compressed
+     */
+    @Override
+    public void compressBuffer(IntBuffer buffer) {
+        if (buffer == null || !buffer.hasRemaining()) {
+            throw new IllegalArgumentException("The buffer can't be null or empty.");
+        }
 
-        int maxRegularValueBitSize = 0;
-        for (int value : array) {
-            int valueBitSize = calculateBitSize(new int[]{value});
-            if (valueBitSize < overflowAreaValueBitSize) {
-                maxRegularValueBitSize = Math.max(maxRegularValueBitSize, valueBitSize);
-                regularValues.add(value);
-            } else {
-                overflowAreaValues.add(value);
-            }
+        int start = buffer.position();
+        int length = buffer.remaining();
+
+        // Histogram of the number of bits needed by each value, which also validates all values before any state is
+        // changed
+        int[] bitSizeHistogram = BIT_SIZE_HISTOGRAMS.get();
+        Arrays.fill(bitSizeHistogram, 0);
+        for (int i = start; i < start + length; i++) {
+            int value = buffer.get(i);
+            if (value < 0 && !isSigned()) throw new IllegalArgumentException("Values can't be negative.");
+            bitSizeHistogram[calculateBitSize(encode(value))]++;
         }
 
-        regularValueBitSize = maxRegularValueBitSize;
+        int maxBitSize = 32;
+        while (bitSizeHistogram[maxBitSize] == 0) maxBitSize--;
 
-        overflowValueIndexBitSize = calculateBitSize(new int[]{overflowAreaValues.size() - 1});
+        setOriginalLength(length);
+        overflowAreaInOrder = true;
+        selectBitSizes(bitSizeHistogram, maxBitSize, length);
 
-        int totalBits = array.length                                        // 1 leading bit per value
-                + (regularValues.size() * regularValueBitSize)              // bits for the regular values
-                + (overflowAreaValues.size() * overflowValueIndexBitSize)   // bits for the overflow indices
-                + (overflowAreaValues.size() * overflowAreaValueBitSize);   // bits for the overflow area
+        long totalBits = (long) length * slotBitSize                    // bits for the slots
+                + (long) overflowAreaLength * overflowAreaValueBitSize;       // bits for the overflow area
 
         // Round up to fit the total bits inside 32-bit integers
-        int compressedArrayLength = ((totalBits + 31) / 32);
-
-        int[] compressedArray = new int[compressedArrayLength];
-
-        // Current position in the compressed array (in bits)
-        int currentBit = 0;
+        int compressedArrayLength = (int) ((totalBits + 31) / 32);
+
+        // The compressed data is written either into an int array or into an off-heap storage
+        WordStorage storage = storageType == StorageType.HEAP ? null
+                : storageType.allocate((compressedArrayLength + 1) / 2);
+        int[] compressedArray = storage == null ? allocateCompressedArray(compressedArrayLength) : null;
+
+        if (overflowAreaLength == 0) {
+            // No overflow area, every value is directly packed on slotBitSize bits
+            long slotPosition = 0;
+            for (int i = start; i < start + length; i++) {
+                writeBits(compressedArray, storage, slotPosition, encode(buffer.get(i)), slotBitSize);
+                slotPosition += slotBitSize;
+            }
+        } else {
+            long overflowAreaStart = getOverflowAreaStart();
+
+            // Used to create the overflow references (in form 1-overflowIndex)
+            int overflowIndex = 0;
+
+            // Compresses the regular values, the overflow references and the overflow values in a single pass, since
+            // the position of each slot and of each overflow value is already known
+            long slotPosition = 0;
+            for (int i = start; i < start + length; i++) {
+                int value = encode(buffer.get(i));
+                if (calculateBitSize(value) <= regularValueBitSize) {
+                    // Regular value, the leading 0 is already in place
+                    writeBits(compressedArray, storage, slotPosition + 1, value, slotBitSize - 1);
+                } else {
+                    // Overflow reference with a leading 1, and the overflow value inside the overflow area
+                    writeBits(compressedArray, storage, slotPosition, (1 << (slotBitSize - 1)) | overflowIndex,
+                            slotBitSize);
+                    writeBits(compressedArray, storage,
+                            overflowAreaStart + (long) overflowIndex * overflowAreaValueBitSize, value,
+                            overflowAreaValueBitSize);
+                    overflowIndex++;
+                }
+                slotPosition += slotBitSize;
+            }
+        }
 
-        // Used to create the overflow references later (in form 1-overflowIndex)
-        int overflowIndex = 0;
+        setBitSize(slotBitSize);
+        if (storage == null) {
+            setCompressedArray(compressedArray, compressedArrayLength);
+        } else {
+            setCompressedStorage(storage, compressedArrayLength);
+        }
+    }
 
-        // Pass 1: compresses the regular values and overflow references
-        for (int value : array) {
-            int remainingBits;
+    /**
+     * Writes the lowest bitCount bits of a value into the compressed array, or into the storage if there is one. The
+     * written bits must be 0 before.
+     *
+     * @param compressedArray array in which the value is written, if storage is null
+     * @param storage storage in which the value is written, or null
+     * @param bitPosition position (in bits) at which the value is written
+     * @param value value to write
+     * @param bitCount number of bits to write (between 1 and 32)
+     */
+    private static void writeBits(int[] compressedArray, WordStorage storage, long bitPosition, int value,
+                                  int bitCount) {
+        if (storage == null) {
+            writeBits(compressedArray, bitPosition, value, bitCount);
+        } else {
+            storage.writeBits(bitPosition, value, bitCount);
+        }
+    }
 
-            // Determines which integer of compressedArray the current value should be in
-            int intIndex = currentBit / 32;
+    /**
+     * Chooses the number of bits of the regular values which minimizes the total number of bits of the compressed
+     * array, and sets all bit sizes accordingly.
+     *
+     * @param bitSizeHistogram number of values needing exactly b bits, for every b
+     * @param maxBitSize number of bits needed by the largest value
+     * @param length number of values to compress
+     */
+    private void selectBitSizes(int[] bitSizeHistogram, int maxBitSize, int length) {
+        // Without overflow area, every value is coded on maxBitSize bits
+        long bestTotalBits = (long) length * maxBitSize;
+        int bestRegularValueBitSize = maxBitSize;
+
+        // Number of values needing more bits than the regular bit size, i.e. values in the overflow area
+        int overflowCount = 0;
+        for (int bitSize = maxBitSize - 1; bitSize >= 1; bitSize--) {
+            overflowCount += bitSizeHistogram[bitSize + 1];
+
+            int indexBitSize = calculateBitSize(overflowCount - 1);
+            long totalBits = (long) length * (1 + Math.max(bitSize, indexBitSize))    // bits for the slots
+                    + (long) overflowCount * maxBitSize;                            // bits for the overflow area
+
+            if (totalBits < bestTotalBits) {
+                bestTotalBits = totalBits;
+                bestRegularValueBitSize = bitSize;
+            }
+        }
 
-            // Calculates the bit offset (i.e. the position) for the current value inside the integer
-            int bitOffset = currentBit % 32;
+        regularValueBitSize = bestRegularValueBitSize;
+
+        if (regularValueBitSize == maxBitSize) {
+            // The overflow area doesn't pay off
+            overflowAreaLength = 0;
+            overflowAreaValueBitSize = 0;
+            overflowValueIndexBitSize = 0;
+            slotBitSize = maxBitSize;
+        } else {
+            overflowAreaLength = 0;
+            for (int bitSize = regularValueBitSize + 1; bitSize <= maxBitSize; bitSize++) {
+                overflowAreaLength += bitSizeHistogram[bitSize];
+            }
+            overflowAreaValueBitSize = maxBitSize;
+            overflowValueIndexBitSize = calculateBitSize(overflowAreaLength - 1);
+            slotBitSize = 1 + Math.max(regularValueBitSize, overflowValueIndexBitSize);
+        }
+    }
 
-            // Process regular values
-            if (regularValues.contains(value)) {
-                remainingBits = regularValueBitSize;
+    @Override
+    protected void decompressValues(int[] array, int offset) {
+        decodeRangeValues(0, getOriginalLength(), array, offset);
+    }
 
-                // Update current bit by +1 to leave place for the leading 0
-                currentBit += 1;
+    @Override
+    protected void decodeRangeValues(int from, int to, int[] dest, int destOff) {
+        if (!overflowAreaInOrder) {
+            super.decodeRangeValues(from, to, dest, destOff);
+            return;
+        }
 
-                // Update intIndex and bitOffset since currentBit just changed
-                intIndex = currentBit / 32;
-                bitOffset = currentBit % 32;
+        int end = destOff + to - from;
 
-                // Compresses the regular value and adds it to the compressed array
-                while (remainingBits > 0) {
-                    int bitsToWrite = Math.min(remainingBits, 32 - bitOffset);
-                    int valueToWrite = (value >> (remainingBits - bitsToWrite)) & ((1 << bitsToWrite) - 1);
-                    compressedArray[intIndex] |= valueToWrite << (32 - (bitOffset + bitsToWrite));
+        // Pass 1: decompresses all slots of the range sequentially
+        readCompressedBits((long) from * slotBitSize, slotBitSize, dest, destOff, to - from);
 
-                    remainingBits -= bitsToWrite;
-                    currentBit += bitsToWrite;
+        if (overflowAreaLength == 0) {
+            if (isSigned()) {
+                for (int i = destOff; i < end; i++) dest[i] = decode(dest[i]);
+            }
+            return;
+        }
 
-                    if (remainingBits > 0) {
-                        intIndex++;
-                        bitOffset = 0;
-                    }
+        // Pass 2: replaces the overflow references by their overflow value. Overflow values are stored in the same
+        // order as their references, so once the first reference of the range is found, the overflow area is also
+        // read sequentially
+        int payloadBitSize = slotBitSize - 1;
+        int indexMask = (1 << payloadBitSize) - 1;
+        long overflowAreaStart = getOverflowAreaStart();
+        long overflowValuePosition = -1;
+        for (int i = destOff; i < end; i++) {
+            int value = dest[i];
+            if ((value >>> payloadBitSize) != 0) {
+                if (overflowValuePosition < 0) {
+                    overflowValuePosition = overflowAreaStart + (long) (value & indexMask) * overflowAreaValueBitSize;
                 }
+                value = readCompressedBits(overflowValuePosition, overflowAreaValueBitSize);
+                overflowValuePosition += overflowAreaValueBitSize;
             }
+            dest[i] = decode(value);
+        }
+    }
 
-            // Process overflow reference
-            else if (overflowAreaValues.contains(value)) {
-                remainingBits = overflowValueIndexBitSize;
-
-                // Inserts the leading 1 for overflow reference
-                compressedArray[intIndex] |= (1 << (32 - (bitOffset + 1)));
-                currentBit += 1;
-
-                // Update intIndex and bitOffset since currentBit just changed
-                intIndex = currentBit / 32;
-                bitOffset = currentBit % 32;
-
-                // Compresses the overflow index and adds it to the compressed array
-                while (remainingBits > 0) {
-                    int bitsToWrite = Math.min(remainingBits, 32 - bitOffset);
-                    int valueToWrite = (overflowIndex >> (remainingBits - bitsToWrite)) & ((1 << bitsToWrite) - 1);
-                    compressedArray[intIndex] |= valueToWrite << (32 - (bitOffset + bitsToWrite));
-
-                    remainingBits -= bitsToWrite;
-                    currentBit += bitsToWrite;
-
-                    if (remainingBits > 0) {
-                        intIndex++;
-                        bitOffset = 0;
-                    }
+    @Override
+    protected IntCursor createCursor(int from, int to) {
+        BitReader reader = createBitReader((long) from * slotBitSize);
+        int payloadBitSize = slotBitSize - 1;
+        long overflowAreaStart = getOverflowAreaStart();
+
+        // The slots are read sequentially, only the overflow values are read at their own position
+        return new AbstractIntCursor(from, to) {
+            @Override
+            protected int readNext() {
+                int slot = reader.read(slotBitSize);
+                if (overflowAreaLength == 0 || (slot >>> payloadBitSize) == 0) {
+                    return decode(slot);
                 }
 
-                overflowIndex++;
+                int overflowIndex = slot & ((1 << payloadBitSize) - 1);
+                return decode(readCompressedBits(overflowAreaStart + (long) overflowIndex * overflowAreaValueBitSize,
+                        overflowAreaValueBitSize));
             }
+        };
+    }
 
+    @Override
+    protected void gatherSortedValues(int[] sortedIndices, int[] out) {
+        int payloadBitSize = slotBitSize - 1;
+        long overflowAreaStart = getOverflowAreaStart();
+
+        // The slots are read in increasing order, and so are the overflow values they refer to
+        for (int k = 0; k < sortedIndices.length; k++) {
+            int slot = readCompressedBits((long) sortedIndices[k] * slotBitSize, slotBitSize);
+            if (overflowAreaLength != 0 && (slot >>> payloadBitSize) != 0) {
+                int overflowIndex = slot & ((1 << payloadBitSize) - 1);
+                slot = readCompressedBits(overflowAreaStart + (long) overflowIndex * overflowAreaValueBitSize,
+                        overflowAreaValueBitSize);
+            }
+            out[k] = decode(slot);
         }
+    }
 
-        // Pass 2: adds the overflow area at the end of the compressed array by compressing the overflow values
-        for (int value : overflowAreaValues) {
-            int remainingBits = overflowAreaValueBitSize;
-
-            int intIndex = currentBit / 32;
-            int bitOffset = currentBit % 32;
-
-            // Compresses and adds the overflow value to the compressed array
-            while (remainingBits > 0) {
-                int bitsToWrite = Math.min(remainingBits, 32 - bitOffset);
-                int valueToWrite = (value >> (remainingBits - bitsToWrite)) & ((1 << bitsToWrite) - 1);
-                compressedArray[intIndex] |= valueToWrite << (32 - (bitOffset + bitsToWrite));
-
-                remainingBits -= bitsToWrite;
-                currentBit += bitsToWrite;
+    @Override
+    protected int indexOfValue(int value) {
+        if (!overflowAreaInOrder) return super.indexOfValue(value);
 
-                if (remainingBits > 0) {
-                    intIndex++;
-                    bitOffset = 0;
-                }
-            }
+        int key = encode(value);
+        int keyBitSize = calculateBitSize(key);
 
+        if (overflowAreaLength == 0 || keyBitSize <= regularValueBitSize) {
+            // The value can only be a regular value, directly contained in its slot (with a leading bit 0)
+            return keyBitSize <= slotBitSize ? searchSlots(key, false) : -1;
         }
+        if (keyBitSize > overflowAreaValueBitSize) return -1;
 
-        setCompressedArray(compressedArray);
+        // The value can only be in the overflow area: finds its first occurrence there, then the slot referring to it
+        int overflowIndex = searchOverflowArea(key, false);
+        return overflowIndex < 0 ? -1 : searchSlots((1 << (slotBitSize - 1)) | overflowIndex, false);
     }
 
     @Override
-    public void decompress(int[] array) {
-        if (array == null || array.length != getOriginalLength()) {
-            throw new IllegalArgumentException("The array must be of the correct size to hold the decompressed data.");
-        }
+    protected int countValue(int value) {
+        if (!overflowAreaInOrder) return super.countValue(value);
 
-        int[] compressedArray = getCompressedArray();
+        int key = encode(value);
+        int keyBitSize = calculateBitSize(key);
 
-        if (compressedArray == null) {
-            throw new IllegalStateException("Compressed data is not available. Ensure that compression has been" +
-                    "performed before decompression.");
+        if (overflowAreaLength == 0 || keyBitSize <= regularValueBitSize) {
+            return keyBitSize <= slotBitSize ? searchSlots(key, true) : 0;
         }
 
-        // List to contain the indexes where an overflow value is located
-        List<Integer> indexesForOverflowValues = new ArrayList<>();
+        // The value can only be in the overflow area, which is much shorter than the slots
+        return keyBitSize <= overflowAreaValueBitSize ? searchOverflowArea(key, true) : 0;
+    }
 
-        int currentBit = 0;
+    /**
+     * Searches a slot in the slots of all values, comparing all slots starting in each integer at once (see
+     * {@link PackedLanes})
+     *
+     * @param slot the slot to search
+     * @param count if all occurrences are counted, instead of returning the first one
+     * @return the number of occurrences of the slot if count is true, else the index of its first occurrence (or -1)
+     */
+    private int searchSlots(int slot, boolean count) {
+        long key = slot & 0xFFFFFFFFL;
+        return count
+                ? PackedLanes.count(this::copyCompressedInts, slotBitSize, getOriginalLength(), key, key + 1)
+                : PackedLanes.indexOf(this::copyCompressedInts, slotBitSize, getOriginalLength(), key, key + 1);
+    }
 
-        // Pass 1: decompresses the regular values and saves the indexes for the overflow values
-        for (int i = 0; i < array.length; i++) {
+    /**
+     * Searches a value in the overflow area
+     *
+     * @param key the packed (zigzag encoded) value to search
+     * @param count if all occurrences are counted, instead of returning the first one
+     * @return the number of occurrences of the key if count is true, else the index (inside the overflow area) of its
+     * first occurrence (or -1)
+     */
+    private int searchOverflowArea(int key, boolean count) {
+        BitReader reader = createBitReader(getOverflowAreaStart());
+        int occurrences = 0;
+        for (int j = 0; j < overflowAreaLength; j++) {
+            if (reader.read(overflowAreaValueBitSize) == key) {
+                if (!count) return j;
+                occurrences++;
+            }
+        }
+        return count ? occurrences : -1;
+    }
 
-            // Determines in which integer (of the compressed array) and at what position, inside of that integer,
-            // the wanted value is stored in
-            int intIndex = currentBit / 32;
-            int bitOffset = currentBit % 32;
+    /**
+     * In unsigned mode, every overflow value is larger than every regular value: the largest value is in the overflow
+     * area, which is much shorter than the slots.
+     */
+    @Override
+    protected int maxValue() {
+        if (isSigned() || overflowAreaLength == 0 || !overflowAreaInOrder) return super.maxValue();
 
-            // Get the leading bit (0 or 1)
-            int leadingBit = (compressedArray[intIndex] >>> (32 - (bitOffset + 1))) & 1;
+        BitReader reader = createBitReader(getOverflowAreaStart());
+        int max = 0;
+        for (int j = 0; j < overflowAreaLength; j++) {
+            max = Math.max(max, reader.read(overflowAreaValueBitSize));
+        }
+        return max;
+    }
 
-            // Update current bit by +1 after getting the leading bit
-            currentBit += 1;
+    /**
+     * In unsigned mode, the smallest value is a regular value, read in the slots without the overflow area (an
+     * overflow reference, with its leading bit set, is larger than every regular value). The overflow area is only
+     * read when all values are overflow values.
+     */
+    @Override
+    protected int minValue() {
+        if (isSigned() || overflowAreaLength == 0 || !overflowAreaInOrder) return super.minValue();
 
-            // Update intIndex and bitOffset since currentBit just changed
-            intIndex = currentBit / 32;
-            bitOffset = currentBit % 32;
+        BitReader reader = createBitReader(0);
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < getOriginalLength(); i++) {
+            min = Math.min(min, reader.read(slotBitSize));
+        }
+        if ((min >>> (slotBitSize - 1)) == 0) return min;
 
-            // If it is a regular value
-            if (leadingBit == 0) {
-                int remainingBits = regularValueBitSize;
-                int value = 0;
+        reader = createBitReader(getOverflowAreaStart());
+        min = Integer.MAX_VALUE;
+        for (int j = 0; j < overflowAreaLength; j++) {
+            min = Math.min(min, reader.read(overflowAreaValueBitSize));
+        }
+        return min;
+    }
 
-                // Decompresses the regular value
-                while (remainingBits > 0) {
-                    int bitsToRead = Math.min(remainingBits, 32 - bitOffset);
+    /**
+     * In unsigned mode, the slots are summed bit plane by bit plane without their leading bit (see
+     * {@link PackedLanes}). The overflow references then add their index to the sum: while the overflow area is in
+     * order, these are exactly the indexes from 0 to overflowAreaLength - 1, which are subtracted before adding the
+     * overflow values.
+     */
+    @Override
+    protected long sumValues() {
+        if (isSigned() || slotBitSize > PackedLanes.MAX_BIT_PLANE_SUM_BIT_SIZE
+                || (overflowAreaLength != 0 && !overflowAreaInOrder)) {
+            return super.sumValues();
+        }
+        if (overflowAreaLength == 0) {
+            return PackedLanes.sum(this::copyCompressedInts, slotBitSize, slotBitSize, getOriginalLength());
+        }
 
-                    int valueToRead = (compressedArray[intIndex] >>> (32 - bitOffset - bitsToRead))
-                            & ((1 << bitsToRead) - 1);
-                    value |= valueToRead << (remainingBits - bitsToRead);
+        long sum = PackedLanes.sum(this::copyCompressedInts, slotBitSize, slotBitSize - 1, getOriginalLength())
+                - (long) overflowAreaLength * (overflowAreaLength - 1) / 2;
+        BitReader reader = createBitReader(getOverflowAreaStart());
+        for (int j = 0; j < overflowAreaLength; j++) {
+            sum += reader.read(overflowAreaValueBitSize);
+        }
+        return sum;
+    }
 
-                    remainingBits -= bitsToRead;
-                    currentBit += bitsToRead;
+    /**
+     * In unsigned mode, the part of the range below all overflow values is counted on the slots (see
+     * {@link PackedLanes}), without reading the overflow area: an overflow reference, with its leading bit set, is
+     * never below the regular limit. The part above all regular values is counted in the overflow area only, each
+     * overflow value being referred to by exactly one slot while the overflow area is in order.
+     */
+    @Override
+    protected int countInRangeValues(int lo, int hi) {
+        long regularLimit = getRegularLimit();
+        if (isSigned() || (hi > regularLimit && !overflowAreaInOrder)) return super.countInRangeValues(lo, hi);
+
+        int occurrences = 0;
+        if (lo < regularLimit) {
+            occurrences += PackedLanes.count(this::copyCompressedInts, slotBitSize, getOriginalLength(), lo,
+                    Math.min(hi, regularLimit));
+        }
+        if (hi > regularLimit) {
+            BitReader reader = createBitReader(getOverflowAreaStart());
+            for (int j = 0; j < overflowAreaLength; j++) {
+                int value = reader.read(overflowAreaValueBitSize);
+                if (value >= lo && value < hi) occurrences++;
+            }
+        }
+        return occurrences;
+    }
 
-                    if (remainingBits >= 0) {
-                        intIndex++;
-                        bitOffset = 0;
-                    }
-                }
+    /**
+     * In unsigned mode, the part of the range below all overflow values is selected on the slots (see
+     * {@link PackedLanes}), without reading the overflow area. For the part above all regular values, the overflow
+     * area is read first, then the overflow references are selected in order: while the overflow area is in order,
+     * the k-th overflow reference refers to the k-th overflow value.
+     */
+    @Override
+    protected void filterValues(int lo, int hi, BitSet selection) {
+        long regularLimit = getRegularLimit();
+        if (isSigned() || (hi > regularLimit && !overflowAreaInOrder)) {
+            super.filterValues(lo, hi, selection);
+            return;
+        }
 
-                array[i] = value;
+        if (lo < regularLimit) {
+            PackedLanes.filter(this::copyCompressedInts, slotBitSize, getOriginalLength(), lo,
+                    Math.min(hi, regularLimit), selection::set);
+        }
+        if (hi > regularLimit) {
+            BitSet selectedOverflowValues = new BitSet(overflowAreaLength);
+            BitReader reader = createBitReader(getOverflowAreaStart());
+            for (int j = 0; j < overflowAreaLength; j++) {
+                int value = reader.read(overflowAreaValueBitSize);
+                if (value >= lo && value < hi) selectedOverflowValues.set(j);
             }
+            if (selectedOverflowValues.isEmpty()) return;
+
+            int[] overflowIndex = {0};
+            long overflowReference = 1L << (slotBitSize - 1);
+            PackedLanes.filter(this::copyCompressedInts, slotBitSize, getOriginalLength(), overflowReference,
+                    2 * overflowReference, i -> {
+                        if (selectedOverflowValues.get(overflowIndex[0]++)) selection.set(i);
+                    });
+        }
+    }
 
-            // Else it is an overflow reference
-            else {
-                int remainingBits = overflowValueIndexBitSize;
+    /**
+     * @return The limit below which all (unsigned) values are regular values, directly contained in their slot
+     */
+    private long getRegularLimit() {
+        return overflowAreaLength == 0 ? 1L << slotBitSize : 1L << regularValueBitSize;
+    }
 
-                // Updates the currentBit variable, needed to continue the decompression
-                while (remainingBits > 0) {
-                    int bitsToRead = Math.min(remainingBits, 32 - bitOffset);
-                    remainingBits -= bitsToRead;
-                    currentBit += bitsToRead;
-                    if (remainingBits >= 0) bitOffset = 0;
+    /**
+     * The value is overwritten in its slot when it is a regular value, or in the overflow area when the slot already
+     * refers to an overflow value. A new overflow value is appended to the overflow area, which grows with some
+     * headroom, without rewriting the slots. All values are only compressed again when the layout can't hold the
+     * value (wider than the overflow values, or overflow index not fitting in a slot).
+     */
+    @Override
+    protected void setValue(int i, int value) {
+        int key = encode(value);
+        int keyBitSize = calculateBitSize(key);
+        long slotPosition = (long) i * slotBitSize;
+
+        if (overflowAreaLength == 0) {
+            // Without overflow area, the slots directly contain the values
+            if (keyBitSize <= slotBitSize) {
+                overwriteCompressedBits(slotPosition, key, slotBitSize);
+                return;
+            }
+        } else {
+            int payloadBitSize = slotBitSize - 1;
+            int slot = readCompressedBits(slotPosition, slotBitSize);
+            boolean overflowReference = (slot >>> payloadBitSize) != 0;
+
+            if (keyBitSize <= regularValueBitSize) {
+                // Regular value with a leading 0, the overflow value previously referred to is no longer used
+                overwriteCompressedBits(slotPosition, key, slotBitSize);
+                if (overflowReference) overflowAreaInOrder = false;
+                return;
+            }
+            if (keyBitSize <= overflowAreaValueBitSize) {
+                if (overflowReference) {
+                    int overflowIndex = slot & ((1 << payloadBitSize) - 1);
+                    long valuePosition = getOverflowAreaStart() + (long) overflowIndex * overflowAreaValueBitSize;
+                    overwriteCompressedBits(valuePosition, key, overflowAreaValueBitSize);
+                    return;
+                }
+                if (overflowAreaLength < 1L << payloadBitSize) {
+                    appendOverflowValue(i, key);
+                    return;
                 }
+            }
+        }
 
-                // We save the index at which an overflow value is located
-                indexesForOverflowValues.add(i);
+        // The layout can't hold the value: all values are compressed again, with new bit sizes
+        int[] array = new int[getOriginalLength()];
+        decompressValues(array, 0);
+        array[i] = value;
+        compress(array);
+    }
+
+    /**
+     * Appends a value to the overflow area, and makes the i-th slot refer to it
+     *
+     * @param i index of the element
+     * @param key the packed (zigzag encoded) value, coded on at most overflowAreaValueBitSize bits
+     */
+    private void appendOverflowValue(int i, int key) {
+        int overflowIndex = overflowAreaLength;
+        long valuePosition = getOverflowAreaStart() + (long) overflowIndex * overflowAreaValueBitSize;
+
+        int compressedLength = getCompressedLength();
+        int requiredLength = (int) ((valuePosition + overflowAreaValueBitSize + 31) / 32);
+        WordStorage storage = getCompressedStorage();
+        if (storage != null) {
+            // The words after the compressed data are always 0 in a storage, only a too small storage is copied
+            if (requiredLength > 2 * storage.getWordCount()) {
+                int capacity = Math.max(requiredLength, compressedLength + compressedLength / 8);
+                storage = storageType.copyOf(storage, (capacity + 1) / 2);
             }
+            setCompressedStorage(storage, Math.max(compressedLength, requiredLength));
+        } else {
+            growCompressedArray(compressedLength, requiredLength);
         }
 
-        // Pass 2: Decompress the overflow values inside the overflow area, and places them in the correct index
-        // (which is given by overflowValueIndex)
-        for (int overflowValueIndex : indexesForOverflowValues) {
-            int remainingBits = overflowAreaValueBitSize;
-            int overflowValue = 0;
+        overwriteCompressedBits(valuePosition, key, overflowAreaValueBitSize);
+        overwriteCompressedBits((long) i * slotBitSize, (1 << (slotBitSize - 1)) | overflowIndex, slotBitSize);
+
+        overflowAreaLength++;
+        overflowValueIndexBitSize = calculateBitSize(overflowAreaLength - 1);
+        overflowAreaInOrder = false;
+    }
 
-            int intIndex = currentBit / 32;
-            int bitOffset = currentBit % 32;
+    /**
+     * Makes sure that the compressed array contains at least requiredLength integers, copying it with some headroom
+     * when it is too small
+     *
+     * @param compressedLength number of integers used by the compressed data
+     * @param requiredLength number of integers needed by the compressed data
+     */
+    private void growCompressedArray(int compressedLength, int requiredLength) {
+        int[] compressedArray = getCompressedArray();
+        if (requiredLength > compressedArray.length) {
+            // The slots are copied, not rewritten, and the headroom is proportional to the array so that the growth
+            // is amortized over the next appended values
+            compressedArray = Arrays.copyOf(compressedArray,
+                    Math.max(requiredLength, compressedArray.length + compressedArray.length / 8));
+        } else if (requiredLength > compressedLength) {
+            // The headroom may contain old data when the array is a reused buffer
+            Arrays.fill(compressedArray, compressedLength, requiredLength, 0);
+        }
+        setCompressedArray(compressedArray, Math.max(compressedLength, requiredLength));
+    }
 
-            // Decompresses the overflow value
-            while (remainingBits > 0) {
-                int bitsToRead = Math.min(remainingBits, 32 - bitOffset);
+    @Override
+    public int get(int i) {
+        if (i < 0 || i >= getOriginalLength()) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
 
-                int valueToRead = (compressedArray[intIndex] >>> (32 - bitOffset - bitsToRead))
-                        & ((1 << bitsToRead) - 1);
-                overflowValue |= valueToRead << (remainingBits - bitsToRead);
+        // The i-th slot always starts at the same position, no matter how many overflow values come before it
+        int slot = readCompressedBits((long) i * slotBitSize, slotBitSize);
 
-                remainingBits -= bitsToRead;
-                currentBit += bitsToRead;
+        // Without overflow area, the slot directly contains the value
+        if (overflowAreaLength == 0) {
+            return decode(slot);
+        }
 
-                if (remainingBits >= 0) {
-                    intIndex++;
-                    bitOffset = 0;
-                }
-            }
+        int payloadBitSize = slotBitSize - 1;
 
-            // Places the overflow value at the right index of the array
-            array[overflowValueIndex] = overflowValue;
+        // If the leading bit is 0, the slot directly contains the regular value
+        if ((slot >>> payloadBitSize) == 0) {
+            return decode(slot);
         }
+
+        // Else the slot contains the index of the value inside the overflow area
+        int overflowIndex = slot & ((1 << payloadBitSize) - 1);
+        return decode(readCompressedBits(getOverflowAreaStart() + (long) overflowIndex * overflowAreaValueBitSize,
+                overflowAreaValueBitSize));
     }
 
+    /**
+     * @return The bit sizes of the regular values, of the overflow values, of the overflow indexes and of the slots,
+     * followed by the number of values inside the overflow area and by 1 if the overflow values are in the same order
+     * as their references (else 0)
+     */
     @Override
-    public int get(int i){
-        int[] decompressedArray = new int[getOriginalLength()];
-        decompress(decompressedArray);
+    protected int[] getLayoutParameters() {
+        return new int[]{regularValueBitSize, overflowAreaValueBitSize, overflowValueIndexBitSize, slotBitSize,
+                overflowAreaLength, overflowAreaInOrder ? 1 : 0};
+    }
+
+    @Override
+    protected void restore(int[] compressedArray, int originalLength, int bitSize, int[] layoutParameters) {
+        super.restore(compressedArray, originalLength, bitSize, layoutParameters);
+        restoreLayout(layoutParameters);
+    }
+
+    @Override
+    protected void restore(WordStorage compressedStorage, int compressedLength, int originalLength, int bitSize,
+                           int[] layoutParameters) {
+        super.restore(compressedStorage, compressedLength, originalLength, bitSize, layoutParameters);
+        restoreLayout(layoutParameters);
+    }
+
+    /**
+     * @param layoutParameters parameters of the layout, as returned by {@link #getLayoutParameters()}
+     */
+    private void restoreLayout(int[] layoutParameters) {
+        regularValueBitSize = layoutParameters[0];
+        overflowAreaValueBitSize = layoutParameters[1];
+        overflowValueIndexBitSize = layoutParameters[2];
+        slotBitSize = layoutParameters[3];
+        overflowAreaLength = layoutParameters[4];
+        overflowAreaInOrder = layoutParameters[5] != 0;
+    }
 
-        return decompressedArray[i];
+    /**
+     * @return Position (in bits) at which the overflow area starts, i.e. right after the last slot
+     */
+    private long getOverflowAreaStart() {
+        return (long) getOriginalLength() * slotBitSize;
     }
 }
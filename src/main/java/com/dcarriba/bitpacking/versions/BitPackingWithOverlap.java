@@ -1,13 +1,104 @@
 package com.dcarriba.bitpacking.versions;
 
+import com.dcarriba.bitpacking.AbstractIntCursor;
 import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.BitReader;
+import com.dcarriba.bitpacking.IntCursor;
+import com.dcarriba.bitpacking.kernels.BitPackingKernels;
+import com.dcarriba.bitpacking.storage.StorageType;
+import com.dcarriba.bitpacking.storage.WordStorage;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * {@link BitPackingWithOverlap} is a {@link BitPacking} implementation where compressed values can overlap to
  * the next integer, i.e. compressed values always fill the 32-bit integers of the compressed array and therefore
  * compressed values may be written on two consecutive integers.
+ * <p>
+ * Since 32 values coded on bitSize bits always fill exactly bitSize integers, the values are compressed and
+ * decompressed by groups of 32 using the {@link BitPackingKernels} specialized for the bit size. Only the last values
+ * (if the array length isn't a multiple of 32) are handled one by one.
+ * </p>
+ * <p>
+ * In parallel mode, large arrays are split into chunks of {@link ParallelRanges#CHUNK_SIZE} values, which are
+ * compressed (and decompressed) by the tasks of a {@link ForkJoinPool} into disjoint integers of the compressed array.
+ * </p>
+ * <p>
+ * The compressed data can also be kept off-heap (see {@link StorageType}), in a {@link WordStorage} whose words split
+ * into 32-bit integers give the compressed array. The groups are then packed and unpacked window by window through a
+ * small array. An off-heap storage is released by {@link #close()}.
+ * </p>
  */
 public class BitPackingWithOverlap extends BitPacking {
+    /** Number of values packed or unpacked at once through a small array when the data is kept in a storage */
+    private static final int STORAGE_WINDOW_SIZE = 1024;
+
+    /** Pool running the compression and decompression tasks, or null to run them sequentially */
+    private final ForkJoinPool pool;
+    /** Where the compressed data is kept: in an int array on the heap, or in an off-heap storage */
+    private final StorageType storageType;
+
+    /**
+     * Constructor for a {@link BitPackingWithOverlap} compressing only non-negative integers
+     */
+    public BitPackingWithOverlap() {
+        this(false);
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithOverlap}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     */
+    public BitPackingWithOverlap(boolean signed) {
+        this(signed, StorageType.HEAP);
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithOverlap}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     * @param pool pool running the compression and decompression tasks, or null to run them sequentially
+     */
+    public BitPackingWithOverlap(boolean signed, ForkJoinPool pool) {
+        super(signed);
+        this.pool = pool;
+        this.storageType = StorageType.HEAP;
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithOverlap}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     * @param storageType where the compressed data is kept
+     */
+    public BitPackingWithOverlap(boolean signed, StorageType storageType) {
+        super(signed);
+        if (storageType == null) {
+            throw new IllegalArgumentException("storageType can't be null");
+        }
+        this.pool = null;
+        this.storageType = storageType;
+    }
+
+    @Override
+    public StorageType getStorageType() {
+        return storageType;
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the compressed data is kept off-heap
+     */
+    @Override
+    public int compress(int[] array, int[] buffer) {
+        if (storageType != StorageType.HEAP) {
+            throw new UnsupportedOperationException("The compressed data is kept off-heap, not in an int buffer");
+        }
+        return super.compress(array, buffer);
+    }
 
     @Override
     public void compress(int[] array) {
@@ -16,89 +107,316 @@ public class BitPackingWithOverlap extends BitPacking {
         }
 
         // Number of bits needed to represent the largest value of the array
-        int bitSize = calculateBitSize(array);
+        int bitSize = ParallelRanges.max(pool, array.length, (from, to) -> calculateBitSize(array, from, to));
+
+        pack(array, bitSize);
+    }
+
+    /**
+     * Packs all values of the array on the given number of bits
+     *
+     * @param array array to be compressed
+     * @param bitSize number of bits each value is coded on (at least the number of bits needed by the largest value)
+     */
+    private void pack(int[] array, int bitSize) {
+        if (storageType != StorageType.HEAP) {
+            packWindows(IntBuffer.wrap(array), bitSize);
+            return;
+        }
 
         setBitSize(bitSize);
         setOriginalLength(array.length);
 
         // Number of 32-bit integers needed for all compressed values
-        int compressedArrayLength = (array.length * bitSize + 31) / 32;
+        int compressedArrayLength = (int) (((long) array.length * bitSize + 31) / 32);
 
-        int[] compressedArray = new int[compressedArrayLength];
+        int[] compressedArray = allocateCompressedArray(compressedArrayLength);
 
-        // Current position in the compressed array (in bits)
-        int currentBit = 0;
+        // Compresses the array chunk by chunk (the chunks are compressed in parallel in parallel mode)
+        ParallelRanges.forEach(pool, array.length, (from, to) -> compressRange(array, from, to, compressedArray,
+                from / BitPackingKernels.GROUP_SIZE * bitSize, bitSize));
 
-        for (int value : array) {
-            int remainingBits = bitSize;
+        setCompressedArray(compressedArray, compressedArrayLength);
+    }
 
-            // Determines which integer of compressedArray the current value should be in
-            int intIndex = currentBit / 32;
+    /**
+     * Compresses the remaining values of the buffer window by window, without copying the whole buffer into an
+     * array: the values of each window are read into a small array and packed by the kernels. The position of the
+     * buffer isn't changed.
+     *
+     * @param buffer Buffer containing the values to be compressed
+     */
+    @Override
+    public void compressBuffer(IntBuffer buffer) {
+        if (buffer == null || !buffer.hasRemaining()) {
+            throw new IllegalArgumentException("The buffer can't be null or empty.");
+        }
 
-            // Calculates the bit offset (i.e. the position) for the current value inside the integer
-            int bitOffset = currentBit % 32;
+        // Number of bits needed to represent the largest value of the buffer
+        packWindows(buffer, calculateBufferBitSize(buffer));
+    }
+
+    /**
+     * Packs the remaining values of the buffer window by window, into a new compressed array or a new storage: each
+     * window starts at the beginning of a group of 32 values, and thus of an integer, so its values are read into a
+     * small array and packed by the kernels, and its integers are packed into a small array before being copied into
+     * the storage.
+     *
+     * @param buffer buffer containing the values to be compressed
+     * @param bitSize number of bits each value is coded on (at least the number of bits needed by the largest value)
+     */
+    private void packWindows(IntBuffer buffer, int bitSize) {
+        int start = buffer.position();
+        int length = buffer.remaining();
+
+        setBitSize(bitSize);
+        setOriginalLength(length);
+
+        // Number of 32-bit integers needed for all compressed values
+        int compressedArrayLength = (int) (((long) length * bitSize + 31) / 32);
 
-            while (remainingBits > 0) {
-                int bitsToWrite = Math.min(remainingBits, 32 - bitOffset);
+        WordStorage storage = null;
+        int[] compressedArray = null;
+        int[] window = null;
+        if (storageType != StorageType.HEAP) {
+            storage = storageType.allocate((compressedArrayLength + 1) / 2);
+            window = new int[STORAGE_WINDOW_SIZE / BitPackingKernels.GROUP_SIZE * bitSize];
+        } else {
+            compressedArray = allocateCompressedArray(compressedArrayLength);
+        }
+
+        int[] values = new int[Math.min(STORAGE_WINDOW_SIZE, length)];
+        for (int from = 0; from < length; from += STORAGE_WINDOW_SIZE) {
+            int count = Math.min(STORAGE_WINDOW_SIZE, length - from);
+            int firstInt = from / BitPackingKernels.GROUP_SIZE * bitSize;
+            buffer.get(start + from, values, 0, count);
 
-                // Adds the compressed value to the integer without affecting previously compressed values
-                int valueToWrite = (value >> (remainingBits - bitsToWrite)) & ((1 << bitsToWrite) - 1);
-                compressedArray[intIndex] |= valueToWrite << (32 - (bitOffset + bitsToWrite));
+            if (storage == null) {
+                compressRange(values, 0, count, compressedArray, firstInt, bitSize);
+            } else {
+                int windowLength = (int) (((long) count * bitSize + 31) / 32);
+                Arrays.fill(window, 0, windowLength, 0);
+                compressRange(values, 0, count, window, 0, bitSize);
+                storage.writeInts(firstInt, window, 0, windowLength);
+            }
+        }
 
-                // Updates the remaining bits of the current value, as well as the current bit position
-                remainingBits -= bitsToWrite;
-                currentBit += bitsToWrite;
+        if (storage == null) {
+            setCompressedArray(compressedArray, compressedArrayLength);
+        } else {
+            setCompressedStorage(storage, compressedArrayLength);
+        }
+    }
 
-                // Moves to the next integer if the value didn't fit completely into the current integer
-                if (remainingBits >= 0) {
-                    intIndex++;
-                    bitOffset = 0;
-                }
+    /**
+     * Compresses a range of the array, starting at the beginning of a group of 32 values
+     *
+     * @param array array to be compressed
+     * @param from index of the first value of the range (a multiple of 32)
+     * @param to index after the last value of the range
+     * @param compressedArray array receiving the compressed values
+     * @param firstInt index of the integer of compressedArray receiving the first value of the range
+     * @param bitSize number of bits each value is coded on
+     */
+    private void compressRange(int[] array, int from, int to, int[] compressedArray, int firstInt, int bitSize) {
+        // Compresses all complete groups of 32 values, each group filling exactly bitSize integers
+        int groupsEnd = to - (to - from) % BitPackingKernels.GROUP_SIZE;
+        int intIndex = firstInt;
+        for (int i = from; i < groupsEnd; i += BitPackingKernels.GROUP_SIZE) {
+            if (isSigned()) {
+                BitPackingKernels.packZigZag(bitSize, array, i, compressedArray, intIndex);
+            } else {
+                BitPackingKernels.pack(bitSize, array, i, compressedArray, intIndex);
             }
+            intIndex += bitSize;
         }
 
-        setCompressedArray(compressedArray);
+        // Compresses the remaining values one by one
+        for (int i = groupsEnd; i < to; i++) {
+            writeBits(compressedArray, (long) firstInt * 32 + (long) (i - from) * bitSize, encode(array[i]), bitSize);
+        }
     }
 
     @Override
-    public int get(int i) {
-        if (i < 0 || i >= getOriginalLength()) {
-            throw new IndexOutOfBoundsException("Index out of bounds");
+    protected void decompressValues(int[] array, int offset) {
+        ParallelRanges.forEach(pool, getOriginalLength(), (from, to) -> decompressGroups(array, offset, from, to));
+    }
+
+    /**
+     * Decompresses a range of the values, starting at the beginning of a group of 32 values, from the compressed
+     * array or window by window from the storage
+     *
+     * @param array array receiving the decompressed values
+     * @param offset index of the array at which the first value of the compressed array is placed
+     * @param from index of the first value of the range (a multiple of 32)
+     * @param to index after the last value of the range
+     */
+    private void decompressGroups(int[] array, int offset, int from, int to) {
+        int bitSize = getBitSize();
+        WordStorage storage = getCompressedStorage();
+        if (storage == null) {
+            decompressRange(getCompressedArray(), from / BitPackingKernels.GROUP_SIZE * bitSize, array, offset, from,
+                    to);
+            return;
+        }
+
+        int[] window = new int[STORAGE_WINDOW_SIZE / BitPackingKernels.GROUP_SIZE * bitSize];
+        for (int windowStart = from; windowStart < to; windowStart += STORAGE_WINDOW_SIZE) {
+            int windowEnd = Math.min(to, windowStart + STORAGE_WINDOW_SIZE);
+            long firstInt = (long) windowStart / BitPackingKernels.GROUP_SIZE * bitSize;
+            int windowLength = (int) (((long) (windowEnd - windowStart) * bitSize + 31) / 32);
+
+            storage.readInts(firstInt, firstInt + windowLength, window, 0);
+            decompressRange(window, 0, array, offset, windowStart, windowEnd);
         }
+    }
 
+    /**
+     * Decompresses a range of the values, starting at the beginning of a group of 32 values
+     *
+     * @param compressedArray array containing the compressed values
+     * @param firstInt index of the integer of compressedArray containing the first value of the range
+     * @param array array receiving the decompressed values
+     * @param offset index of the array at which the first value of the compressed array is placed
+     * @param from index of the first value of the range (a multiple of 32)
+     * @param to index after the last value of the range
+     */
+    private void decompressRange(int[] compressedArray, int firstInt, int[] array, int offset, int from, int to) {
         int bitSize = getBitSize();
-        int[] compressedArray = getCompressedArray();
 
-        // Current position in the compressed array (in bits)
-        int currentBit = i * bitSize;
+        // Decompresses all complete groups of 32 values
+        int groupsEnd = to - (to - from) % BitPackingKernels.GROUP_SIZE;
+        int intIndex = firstInt;
+        for (int i = from; i < groupsEnd; i += BitPackingKernels.GROUP_SIZE) {
+            if (isSigned()) {
+                BitPackingKernels.unpackZigZag(bitSize, compressedArray, intIndex, array, offset + i);
+            } else {
+                BitPackingKernels.unpack(bitSize, compressedArray, intIndex, array, offset + i);
+            }
+            intIndex += bitSize;
+        }
 
-        // Determines in which integer and at what position inside of it the value is stored in
-        int intIndex = currentBit / 32;
-        int bitOffset = currentBit % 32;
+        // Decompresses the remaining values, which start at the beginning of an integer
+        readBits(compressedArray, (long) intIndex * 32, bitSize, array, offset + groupsEnd, to - groupsEnd);
+        for (int i = offset + groupsEnd; i < offset + to; i++) {
+            array[i] = decode(array[i]);
+        }
+    }
 
-        // Initialize the value
-        int value = 0;
-        int remainingBits = bitSize;
+    @Override
+    protected void decodeRangeValues(int from, int to, int[] dest, int destOff) {
+        int bitSize = getBitSize();
 
-        while (remainingBits > 0) {
-            // Number of bits available to read in the current integer
-            int bitsToRead = Math.min(remainingBits, 32 - bitOffset);
+        // Decompresses the values before the first complete group of 32 values one by one
+        int groupStart = Math.min(to, (from + BitPackingKernels.GROUP_SIZE - 1) / BitPackingKernels.GROUP_SIZE
+                * BitPackingKernels.GROUP_SIZE);
+        readCompressedBits((long) from * bitSize, bitSize, dest, destOff, groupStart - from);
+        for (int i = destOff; i < destOff + groupStart - from; i++) {
+            dest[i] = decode(dest[i]);
+        }
 
-            // Extracts the bits of the wanted value and combines them to the initialized value variable
-            int valueToRead = (compressedArray[intIndex] >>> (32 - bitOffset - bitsToRead)) & ((1 << bitsToRead) - 1);
-            value |= valueToRead << (remainingBits - bitsToRead);
+        // Decompresses the next values with the kernels, the i-th value being placed at index destOff + i - from
+        if (groupStart < to) {
+            decompressGroups(dest, destOff - from, groupStart, to);
+        }
+    }
 
-            // Updates the remaining bits to read, as well as the current bit position
-            remainingBits -= bitsToRead;
-            currentBit += bitsToRead;
+    @Override
+    protected IntCursor createCursor(int from, int to) {
+        int bitSize = getBitSize();
+        BitReader reader = createBitReader((long) from * bitSize);
 
-            // Moves to the next integer if not all bits of the wanted value were read in the current integer
-            if (remainingBits >= 0) {
-                intIndex++;
-                bitOffset = 0;
+        // The values follow each other, each one is read right after the previous one
+        return new AbstractIntCursor(from, to) {
+            @Override
+            protected int readNext() {
+                return decode(reader.read(bitSize));
             }
+        };
+    }
+
+    @Override
+    protected void gatherSortedValues(int[] sortedIndices, int[] out) {
+        int bitSize = getBitSize();
+
+        // The compressed data is read in increasing order
+        for (int k = 0; k < sortedIndices.length; k++) {
+            out[k] = decode(readCompressedBits((long) sortedIndices[k] * bitSize, bitSize));
+        }
+    }
+
+    /**
+     * Values needing more bits than the bit size can't be found, else all values starting in each integer of the
+     * compressed data are compared with the packed value at once (see {@link PackedLanes})
+     */
+    @Override
+    protected int indexOfValue(int value) {
+        if (!fitsBitSize(value)) return -1;
+
+        long key = encode(value) & 0xFFFFFFFFL;
+        return PackedLanes.indexOf(this::copyCompressedInts, getBitSize(), getOriginalLength(), key, key + 1);
+    }
+
+    @Override
+    protected int countValue(int value) {
+        if (!fitsBitSize(value)) return 0;
+
+        long key = encode(value) & 0xFFFFFFFFL;
+        return PackedLanes.count(this::copyCompressedInts, getBitSize(), getOriginalLength(), key, key + 1);
+    }
+
+    /**
+     * In unsigned mode with at most 8 bits per value, the sum is computed bit plane by bit plane (see
+     * {@link PackedLanes})
+     */
+    @Override
+    protected long sumValues() {
+        if (isSigned() || getBitSize() > PackedLanes.MAX_BIT_PLANE_SUM_BIT_SIZE) return super.sumValues();
+        return PackedLanes.sum(this::copyCompressedInts, getBitSize(), getBitSize(), getOriginalLength());
+    }
+
+    @Override
+    protected int countInRangeValues(int lo, int hi) {
+        if (isSigned()) return super.countInRangeValues(lo, hi);
+        return PackedLanes.count(this::copyCompressedInts, getBitSize(), getOriginalLength(), lo, hi);
+    }
+
+    @Override
+    protected void filterValues(int lo, int hi, BitSet selection) {
+        if (isSigned()) {
+            super.filterValues(lo, hi, selection);
+            return;
+        }
+        PackedLanes.filter(this::copyCompressedInts, getBitSize(), getOriginalLength(), lo, hi, selection::set);
+    }
+
+    /**
+     * The value is overwritten in its place when it fits the bit size. Else, all values are repacked once on a wider
+     * bit size, with {@link #WIDTH_PROMOTION_HEADROOM} more bits than needed, so that the next larger values still fit.
+     */
+    @Override
+    protected void setValue(int i, int value) {
+        int key = encode(value);
+        int requiredBitSize = calculateBitSize(key);
+
+        if (requiredBitSize > getBitSize()) {
+            int[] array = new int[getOriginalLength()];
+            decompressValues(array, 0);
+            pack(array, Math.min(32, requiredBitSize + WIDTH_PROMOTION_HEADROOM));
+        }
+
+        overwriteCompressedBits((long) i * getBitSize(), key, getBitSize());
+    }
+
+    @Override
+    public int get(int i) {
+        if (i < 0 || i >= getOriginalLength()) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
         }
 
-        return value;
+        int bitSize = getBitSize();
+
+        // The value starts at bit i * bitSize and may overlap to the next integer
+        return decode(readCompressedBits((long) i * bitSize, bitSize));
     }
 }
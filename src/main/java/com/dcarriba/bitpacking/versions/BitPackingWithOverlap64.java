@@ -0,0 +1,291 @@
+package com.dcarriba.bitpacking.versions;
+
+import com.dcarriba.bitpacking.AbstractIntCursor;
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.IntCursor;
+import com.dcarriba.bitpacking.storage.StorageType;
+import com.dcarriba.bitpacking.storage.WordStorage;
+
+import java.nio.IntBuffer;
+import java.util.BitSet;
+
+/**
+ * {@link BitPackingWithOverlap64} is a {@link BitPacking} implementation with the same layout as
+ * {@link BitPackingWithOverlap}, but stored in 64-bit words (a {@link WordStorage}) instead of 32-bit integers.
+ * <p>
+ * A value then only overlaps to the next word when it crosses a 64-bit boundary (instead of a 32-bit boundary), so
+ * most values are read with a single 64-bit load, a shift and a mask. The compressed words split into 32-bit integers
+ * give the same bits as {@link BitPackingWithOverlap}.
+ * </p>
+ * <p>
+ * The words can be stored on the heap or off-heap (see {@link StorageType}), and the values can be compressed
+ * directly from an {@link IntBuffer}. An off-heap storage is released by {@link #close()}.
+ * </p>
+ */
+public class BitPackingWithOverlap64 extends BitPacking {
+    /** Where the storage containing the compressed data is allocated */
+    private final StorageType storageType;
+
+    /**
+     * Constructor for a {@link BitPackingWithOverlap64} compressing only non-negative integers
+     */
+    public BitPackingWithOverlap64() {
+        this(false);
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithOverlap64}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     */
+    public BitPackingWithOverlap64(boolean signed) {
+        this(signed, StorageType.HEAP);
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithOverlap64}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     * @param storageType where the storage containing the compressed data is allocated
+     */
+    public BitPackingWithOverlap64(boolean signed, StorageType storageType) {
+        super(signed);
+        if (storageType == null) {
+            throw new IllegalArgumentException("storageType can't be null");
+        }
+        this.storageType = storageType;
+    }
+
+    /**
+     * @return Where the storage containing the compressed data is allocated
+     */
+    @Override
+    public StorageType getStorageType() {
+        return storageType;
+    }
+
+    /**
+     * @return Storage containing the compressed data
+     */
+    public WordStorage getStorage() {
+        return getCompressedStorage();
+    }
+
+    /**
+     * The compressed data is kept in 64-bit words, which can't be written into an int buffer
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public int compress(int[] array, int[] buffer) {
+        throw new UnsupportedOperationException("The compressed data is kept in 64-bit words, not in an int buffer");
+    }
+
+    /**
+     * Restores the words from compressed data split into 32-bit integers (as returned by
+     * {@link #getCompressedArray()}).
+     *
+     * @throws IllegalArgumentException if the number of integers is odd, since they come from whole 64-bit words
+     */
+    @Override
+    protected void restore(int[] compressedArray, int originalLength, int bitSize, int[] layoutParameters) {
+        if (layoutParameters.length != 0) {
+            throw new IllegalArgumentException("Expected 0 layout parameters");
+        }
+        if (compressedArray.length % 2 != 0) {
+            throw new IllegalArgumentException("Expected an even number of integers for 64-bit words");
+        }
+
+        setCompressedStorage(storageType.copyOf(compressedArray, compressedArray.length), compressedArray.length);
+        setOriginalLength(originalLength);
+        setBitSize(bitSize);
+    }
+
+    @Override
+    public void compress(int[] array) {
+        if (array == null || array.length == 0) {
+            throw new IllegalArgumentException("The array can't be null or empty.");
+        }
+
+        compressBuffer(IntBuffer.wrap(array));
+    }
+
+    /**
+     * Compresses the remaining values of the buffer directly from the buffer, without copying them into an array.
+     * The position of the buffer isn't changed.
+     *
+     * @param buffer Buffer containing the values to be compressed
+     */
+    @Override
+    public void compressBuffer(IntBuffer buffer) {
+        if (buffer == null || !buffer.hasRemaining()) {
+            throw new IllegalArgumentException("The buffer can't be null or empty.");
+        }
+
+        // Number of bits needed to represent the largest value of the buffer
+        int bitSize = calculateBufferBitSize(buffer);
+        int start = buffer.position();
+        int length = buffer.remaining();
+
+        setBitSize(bitSize);
+        setOriginalLength(length);
+
+        // Number of 64-bit words needed for all compressed values
+        int wordCount = (int) (((long) length * bitSize + 63) / 64);
+
+        // Releases the storage of the previous compression
+        close();
+        WordStorage storage = storageType.allocate(wordCount);
+
+        // Fills a 64-bit buffer from its most significant bit, and stores it each time it is full
+        long mask = -1L >>> (64 - bitSize);
+        long wordBuffer = 0;
+        int bufferedBits = 0;
+        int wordIndex = 0;
+        for (int i = start; i < start + length; i++) {
+            long bits = encode(buffer.get(i)) & mask;
+            int end = bufferedBits + bitSize;
+
+            if (end < 64) {
+                wordBuffer |= bits << (64 - end);
+                bufferedBits = end;
+            } else {
+                // The value fills the buffer, and may overlap to the next word
+                storage.setWord(wordIndex++, wordBuffer | (bits >>> (end - 64)));
+                wordBuffer = end == 64 ? 0 : bits << (128 - end);
+                bufferedBits = end - 64;
+            }
+        }
+        if (bufferedBits > 0) {
+            storage.setWord(wordIndex, wordBuffer);
+        }
+
+        setCompressedStorage(storage, 2 * wordCount);
+    }
+
+    @Override
+    protected void decompressValues(int[] array, int offset) {
+        decodeRangeValues(0, getOriginalLength(), array, offset);
+    }
+
+    @Override
+    protected void decodeRangeValues(int from, int to, int[] dest, int destOff) {
+        WordStorage storage = getCompressedStorage();
+        int bitSize = getBitSize();
+        long startBit = (long) from * bitSize;
+
+        // Reads the words sequentially, each word is only loaded once
+        int wordIndex = (int) (startBit >>> 6);
+        long word = storage.getWord(wordIndex);
+        int bitOffset = (int) (startBit & 63);
+        for (int i = destOff; i < destOff + to - from; i++) {
+            int end = bitOffset + bitSize;
+            long value = (word << bitOffset) >>> (64 - bitSize);
+
+            if (end < 64) {
+                bitOffset = end;
+            } else {
+                // The value ends at the end of the word, or overlaps to the next word
+                wordIndex++;
+                word = wordIndex < storage.getWordCount() ? storage.getWord(wordIndex) : 0;
+                if (end > 64) {
+                    value |= word >>> (128 - end);
+                }
+                bitOffset = end - 64;
+            }
+
+            dest[i] = decode((int) value);
+        }
+    }
+
+    @Override
+    protected IntCursor createCursor(int from, int to) {
+        int bitSize = getBitSize();
+        WordStorage storage = getCompressedStorage();
+        long startBit = (long) from * bitSize;
+
+        // Reads the words sequentially, like decompressValues
+        return new AbstractIntCursor(from, to) {
+            private int wordIndex = (int) (startBit >>> 6);
+            private long word = wordIndex < storage.getWordCount() ? storage.getWord(wordIndex) : 0;
+            private int bitOffset = (int) (startBit & 63);
+
+            @Override
+            protected int readNext() {
+                int end = bitOffset + bitSize;
+                long value = (word << bitOffset) >>> (64 - bitSize);
+
+                if (end < 64) {
+                    bitOffset = end;
+                } else {
+                    // The value ends at the end of the word, or overlaps to the next word
+                    wordIndex++;
+                    word = wordIndex < storage.getWordCount() ? storage.getWord(wordIndex) : 0;
+                    if (end > 64) {
+                        value |= word >>> (128 - end);
+                    }
+                    bitOffset = end - 64;
+                }
+
+                return decode((int) value);
+            }
+        };
+    }
+
+    /**
+     * Values needing more bits than the bit size can't be found, else all values starting in each integer of the
+     * compressed data are compared with the packed value at once (see {@link PackedLanes})
+     */
+    @Override
+    protected int indexOfValue(int value) {
+        if (!fitsBitSize(value)) return -1;
+
+        long key = encode(value) & 0xFFFFFFFFL;
+        return PackedLanes.indexOf(this::copyCompressedInts, getBitSize(), getOriginalLength(), key, key + 1);
+    }
+
+    @Override
+    protected int countValue(int value) {
+        if (!fitsBitSize(value)) return 0;
+
+        long key = encode(value) & 0xFFFFFFFFL;
+        return PackedLanes.count(this::copyCompressedInts, getBitSize(), getOriginalLength(), key, key + 1);
+    }
+
+    /**
+     * In unsigned mode with at most 8 bits per value, the sum is computed bit plane by bit plane (see
+     * {@link PackedLanes})
+     */
+    @Override
+    protected long sumValues() {
+        if (isSigned() || getBitSize() > PackedLanes.MAX_BIT_PLANE_SUM_BIT_SIZE) return super.sumValues();
+        return PackedLanes.sum(this::copyCompressedInts, getBitSize(), getBitSize(), getOriginalLength());
+    }
+
+    @Override
+    protected int countInRangeValues(int lo, int hi) {
+        if (isSigned()) return super.countInRangeValues(lo, hi);
+        return PackedLanes.count(this::copyCompressedInts, getBitSize(), getOriginalLength(), lo, hi);
+    }
+
+    @Override
+    protected void filterValues(int lo, int hi, BitSet selection) {
+        if (isSigned()) {
+            super.filterValues(lo, hi, selection);
+            return;
+        }
+        PackedLanes.filter(this::copyCompressedInts, getBitSize(), getOriginalLength(), lo, hi, selection::set);
+    }
+
+    @Override
+    public int get(int i) {
+        if (i < 0 || i >= getOriginalLength()) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+
+        int bitSize = getBitSize();
+
+        // The value starts at bit i * bitSize and may overlap to the next word
+        return decode(getCompressedStorage().readBits((long) i * bitSize, bitSize));
+    }
+}
@@ -1,12 +1,97 @@
 package com.dcarriba.bitpacking.versions;
 
+import com.dcarriba.bitpacking.AbstractIntCursor;
 import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.BitReader;
+import com.dcarriba.bitpacking.IntCursor;
+import com.dcarriba.bitpacking.storage.StorageType;
+import com.dcarriba.bitpacking.storage.WordStorage;
+
+import java.nio.IntBuffer;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * {@link BitPackingWithoutOverlap} is a {@link BitPacking} implementation where compressed values do not overlap to
  * the next integer, i.e. compressed values are never written on two consecutive integers inside the compressed array.
+ * <p>
+ * The compressed data can also be kept off-heap (see {@link StorageType}), in a {@link WordStorage} whose words split
+ * into 32-bit integers give the compressed array. The searches and aggregations then decode the values window by
+ * window instead of comparing the lanes of each integer at once. An off-heap storage is released by {@link #close()}.
+ * </p>
+ * <p>
+ * In parallel mode, large arrays are split into chunks of a multiple of 32 / bitSize values (see
+ * {@link ParallelRanges#alignedChunkSize(int)}), which are compressed (and decompressed) by the tasks of a
+ * {@link ForkJoinPool} into disjoint integers of the compressed array.
+ * </p>
  */
 public class BitPackingWithoutOverlap extends BitPacking {
+    /** Number of integers read at once from the storage when the compressed data is kept in a storage */
+    private static final int STORAGE_WINDOW_SIZE = 256;
+
+    /** Pool running the compression and decompression tasks, or null to run them sequentially */
+    private final ForkJoinPool pool;
+    /** Where the compressed data is kept: in an int array on the heap, or in an off-heap storage */
+    private final StorageType storageType;
+
+    /**
+     * Constructor for a {@link BitPackingWithoutOverlap} compressing only non-negative integers
+     */
+    public BitPackingWithoutOverlap() {
+        this(false);
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithoutOverlap}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     */
+    public BitPackingWithoutOverlap(boolean signed) {
+        this(signed, StorageType.HEAP);
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithoutOverlap}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     * @param pool pool running the compression and decompression tasks, or null to run them sequentially
+     */
+    public BitPackingWithoutOverlap(boolean signed, ForkJoinPool pool) {
+        super(signed);
+        this.pool = pool;
+        this.storageType = StorageType.HEAP;
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithoutOverlap}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     * @param storageType where the compressed data is kept
+     */
+    public BitPackingWithoutOverlap(boolean signed, StorageType storageType) {
+        super(signed);
+        if (storageType == null) {
+            throw new IllegalArgumentException("storageType can't be null");
+        }
+        this.pool = null;
+        this.storageType = storageType;
+    }
+
+    @Override
+    public StorageType getStorageType() {
+        return storageType;
+    }
+
+    /**
+     * @throws UnsupportedOperationException if the compressed data is kept off-heap
+     */
+    @Override
+    public int compress(int[] array, int[] buffer) {
+        if (storageType != StorageType.HEAP) {
+            throw new UnsupportedOperationException("The compressed data is kept off-heap, not in an int buffer");
+        }
+        return super.compress(array, buffer);
+    }
 
     @Override
     public void compress(int[] array) {
@@ -15,21 +100,84 @@ public class BitPackingWithoutOverlap extends BitPacking {
         }
 
         // Number of bits needed to represent the largest value of the array
-        int bitSize = calculateBitSize(array);
+        int bitSize = ParallelRanges.max(pool, array.length, (from, to) -> calculateBitSize(array, from, to));
+
+        pack(IntBuffer.wrap(array), bitSize);
+    }
+
+    /**
+     * Compresses the remaining values of the buffer directly from the buffer, without copying them into an array.
+     * The position of the buffer isn't changed.
+     *
+     * @param buffer Buffer containing the values to be compressed
+     */
+    @Override
+    public void compressBuffer(IntBuffer buffer) {
+        if (buffer == null || !buffer.hasRemaining()) {
+            throw new IllegalArgumentException("The buffer can't be null or empty.");
+        }
+
+        // Number of bits needed to represent the largest value of the buffer
+        pack(buffer, calculateBufferBitSize(buffer));
+    }
+
+    /**
+     * Packs all remaining values of the buffer on the given number of bits, without changing its position
+     *
+     * @param buffer buffer containing the values to be compressed
+     * @param bitSize number of bits each value is coded on (at least the number of bits needed by the largest value)
+     */
+    private void pack(IntBuffer buffer, int bitSize) {
+        int start = buffer.position();
+        int length = buffer.remaining();
 
         setBitSize(bitSize);
-        setOriginalLength(array.length);
+        setOriginalLength(length);
 
         // Number of values that can fit in a single 32-bit integer
         int valuesPerInt = 32 / bitSize;
 
         // Number of 32-bit integers needed for all compressed values
-        int compressedArrayLength = (array.length + valuesPerInt - 1) / valuesPerInt;
+        int compressedArrayLength = (length + valuesPerInt - 1) / valuesPerInt;
+
+        if (storageType != StorageType.HEAP) {
+            // The value i is at the same bit position of the integers of the storage
+            WordStorage storage = storageType.allocate((compressedArrayLength + 1) / 2);
+            for (int i = 0; i < length; i++) {
+                storage.writeBits((long) (i / valuesPerInt) * 32 + (long) (i % valuesPerInt) * bitSize,
+                        encode(buffer.get(start + i)), bitSize);
+            }
+            setCompressedStorage(storage, compressedArrayLength);
+            return;
+        }
+
+        int[] compressedArray = allocateCompressedArray(compressedArrayLength);
+
+        // Compresses the values chunk by chunk (the chunks are compressed in parallel in parallel mode)
+        ParallelRanges.forEach(pool, length, ParallelRanges.alignedChunkSize(valuesPerInt),
+                (from, to) -> packRange(buffer, start, from, to, compressedArray, bitSize));
 
-        int[] compressedArray = new int[compressedArrayLength];
+        setCompressedArray(compressedArray, compressedArrayLength);
+    }
+
+    /**
+     * Packs a range of the values of the buffer into the compressed array
+     *
+     * @param buffer buffer containing the values to be compressed
+     * @param start index of the buffer of the first value to be compressed
+     * @param from index (relative to start) of the first value of the range, at the beginning of an integer
+     * @param to index (relative to start) after the last value of the range
+     * @param compressedArray array receiving the compressed values
+     * @param bitSize number of bits each value is coded on
+     */
+    private void packRange(IntBuffer buffer, int start, int from, int to, int[] compressedArray, int bitSize) {
+        int valuesPerInt = 32 / bitSize;
+
+        // Mask keeping the lowest bitSize bits of an integer
+        int mask = (int) (-1L >>> (64 - bitSize));
 
-        for (int i = 0; i < array.length; i++) {
-            int value = array[i];
+        for (int i = from; i < to; i++) {
+            int value = encode(buffer.get(start + i));
 
             // Determines which integer of compressedArray the current value should be in
             int intIndex = i / valuesPerInt;
@@ -38,10 +186,297 @@ public class BitPackingWithoutOverlap extends BitPacking {
             int bitOffset = (i % valuesPerInt) * bitSize;
 
             // Adds the compressed value to the integer without affecting previously compressed values
-            compressedArray[intIndex] |= (value & ((1 << bitSize) - 1)) << (32 - (bitOffset + bitSize));
+            compressedArray[intIndex] |= (value & mask) << (32 - (bitOffset + bitSize));
+        }
+    }
+
+    @Override
+    protected void decompressValues(int[] array, int offset) {
+        ParallelRanges.forEach(pool, getOriginalLength(), ParallelRanges.alignedChunkSize(32 / getBitSize()),
+                (from, to) -> decodeRangeValues(from, to, array, offset + from));
+    }
+
+    @Override
+    protected void decodeRangeValues(int from, int to, int[] dest, int destOff) {
+        WordStorage storage = getCompressedStorage();
+        if (storage == null) {
+            decodeRange(getCompressedArray(), 0, from, to, dest, destOff);
+            return;
+        }
+
+        // Reads the integers of the storage window by window, each window containing whole integers
+        int valuesPerInt = 32 / getBitSize();
+        int[] window = new int[STORAGE_WINDOW_SIZE];
+        for (int windowStart = from; windowStart < to; ) {
+            int firstInt = windowStart / valuesPerInt;
+            int windowEnd = (int) Math.min(to, (long) (firstInt + STORAGE_WINDOW_SIZE) * valuesPerInt);
+            int lastInt = (windowEnd - 1) / valuesPerInt;
+
+            storage.readInts(firstInt, lastInt + 1, window, 0);
+            decodeRange(window, firstInt, windowStart, windowEnd, dest, destOff + windowStart - from);
+            windowStart = windowEnd;
+        }
+    }
+
+    /**
+     * Decodes the values from index from (inclusive) to index to (exclusive) from integers of the compressed data
+     *
+     * @param compressedArray array containing the integers
+     * @param firstInt index (inside the compressed data) of the first integer of compressedArray
+     * @param from index of the first value to decode
+     * @param to index after the last value to decode
+     * @param dest array receiving the values
+     * @param destOff index of dest at which the first value is placed
+     */
+    private void decodeRange(int[] compressedArray, int firstInt, int from, int to, int[] dest, int destOff) {
+        int bitSize = getBitSize();
+
+        int valuesPerInt = 32 / bitSize;
+        int mask = (int) (-1L >>> (64 - bitSize));
+
+        // Walks through the compressed array once, extracting all values of each integer
+        int i = from;
+        for (int intIndex = from / valuesPerInt; i < to; intIndex++) {
+            int compressedInt = compressedArray[intIndex - firstInt];
+            int firstValue = i % valuesPerInt;
+            int valuesInInt = Math.min(valuesPerInt - firstValue, to - i);
+
+            int shift = 32 - bitSize - firstValue * bitSize;
+            for (int k = 0; k < valuesInInt; k++) {
+                dest[destOff + i - from] = decode((compressedInt >>> shift) & mask);
+                shift -= bitSize;
+                i++;
+            }
+        }
+    }
+
+    @Override
+    protected IntCursor createCursor(int from, int to) {
+        int bitSize = getBitSize();
+        int valuesPerInt = 32 / bitSize;
+        int unusedBits = 32 - valuesPerInt * bitSize;
+        BitReader reader = createBitReader((long) (from / valuesPerInt) * 32 + (long) (from % valuesPerInt) * bitSize);
+
+        return new AbstractIntCursor(from, to) {
+            /** Number of values already read from the current integer */
+            private int valuesInInt = from % valuesPerInt;
+
+            @Override
+            protected int readNext() {
+                // Skips the unused bits at the end of each integer
+                if (valuesInInt == valuesPerInt) {
+                    reader.skip(unusedBits);
+                    valuesInInt = 0;
+                }
+                valuesInInt++;
+                return decode(reader.read(bitSize));
+            }
+        };
+    }
+
+    @Override
+    protected int indexOfValue(int value) {
+        if (!fitsBitSize(value)) return -1;
+        return getCompressedStorage() == null ? searchLanes(encode(value), false) : super.indexOfValue(value);
+    }
+
+    @Override
+    protected int countValue(int value) {
+        if (!fitsBitSize(value)) return 0;
+        return getCompressedStorage() == null ? searchLanes(encode(value), true) : super.countValue(value);
+    }
+
+    /**
+     * Compares all values of each integer of the compressed array with the key at once (SWAR): the key is repeated in
+     * every lane, so that the lanes equal to the key become 0 after a xor. The zero lanes are then detected without
+     * any carry crossing a lane: the high bit of a lane of ((x & lowBits) + lowBits) | x is set if the lane isn't 0.
+     *
+     * @param key the packed (zigzag encoded) value to search
+     * @param count if all occurrences are counted, instead of returning the first one
+     * @return the number of occurrences of the key if count is true, else the index of its first occurrence (or -1)
+     */
+    private int searchLanes(int key, boolean count) {
+        int[] compressedArray = getCompressedArray();
+        int bitSize = getBitSize();
+        int valuesPerInt = 32 / bitSize;
+
+        // Key repeated in every lane, low bits (all bits except the high bit) and high bit of every lane
+        int keys = 0;
+        int lowBits = 0;
+        int highBits = 0;
+        for (int k = 0; k < valuesPerInt; k++) {
+            int shift = 32 - (k + 1) * bitSize;
+            keys |= key << shift;
+            lowBits |= (int) (((1L << (bitSize - 1)) - 1) << shift);
+            highBits |= 1 << (shift + bitSize - 1);
+        }
+
+        int occurrences = 0;
+        for (int intIndex = 0; intIndex < getCompressedLength(); intIndex++) {
+            int x = compressedArray[intIndex] ^ keys;
+            int matches = ~(((x & lowBits) + lowBits) | x) & highBits;
+
+            // The unused lanes of the last integer must not match a key equal to 0
+            int valuesInInt = getOriginalLength() - intIndex * valuesPerInt;
+            if (valuesInInt < valuesPerInt) {
+                matches &= (int) (-1L << (32 - valuesInInt * bitSize));
+            }
+
+            if (count) {
+                occurrences += Integer.bitCount(matches);
+            } else if (matches != 0) {
+                // The first matching lane is the one with the most significant high bit
+                return intIndex * valuesPerInt + Integer.numberOfLeadingZeros(matches) / bitSize;
+            }
+        }
+
+        return count ? occurrences : -1;
+    }
+
+    /**
+     * In unsigned mode with at most 8 bits per value, the sum is computed bit plane by bit plane: the j-th bits of
+     * all lanes of an integer are counted at once with a single bit count.
+     */
+    @Override
+    protected long sumValues() {
+        int bitSize = getBitSize();
+        if (isSigned() || bitSize > 8 || getCompressedStorage() != null) return super.sumValues();
+
+        int valuesPerInt = 32 / bitSize;
+
+        // Mask of the j-th bit of every lane
+        int[] bitPlanes = new int[bitSize];
+        for (int k = 0; k < valuesPerInt; k++) {
+            for (int j = 0; j < bitSize; j++) {
+                bitPlanes[j] |= 1 << (32 - (k + 1) * bitSize + j);
+            }
+        }
+
+        // The unused lanes of the last integer are 0, they don't change the sum
+        long sum = 0;
+        int[] compressedArray = getCompressedArray();
+        for (int intIndex = 0; intIndex < getCompressedLength(); intIndex++) {
+            int compressedInt = compressedArray[intIndex];
+            for (int j = 0; j < bitSize; j++) {
+                sum += (long) Integer.bitCount(compressedInt & bitPlanes[j]) << j;
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    protected int countInRangeValues(int lo, int hi) {
+        if (isSigned() || getCompressedStorage() != null) return super.countInRangeValues(lo, hi);
+
+        int[] occurrences = {0};
+        selectLanes(lo, hi, (intIndex, matches) -> occurrences[0] += Long.bitCount(matches));
+        return occurrences[0];
+    }
+
+    @Override
+    protected void filterValues(int lo, int hi, BitSet selection) {
+        if (isSigned() || getCompressedStorage() != null) {
+            super.filterValues(lo, hi, selection);
+            return;
+        }
+
+        int bitSize = getBitSize();
+        int valuesPerInt = 32 / bitSize;
+        selectLanes(lo, hi, (intIndex, matches) -> {
+            // The guard bit of the lane k is the bit 32 - k * bitSize
+            for (; matches != 0; matches &= matches - 1) {
+                int lane = (32 - Long.numberOfTrailingZeros(matches)) / bitSize;
+                selection.set(intIndex * valuesPerInt + lane);
+            }
+        });
+    }
+
+    /**
+     * Receives the lanes of an integer of the compressed array selected by {@link #selectLanes(int, int, LaneAction)}
+     */
+    private interface LaneAction {
+        /**
+         * @param intIndex index of the integer
+         * @param matches guard bits (bit 32 - k * bitSize for the lane k) of the selected lanes
+         */
+        void accept(int intIndex, long matches);
+    }
+
+    /**
+     * Compares all values of each integer of the compressed array with the range [lo, hi) at once (SWAR), in unsigned
+     * mode. The even and the odd lanes are compared separately, so that each lane has a free guard bit right above
+     * it (the lowest bit of the previous lane): after setting the guard bits, subtracting lo from every lane clears
+     * the guard bit of the lanes lower than lo, and the borrow never reaches the next lane.
+     *
+     * @param lo smallest value of the range (inclusive)
+     * @param hi end of the range (exclusive)
+     * @param action receives the selected lanes of each integer containing at least one of them
+     */
+    private void selectLanes(int lo, int hi, LaneAction action) {
+        int bitSize = getBitSize();
+        int valuesPerInt = 32 / bitSize;
+
+        // Only the values between 0 and 2^bitSize - 1 can be compressed
+        long low = Math.max(lo, 0);
+        long high = Math.min(hi, 1L << bitSize);
+        if (low >= high) return;
+
+        // For the even (p = 0) and the odd (p = 1) lanes: lanes mask, guard bits, lo and hi repeated in every lane
+        long[] lanes = new long[2];
+        long[] guards = new long[2];
+        long[] lows = new long[2];
+        long[] highs = new long[2];
+        for (int k = 0; k < valuesPerInt; k++) {
+            int shift = 32 - (k + 1) * bitSize;
+            lanes[k & 1] |= (-1L >>> (64 - bitSize)) << shift;
+            guards[k & 1] |= 1L << (shift + bitSize);
+            lows[k & 1] |= low << shift;
+            highs[k & 1] |= high << shift;
         }
+        long allGuards = guards[0] | guards[1];
+
+        int[] compressedArray = getCompressedArray();
+        for (int intIndex = 0; intIndex < getCompressedLength(); intIndex++) {
+            long compressedInt = compressedArray[intIndex] & 0xFFFFFFFFL;
+
+            long matches = 0;
+            for (int p = 0; p < 2; p++) {
+                long x = (compressedInt & lanes[p]) | guards[p];
+                long atLeastLow = (x - lows[p]) & guards[p];
+                long belowHigh = ~(x - highs[p]) & guards[p];
+                matches |= atLeastLow & belowHigh;
+            }
+
+            // The unused lanes of the last integer must not be selected
+            int valuesInInt = getOriginalLength() - intIndex * valuesPerInt;
+            if (valuesInInt < valuesPerInt) {
+                matches &= allGuards & (-1L << (32 - (valuesInInt - 1) * bitSize));
+            }
 
-        setCompressedArray(compressedArray);
+            if (matches != 0) action.accept(intIndex, matches);
+        }
+    }
+
+    /**
+     * The value is overwritten in its place when it fits the bit size. Else, all values are repacked once on a wider
+     * bit size, with {@link #WIDTH_PROMOTION_HEADROOM} more bits than needed, widened to the largest bit size with the
+     * same number of values per integer (which costs no space), so that the next larger values still fit.
+     */
+    @Override
+    protected void setValue(int i, int value) {
+        int key = encode(value);
+        int requiredBitSize = calculateBitSize(key);
+
+        if (requiredBitSize > getBitSize()) {
+            int[] array = new int[getOriginalLength()];
+            decompressValues(array, 0);
+            int bitSize = Math.min(32, requiredBitSize + WIDTH_PROMOTION_HEADROOM);
+            pack(IntBuffer.wrap(array), 32 / (32 / bitSize));
+        }
+
+        int bitSize = getBitSize();
+        int valuesPerInt = 32 / bitSize;
+        overwriteCompressedBits((long) (i / valuesPerInt) * 32 + (long) (i % valuesPerInt) * bitSize, key, bitSize);
     }
 
     @Override
@@ -59,7 +494,13 @@ public class BitPackingWithoutOverlap extends BitPacking {
         // Calculates the bit offset at which the wanted value is
         int bitOffset = (i % valuesPerInt) * bitSize;
 
+        WordStorage storage = getCompressedStorage();
+        if (storage != null) {
+            return decode(storage.readBits((long) intIndex * 32 + bitOffset, bitSize));
+        }
+
         // Returns the wanted value as a normal 32-bit integer
-        return (getCompressedArray()[intIndex] >>> (32 - (bitOffset + bitSize))) & ((1 << bitSize) - 1);
+        int mask = (int) (-1L >>> (64 - bitSize));
+        return decode((getCompressedArray()[intIndex] >>> (32 - (bitOffset + bitSize))) & mask);
     }
 }
@@ -0,0 +1,290 @@
+package com.dcarriba.bitpacking.versions;
+
+import com.dcarriba.bitpacking.AbstractIntCursor;
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.IntCursor;
+import com.dcarriba.bitpacking.storage.StorageType;
+import com.dcarriba.bitpacking.storage.WordStorage;
+
+import java.nio.IntBuffer;
+
+/**
+ * {@link BitPackingWithoutOverlap64} is a {@link BitPacking} implementation with the same layout as
+ * {@link BitPackingWithoutOverlap}, but stored in 64-bit words (a {@link WordStorage}) instead of 32-bit integers.
+ * <p>
+ * A 64-bit word can fit more values than two 32-bit integers: for example with a bit size of 17, a word contains 3
+ * values (51 of 64 bits used), while a 32-bit integer only contains 1 value (17 of 32 bits used). Values never overlap
+ * to the next word, so each value is read with a single 64-bit load.
+ * </p>
+ * <p>
+ * The words can be stored on the heap or off-heap (see {@link StorageType}), and the values can be compressed
+ * directly from an {@link IntBuffer}. An off-heap storage is released by {@link #close()}.
+ * </p>
+ */
+public class BitPackingWithoutOverlap64 extends BitPacking {
+    /** Where the storage containing the compressed data is allocated */
+    private final StorageType storageType;
+
+    /**
+     * Constructor for a {@link BitPackingWithoutOverlap64} compressing only non-negative integers
+     */
+    public BitPackingWithoutOverlap64() {
+        this(false);
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithoutOverlap64}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     */
+    public BitPackingWithoutOverlap64(boolean signed) {
+        this(signed, StorageType.HEAP);
+    }
+
+    /**
+     * Constructor for {@link BitPackingWithoutOverlap64}
+     *
+     * @param signed if negative integers can be compressed (using a zigzag encoding)
+     * @param storageType where the storage containing the compressed data is allocated
+     */
+    public BitPackingWithoutOverlap64(boolean signed, StorageType storageType) {
+        super(signed);
+        if (storageType == null) {
+            throw new IllegalArgumentException("storageType can't be null");
+        }
+        this.storageType = storageType;
+    }
+
+    /**
+     * @return Where the storage containing the compressed data is allocated
+     */
+    @Override
+    public StorageType getStorageType() {
+        return storageType;
+    }
+
+    /**
+     * @return Storage containing the compressed data
+     */
+    public WordStorage getStorage() {
+        return getCompressedStorage();
+    }
+
+    /**
+     * The compressed data is kept in 64-bit words, which can't be written into an int buffer
+     *
+     * @throws UnsupportedOperationException always
+     */
+    @Override
+    public int compress(int[] array, int[] buffer) {
+        throw new UnsupportedOperationException("The compressed data is kept in 64-bit words, not in an int buffer");
+    }
+
+    /**
+     * Restores the words from compressed data split into 32-bit integers (as returned by
+     * {@link #getCompressedArray()}).
+     *
+     * @throws IllegalArgumentException if the number of integers is odd, since they come from whole 64-bit words
+     */
+    @Override
+    protected void restore(int[] compressedArray, int originalLength, int bitSize, int[] layoutParameters) {
+        if (layoutParameters.length != 0) {
+            throw new IllegalArgumentException("Expected 0 layout parameters");
+        }
+        if (compressedArray.length % 2 != 0) {
+            throw new IllegalArgumentException("Expected an even number of integers for 64-bit words");
+        }
+
+        setCompressedStorage(storageType.copyOf(compressedArray, compressedArray.length), compressedArray.length);
+        setOriginalLength(originalLength);
+        setBitSize(bitSize);
+    }
+
+    @Override
+    public void compress(int[] array) {
+        if (array == null || array.length == 0) {
+            throw new IllegalArgumentException("The array can't be null or empty.");
+        }
+
+        compressBuffer(IntBuffer.wrap(array));
+    }
+
+    /**
+     * Compresses the remaining values of the buffer directly from the buffer, without copying them into an array.
+     * The position of the buffer isn't changed.
+     *
+     * @param buffer Buffer containing the values to be compressed
+     */
+    @Override
+    public void compressBuffer(IntBuffer buffer) {
+        if (buffer == null || !buffer.hasRemaining()) {
+            throw new IllegalArgumentException("The buffer can't be null or empty.");
+        }
+
+        // Number of bits needed to represent the largest value of the buffer
+        int bitSize = calculateBufferBitSize(buffer);
+        int start = buffer.position();
+        int length = buffer.remaining();
+
+        setBitSize(bitSize);
+        setOriginalLength(length);
+
+        // Number of values that can fit in a single 64-bit word
+        int valuesPerWord = 64 / bitSize;
+
+        // Number of 64-bit words needed for all compressed values
+        int wordCount = (length + valuesPerWord - 1) / valuesPerWord;
+
+        // Releases the storage of the previous compression
+        close();
+        WordStorage storage = storageType.allocate(wordCount);
+
+        long mask = -1L >>> (64 - bitSize);
+        int i = start;
+        for (int wordIndex = 0; wordIndex < wordCount; wordIndex++) {
+            int valuesInWord = Math.min(valuesPerWord, start + length - i);
+
+            // Builds the whole word before storing it, from its most significant bit
+            long word = 0;
+            int shift = 64 - bitSize;
+            for (int k = 0; k < valuesInWord; k++) {
+                word |= (encode(buffer.get(i++)) & mask) << shift;
+                shift -= bitSize;
+            }
+            storage.setWord(wordIndex, word);
+        }
+
+        setCompressedStorage(storage, 2 * wordCount);
+    }
+
+    @Override
+    protected void decompressValues(int[] array, int offset) {
+        decodeRangeValues(0, getOriginalLength(), array, offset);
+    }
+
+    @Override
+    protected void decodeRangeValues(int from, int to, int[] dest, int destOff) {
+        WordStorage storage = getCompressedStorage();
+        int bitSize = getBitSize();
+
+        int valuesPerWord = 64 / bitSize;
+        long mask = -1L >>> (64 - bitSize);
+
+        // Walks through the words once, extracting all values of each word
+        int i = from;
+        for (int wordIndex = from / valuesPerWord; i < to; wordIndex++) {
+            long word = storage.getWord(wordIndex);
+            int firstValue = i % valuesPerWord;
+            int valuesInWord = Math.min(valuesPerWord - firstValue, to - i);
+
+            int shift = 64 - bitSize - firstValue * bitSize;
+            for (int k = 0; k < valuesInWord; k++) {
+                dest[destOff + i - from] = decode((int) ((word >>> shift) & mask));
+                shift -= bitSize;
+                i++;
+            }
+        }
+    }
+
+    @Override
+    protected IntCursor createCursor(int from, int to) {
+        int bitSize = getBitSize();
+        int valuesPerWord = 64 / bitSize;
+        long mask = -1L >>> (64 - bitSize);
+        WordStorage storage = getCompressedStorage();
+
+        // Extracts all values of each word, like decompressValues
+        return new AbstractIntCursor(from, to) {
+            private int wordIndex = from / valuesPerWord;
+            private long word = wordIndex < storage.getWordCount() ? storage.getWord(wordIndex) : 0;
+            private int shift = 64 - bitSize - (from % valuesPerWord) * bitSize;
+
+            @Override
+            protected int readNext() {
+                if (shift < 0) {
+                    word = storage.getWord(++wordIndex);
+                    shift = 64 - bitSize;
+                }
+
+                int value = (int) ((word >>> shift) & mask);
+                shift -= bitSize;
+                return decode(value);
+            }
+        };
+    }
+
+    @Override
+    protected int indexOfValue(int value) {
+        return fitsBitSize(value) ? searchLanes(encode(value), false) : -1;
+    }
+
+    @Override
+    protected int countValue(int value) {
+        return fitsBitSize(value) ? searchLanes(encode(value), true) : 0;
+    }
+
+    /**
+     * Compares all values of each word with the key at once (SWAR), like {@link BitPackingWithoutOverlap}: the key is
+     * repeated in every lane, so that the lanes equal to the key become 0 after a xor, and the zero lanes are then
+     * detected without any carry crossing a lane.
+     *
+     * @param key the packed (zigzag encoded) value to search
+     * @param count if all occurrences are counted, instead of returning the first one
+     * @return the number of occurrences of the key if count is true, else the index of its first occurrence (or -1)
+     */
+    private int searchLanes(int key, boolean count) {
+        int bitSize = getBitSize();
+        int valuesPerWord = 64 / bitSize;
+
+        // Key repeated in every lane, low bits (all bits except the high bit) and high bit of every lane
+        long keys = 0;
+        long lowBits = 0;
+        long highBits = 0;
+        for (int k = 0; k < valuesPerWord; k++) {
+            int shift = 64 - (k + 1) * bitSize;
+            keys |= (key & 0xFFFFFFFFL) << shift;
+            lowBits |= ((1L << (bitSize - 1)) - 1) << shift;
+            highBits |= 1L << (shift + bitSize - 1);
+        }
+
+        WordStorage storage = getCompressedStorage();
+        int occurrences = 0;
+        for (int wordIndex = 0; wordIndex < storage.getWordCount(); wordIndex++) {
+            long x = storage.getWord(wordIndex) ^ keys;
+            long matches = ~(((x & lowBits) + lowBits) | x) & highBits;
+
+            // The unused lanes of the last word must not match a key equal to 0
+            int valuesInWord = getOriginalLength() - wordIndex * valuesPerWord;
+            if (valuesInWord < valuesPerWord) {
+                matches &= -1L << (64 - valuesInWord * bitSize);
+            }
+
+            if (count) {
+                occurrences += Long.bitCount(matches);
+            } else if (matches != 0) {
+                // The first matching lane is the one with the most significant high bit
+                return wordIndex * valuesPerWord + Long.numberOfLeadingZeros(matches) / bitSize;
+            }
+        }
+
+        return count ? occurrences : -1;
+    }
+
+    @Override
+    public int get(int i) {
+        if (i < 0 || i >= getOriginalLength()) {
+            throw new IndexOutOfBoundsException("Index out of bounds");
+        }
+
+        int bitSize = getBitSize();
+        int valuesPerWord = 64 / bitSize;
+
+        // Calculates in which word the i-th value is contained in, and at which bit offset
+        int wordIndex = i / valuesPerWord;
+        int bitOffset = (i % valuesPerWord) * bitSize;
+
+        // Returns the wanted value as a normal 32-bit integer
+        long mask = -1L >>> (64 - bitSize);
+        return decode((int) ((getCompressedStorage().getWord(wordIndex) >>> (64 - (bitOffset + bitSize))) & mask));
+    }
+}
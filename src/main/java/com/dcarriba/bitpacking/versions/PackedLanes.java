@@ -0,0 +1,233 @@
+package com.dcarriba.bitpacking.versions;
+
+import java.util.function.IntConsumer;
+
+/**
+ * {@link PackedLanes} computes aggregations directly on values packed one after the other on bitSize bits, from the
+ * most significant to the least significant bit of each integer: the layout of {@link BitPackingWithOverlap}, of the
+ * words of {@link BitPackingWithOverlap64} split into their high and low halves, and of the slots of
+ * {@link BitPackingWithOverflowArea}.
+ * <p>
+ * Unlike with {@link BitPackingWithoutOverlap}, the values (the lanes) aren't at the same place in every integer, and
+ * may overlap to the next integer. Their place repeats every bitSize / gcd(bitSize, 32) integers though, so the masks
+ * of the kernels are only computed once for each phase of this period. Each integer is read together with the next
+ * one, so that all the lanes starting in the integer are complete.
+ * </p>
+ */
+final class PackedLanes {
+    /** Largest bit size for which the sum is computed bit plane by bit plane */
+    static final int MAX_BIT_PLANE_SUM_BIT_SIZE = 8;
+    /** Number of integers read at once from the compressed data */
+    private static final int WINDOW_SIZE = 1024;
+
+    /** Reads integers of the compressed data, like {@code BitPacking.copyCompressedArray} */
+    interface IntReader {
+        /**
+         * @param from index of the first integer to read
+         * @param to index after the last integer to read
+         * @param dest array receiving the integers
+         * @param destOff index of dest at which the first integer is placed
+         */
+        void read(int from, int to, int[] dest, int destOff);
+    }
+
+    /** Receives the lanes of an integer selected by {@link #select(IntReader, int, int, long, long, LaneAction)} */
+    private interface LaneAction {
+        /**
+         * @param intIndex index of the integer
+         * @param matches guard bits (bit 63 - s for the lane starting at the bit s of the integer) of the selected
+         * lanes
+         * @return if the next integers are still needed
+         */
+        boolean accept(int intIndex, long matches);
+    }
+
+    private PackedLanes() {}
+
+    /**
+     * Computes the sum of the lowest valueBits bits of the values bit plane by bit plane: the bits of the same weight
+     * of all values of an integer are counted at once with a single bit count.
+     *
+     * @param reader reads the integers of the compressed data
+     * @param bitSize number of bits of each value
+     * @param valueBits number of lowest bits of each value added to the sum (the other bits are ignored)
+     * @param count number of values
+     * @return the sum of the values
+     */
+    static long sum(IntReader reader, int bitSize, int valueBits, int count) {
+        int phases = phaseCount(bitSize);
+
+        // Mask of the bits of weight 2^j of every integer of each phase
+        int[][] bitPlanes = new int[phases][valueBits];
+        for (int phase = 0; phase < phases; phase++) {
+            for (int k = 0; k < 32; k++) {
+                int weight = bitSize - 1 - (int) (((long) phase * 32 + k) % bitSize);
+                if (weight < valueBits) bitPlanes[phase][weight] |= 1 << (31 - k);
+            }
+        }
+
+        long endBit = (long) count * bitSize;
+        int intCount = (int) ((endBit + 31) / 32);
+        int[] window = new int[Math.min(WINDOW_SIZE, intCount)];
+
+        long sum = 0;
+        for (int from = 0; from < intCount; from += window.length) {
+            int length = Math.min(window.length, intCount - from);
+            reader.read(from, from + length, window, 0);
+
+            // The bits after the last value (e.g. an overflow area) aren't part of the sum
+            if (from + length == intCount && endBit % 32 != 0) {
+                window[length - 1] &= -1 << (32 - endBit % 32);
+            }
+
+            for (int k = 0; k < length; k++) {
+                int[] planes = bitPlanes[(from + k) % phases];
+                int compressedInt = window[k];
+                for (int j = 0; j < valueBits; j++) {
+                    sum += (long) Integer.bitCount(compressedInt & planes[j]) << j;
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @param reader reads the integers of the compressed data
+     * @param bitSize number of bits of each value
+     * @param count number of values
+     * @param lo smallest packed value of the range (inclusive)
+     * @param hi end of the range (exclusive)
+     * @return the number of values v such that lo &lt;= v &lt; hi, the values being compared as unsigned integers
+     */
+    static int count(IntReader reader, int bitSize, int count, long lo, long hi) {
+        int[] occurrences = {0};
+        select(reader, bitSize, count, lo, hi, (intIndex, matches) -> {
+            occurrences[0] += Long.bitCount(matches);
+            return true;
+        });
+        return occurrences[0];
+    }
+
+    /**
+     * @param reader reads the integers of the compressed data
+     * @param bitSize number of bits of each value
+     * @param count number of values
+     * @param lo smallest packed value of the range (inclusive)
+     * @param hi end of the range (exclusive)
+     * @return the index of the first value v such that lo &lt;= v &lt; hi (compared as unsigned integers), or -1
+     */
+    static int indexOf(IntReader reader, int bitSize, int count, long lo, long hi) {
+        int[] index = {-1};
+        select(reader, bitSize, count, lo, hi, (intIndex, matches) -> {
+            // The first selected lane is the one with the most significant guard bit
+            index[0] = (int) ((32L * intIndex + Long.numberOfLeadingZeros(matches)) / bitSize);
+            return false;
+        });
+        return index[0];
+    }
+
+    /**
+     * @param reader reads the integers of the compressed data
+     * @param bitSize number of bits of each value
+     * @param count number of values
+     * @param lo smallest packed value of the range (inclusive)
+     * @param hi end of the range (exclusive)
+     * @param action receives the index of each value v such that lo &lt;= v &lt; hi (compared as unsigned integers),
+     * in increasing order
+     */
+    static void filter(IntReader reader, int bitSize, int count, long lo, long hi, IntConsumer action) {
+        select(reader, bitSize, count, lo, hi, (intIndex, matches) -> {
+            // The lanes are visited from the most significant guard bit, i.e. in the order of the values
+            while (matches != 0) {
+                int lane = Long.numberOfLeadingZeros(matches);
+                action.accept((int) ((32L * intIndex + lane) / bitSize));
+                matches &= ~(Long.MIN_VALUE >>> lane);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Compares all lanes starting in each integer with the range [lo, hi) at once (SWAR), like
+     * {@link BitPackingWithoutOverlap}. Each integer and the next one are read as a 64-bit window, shifted right by one
+     * bit so that the first lane also has a free guard bit above it (a lane starting in the integer never reaches the
+     * last bit of the next integer). The even and the odd lanes are compared separately, so that each lane has a free
+     * guard bit right above it: after setting the guard bits, subtracting lo from every lane clears the guard bit of
+     * the lanes lower than lo, and the borrow never reaches the next lane.
+     *
+     * @param reader reads the integers of the compressed data
+     * @param bitSize number of bits of each value
+     * @param count number of values
+     * @param lo smallest packed value of the range (inclusive)
+     * @param hi end of the range (exclusive)
+     * @param action receives the selected lanes of each integer containing at least one of them
+     */
+    private static void select(IntReader reader, int bitSize, int count, long lo, long hi, LaneAction action) {
+        // Only the values between 0 and 2^bitSize - 1 can be packed
+        long low = Math.max(lo, 0);
+        long high = Math.min(hi, 1L << bitSize);
+        if (low >= high) return;
+
+        // For each phase, and for the even (p = 0) and the odd (p = 1) lanes starting in an integer: lanes mask, guard
+        // bits, lo and hi repeated in every lane
+        int phases = phaseCount(bitSize);
+        long[][] lanes = new long[phases][2];
+        long[][] guards = new long[phases][2];
+        long[][] lows = new long[phases][2];
+        long[][] highs = new long[phases][2];
+        for (int phase = 0; phase < phases; phase++) {
+            int p = 0;
+            for (int s = (int) ((bitSize - (long) phase * 32 % bitSize) % bitSize); s < 32; s += bitSize) {
+                int shift = 63 - s - bitSize;
+                lanes[phase][p] |= (-1L >>> (64 - bitSize)) << shift;
+                guards[phase][p] |= 1L << (shift + bitSize);
+                lows[phase][p] |= low << shift;
+                highs[phase][p] |= high << shift;
+                p ^= 1;
+            }
+        }
+
+        long endBit = (long) count * bitSize;
+        int intCount = (int) ((endBit + 31) / 32);
+        int[] window = new int[Math.min(WINDOW_SIZE, intCount) + 1];
+
+        for (int from = 0; from < intCount; from += window.length - 1) {
+            int length = Math.min(window.length - 1, intCount - from);
+
+            // The next integer is also read, for the lanes overlapping to it
+            int readEnd = Math.min(from + length + 1, intCount);
+            reader.read(from, readEnd, window, 0);
+            if (readEnd == from + length) window[length] = 0;
+
+            for (int k = 0; k < length; k++) {
+                int intIndex = from + k;
+                int phase = intIndex % phases;
+                long x = (((long) window[k] << 32) | (window[k + 1] & 0xFFFFFFFFL)) >>> 1;
+
+                long matches = 0;
+                for (int p = 0; p < 2; p++) {
+                    long y = (x & lanes[phase][p]) | guards[phase][p];
+                    long atLeastLow = (y - lows[phase][p]) & guards[phase][p];
+                    long belowHigh = ~(y - highs[phase][p]) & guards[phase][p];
+                    matches |= atLeastLow & belowHigh;
+                }
+
+                // The lanes after the last value (e.g. in an overflow area) must not be selected
+                long lastLane = endBit - 32L * intIndex - bitSize;
+                if (lastLane < 31) {
+                    matches &= lastLane < 0 ? 0 : -1L << (63 - lastLane);
+                }
+
+                if (matches != 0 && !action.accept(intIndex, matches)) return;
+            }
+        }
+    }
+
+    /**
+     * @param bitSize number of bits of each value
+     * @return Number of integers after which the lanes are at the same place again, i.e. bitSize / gcd(bitSize, 32)
+     */
+    private static int phaseCount(int bitSize) {
+        return bitSize >>> Math.min(Integer.numberOfTrailingZeros(bitSize), 5);
+    }
+}
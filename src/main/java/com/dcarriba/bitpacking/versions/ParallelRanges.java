@@ -0,0 +1,177 @@
+package com.dcarriba.bitpacking.versions;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * {@link ParallelRanges} splits the indexes of a large array into chunks of {@link #CHUNK_SIZE} values, and runs an
+ * action on all chunks in a {@link ForkJoinPool}.
+ * <p>
+ * Since {@link #CHUNK_SIZE} is a multiple of 128, a chunk of values coded on the same number of bits always starts at
+ * the beginning of an integer of the compressed array (and of a group of 32 values or a block of 128 values). The
+ * chunks are therefore compressed into disjoint integers, and no locks are needed. Layouts where an integer holds
+ * a number of values which isn't a power of two (e.g. {@link BitPackingWithoutOverlap} with 3, 5, 6 or 10 values per
+ * integer) use the chunk size given by {@link #alignedChunkSize(int)} instead.
+ * </p>
+ */
+final class ParallelRanges {
+    /** Number of values handled by a single task */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    /** Interface of an action run on a range of the array */
+    interface RangeAction {
+        /**
+         * @param from index of the first value of the range
+         * @param to index after the last value of the range
+         */
+        void run(int from, int to);
+    }
+
+    /** Interface of a computation run on a range of the array */
+    interface RangeComputation {
+        /**
+         * @param from index of the first value of the range
+         * @param to index after the last value of the range
+         * @return the result for the range
+         */
+        int run(int from, int to);
+    }
+
+    private ParallelRanges() {}
+
+    /**
+     * @param valuesPerInt number of values held by each integer of the compressed array
+     * @return The largest chunk size not above {@link #CHUNK_SIZE} which is a multiple of valuesPerInt, so that every
+     * chunk starts at the beginning of an integer
+     */
+    static int alignedChunkSize(int valuesPerInt) {
+        return CHUNK_SIZE / valuesPerInt * valuesPerInt;
+    }
+
+    /**
+     * Runs an action on all chunks of the array, in parallel if a pool is given and the array has several chunks
+     *
+     * @param pool pool running the tasks, or null to run the action sequentially
+     * @param length length of the array
+     * @param action action run on each chunk
+     */
+    static void forEach(ForkJoinPool pool, int length, RangeAction action) {
+        forEach(pool, length, CHUNK_SIZE, action);
+    }
+
+    /**
+     * Runs an action on all chunks of chunkSize values of the array, in parallel if a pool is given and the array has
+     * several chunks
+     *
+     * @param pool pool running the tasks, or null to run the action sequentially
+     * @param length length of the array
+     * @param chunkSize number of values of each chunk (except the last one)
+     * @param action action run on each chunk
+     */
+    static void forEach(ForkJoinPool pool, int length, int chunkSize, RangeAction action) {
+        int chunkCount = (int) (((long) length + chunkSize - 1) / chunkSize);
+        if (pool == null || chunkCount <= 1) {
+            action.run(0, length);
+            return;
+        }
+
+        pool.invoke(new ForEachTask(action, length, chunkSize, 0, chunkCount));
+    }
+
+    /**
+     * Computes the maximum of a computation over all chunks of the array, in parallel if a pool is given and the
+     * array has several chunks
+     *
+     * @param pool pool running the tasks, or null to run the computation sequentially
+     * @param length length of the array
+     * @param computation computation run on each chunk
+     * @return the maximum result of all chunks
+     */
+    static int max(ForkJoinPool pool, int length, RangeComputation computation) {
+        int chunkCount = (int) (((long) length + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        if (pool == null || chunkCount <= 1) {
+            return computation.run(0, length);
+        }
+
+        return pool.invoke(new MaxTask(computation, length, CHUNK_SIZE, 0, chunkCount));
+    }
+
+    /**
+     * @param length length of the array
+     * @param chunkSize number of values of each chunk (except the last one)
+     * @param chunk index of the chunk
+     * @return Index of the first value of the chunk (or the length of the array after the last chunk)
+     */
+    private static int chunkStart(int length, int chunkSize, int chunk) {
+        return (int) Math.min((long) chunk * chunkSize, length);
+    }
+
+    /**
+     * Task running an action on a range of chunks
+     */
+    private static final class ForEachTask extends RecursiveAction {
+        private final RangeAction action;
+        private final int length;
+        private final int chunkSize;
+        private final int fromChunk;
+        private final int toChunk;
+
+        private ForEachTask(RangeAction action, int length, int chunkSize, int fromChunk, int toChunk) {
+            this.action = action;
+            this.length = length;
+            this.chunkSize = chunkSize;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (toChunk - fromChunk == 1) {
+                action.run(chunkStart(length, chunkSize, fromChunk), chunkStart(length, chunkSize, toChunk));
+                return;
+            }
+
+            // Splits the chunks in two halves, the first one is run by another thread
+            int middle = (fromChunk + toChunk) >>> 1;
+            ForEachTask left = new ForEachTask(action, length, chunkSize, fromChunk, middle);
+            left.fork();
+            new ForEachTask(action, length, chunkSize, middle, toChunk).compute();
+            left.join();
+        }
+    }
+
+    /**
+     * Task computing the maximum of a computation over a range of chunks
+     */
+    private static final class MaxTask extends RecursiveTask<Integer> {
+        private final RangeComputation computation;
+        private final int length;
+        private final int chunkSize;
+        private final int fromChunk;
+        private final int toChunk;
+
+        private MaxTask(RangeComputation computation, int length, int chunkSize, int fromChunk, int toChunk) {
+            this.computation = computation;
+            this.length = length;
+            this.chunkSize = chunkSize;
+            this.fromChunk = fromChunk;
+            this.toChunk = toChunk;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (toChunk - fromChunk == 1) {
+                return computation.run(chunkStart(length, chunkSize, fromChunk),
+                        chunkStart(length, chunkSize, toChunk));
+            }
+
+            // Splits the chunks in two halves, the first one is run by another thread
+            int middle = (fromChunk + toChunk) >>> 1;
+            MaxTask left = new MaxTask(computation, length, chunkSize, fromChunk, middle);
+            left.fork();
+            int right = new MaxTask(computation, length, chunkSize, middle, toChunk).compute();
+            return Math.max(left.join(), right);
+        }
+    }
+}
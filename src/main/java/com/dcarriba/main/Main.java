@@ -1,8 +1,13 @@
 package com.dcarriba.main;
 
+import com.dcarriba.benchmarks.RunCalculateTransmissionTimeAndIfWorth;
 import com.dcarriba.benchmarks.RunCompressionRatioBenchmarks;
+import com.dcarriba.benchmarks.RunConcurrentReadBenchmarks;
+import com.dcarriba.benchmarks.RunInterleavedPackerBenchmarks;
+import com.dcarriba.benchmarks.RunParallelBenchmarks;
+import com.dcarriba.benchmarks.RunRangeDecodeBenchmarks;
+import com.dcarriba.benchmarks.RunSortedSearchBenchmarks;
 import com.dcarriba.benchmarks.RunTimeBenchmarks;
-import com.dcarriba.benchmarks.RunCalculateTransmissionTimeAndIfWorth;
 
 /**
  * {@link Main} class of the project
@@ -27,6 +32,16 @@ public class Main {
         System.out.println("\n______________________________\n");
         RunTimeBenchmarks.run();
         System.out.println("\n______________________________\n");
+        RunInterleavedPackerBenchmarks.run();
+        System.out.println("\n______________________________\n");
+        RunParallelBenchmarks.run();
+        System.out.println("\n______________________________\n");
+        RunRangeDecodeBenchmarks.run();
+        System.out.println("\n______________________________\n");
+        RunSortedSearchBenchmarks.run();
+        System.out.println("\n______________________________\n");
+        RunConcurrentReadBenchmarks.run();
+        System.out.println("\n______________________________\n");
         RunCalculateTransmissionTimeAndIfWorth.run();
     }
 }
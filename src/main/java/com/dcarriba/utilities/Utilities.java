@@ -57,4 +57,62 @@ public class Utilities {
             array[i] = random.nextInt(maxValue);
         }
     }
+
+    /**
+     * Utility function to initialize an array with skewed random integers: most values are between 0 and maxValue,
+     * and a small percentage of them (the outliers) are between 0 and outlierMaxValue.
+     *
+     * @param array array to initialize
+     * @param maxValue maximum value of most of the random generated integers
+     * @param outlierMaxValue maximum value of the random generated outliers
+     * @param outlierPercentage percentage (between 0 and 100) of outliers inside the array
+     */
+    public static void initializeArrayWithRandomSkewedValues(int[] array, int maxValue, int outlierMaxValue,
+                                                             double outlierPercentage) {
+        Random random = new Random();
+
+        for (int i = 0; i < array.length; i++) {
+            if (random.nextDouble() * 100 < outlierPercentage) {
+                array[i] = random.nextInt(outlierMaxValue);
+            } else {
+                array[i] = random.nextInt(maxValue);
+            }
+        }
+    }
+
+    /**
+     * Utility function to initialize an array with a random walk (like a time series): the array starts at
+     * startValue, and each value differs from the previous one by a random step between -maxStep and maxStep.
+     * Values are kept between 0 and Integer.MAX_VALUE.
+     *
+     * @param array array to initialize
+     * @param startValue first value of the array
+     * @param maxStep maximum difference between two consecutive values
+     */
+    public static void initializeArrayWithRandomWalkValues(int[] array, int startValue, int maxStep) {
+        Random random = new Random();
+
+        long value = startValue;
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (int) value;
+            value = Math.max(0, Math.min(Integer.MAX_VALUE, value + random.nextInt(2 * maxStep + 1) - maxStep));
+        }
+    }
+
+    /**
+     * Utility function to initialize an array with sorted random integers (like sorted IDs or timestamps): the array
+     * starts at 0, and each value is greater than or equal to the previous one by a random gap between 0 and maxGap.
+     *
+     * @param array array to initialize
+     * @param maxGap maximum difference between two consecutive values
+     */
+    public static void initializeArrayWithRandomSortedValues(int[] array, int maxGap) {
+        Random random = new Random();
+
+        long value = 0;
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (int) value;
+            value = Math.min(Integer.MAX_VALUE, value + random.nextInt(maxGap + 1));
+        }
+    }
 }
@@ -0,0 +1,235 @@
+package com.dcarriba.bitpacking;
+
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.bitpacking.storage.StorageType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link BitPackingFileTest} provides unit tests for {@link BitPackingFile} and {@link MappedBitPacking}
+ */
+public class BitPackingFileTest {
+    @TempDir
+    Path directory;
+
+    /**
+     * Creates an array with mostly small values and a few large ones, so that every layout (including overflow areas
+     * and blocks with different bit sizes) is used, with an incomplete last block
+     */
+    private static int[] createArray(boolean signed) {
+        Random random = new Random(42);
+        int[] array = new int[1000];
+        for (int i = 0; i < array.length; i++) {
+            int value = random.nextInt(i % 97 == 0 ? 1 << 20 : 64);
+            array[i] = signed && random.nextBoolean() ? -value : value;
+        }
+        return array;
+    }
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        for (CompressionVersion compressionVersion : CompressionVersion.concreteValues()) {
+            for (boolean signed : new boolean[]{false, true}) {
+                int[] array = createArray(signed);
+                Path path = directory.resolve(compressionVersion.name() + signed + ".bpck");
+
+                try (BitPacking bitPacking = BitPackingFactory.createBitPacking(compressionVersion, signed)) {
+                    bitPacking.compress(array);
+                    BitPackingFile.write(bitPacking, path);
+                }
+
+                try (BitPacking bitPacking = BitPackingFile.read(path)) {
+                    assertEquals(compressionVersion, BitPackingFactory.getCompressionVersion(bitPacking));
+                    assertEquals(signed, bitPacking.isSigned());
+
+                    int[] result = new int[array.length];
+                    bitPacking.decompress(result);
+                    assertArrayEquals(array, result);
+                    assertEquals(array[500], bitPacking.get(500));
+                }
+            }
+        }
+    }
+
+    @Test
+    void testMap() throws IOException {
+        for (CompressionVersion compressionVersion : CompressionVersion.concreteValues()) {
+            for (boolean signed : new boolean[]{false, true}) {
+                int[] array = createArray(signed);
+                Path path = directory.resolve(compressionVersion.name() + signed + ".bpck");
+
+                int[] compressedArray;
+                try (BitPacking bitPacking = BitPackingFactory.createBitPacking(compressionVersion, signed)) {
+                    bitPacking.compress(array);
+                    compressedArray = bitPacking.getCompressedArray();
+                    BitPackingFile.write(bitPacking, path);
+                }
+
+                try (MappedBitPacking mapped = BitPackingFile.map(path)) {
+                    assertEquals(compressionVersion, mapped.getCompressionVersion());
+                    assertEquals(array.length, mapped.getOriginalLength());
+                    assertArrayEquals(compressedArray, mapped.getCompressedArray());
+
+                    for (int i = 0; i < array.length; i++) {
+                        assertEquals(array[i], mapped.get(i), "Index " + i);
+                    }
+
+                    int[] range = new int[310];
+                    mapped.decodeRange(250, 550, range, 10);
+                    for (int i = 0; i < 300; i++) {
+                        assertEquals(array[250 + i], range[10 + i]);
+                    }
+
+                    int[] result = new int[array.length];
+                    mapped.decompress(result);
+                    assertArrayEquals(array, result);
+                    assertArrayEquals(array, mapped.stream().toArray());
+
+                    assertEquals(Arrays.stream(array).asLongStream().sum(), mapped.sum());
+                    assertEquals(Arrays.stream(array).min().getAsInt(), mapped.min());
+                    assertEquals(Arrays.stream(array).max().getAsInt(), mapped.max());
+                    assertEquals(Arrays.stream(array).filter(value -> value == array[7]).count(),
+                            mapped.count(array[7]));
+                    assertEquals(Arrays.stream(array).filter(value -> value >= 0 && value <= 1000).count(),
+                            mapped.countInRange(0, 1000));
+                    assertEquals(array[7], array[mapped.indexOf(array[7])]);
+                    assertTrue(mapped.indexOf(array[7]) <= 7);
+
+                    int[] indices = {0, 3, 127, 128, 300, array.length - 1};
+                    int[] gathered = new int[indices.length];
+                    mapped.gather(indices, gathered);
+                    for (int k = 0; k < indices.length; k++) {
+                        assertEquals(array[indices[k]], gathered[k]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void testWriteAndMapAfterSet() throws IOException {
+        for (CompressionVersion compressionVersion : CompressionVersion.concreteValues()) {
+            int[] array = createArray(false);
+            Path path = directory.resolve(compressionVersion.name() + ".bpck");
+
+            try (BitPacking bitPacking = BitPackingFactory.createBitPacking(compressionVersion)) {
+                bitPacking.compress(array);
+                // New large values, e.g. appended to the overflow area, and an overflow value replaced by a small one
+                for (int i = 1; i < array.length; i += 50) {
+                    array[i] = 1 << 19;
+                    bitPacking.set(i, array[i]);
+                }
+                array[0] = 1;
+                bitPacking.set(0, 1);
+                BitPackingFile.write(bitPacking, path);
+            }
+
+            try (BitPacking bitPacking = BitPackingFile.read(path)) {
+                assertArrayEquals(array, bitPacking.stream().toArray());
+            }
+            try (MappedBitPacking mapped = BitPackingFile.map(path)) {
+                for (int i = 0; i < array.length; i++) {
+                    assertEquals(array[i], mapped.get(i), "Index " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testWriteOffHeap() throws IOException {
+        // Enough values for the payload to be written in several chunks
+        Random random = new Random(3);
+        int[] array = new int[600000];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = random.nextInt(i % 101 == 0 ? Integer.MAX_VALUE : 1 << 20);
+        }
+
+        for (CompressionVersion compressionVersion : new CompressionVersion[]{CompressionVersion.WITH_OVERLAP,
+                CompressionVersion.WITHOUT_OVERLAP, CompressionVersion.WITH_OVERFLOW_AREA,
+                CompressionVersion.WITH_OVERLAP_64, CompressionVersion.WITHOUT_OVERLAP_64}) {
+            Path path = directory.resolve(compressionVersion.name() + ".bpck");
+
+            int[] compressedArray;
+            try (BitPacking bitPacking = BitPackingFactory.createBitPacking(compressionVersion, false,
+                    StorageType.OFF_HEAP)) {
+                bitPacking.compress(array);
+                compressedArray = bitPacking.getCompressedArray();
+                BitPackingFile.write(bitPacking, path);
+            }
+
+            try (MappedBitPacking mapped = BitPackingFile.map(path)) {
+                assertArrayEquals(compressedArray, mapped.getCompressedArray());
+            }
+            try (BitPacking bitPacking = BitPackingFile.read(path)) {
+                assertArrayEquals(array, bitPacking.stream().toArray());
+            }
+        }
+    }
+
+    @Test
+    void testWriteAndCopyMapped() throws IOException {
+        for (CompressionVersion compressionVersion : CompressionVersion.concreteValues()) {
+            int[] array = createArray(true);
+            Path path = directory.resolve(compressionVersion.name() + ".bpck");
+            Path copyPath = directory.resolve(compressionVersion.name() + "-copy.bpck");
+
+            try (BitPacking bitPacking = BitPackingFactory.createBitPacking(compressionVersion, true)) {
+                bitPacking.compress(array);
+                BitPackingFile.write(bitPacking, path);
+            }
+
+            try (MappedBitPacking mapped = BitPackingFile.map(path)) {
+                assertEquals(compressionVersion, BitPackingFactory.getCompressionVersion(mapped));
+                BitPackingFile.write(mapped, copyPath);
+
+                CompressedIntArray copy = CompressedIntArray.copyOf(mapped);
+                assertEquals(compressionVersion, copy.getCompressionVersion());
+                assertArrayEquals(array, copy.stream().toArray());
+            }
+            assertArrayEquals(Files.readAllBytes(path), Files.readAllBytes(copyPath));
+        }
+    }
+
+    @Test
+    void testMappedBitPackingIsReadOnlyAndClosable() throws IOException {
+        Path path = directory.resolve("overlap.bpck");
+        try (BitPacking bitPacking = BitPackingFactory.createBitPacking(CompressionVersion.WITH_OVERLAP)) {
+            bitPacking.compress(new int[]{1, 2, 3});
+            BitPackingFile.write(bitPacking, path);
+        }
+
+        MappedBitPacking mapped = BitPackingFile.map(path);
+        assertThrows(UnsupportedOperationException.class, () -> mapped.compress(new int[]{1}));
+        assertThrows(IndexOutOfBoundsException.class, () -> mapped.get(3));
+
+        mapped.close();
+        assertThrows(IllegalStateException.class, () -> mapped.get(0));
+        assertThrows(IllegalStateException.class, () -> mapped.decompress(new int[3]));
+    }
+
+    @Test
+    void testWriteWithoutCompressionThrows() {
+        BitPacking bitPacking = BitPackingFactory.createBitPacking(CompressionVersion.WITH_OVERLAP);
+        assertThrows(IllegalStateException.class, () -> BitPackingFile.write(bitPacking, directory.resolve("x")));
+    }
+
+    @Test
+    void testReadInvalidFileThrows() throws IOException {
+        Path path = directory.resolve("invalid.bpck");
+        Files.write(path, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        assertThrows(IOException.class, () -> BitPackingFile.read(path));
+        assertThrows(IOException.class, () -> BitPackingFile.map(path));
+
+        Files.write(path, new byte[]{0x42, 0x50, 0x43, 0x4B});
+        assertThrows(IOException.class, () -> BitPackingFile.read(path));
+    }
+}
@@ -0,0 +1,107 @@
+package com.dcarriba.bitpacking;
+
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link BitPackingStreamEncoderTest} provides unit tests for {@link BitPackingStreamEncoder}
+ */
+public class BitPackingStreamEncoderTest {
+
+    /**
+     * Decompresses all chunks one after the other
+     */
+    private static int[] decompressChunks(List<BitPacking> chunks) {
+        int length = 0;
+        for (BitPacking chunk : chunks) length += chunk.getOriginalLength();
+
+        int[] result = new int[length];
+        int offset = 0;
+        for (BitPacking chunk : chunks) {
+            chunk.decompress(result, offset);
+            offset += chunk.getOriginalLength();
+        }
+        return result;
+    }
+
+    @Test
+    void testAppendAndFinishForAllVersions() {
+        Random random = new Random(7);
+        int[] array = new int[2500];
+        for (int i = 0; i < array.length; i++) array[i] = random.nextInt(1 << 12) - (1 << 11);
+
+        for (CompressionVersion compressionVersion : CompressionVersion.values()) {
+            List<BitPacking> chunks = new ArrayList<>();
+            BitPackingStreamEncoder encoder = new BitPackingStreamEncoder(compressionVersion, true, 1000, chunks::add);
+
+            encoder.append(array[0]);
+            encoder.append(array, 1, 1500);
+            for (int i = 1501; i < 2000; i++) encoder.append(array[i]);
+            encoder.append(array, 2000, 500);
+            assertEquals(2, encoder.getChunkCount());
+
+            assertEquals(array.length, encoder.finish());
+            assertEquals(3, chunks.size());
+            assertArrayEquals(array, decompressChunks(chunks));
+        }
+    }
+
+    @Test
+    void testEachChunkHasItsOwnBitSize() {
+        List<BitPacking> chunks = new ArrayList<>();
+        BitPackingStreamEncoder encoder = new BitPackingStreamEncoder(CompressionVersion.WITH_OVERLAP, false, 4,
+                chunks::add);
+
+        encoder.append(new int[]{1, 2, 3, 1, 1000, 2000, 3000, 4000}, 0, 8);
+        encoder.finish();
+
+        assertEquals(2, chunks.size());
+        assertEquals(2, chunks.get(0).getBitSize());
+        assertEquals(12, chunks.get(1).getBitSize());
+    }
+
+    @Test
+    void testFinishWithoutValuesEmitsNoChunk() {
+        List<BitPacking> chunks = new ArrayList<>();
+        BitPackingStreamEncoder encoder = new BitPackingStreamEncoder(CompressionVersion.WITH_OVERLAP, chunks::add);
+
+        assertEquals(0, encoder.finish());
+        assertTrue(chunks.isEmpty());
+    }
+
+    @Test
+    void testAppendAfterFinishThrows() {
+        BitPackingStreamEncoder encoder = new BitPackingStreamEncoder(CompressionVersion.WITH_OVERLAP, chunk -> {});
+        encoder.finish();
+
+        assertThrows(IllegalStateException.class, () -> encoder.append(1));
+        assertThrows(IllegalStateException.class, () -> encoder.append(new int[]{1}, 0, 1));
+    }
+
+    @Test
+    void testAppendNegativeValueThrowsInUnsignedMode() {
+        List<BitPacking> chunks = new ArrayList<>();
+        BitPackingStreamEncoder encoder = new BitPackingStreamEncoder(CompressionVersion.WITH_OVERLAP, chunks::add);
+
+        assertThrows(IllegalArgumentException.class, () -> encoder.append(-1));
+        assertThrows(IllegalArgumentException.class, () -> encoder.append(new int[]{1, -1}, 0, 2));
+        assertEquals(0, encoder.getValueCount());
+    }
+
+    @Test
+    void testInvalidParametersThrow() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new BitPackingStreamEncoder(null, chunk -> {}));
+        assertThrows(IllegalArgumentException.class,
+                () -> new BitPackingStreamEncoder(CompressionVersion.WITH_OVERLAP, false, 0, chunk -> {}));
+
+        BitPackingStreamEncoder encoder = new BitPackingStreamEncoder(CompressionVersion.WITH_OVERLAP, chunk -> {});
+        assertThrows(IndexOutOfBoundsException.class, () -> encoder.append(new int[]{1}, 0, 2));
+    }
+}
@@ -0,0 +1,149 @@
+package com.dcarriba.bitpacking;
+
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.bitpacking.storage.StorageType;
+import com.dcarriba.utilities.Utilities;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link CompressedIntArrayTest} provides unit tests for {@link CompressedIntArray} and {@link BitPackingEncoder}
+ */
+public class CompressedIntArrayTest {
+
+    @Test
+    void testEncode() {
+        int[] array = new int[1001];
+        Utilities.initializeArrayWithRandomSkewedValues(array, 1000, Integer.MAX_VALUE, 1);
+
+        for (CompressionVersion compressionVersion : CompressionVersion.concreteValues()) {
+            CompressedIntArray compressedArray = new BitPackingEncoder(compressionVersion).encode(array);
+
+            assertEquals(compressionVersion, compressedArray.getCompressionVersion());
+            assertEquals(array.length, compressedArray.length());
+            assertFalse(compressedArray.isSigned());
+            assertArrayEquals(array, compressedArray.toArray());
+            assertArrayEquals(array, compressedArray.stream().toArray());
+            for (int i = 0; i < array.length; i++) {
+                assertEquals(array[i], compressedArray.get(i), "Index " + i);
+            }
+
+            int[] range = new int[100];
+            compressedArray.decodeRange(300, 400, range, 0);
+            assertArrayEquals(Arrays.copyOfRange(array, 300, 400), range);
+
+            assertEquals(Arrays.stream(array).asLongStream().sum(), compressedArray.sum());
+            assertEquals(Arrays.stream(array).max().getAsInt(), compressedArray.max());
+            assertEquals(Arrays.stream(array).filter(value -> value == array[7]).count(),
+                    compressedArray.count(array[7]));
+        }
+    }
+
+    @Test
+    void testEncodeSignedAndInvalidArrays() {
+        BitPackingEncoder encoder = new BitPackingEncoder(CompressionVersion.WITH_OVERFLOW_AREA, true);
+        int[] array = {-5, 3, Integer.MIN_VALUE, 0, 42};
+        CompressedIntArray compressedArray = encoder.encode(array);
+
+        assertTrue(compressedArray.isSigned());
+        assertArrayEquals(array, compressedArray.toArray());
+        assertEquals(Integer.MIN_VALUE, compressedArray.min());
+
+        BitPackingEncoder unsignedEncoder = new BitPackingEncoder(CompressionVersion.WITH_OVERLAP);
+        assertThrows(IllegalArgumentException.class, () -> unsignedEncoder.encode(array));
+        assertThrows(IllegalArgumentException.class, () -> unsignedEncoder.encode(new int[0]));
+        assertThrows(IllegalArgumentException.class, () -> new BitPackingEncoder(null));
+    }
+
+    @Test
+    void testCopyOfIsIndependentFromTheBitPacking() {
+        for (CompressionVersion compressionVersion : CompressionVersion.concreteValues()) {
+            BitPacking bitPacking = BitPackingFactory.createBitPacking(compressionVersion);
+            int[] array = new int[500];
+            Utilities.initializeArrayWithRandomPositiveValues(array, 1 << 12);
+            bitPacking.compress(array);
+
+            CompressedIntArray compressedArray = CompressedIntArray.copyOf(bitPacking);
+            assertEquals(bitPacking.getCompressedLength(), compressedArray.getCompressedLength());
+
+            // Neither a new compression, nor an update, nor a modification of a copy of the data changes the snapshot
+            bitPacking.set(0, 7);
+            bitPacking.compress(new int[]{1, 2, 3});
+            compressedArray.getCompressedArray()[0] ^= -1;
+
+            assertArrayEquals(array, compressedArray.toArray(), "Modified snapshot for " + compressionVersion);
+        }
+
+        assertThrows(IllegalStateException.class,
+                () -> CompressedIntArray.copyOf(BitPackingFactory.createBitPacking(CompressionVersion.WITH_OVERLAP)));
+        assertThrows(IllegalArgumentException.class, () -> CompressedIntArray.copyOf(null));
+    }
+
+    @Test
+    void testCopyOfOffHeapStaysOffHeap() {
+        for (CompressionVersion compressionVersion : new CompressionVersion[]{CompressionVersion.WITH_OVERLAP,
+                CompressionVersion.WITHOUT_OVERLAP, CompressionVersion.WITH_OVERFLOW_AREA,
+                CompressionVersion.WITH_OVERLAP_64, CompressionVersion.WITHOUT_OVERLAP_64}) {
+            BitPacking bitPacking = BitPackingFactory.createBitPacking(compressionVersion, true, StorageType.OFF_HEAP);
+            int[] array = new int[3000];
+            Utilities.initializeArrayWithRandomSkewedValues(array, 1000, Integer.MAX_VALUE, 1);
+            array[5] = -42;
+            bitPacking.compress(array);
+
+            CompressedIntArray compressedArray = CompressedIntArray.copyOf(bitPacking);
+            assertEquals(StorageType.OFF_HEAP, compressedArray.getStorageType());
+            assertArrayEquals(bitPacking.getCompressedArray(), compressedArray.getCompressedArray());
+
+            // The copy has its own storage, releasing the one of the BitPacking object doesn't change it
+            bitPacking.close();
+            assertArrayEquals(array, compressedArray.toArray(), "Modified snapshot for " + compressionVersion);
+        }
+    }
+
+    @Test
+    void testConcurrentReadersWhileEncoding() throws Exception {
+        BitPackingEncoder encoder = new BitPackingEncoder(CompressionVersion.WITH_OVERLAP);
+        int[] array = new int[100000];
+        Utilities.initializeArrayWithRandomPositiveValues(array, 1 << 20);
+        CompressedIntArray shared = encoder.encode(array);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> readers = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                readers.add(executor.submit(() -> {
+                    for (int i = 0; i < array.length; i++) {
+                        if (shared.get(i) != array[i]) return false;
+                    }
+                    return true;
+                }));
+            }
+
+            // The same encoder compresses other arrays at the same time
+            Future<Boolean> writer = executor.submit(() -> {
+                int[] other = new int[50000];
+                for (int k = 0; k < 20; k++) {
+                    Utilities.initializeArrayWithRandomPositiveValues(other, 1 << k);
+                    if (!Arrays.equals(other, encoder.encode(other).toArray())) return false;
+                }
+                return true;
+            });
+
+            for (Future<Boolean> reader : readers) {
+                assertTrue(reader.get());
+            }
+            assertTrue(writer.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
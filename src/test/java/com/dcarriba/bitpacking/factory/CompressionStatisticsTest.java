@@ -0,0 +1,177 @@
+package com.dcarriba.bitpacking.factory;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.BitPackingEncoder;
+import com.dcarriba.bitpacking.CompressedIntArray;
+import com.dcarriba.utilities.Utilities;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link CompressionStatisticsTest} provides unit tests for {@link CompressionStatistics} and for the selection of the
+ * compression version with {@link CompressionVersion#AUTO}
+ */
+public class CompressionStatisticsTest {
+
+    /**
+     * Asserts that the predicted compressed length of every compression version is the actual one, and that
+     * {@link SelectionPolicy#SMALLEST_SIZE} chooses the smallest one
+     *
+     * @param array the analyzed array
+     * @param signed if the array is compressed in signed mode
+     */
+    private void assertExactPredictions(int[] array, boolean signed) {
+        CompressionStatistics statistics = CompressionStatistics.of(array, signed);
+        assertFalse(statistics.isSampled());
+        assertEquals(array.length, statistics.getLength());
+
+        long smallestLength = Long.MAX_VALUE;
+        for (CompressionVersion compressionVersion : CompressionVersion.concreteValues()) {
+            BitPacking bitPacking = BitPackingFactory.createBitPacking(compressionVersion, signed);
+            bitPacking.compress(array);
+
+            assertEquals(bitPacking.getCompressedLength(), statistics.predictCompressedLength(compressionVersion),
+                    "Wrong prediction for " + compressionVersion);
+            smallestLength = Math.min(smallestLength, bitPacking.getCompressedLength());
+        }
+
+        CompressionVersion chosen = statistics.select(SelectionPolicy.SMALLEST_SIZE);
+        assertEquals(smallestLength, statistics.predictCompressedLength(chosen));
+    }
+
+    @Test
+    void testExactPredictions() {
+        int[] lengths = {1, 2, 127, 128, 1000, 4096};
+        List<Consumer<int[]>> initializers = List.of(
+                array -> Utilities.initializeArrayWithRandomPositiveValues(array, 1000),
+                Utilities::initializeArrayWithRandomPositiveValues,
+                array -> Utilities.initializeArrayWithRandomSkewedValues(array, 100, Integer.MAX_VALUE, 2),
+                array -> Utilities.initializeArrayWithRandomWalkValues(array, 1 << 20, 50),
+                array -> Utilities.initializeArrayWithRandomSortedValues(array, 10)
+        );
+
+        for (int length : lengths) {
+            for (Consumer<int[]> initializer : initializers) {
+                int[] array = new int[length];
+                initializer.accept(array);
+                assertExactPredictions(array, false);
+            }
+            assertExactPredictions(new int[length], false);
+        }
+    }
+
+    @Test
+    void testSignedExactPredictions() {
+        Random random = new Random(3);
+        int[] array = new int[3000];
+        for (int i = 0; i < array.length; i++) array[i] = random.nextInt(2000) - 1000;
+        array[10] = Integer.MIN_VALUE;
+        array[20] = Integer.MAX_VALUE;
+
+        assertExactPredictions(array, true);
+    }
+
+    @Test
+    void testBitSizes() {
+        int[] array = new int[10000];
+        for (int i = 0; i < array.length; i++) array[i] = (i * 7919) % 100;
+        CompressionStatistics statistics = CompressionStatistics.of(array, false);
+        assertEquals(7, statistics.getMaxBitSize());
+        assertEquals(array.length, Arrays.stream(statistics.getBitSizeHistogram()).sum());
+    }
+
+    @Test
+    void testSampledPredictions() {
+        int[] array = new int[CompressionStatistics.SAMPLING_THRESHOLD + 1000];
+        Utilities.initializeArrayWithRandomPositiveValues(array, 1 << 12);
+        CompressionStatistics statistics = CompressionStatistics.of(array, false);
+        assertTrue(statistics.isSampled());
+
+        for (CompressionVersion compressionVersion : CompressionVersion.concreteValues()) {
+            BitPacking bitPacking = BitPackingFactory.createBitPacking(compressionVersion);
+            bitPacking.compress(array);
+
+            double error = Math.abs(statistics.predictCompressedLength(compressionVersion)
+                    - bitPacking.getCompressedLength()) / (double) bitPacking.getCompressedLength();
+            assertTrue(error < 0.02, "Estimation error of " + error + " for " + compressionVersion);
+        }
+    }
+
+    @Test
+    void testSelectionPolicies() {
+        int[] array = new int[5000];
+        Utilities.initializeArrayWithRandomSkewedValues(array, 1000, Integer.MAX_VALUE, 1);
+        CompressionStatistics statistics = CompressionStatistics.of(array, false);
+
+        CompressionVersion fastestDecode = statistics.select(SelectionPolicy.FASTEST_DECODE);
+        CompressionVersion fastestTransmission = statistics.select(SelectionPolicy.FASTEST_TRANSMISSION, 1e9);
+        for (CompressionVersion compressionVersion : CompressionVersion.concreteValues()) {
+            assertTrue(statistics.modelDecompressionTime(fastestDecode)
+                    <= statistics.modelDecompressionTime(compressionVersion));
+            assertTrue(statistics.modelTransmissionTime(fastestTransmission, 1e9)
+                    <= statistics.modelTransmissionTime(compressionVersion, 1e9));
+        }
+
+        // On a slow network, the transmission time is mostly the time to send the compressed array
+        assertEquals(statistics.predictCompressedLength(statistics.select(SelectionPolicy.SMALLEST_SIZE)),
+                statistics.predictCompressedLength(statistics.select(SelectionPolicy.FASTEST_TRANSMISSION, 1000)));
+    }
+
+    @Test
+    void testAuto() {
+        int[] array = new int[2000];
+        Utilities.initializeArrayWithRandomSortedValues(array, 3);
+
+        CompressionVersion chosen = BitPackingFactory.selectCompressionVersion(array, false,
+                SelectionPolicy.SMALLEST_SIZE);
+        assertNotEquals(CompressionVersion.AUTO, chosen);
+
+        BitPacking bitPacking = BitPackingFactory.createBitPacking(array, false, SelectionPolicy.SMALLEST_SIZE);
+        assertEquals(chosen, BitPackingFactory.getCompressionVersion(bitPacking));
+
+        bitPacking = BitPackingFactory.createBitPacking(CompressionVersion.AUTO, array, false,
+                SelectionPolicy.SMALLEST_SIZE);
+        assertEquals(chosen, BitPackingFactory.getCompressionVersion(bitPacking));
+        bitPacking = BitPackingFactory.createBitPacking(CompressionVersion.WITH_OVERLAP, array, false, null);
+        assertEquals(CompressionVersion.WITH_OVERLAP, BitPackingFactory.getCompressionVersion(bitPacking));
+
+        CompressedIntArray compressedArray = new BitPackingEncoder(CompressionVersion.AUTO).encode(array);
+        assertEquals(chosen, compressedArray.getCompressionVersion());
+        assertArrayEquals(array, compressedArray.toArray());
+    }
+
+    @Test
+    void testConcreteValues() {
+        CompressionVersion[] concreteValues = CompressionVersion.concreteValues();
+        assertEquals(CompressionVersion.values().length - 1, concreteValues.length);
+        for (CompressionVersion compressionVersion : concreteValues) {
+            assertTrue(compressionVersion.isConcrete());
+            assertNotNull(BitPackingFactory.createBitPacking(compressionVersion));
+        }
+        assertFalse(CompressionVersion.AUTO.isConcrete());
+    }
+
+    @Test
+    void testInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> BitPackingFactory.createBitPacking(CompressionVersion.AUTO));
+        assertThrows(IllegalArgumentException.class, () -> BitPackingFactory.createBitPacking(CompressionVersion.AUTO,
+                new int[]{1}, false, null));
+        assertThrows(IllegalArgumentException.class, () -> CompressionStatistics.of(null, false));
+        assertThrows(IllegalArgumentException.class, () -> CompressionStatistics.of(new int[0], false));
+        assertThrows(IllegalArgumentException.class, () -> CompressionStatistics.of(new int[]{1, -1}, false));
+
+        CompressionStatistics statistics = CompressionStatistics.of(new int[]{1, 2, 3}, false);
+        assertThrows(IllegalArgumentException.class, () -> statistics.select(null));
+        assertThrows(IllegalArgumentException.class, () -> statistics.select(SelectionPolicy.SMALLEST_SIZE, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> statistics.predictCompressedLength(CompressionVersion.AUTO));
+        assertThrows(IllegalArgumentException.class, () -> BitPackingFactory.selectCompressionVersion(
+                new int[]{1}, false, null));
+    }
+}
@@ -0,0 +1,54 @@
+package com.dcarriba.bitpacking.kernels;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link BitPackingKernelsTest} provides unit tests for the generated {@link BitPackingKernels}
+ */
+public class BitPackingKernelsTest {
+
+    @Test
+    void testPackUnpackAllBitSizes() {
+        Random random = new Random();
+
+        for (int bitSize = 1; bitSize <= 32; bitSize++) {
+            int[] values = new int[BitPackingKernels.GROUP_SIZE];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = random.nextInt() >>> (32 - bitSize);
+            }
+
+            // Packs at an offset, to check that neighbouring integers are not modified
+            int[] packed = new int[bitSize + 2];
+            BitPackingKernels.pack(bitSize, values, 0, packed, 1);
+            assertEquals(0, packed[0], "Integer before the group was modified with bit size " + bitSize);
+            assertEquals(0, packed[bitSize + 1], "Integer after the group was modified with bit size " + bitSize);
+
+            int[] unpacked = new int[BitPackingKernels.GROUP_SIZE];
+            BitPackingKernels.unpack(bitSize, packed, 1, unpacked, 0);
+            assertArrayEquals(values, unpacked, "Failed to pack and unpack with bit size " + bitSize);
+        }
+    }
+
+    @Test
+    void testPackLayoutStartsWithMostSignificantBit() {
+        int[] values = new int[BitPackingKernels.GROUP_SIZE];
+        values[0] = 1;
+
+        int[] packed = new int[1];
+        BitPackingKernels.pack(1, values, 0, packed, 0);
+
+        assertEquals(1 << 31, packed[0]);
+    }
+
+    @Test
+    void testInvalidBitSize() {
+        int[] values = new int[BitPackingKernels.GROUP_SIZE];
+
+        assertThrows(IllegalArgumentException.class, () -> BitPackingKernels.pack(0, values, 0, values, 0));
+        assertThrows(IllegalArgumentException.class, () -> BitPackingKernels.unpack(33, values, 0, values, 0));
+    }
+}
@@ -0,0 +1,95 @@
+package com.dcarriba.bitpacking.simd;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * {@link InterleavedPackerTest} provides unit tests for the {@link InterleavedPacker} implementations
+ */
+public class InterleavedPackerTest {
+
+    @Test
+    void testScalarPackUnpackAllBitSizes() {
+        testPackUnpackAllBitSizes(InterleavedPackers.scalar());
+    }
+
+    @Test
+    void testVectorPackUnpackAllBitSizes() {
+        assumeTrue(InterleavedPackers.vector() != null, "The jdk.incubator.vector module isn't available");
+        testPackUnpackAllBitSizes(InterleavedPackers.vector());
+    }
+
+    @Test
+    void testVectorAndScalarLayoutsAreEqual() {
+        assumeTrue(InterleavedPackers.vector() != null, "The jdk.incubator.vector module isn't available");
+        Random random = new Random(42);
+
+        for (int bitSize = 1; bitSize <= 32; bitSize++) {
+            int[] values = randomValues(random, bitSize);
+
+            int[] scalarPacked = new int[InterleavedPacker.LANES * bitSize];
+            int[] vectorPacked = new int[InterleavedPacker.LANES * bitSize];
+            InterleavedPackers.scalar().pack(bitSize, values, 0, scalarPacked, 0);
+            InterleavedPackers.vector().pack(bitSize, values, 0, vectorPacked, 0);
+
+            assertArrayEquals(scalarPacked, vectorPacked, "Different layouts with bit size " + bitSize);
+        }
+    }
+
+    @Test
+    void testInterleavedLayout() {
+        // The first value of each lane is written at the most significant bits of the first integer of the lane
+        int[] values = new int[InterleavedPacker.BLOCK_SIZE];
+        values[0] = 1;
+        values[1] = 2;
+        values[2] = 3;
+        values[4] = 1;
+
+        int[] packed = new int[InterleavedPacker.LANES * 2];
+        InterleavedPackers.fastest().pack(2, values, 0, packed, 0);
+
+        assertArrayEquals(new int[]{(1 << 30) | (1 << 28), 2 << 30, 3 << 30, 0, 0, 0, 0, 0}, packed);
+    }
+
+    @Test
+    void testInvalidBitSize() {
+        int[] values = new int[InterleavedPacker.BLOCK_SIZE];
+
+        assertThrows(IllegalArgumentException.class, () -> InterleavedPackers.scalar().pack(0, values, 0, values, 0));
+        assertThrows(IllegalArgumentException.class, () -> InterleavedPackers.fastest().unpack(33, values, 0, values, 0));
+    }
+
+    /**
+     * Packs and unpacks random blocks at every bit size, at an offset to check that neighbouring integers are not
+     * modified
+     */
+    private static void testPackUnpackAllBitSizes(InterleavedPacker packer) {
+        Random random = new Random();
+
+        for (int bitSize = 1; bitSize <= 32; bitSize++) {
+            int[] values = randomValues(random, bitSize);
+            int packedLength = InterleavedPacker.LANES * bitSize;
+
+            int[] packed = new int[packedLength + 2];
+            packer.pack(bitSize, values, 0, packed, 1);
+            assertEquals(0, packed[0], "Integer before the block was modified with bit size " + bitSize);
+            assertEquals(0, packed[packedLength + 1], "Integer after the block was modified with bit size " + bitSize);
+
+            int[] unpacked = new int[InterleavedPacker.BLOCK_SIZE];
+            packer.unpack(bitSize, packed, 1, unpacked, 0);
+            assertArrayEquals(values, unpacked, "Failed to pack and unpack with bit size " + bitSize);
+        }
+    }
+
+    private static int[] randomValues(Random random, int bitSize) {
+        int[] values = new int[InterleavedPacker.BLOCK_SIZE];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt() >>> (32 - bitSize);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,89 @@
+package com.dcarriba.bitpacking.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link OffHeapWordStorageTest} provides unit tests for {@link OffHeapWordStorage}
+ */
+public class OffHeapWordStorageTest {
+
+    @Test
+    void testSameBitsAsLongArrayWordStorage() {
+        Random random = new Random(42);
+
+        // Chunks of 8 words, so that values also overlap from one chunk to the next
+        OffHeapWordStorage offHeap = new OffHeapWordStorage(100, 3);
+        LongArrayWordStorage heap = new LongArrayWordStorage(100);
+
+        int bitSize = 23;
+        int[] values = new int[100 * 64 / bitSize];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(1 << bitSize);
+            offHeap.writeBits((long) i * bitSize, values[i], bitSize);
+            heap.writeBits((long) i * bitSize, values[i], bitSize);
+        }
+
+        assertArrayEquals(heap.toIntArray(), offHeap.toIntArray());
+        for (int i = 0; i < values.length; i++) {
+            assertEquals(values[i], offHeap.readBits((long) i * bitSize, bitSize), "Failed to read the value " + i);
+        }
+
+        offHeap.close();
+    }
+
+    @Test
+    void testSequentialReadsAndOverwrites() {
+        Random random = new Random(7);
+        OffHeapWordStorage storage = new OffHeapWordStorage(100, 3);
+
+        for (int bitSize : new int[]{1, 7, 32}) {
+            int[] values = new int[100 * 64 / bitSize];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = (int) (random.nextLong() >>> (64 - bitSize));
+                storage.overwriteBits((long) i * bitSize, values[i], bitSize);
+            }
+
+            // Reads from an unaligned position, so that values overlap from one word to the next
+            int[] read = new int[values.length - 3];
+            storage.readBits(3L * bitSize, bitSize, read, 0, read.length);
+            for (int i = 0; i < read.length; i++) {
+                assertEquals(values[i + 3], read[i], "Failed to read the value " + (i + 3) + " on " + bitSize + " bits");
+            }
+        }
+
+        // The integers are the high and the low halves of the words
+        int[] ints = {1, -2, 3, -4, 5};
+        storage.writeInts(3, ints, 0, ints.length);
+        int[] read = new int[ints.length];
+        storage.readInts(3, 3 + ints.length, read, 0);
+        assertArrayEquals(ints, read);
+        assertEquals(-2L << 32 | 3, storage.getWord(2));
+
+        storage.close();
+    }
+
+    @Test
+    void testClose() {
+        OffHeapWordStorage storage = new OffHeapWordStorage(10);
+        storage.setWord(9, -1L);
+        assertEquals(-1L, storage.getWord(9));
+        assertTrue(storage.isOpen());
+
+        storage.close();
+        assertFalse(storage.isOpen());
+        assertThrows(IllegalStateException.class, () -> storage.getWord(0));
+
+        // Closing twice does nothing
+        storage.close();
+    }
+
+    @Test
+    void testInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapWordStorage(-1));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapWordStorage(10, 28));
+    }
+}
@@ -0,0 +1,100 @@
+package com.dcarriba.bitpacking.versions;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.bitpacking.storage.StorageType;
+import com.dcarriba.utilities.Utilities;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link BitPackingOffHeapTest} provides unit tests for the 32-bit {@link BitPacking} versions keeping their compressed
+ * data off-heap, each version extending {@link BitPackingVersionsBaseTest} for the test logic
+ */
+public class BitPackingOffHeapTest {
+
+    /**
+     * Test logic shared by all versions keeping their compressed data off-heap
+     */
+    abstract static class OffHeapVersionTest extends BitPackingVersionsBaseTest {
+
+        /**
+         * @return Compression version under test
+         */
+        protected abstract CompressionVersion getCompressionVersion();
+
+        @Override
+        protected BitPacking createBitPacking() {
+            return BitPackingFactory.createBitPacking(getCompressionVersion(), false, StorageType.OFF_HEAP);
+        }
+
+        @Override
+        protected BitPacking createSignedBitPacking() {
+            return BitPackingFactory.createBitPacking(getCompressionVersion(), true, StorageType.OFF_HEAP);
+        }
+
+        @Override
+        protected boolean compressesIntoIntArray() {
+            return false;
+        }
+
+        @Test
+        void testSameCompressedDataAsHeap() {
+            BitPacking bitPacking = createBitPacking();
+            BitPacking heap = BitPackingFactory.createBitPacking(getCompressionVersion());
+
+            int[] inputArray = new int[1001];
+            for (int maxValue : new int[]{1, 1000, 1 << 17, Integer.MAX_VALUE}) {
+                Utilities.initializeArrayWithRandomPositiveValues(inputArray, maxValue);
+                // An outlier, stored in the overflow area by the versions having one
+                inputArray[17] = Integer.MAX_VALUE;
+                bitPacking.compress(inputArray);
+                heap.compress(inputArray);
+
+                assertEquals(heap.getCompressedLength(), bitPacking.getCompressedLength());
+                assertArrayEquals(heap.getCompressedArray(), bitPacking.getCompressedArray(),
+                        "Different compressed data with max value " + maxValue);
+            }
+        }
+
+        @Test
+        void testCloseReleasesTheStorage() {
+            BitPacking bitPacking = createBitPacking();
+            int[] inputArray = new int[3000];
+            Utilities.initializeArrayWithRandomPositiveValues(inputArray, 1 << 20);
+            bitPacking.compress(inputArray);
+            assertEquals(inputArray[1234], bitPacking.get(1234));
+
+            bitPacking.close();
+            assertThrows(IllegalStateException.class, () -> bitPacking.decompress(new int[inputArray.length]));
+            assertNull(bitPacking.getCompressedArray());
+        }
+    }
+
+    @Nested
+    class WithOverlap extends OffHeapVersionTest {
+        @Override
+        protected CompressionVersion getCompressionVersion() {
+            return CompressionVersion.WITH_OVERLAP;
+        }
+    }
+
+    @Nested
+    class WithoutOverlap extends OffHeapVersionTest {
+        @Override
+        protected CompressionVersion getCompressionVersion() {
+            return CompressionVersion.WITHOUT_OVERLAP;
+        }
+    }
+
+    @Nested
+    class WithOverflowArea extends OffHeapVersionTest {
+        @Override
+        protected CompressionVersion getCompressionVersion() {
+            return CompressionVersion.WITH_OVERFLOW_AREA;
+        }
+    }
+}
@@ -1,9 +1,20 @@
 package com.dcarriba.bitpacking.versions;
 
 import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.IntCursor;
 import com.dcarriba.config.Config;
 import com.dcarriba.utilities.Utilities;
 import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -14,6 +25,15 @@ public abstract class BitPackingVersionsBaseTest {
 
     protected abstract BitPacking createBitPacking();
 
+    protected abstract BitPacking createSignedBitPacking();
+
+    /**
+     * @return If the version keeps its compressed data in an int array, and can thus compress into a given buffer
+     */
+    protected boolean compressesIntoIntArray() {
+        return true;
+    }
+
     @Test
     void testCompressionDecompressionSmallValueArray() {
         BitPacking bitPacking = createBitPacking();
@@ -109,6 +129,58 @@ public abstract class BitPackingVersionsBaseTest {
         assertThrows(IllegalArgumentException.class, () -> bitPacking.compress(negativeArray));
     }
 
+    @Test
+    void testCompressBufferFromDirectBuffer() {
+        for (BitPacking bitPacking : new BitPacking[]{createBitPacking(), createSignedBitPacking()}) {
+            // More than a window of values, with a few large ones, after a header of 3 integers
+            int[] inputArray = new int[3000];
+            Utilities.initializeArrayWithRandomPositiveValues(inputArray, 5000);
+            inputArray[42] = 1 << 25;
+            inputArray[2999] = 1 << 20;
+            if (bitPacking.isSigned()) inputArray[7] = -123456;
+
+            IntBuffer buffer = ByteBuffer.allocateDirect((inputArray.length + 3) * Integer.BYTES)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+            buffer.position(3);
+            buffer.put(inputArray);
+            buffer.position(3);
+
+            bitPacking.compressBuffer(buffer);
+            assertEquals(3, buffer.position());
+
+            int[] decompressedArray = new int[inputArray.length];
+            bitPacking.decompress(decompressedArray);
+            assertArrayEquals(inputArray, decompressedArray);
+            bitPacking.close();
+        }
+    }
+
+    @Test
+    void testDecompressionWithOffset() {
+        BitPacking bitPacking = createBitPacking();
+
+        int[] inputArray = new int[100];
+        Utilities.initializeArrayWithRandomPositiveValues(inputArray, 5000);
+        inputArray[42] = Integer.MAX_VALUE;
+        bitPacking.compress(inputArray);
+
+        // The decompressed values are placed inside a larger array, without modifying its other values
+        int[] decompressedArray = new int[inputArray.length + 10];
+        Arrays.fill(decompressedArray, -1);
+        bitPacking.decompress(decompressedArray, 3);
+
+        for (int i = 0; i < decompressedArray.length; i++) {
+            if (i < 3 || i >= 3 + inputArray.length) {
+                assertEquals(-1, decompressedArray[i], "Value outside of the decompressed values was modified");
+            } else {
+                assertEquals(inputArray[i - 3], decompressedArray[i], "Failed to decompress the element at index " + i);
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.decompress(decompressedArray, 11));
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.decompress(decompressedArray, -1));
+    }
+
     @Test
     void testDecompressionWithoutCompression(){
         BitPacking bitPacking = createBitPacking();
@@ -129,4 +201,677 @@ public abstract class BitPackingVersionsBaseTest {
             assertEquals(inputArray[i], bitPacking.get(i), "Failed to get the element at index " + i);
         }
     }
+
+    @Test
+    void testGetMethodRandomArrays() {
+        BitPacking bitPacking = createBitPacking();
+
+        int[] maxValues = {1, 2, 100, 1000, 65536, Integer.MAX_VALUE / 2, Integer.MAX_VALUE};
+        int[] inputArray = new int[1000];
+
+        for (int maxValue : maxValues) {
+            Utilities.initializeArrayWithRandomPositiveValues(inputArray, maxValue);
+            bitPacking.compress(inputArray);
+
+            for (int i = 0; i < inputArray.length; i++) {
+                assertEquals(inputArray[i], bitPacking.get(i), "Failed to get the element at index " + i
+                        + " with max value " + maxValue);
+            }
+        }
+    }
+
+    @Test
+    void testGetMethodOutOfBounds() {
+        BitPacking bitPacking = createBitPacking();
+
+        int[] inputArray = {100, 200, 300, 400, 500};
+        bitPacking.compress(inputArray);
+
+        assertThrows(IndexOutOfBoundsException.class, () -> bitPacking.get(-1));
+        assertThrows(IndexOutOfBoundsException.class, () -> bitPacking.get(inputArray.length));
+    }
+
+    @Test
+    void testSignedCompressionDecompressionNegativeValueArray() {
+        BitPacking bitPacking = createSignedBitPacking();
+
+        int[] inputArray = {-1, 2, -3, 0, Integer.MIN_VALUE, Integer.MAX_VALUE, -100000, 100000};
+        int[] decompressedArray = new int[inputArray.length];
+
+        bitPacking.compress(inputArray);
+        bitPacking.decompress(decompressedArray);
+
+        if (Config.UNIT_TEST_PRINT_DEBUG) {
+            System.out.println("Test case: signed array with negative values:");
+            Utilities.printOriginalAndCompressed(inputArray, bitPacking);
+        }
+
+        assertArrayEquals(inputArray, decompressedArray);
+    }
+
+    @Test
+    void testSignedSmallValuesUseFewBits() {
+        BitPacking bitPacking = createSignedBitPacking();
+
+        // Small negative values must not need 32 bits, unlike their two's complement representation
+        int[] inputArray = new int[1000];
+        for (int i = 0; i < inputArray.length; i++) {
+            inputArray[i] = (i % 17) - 8;
+        }
+        bitPacking.compress(inputArray);
+
+        assertTrue(bitPacking.getBitSize() <= 5, "Small signed values should be coded on at most 5 bits");
+        assertTrue(bitPacking.getCompressedArray().length < inputArray.length / 4);
+    }
+
+    @Test
+    void testSignedGetMethodRandomArrays() {
+        BitPacking bitPacking = createSignedBitPacking();
+        Random random = new Random(42);
+
+        int[] maxValues = {1, 100, 65536, Integer.MAX_VALUE};
+        int[] inputArray = new int[1000];
+        int[] decompressedArray = new int[inputArray.length];
+
+        for (int maxValue : maxValues) {
+            for (int i = 0; i < inputArray.length; i++) {
+                int value = random.nextInt(maxValue);
+                inputArray[i] = random.nextBoolean() ? value : -value - 1;
+            }
+            bitPacking.compress(inputArray);
+
+            for (int i = 0; i < inputArray.length; i++) {
+                assertEquals(inputArray[i], bitPacking.get(i), "Failed to get the element at index " + i
+                        + " with max value " + maxValue);
+            }
+
+            bitPacking.decompress(decompressedArray);
+            assertArrayEquals(inputArray, decompressedArray);
+        }
+    }
+
+    @Test
+    void testCursorRandomRanges() {
+        BitPacking bitPacking = createSignedBitPacking();
+        Random random = new Random(7);
+
+        int[] inputArray = new int[1000];
+        for (int i = 0; i < inputArray.length; i++) {
+            inputArray[i] = random.nextInt(i % 50 == 0 ? 1 << 24 : 1 << 10) - (1 << 9);
+        }
+        bitPacking.compress(inputArray);
+
+        int[][] ranges = {{0, 1000}, {0, 0}, {1000, 1000}, {1, 999}, {127, 129}, {128, 256}, {300, 700}, {999, 1000}};
+        for (int[] range : ranges) {
+            IntCursor cursor = bitPacking.cursor(range[0], range[1]);
+            for (int i = range[0]; i < range[1]; i++) {
+                assertEquals(i, cursor.position());
+                assertTrue(cursor.hasNext());
+                assertEquals(inputArray[i], cursor.nextInt(), "Failed to read the element at index " + i);
+            }
+            assertFalse(cursor.hasNext());
+            assertThrows(NoSuchElementException.class, cursor::nextInt);
+        }
+    }
+
+    @Test
+    void testIteratorAndStream() {
+        BitPacking bitPacking = createBitPacking();
+
+        int[] inputArray = new int[50000];
+        Utilities.initializeArrayWithRandomPositiveValues(inputArray, 100000);
+        bitPacking.compress(inputArray);
+
+        PrimitiveIterator.OfInt iterator = bitPacking.iterator();
+        for (int value : inputArray) {
+            assertEquals(value, iterator.nextInt());
+        }
+        assertFalse(iterator.hasNext());
+
+        assertArrayEquals(inputArray, bitPacking.stream().toArray());
+        assertArrayEquals(inputArray, bitPacking.stream().parallel().toArray());
+        assertEquals(Arrays.stream(inputArray).asLongStream().sum(), bitPacking.stream().parallel().asLongStream().sum());
+    }
+
+    @Test
+    void testCursorOutOfBoundsAndWithoutCompression() {
+        BitPacking bitPacking = createBitPacking();
+        assertThrows(IllegalStateException.class, bitPacking::stream);
+
+        bitPacking.compress(new int[]{1, 2, 3});
+        assertThrows(IndexOutOfBoundsException.class, () -> bitPacking.cursor(-1, 2));
+        assertThrows(IndexOutOfBoundsException.class, () -> bitPacking.cursor(0, 4));
+        assertThrows(IndexOutOfBoundsException.class, () -> bitPacking.cursor(2, 1));
+    }
+
+    @Test
+    void testDecodeRangeRandomRanges() {
+        BitPacking bitPacking = createSignedBitPacking();
+        Random random = new Random(11);
+
+        int[] inputArray = new int[3000];
+        for (int i = 0; i < inputArray.length; i++) {
+            inputArray[i] = random.nextInt(i % 50 == 0 ? 1 << 24 : 1 << 10) - (1 << 9);
+        }
+        bitPacking.compress(inputArray);
+
+        int[] decodedArray = new int[inputArray.length + 10];
+        for (int r = 0; r < 200; r++) {
+            int from = random.nextInt(inputArray.length + 1);
+            int to = from + random.nextInt(inputArray.length - from + 1);
+
+            bitPacking.decodeRange(from, to, decodedArray, 5);
+            for (int i = from; i < to; i++) {
+                assertEquals(inputArray[i], decodedArray[5 + i - from], "Failed to decode the element at index " + i
+                        + " of the range [" + from + ", " + to + ")");
+            }
+        }
+
+        bitPacking.decodeRange(0, inputArray.length, decodedArray, 0);
+        assertArrayEquals(inputArray, Arrays.copyOf(decodedArray, inputArray.length));
+    }
+
+    @Test
+    void testDecodeRangeOutOfBounds() {
+        BitPacking bitPacking = createBitPacking();
+        assertThrows(IllegalStateException.class, () -> bitPacking.decodeRange(0, 0, new int[1], 0));
+
+        bitPacking.compress(new int[]{1, 2, 3});
+        assertThrows(IndexOutOfBoundsException.class, () -> bitPacking.decodeRange(-1, 2, new int[3], 0));
+        assertThrows(IndexOutOfBoundsException.class, () -> bitPacking.decodeRange(2, 4, new int[3], 0));
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.decodeRange(0, 3, new int[3], 1));
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.decodeRange(0, 3, null, 0));
+    }
+
+    @Test
+    void testCopyCompressedArray() {
+        BitPacking bitPacking = createBitPacking();
+        assertThrows(IllegalStateException.class, () -> bitPacking.copyCompressedArray(0, 0, new int[1], 0));
+
+        int[] inputArray = new int[1001];
+        Utilities.initializeArrayWithRandomPositiveValues(inputArray, 1 << 20);
+        bitPacking.compress(inputArray);
+
+        int compressedLength = bitPacking.getCompressedLength();
+        int[] compressedArray = Arrays.copyOf(bitPacking.getCompressedArray(), compressedLength);
+        int[] copiedArray = new int[compressedLength + 2];
+        bitPacking.copyCompressedArray(0, compressedLength, copiedArray, 2);
+        assertArrayEquals(compressedArray, Arrays.copyOfRange(copiedArray, 2, compressedLength + 2));
+
+        // Odd bounds, which split the 64-bit words of some versions
+        int[] partArray = new int[compressedLength - 2];
+        bitPacking.copyCompressedArray(1, compressedLength - 1, partArray, 0);
+        assertArrayEquals(Arrays.copyOfRange(compressedArray, 1, compressedLength - 1), partArray);
+
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> bitPacking.copyCompressedArray(0, compressedLength + 1, new int[compressedLength + 1], 0));
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.copyCompressedArray(0, 2, new int[2], 1));
+    }
+
+    @Test
+    void testGatherRandomIndices() {
+        BitPacking bitPacking = createSignedBitPacking();
+        Random random = new Random(13);
+
+        int[] inputArray = new int[3000];
+        for (int i = 0; i < inputArray.length; i++) {
+            inputArray[i] = random.nextInt(i % 50 == 0 ? 1 << 24 : 1 << 10) - (1 << 9);
+        }
+        bitPacking.compress(inputArray);
+
+        // Unsorted indices, with repetitions
+        int[] indices = new int[1000];
+        for (int k = 0; k < indices.length; k++) indices[k] = random.nextInt(inputArray.length);
+        int[] out = new int[indices.length];
+        bitPacking.gather(indices, out);
+        for (int k = 0; k < indices.length; k++) {
+            assertEquals(inputArray[indices[k]], out[k], "Failed to gather the element at index " + indices[k]);
+        }
+
+        // Sorted indices
+        Arrays.sort(indices);
+        bitPacking.gather(indices, out);
+        for (int k = 0; k < indices.length; k++) {
+            assertEquals(inputArray[indices[k]], out[k], "Failed to gather the element at index " + indices[k]);
+        }
+
+        bitPacking.gather(new int[0], new int[0]);
+    }
+
+    @Test
+    void testGatherOutOfBounds() {
+        BitPacking bitPacking = createBitPacking();
+        assertThrows(IllegalStateException.class, () -> bitPacking.gather(new int[0], new int[0]));
+
+        bitPacking.compress(new int[]{1, 2, 3});
+        assertThrows(IndexOutOfBoundsException.class, () -> bitPacking.gather(new int[]{0, 3}, new int[2]));
+        assertThrows(IndexOutOfBoundsException.class, () -> bitPacking.gather(new int[]{2, -1}, new int[2]));
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.gather(new int[]{0, 1}, new int[1]));
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.gather(null, new int[1]));
+    }
+
+    /**
+     * Searches the value with the search methods, and compares the results with a search on the input array
+     */
+    private static void assertSearch(BitPacking bitPacking, int[] inputArray, int value) {
+        int expectedIndex = -1;
+        int expectedCount = 0;
+        for (int i = inputArray.length - 1; i >= 0; i--) {
+            if (inputArray[i] == value) {
+                expectedIndex = i;
+                expectedCount++;
+            }
+        }
+
+        assertEquals(expectedIndex, bitPacking.indexOf(value), "Wrong index of the value " + value);
+        assertEquals(expectedIndex >= 0, bitPacking.contains(value), "Wrong result of contains for the value " + value);
+        assertEquals(expectedCount, bitPacking.count(value), "Wrong count of the value " + value);
+    }
+
+    @Test
+    void testSearchRandomArrays() {
+        BitPacking bitPacking = createBitPacking();
+        Random random = new Random(17);
+
+        // Lengths which aren't multiples of the number of values per integer, with few distinct values
+        int[] lengths = {1, 7, 100, 1001};
+        int[] maxValues = {2, 5, 16, 1000, 1 << 20};
+        for (int length : lengths) {
+            for (int maxValue : maxValues) {
+                int[] inputArray = new int[length];
+                for (int i = 0; i < length; i++) {
+                    // A few outliers, so that overflow areas and blocks with different bit sizes are used
+                    inputArray[i] = i % 97 == 96 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(maxValue) + 1;
+                }
+                bitPacking.compress(inputArray);
+
+                for (int value = 0; value <= Math.min(maxValue, 20); value++) {
+                    assertSearch(bitPacking, inputArray, value);
+                }
+                assertSearch(bitPacking, inputArray, inputArray[length - 1]);
+                assertSearch(bitPacking, inputArray, Integer.MAX_VALUE);
+                assertSearch(bitPacking, inputArray, -1);
+            }
+        }
+    }
+
+    @Test
+    void testSignedSearchRandomArrays() {
+        BitPacking bitPacking = createSignedBitPacking();
+        Random random = new Random(19);
+
+        int[] inputArray = new int[1000];
+        for (int i = 0; i < inputArray.length; i++) {
+            inputArray[i] = i % 97 == 96 ? random.nextInt() : random.nextInt(21) - 10;
+        }
+        bitPacking.compress(inputArray);
+
+        for (int value = -12; value <= 12; value++) {
+            assertSearch(bitPacking, inputArray, value);
+        }
+        assertSearch(bitPacking, inputArray, inputArray[96]);
+        assertSearch(bitPacking, inputArray, Integer.MIN_VALUE);
+    }
+
+    @Test
+    void testSearchWithoutCompression() {
+        BitPacking bitPacking = createBitPacking();
+
+        assertThrows(IllegalStateException.class, () -> bitPacking.indexOf(0));
+        assertThrows(IllegalStateException.class, () -> bitPacking.contains(0));
+        assertThrows(IllegalStateException.class, () -> bitPacking.count(0));
+    }
+
+    /**
+     * Computes the aggregations and the selections with their methods, and compares the results with a computation on
+     * the input array
+     */
+    private static void assertAggregations(BitPacking bitPacking, int[] inputArray, int[][] ranges) {
+        assertEquals(Arrays.stream(inputArray).asLongStream().sum(), bitPacking.sum(), "Wrong sum");
+        assertEquals(Arrays.stream(inputArray).min().getAsInt(), bitPacking.min(), "Wrong min");
+        assertEquals(Arrays.stream(inputArray).max().getAsInt(), bitPacking.max(), "Wrong max");
+
+        for (int[] range : ranges) {
+            int lo = range[0];
+            int hi = range[1];
+            int[] expectedPositions = IntStream.range(0, inputArray.length)
+                    .filter(i -> inputArray[i] >= lo && inputArray[i] < hi)
+                    .toArray();
+            String message = " for the range [" + lo + ", " + hi + ")";
+
+            assertEquals(expectedPositions.length, bitPacking.countInRange(lo, hi), "Wrong count" + message);
+            assertArrayEquals(expectedPositions, bitPacking.filter(lo, hi).stream().toArray(),
+                    "Wrong filter" + message);
+            assertArrayEquals(expectedPositions, bitPacking.filterPositions(lo, hi), "Wrong positions" + message);
+        }
+    }
+
+    @Test
+    void testAggregationsRandomArrays() {
+        BitPacking bitPacking = createBitPacking();
+        Random random = new Random(23);
+
+        int[] lengths = {1, 7, 100, 1001};
+        int[] maxValues = {2, 5, 16, 200, 1000, 1 << 20};
+        for (int length : lengths) {
+            for (int maxValue : maxValues) {
+                for (boolean withOutliers : new boolean[]{false, true}) {
+                    int[] inputArray = new int[length];
+                    for (int i = 0; i < length; i++) {
+                        // A few outliers, so that overflow areas and blocks with different bit sizes are used
+                        inputArray[i] = withOutliers && i % 97 == 96
+                                ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(maxValue);
+                    }
+                    bitPacking.compress(inputArray);
+
+                    int[][] ranges = {
+                            {0, 1}, {1, maxValue / 2 + 1}, {maxValue / 2, maxValue}, {0, maxValue},
+                            {maxValue, Integer.MAX_VALUE}, {-5, 3}, {Integer.MIN_VALUE, Integer.MAX_VALUE},
+                            {Integer.MIN_VALUE, 0}, {5, 5}, {7, 3}, {1 << 20, 1 << 30}
+                    };
+                    assertAggregations(bitPacking, inputArray, ranges);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testSignedAggregationsRandomArrays() {
+        BitPacking bitPacking = createSignedBitPacking();
+        Random random = new Random(29);
+
+        int[] inputArray = new int[1000];
+        for (int i = 0; i < inputArray.length; i++) {
+            inputArray[i] = i % 97 == 96 ? random.nextInt() : random.nextInt(21) - 10;
+        }
+        bitPacking.compress(inputArray);
+
+        int[][] ranges = {
+                {-10, 11}, {-3, 4}, {0, 1}, {-100, 0}, {5, Integer.MAX_VALUE}, {Integer.MIN_VALUE, -10},
+                {Integer.MIN_VALUE, Integer.MAX_VALUE}, {3, -3}
+        };
+        assertAggregations(bitPacking, inputArray, ranges);
+    }
+
+    @Test
+    void testAggregationsAllBitSizes() {
+        BitPacking bitPacking = createBitPacking();
+        Random random = new Random(31);
+
+        // Every bit size, so that the values start at every possible bit of the integers of the compressed data
+        for (int bitSize = 1; bitSize < 32; bitSize++) {
+            int[] inputArray = new int[1001];
+            for (int i = 0; i < inputArray.length; i++) {
+                inputArray[i] = random.nextInt() >>> (32 - bitSize);
+            }
+            int maxValue = (int) ((1L << bitSize) - 1);
+            inputArray[3] = maxValue;
+            bitPacking.compress(inputArray);
+
+            int[][] ranges = {
+                    {0, 1}, {1, maxValue / 3 + 1}, {maxValue / 2, maxValue}, {maxValue, Integer.MAX_VALUE},
+                    {0, Integer.MAX_VALUE}
+            };
+            assertAggregations(bitPacking, inputArray, ranges);
+            assertSearch(bitPacking, inputArray, inputArray[1000]);
+            assertSearch(bitPacking, inputArray, maxValue);
+            assertSearch(bitPacking, inputArray, 0);
+        }
+    }
+
+    @Test
+    void testAggregationsWithoutCompression() {
+        BitPacking bitPacking = createBitPacking();
+
+        assertThrows(IllegalStateException.class, bitPacking::sum);
+        assertThrows(IllegalStateException.class, bitPacking::min);
+        assertThrows(IllegalStateException.class, bitPacking::max);
+        assertThrows(IllegalStateException.class, () -> bitPacking.countInRange(0, 1));
+        assertThrows(IllegalStateException.class, () -> bitPacking.filter(0, 1));
+        assertThrows(IllegalStateException.class, () -> bitPacking.filterPositions(0, 1));
+    }
+
+    /**
+     * Looks up the key with the bound methods, and compares the results with a linear search on the input array
+     */
+    private static void assertBounds(BitPacking bitPacking, int[] inputArray, int key) {
+        int expectedLowerBound = 0;
+        while (expectedLowerBound < inputArray.length && inputArray[expectedLowerBound] < key) expectedLowerBound++;
+        int expectedUpperBound = expectedLowerBound;
+        while (expectedUpperBound < inputArray.length && inputArray[expectedUpperBound] == key) expectedUpperBound++;
+
+        assertEquals(expectedLowerBound, bitPacking.lowerBound(key), "Wrong lower bound of the key " + key);
+        assertEquals(expectedUpperBound, bitPacking.upperBound(key), "Wrong upper bound of the key " + key);
+    }
+
+    @Test
+    void testBoundsSortedArrays() {
+        BitPacking bitPacking = createBitPacking();
+        Random random = new Random(31);
+
+        // Lengths around the interval of the skip index
+        int[] lengths = {1, 2, 127, 128, 129, 256, 1000};
+        int[] maxGaps = {0, 1, 3, 1000};
+        for (int length : lengths) {
+            for (int maxGap : maxGaps) {
+                int[] inputArray = new int[length];
+                inputArray[0] = random.nextInt(10);
+                for (int i = 1; i < length; i++) {
+                    inputArray[i] = inputArray[i - 1] + random.nextInt(maxGap + 1);
+                }
+                bitPacking.compress(inputArray, true);
+                assertTrue(bitPacking.isSorted());
+
+                int[] expectedArray = new int[length];
+                bitPacking.decompress(expectedArray);
+                assertArrayEquals(inputArray, expectedArray, "Compression in sorted mode failed");
+
+                for (int k = 0; k < 50; k++) {
+                    assertBounds(bitPacking, inputArray, inputArray[random.nextInt(length)]);
+                    assertBounds(bitPacking, inputArray, inputArray[0] + random.nextInt(inputArray[length - 1] + 2));
+                }
+                assertBounds(bitPacking, inputArray, -1);
+                assertBounds(bitPacking, inputArray, Integer.MIN_VALUE);
+                assertBounds(bitPacking, inputArray, Integer.MAX_VALUE);
+            }
+        }
+    }
+
+    @Test
+    void testSignedBoundsSortedArray() {
+        BitPacking bitPacking = createSignedBitPacking();
+
+        int[] inputArray = new int[500];
+        for (int i = 0; i < inputArray.length; i++) {
+            inputArray[i] = (i - 250) / 3;
+        }
+        bitPacking.compress(inputArray, true);
+
+        for (int key = -90; key <= 90; key++) {
+            assertBounds(bitPacking, inputArray, key);
+        }
+    }
+
+    @Test
+    void testBoundsWithoutSortedMode() {
+        BitPacking bitPacking = createBitPacking();
+        assertThrows(IllegalStateException.class, () -> bitPacking.lowerBound(0));
+
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.compress(new int[]{1, 3, 2}, true));
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.compress(null, true));
+
+        // A compression without the sorted mode discards the skip index of the previous one
+        bitPacking.compress(new int[]{1, 2, 3}, true);
+        assertEquals(1, bitPacking.upperBound(1));
+        bitPacking.compress(new int[]{1, 2, 3});
+        assertFalse(bitPacking.isSorted());
+        assertThrows(IllegalStateException.class, () -> bitPacking.lowerBound(0));
+        assertThrows(IllegalStateException.class, () -> bitPacking.upperBound(0));
+    }
+
+    /**
+     * Compares all values of the compressed array with the expected ones, with get and with a decompression
+     */
+    private static void assertValues(BitPacking bitPacking, int[] expectedArray) {
+        for (int i = 0; i < expectedArray.length; i++) {
+            assertEquals(expectedArray[i], bitPacking.get(i), "Wrong value at index " + i);
+        }
+        int[] outputArray = new int[expectedArray.length];
+        bitPacking.decompress(outputArray);
+        assertArrayEquals(expectedArray, outputArray, "Decompression after set failed");
+    }
+
+    @Test
+    void testSetRandomUpdates() {
+        BitPacking bitPacking = createBitPacking();
+        Random random = new Random(37);
+
+        int[] inputArray = new int[1001];
+        Utilities.initializeArrayWithRandomPositiveValues(inputArray, 16);
+        bitPacking.compress(inputArray);
+
+        for (int k = 0; k < 2000; k++) {
+            int i = random.nextInt(inputArray.length);
+            // Mostly small values, and larger and larger ones, so that the values are repacked on wider bit sizes and
+            // overflow values are added, replaced and released
+            int value = k % 10 == 9 ? random.nextInt(1 << Math.min(31, 5 + k / 100)) : random.nextInt(16);
+            inputArray[i] = value;
+            bitPacking.set(i, value);
+
+            if (k % 250 == 0) assertValues(bitPacking, inputArray);
+        }
+        assertValues(bitPacking, inputArray);
+
+        bitPacking.set(3, Integer.MAX_VALUE);
+        inputArray[3] = Integer.MAX_VALUE;
+        assertValues(bitPacking, inputArray);
+
+        // The searches and aggregations must still be right after the updates
+        assertSearch(bitPacking, inputArray, inputArray[500]);
+        assertSearch(bitPacking, inputArray, 3);
+        assertAggregations(bitPacking, inputArray, new int[][]{{0, 16}, {16, Integer.MAX_VALUE}, {5, 1 << 20}});
+    }
+
+    @Test
+    void testSignedSetRandomUpdates() {
+        BitPacking bitPacking = createSignedBitPacking();
+        Random random = new Random(41);
+
+        int[] inputArray = new int[500];
+        for (int i = 0; i < inputArray.length; i++) inputArray[i] = random.nextInt(7) - 3;
+        bitPacking.compress(inputArray);
+
+        for (int k = 0; k < 1000; k++) {
+            int i = random.nextInt(inputArray.length);
+            int value = k % 10 == 9 ? random.nextInt() >> random.nextInt(32) : random.nextInt(7) - 3;
+            inputArray[i] = value;
+            bitPacking.set(i, value);
+        }
+        assertValues(bitPacking, inputArray);
+
+        bitPacking.set(0, Integer.MIN_VALUE);
+        inputArray[0] = Integer.MIN_VALUE;
+        assertValues(bitPacking, inputArray);
+    }
+
+    @Test
+    void testSetKeepsSkipIndexWhileSorted() {
+        BitPacking bitPacking = createBitPacking();
+
+        int[] inputArray = new int[1000];
+        for (int i = 0; i < inputArray.length; i++) inputArray[i] = 2 * i;
+        bitPacking.compress(inputArray, true);
+
+        // Values of the skip index (every 128th value) and other values, staying sorted
+        bitPacking.set(256, 511);
+        bitPacking.set(300, 599);
+        assertTrue(bitPacking.isSorted());
+        assertEquals(256, bitPacking.lowerBound(511));
+        assertEquals(256, bitPacking.upperBound(510));
+        assertEquals(300, bitPacking.lowerBound(599));
+        assertEquals(301, bitPacking.upperBound(599));
+
+        // A larger value at the end, which may need a wider bit size
+        bitPacking.set(999, 1 << 20);
+        assertTrue(bitPacking.isSorted());
+        assertEquals(999, bitPacking.lowerBound(1 << 19));
+
+        bitPacking.set(10, 0);
+        assertFalse(bitPacking.isSorted());
+    }
+
+    @Test
+    void testSetInvalidParameters() {
+        BitPacking bitPacking = createBitPacking();
+        assertThrows(IllegalStateException.class, () -> bitPacking.set(0, 1));
+
+        bitPacking.compress(new int[]{1, 2, 3});
+        assertThrows(IndexOutOfBoundsException.class, () -> bitPacking.set(-1, 1));
+        assertThrows(IndexOutOfBoundsException.class, () -> bitPacking.set(3, 1));
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.set(0, -1));
+    }
+
+    @Test
+    void testCompressIntoBuffer() {
+        BitPacking bitPacking = createBitPacking();
+        Random random = new Random(43);
+
+        int[] inputArray = new int[1001];
+        int[] buffer = new int[4000];
+        if (!compressesIntoIntArray()) {
+            assertThrows(UnsupportedOperationException.class, () -> bitPacking.compress(inputArray, buffer));
+            return;
+        }
+
+        for (int maxValue : new int[]{3, 1000, 1 << 20}) {
+            for (int i = 0; i < inputArray.length; i++) {
+                inputArray[i] = i % 97 == 96 ? random.nextInt(Integer.MAX_VALUE) : random.nextInt(maxValue);
+            }
+            // The buffer contains the data of the previous compression, or garbage
+            if (maxValue == 3) Arrays.fill(buffer, -1);
+
+            int compressedLength = bitPacking.compress(inputArray, buffer);
+            assertSame(buffer, bitPacking.getCompressedArray());
+            assertEquals(compressedLength, bitPacking.getCompressedLength());
+
+            BitPacking reference = createBitPacking();
+            reference.compress(inputArray);
+            assertArrayEquals(reference.getCompressedArray(), Arrays.copyOf(buffer, compressedLength),
+                    "Different compressed data with max value " + maxValue);
+
+            assertValues(bitPacking, inputArray);
+            assertSearch(bitPacking, inputArray, inputArray[500]);
+            assertAggregations(bitPacking, inputArray, new int[][]{{0, 2}, {1, Integer.MAX_VALUE}});
+        }
+
+        // A buffer too small discards the compressed data
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.compress(inputArray, new int[1]));
+        assertThrows(IllegalStateException.class, () -> bitPacking.decompress(new int[inputArray.length]));
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.compress(inputArray, null));
+    }
+
+    @Test
+    void testCompressReusingBuffer() {
+        BitPacking bitPacking = createBitPacking();
+
+        int[] largeArray = new int[2000];
+        Utilities.initializeArrayWithRandomPositiveValues(largeArray, Integer.MAX_VALUE);
+        int[] smallArray = new int[777];
+        Utilities.initializeArrayWithRandomPositiveValues(smallArray, 100);
+
+        bitPacking.compressReusingBuffer(largeArray);
+        int[] compressedArray = bitPacking.getCompressedArray();
+        assertValues(bitPacking, largeArray);
+
+        int compressedLength = bitPacking.compressReusingBuffer(smallArray);
+        assertEquals(compressedLength, bitPacking.getCompressedLength());
+        if (compressesIntoIntArray()) assertSame(compressedArray, bitPacking.getCompressedArray());
+        assertValues(bitPacking, smallArray);
+
+        // Larger than the reused array: a new one is allocated
+        int[] otherArray = new int[5000];
+        Utilities.initializeArrayWithRandomPositiveValues(otherArray, Integer.MAX_VALUE);
+        bitPacking.compressReusingBuffer(otherArray);
+        assertValues(bitPacking, otherArray);
+    }
 }
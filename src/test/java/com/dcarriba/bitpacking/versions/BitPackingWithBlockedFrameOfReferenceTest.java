@@ -0,0 +1,87 @@
+package com.dcarriba.bitpacking.versions;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.utilities.Utilities;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link BitPackingWithBlockedFrameOfReferenceTest} provides unit tests for
+ * {@link BitPackingWithBlockedFrameOfReference} and extends {@link BitPackingVersionsBaseTest} for the test logic
+ */
+public class BitPackingWithBlockedFrameOfReferenceTest extends BitPackingVersionsBaseTest {
+
+    @Override
+    protected BitPacking createBitPacking() {
+        return BitPackingFactory.createBitPacking(CompressionVersion.WITH_BLOCKED_FRAME_OF_REFERENCE);
+    }
+
+    @Override
+    protected BitPacking createSignedBitPacking() {
+        return BitPackingFactory.createBitPacking(CompressionVersion.WITH_BLOCKED_FRAME_OF_REFERENCE, true);
+    }
+
+    @Test
+    void testCompressionDecompressionTimeSeries() {
+        BitPacking bitPacking = createBitPacking();
+        BitPacking withOverlap = BitPackingFactory.createBitPacking(CompressionVersion.WITH_OVERLAP);
+
+        // Several complete blocks and an incomplete last block
+        int[] inputArray = new int[1000];
+        Utilities.initializeArrayWithRandomWalkValues(inputArray, Integer.MAX_VALUE / 2, 100);
+        int[] decompressedArray = new int[inputArray.length];
+
+        bitPacking.compress(inputArray);
+        bitPacking.decompress(decompressedArray);
+        withOverlap.compress(inputArray);
+
+        assertArrayEquals(inputArray, decompressedArray);
+        assertTrue(bitPacking.getCompressedArray().length < withOverlap.getCompressedArray().length);
+        for (int i = 0; i < inputArray.length; i++) {
+            assertEquals(inputArray[i], bitPacking.get(i), "Failed to get the element at index " + i);
+        }
+    }
+
+    @Test
+    void testCompressionDecompressionConstantBlocks() {
+        BitPacking bitPacking = createBitPacking();
+
+        // Blocks where all values are equal are coded on 0 bits
+        int[] inputArray = new int[300];
+        for (int i = 0; i < inputArray.length; i++) {
+            inputArray[i] = i < 128 ? 5 : 1_000_000;
+        }
+        int[] decompressedArray = new int[inputArray.length];
+
+        bitPacking.compress(inputArray);
+        bitPacking.decompress(decompressedArray);
+
+        assertArrayEquals(inputArray, decompressedArray);
+        assertEquals(0, bitPacking.getBitSize());
+        assertEquals(inputArray[299], bitPacking.get(299));
+    }
+
+    @Test
+    void testRejectedCompressionKeepsPreviousData() {
+        BitPacking bitPacking = createBitPacking();
+
+        int[] inputArray = new int[300];
+        Utilities.initializeArrayWithRandomPositiveValues(inputArray, 1 << 16);
+        bitPacking.compress(inputArray);
+
+        // The negative value is only found in the last block, after the first blocks were analyzed
+        int[] invalidArray = new int[1000];
+        invalidArray[999] = -1;
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.compress(invalidArray));
+
+        int[] decompressedArray = new int[inputArray.length];
+        bitPacking.decompress(decompressedArray);
+        assertArrayEquals(inputArray, decompressedArray);
+        assertEquals(inputArray.length, bitPacking.getOriginalLength());
+        for (int i = 0; i < inputArray.length; i++) {
+            assertEquals(inputArray[i], bitPacking.get(i), "Failed to get the element at index " + i);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.dcarriba.bitpacking.versions;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.utilities.Utilities;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link BitPackingWithDeltaEncodingTest} provides unit tests for {@link BitPackingWithDeltaEncoding}
+ * and extends {@link BitPackingVersionsBaseTest} for the test logic
+ */
+public class BitPackingWithDeltaEncodingTest extends BitPackingVersionsBaseTest {
+
+    @Override
+    protected BitPacking createBitPacking() {
+        return BitPackingFactory.createBitPacking(CompressionVersion.WITH_DELTA_ENCODING);
+    }
+
+    @Override
+    protected BitPacking createSignedBitPacking() {
+        return BitPackingFactory.createBitPacking(CompressionVersion.WITH_DELTA_ENCODING, true);
+    }
+
+    @Test
+    void testCompressionDecompressionSortedArray() {
+        BitPacking bitPacking = createBitPacking();
+        BitPacking withOverlap = BitPackingFactory.createBitPacking(CompressionVersion.WITH_OVERLAP);
+
+        // Several complete blocks and an incomplete last block
+        int[] inputArray = new int[1000];
+        Utilities.initializeArrayWithRandomSortedValues(inputArray, 1000);
+        int[] decompressedArray = new int[inputArray.length];
+
+        bitPacking.compress(inputArray);
+        bitPacking.decompress(decompressedArray);
+        withOverlap.compress(inputArray);
+
+        assertArrayEquals(inputArray, decompressedArray);
+        assertTrue(bitPacking.getCompressedArray().length < withOverlap.getCompressedArray().length);
+        for (int i = 0; i < inputArray.length; i++) {
+            assertEquals(inputArray[i], bitPacking.get(i), "Failed to get the element at index " + i);
+        }
+    }
+
+    @Test
+    void testCompressionDecompressionNearSortedArray() {
+        BitPacking bitPacking = createBitPacking();
+
+        int[] inputArray = new int[500];
+        Utilities.initializeArrayWithRandomSortedValues(inputArray, 100);
+        inputArray[200] = 0;
+        inputArray[300] = Integer.MAX_VALUE;
+        int[] decompressedArray = new int[inputArray.length];
+
+        bitPacking.compress(inputArray);
+        bitPacking.decompress(decompressedArray);
+
+        assertArrayEquals(inputArray, decompressedArray);
+        for (int i = 0; i < inputArray.length; i++) {
+            assertEquals(inputArray[i], bitPacking.get(i), "Failed to get the element at index " + i);
+        }
+    }
+
+    @Test
+    void testCompressionDecompressionArithmeticSequence() {
+        BitPacking bitPacking = createBitPacking();
+
+        // All deltas are equal, so they are coded on 0 bits
+        int[] inputArray = new int[300];
+        for (int i = 0; i < inputArray.length; i++) {
+            inputArray[i] = 1000 + 7 * i;
+        }
+        int[] decompressedArray = new int[inputArray.length];
+
+        bitPacking.compress(inputArray);
+        bitPacking.decompress(decompressedArray);
+
+        assertArrayEquals(inputArray, decompressedArray);
+        assertEquals(0, bitPacking.getBitSize());
+        assertEquals(inputArray[299], bitPacking.get(299));
+    }
+
+    @Test
+    void testRejectedCompressionKeepsPreviousData() {
+        BitPacking bitPacking = createBitPacking();
+
+        int[] inputArray = new int[300];
+        Utilities.initializeArrayWithRandomSortedValues(inputArray, 1000);
+        bitPacking.compress(inputArray);
+
+        // The negative value is only found in the last block, after the first blocks were analyzed
+        int[] invalidArray = new int[1000];
+        invalidArray[999] = -1;
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.compress(invalidArray));
+
+        int[] decompressedArray = new int[inputArray.length];
+        bitPacking.decompress(decompressedArray);
+        assertArrayEquals(inputArray, decompressedArray);
+        assertEquals(inputArray.length, bitPacking.getOriginalLength());
+        for (int i = 0; i < inputArray.length; i++) {
+            assertEquals(inputArray[i], bitPacking.get(i), "Failed to get the element at index " + i);
+        }
+    }
+}
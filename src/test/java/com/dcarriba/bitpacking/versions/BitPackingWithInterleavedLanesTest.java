@@ -0,0 +1,85 @@
+package com.dcarriba.bitpacking.versions;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.bitpacking.simd.InterleavedPackers;
+import com.dcarriba.utilities.Utilities;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link BitPackingWithInterleavedLanesTest} provides unit tests for {@link BitPackingWithInterleavedLanes}
+ * and extends {@link BitPackingVersionsBaseTest} for the test logic
+ */
+public class BitPackingWithInterleavedLanesTest extends BitPackingVersionsBaseTest {
+
+    @Override
+    protected BitPacking createBitPacking() {
+        return BitPackingFactory.createBitPacking(CompressionVersion.WITH_INTERLEAVED_LANES);
+    }
+
+    @Override
+    protected BitPacking createSignedBitPacking() {
+        return BitPackingFactory.createBitPacking(CompressionVersion.WITH_INTERLEAVED_LANES, true);
+    }
+
+    @Test
+    void testScalarPackerFallback() {
+        BitPacking bitPacking = new BitPackingWithInterleavedLanes(false, InterleavedPackers.scalar());
+
+        // 3 complete blocks and 37 remaining values
+        int[] inputArray = new int[3 * 128 + 37];
+        Utilities.initializeArrayWithRandomPositiveValues(inputArray, 100000);
+        int[] decompressedArray = new int[inputArray.length];
+
+        bitPacking.compress(inputArray);
+        bitPacking.decompress(decompressedArray);
+
+        assertArrayEquals(inputArray, decompressedArray);
+        for (int i = 0; i < inputArray.length; i++) {
+            assertEquals(inputArray[i], bitPacking.get(i), "Failed to get the element at index " + i);
+        }
+    }
+
+    @Test
+    void testSameCompressedSizeAsBitPackingWithOverlap() {
+        BitPacking bitPacking = createBitPacking();
+        BitPacking withOverlap = BitPackingFactory.createBitPacking(CompressionVersion.WITH_OVERLAP);
+
+        int[] inputArray = new int[1000];
+        Utilities.initializeArrayWithRandomPositiveValues(inputArray, 5000);
+        bitPacking.compress(inputArray);
+        withOverlap.compress(inputArray);
+
+        // The interleaved layout only changes the order of the bits, not their number
+        assertEquals(withOverlap.getCompressedArray().length, bitPacking.getCompressedArray().length);
+    }
+
+    @Test
+    void testParallelCompressionDecompression() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        BitPacking parallel = BitPackingFactory.createParallelBitPacking(CompressionVersion.WITH_INTERLEAVED_LANES, true, pool);
+        BitPacking sequential = createSignedBitPacking();
+
+        // Several chunks, with a last chunk which doesn't end on a complete group of values
+        int[] inputArray = new int[3 * (1 << 16) + 1000 + 17];
+        Utilities.initializeArrayWithRandomPositiveValues(inputArray, 100000);
+        inputArray[70000] = -5;
+        int[] decompressedArray = new int[inputArray.length + 1];
+
+        parallel.compress(inputArray);
+        sequential.compress(inputArray);
+        assertArrayEquals(sequential.getCompressedArray(), parallel.getCompressedArray());
+
+        parallel.decompress(decompressedArray, 1);
+        assertArrayEquals(inputArray, Arrays.copyOfRange(decompressedArray, 1, decompressedArray.length));
+        assertEquals(-5, parallel.get(70000));
+
+        pool.shutdown();
+    }
+}
@@ -3,6 +3,9 @@ package com.dcarriba.bitpacking.versions;
 import com.dcarriba.bitpacking.BitPacking;
 import com.dcarriba.bitpacking.factory.BitPackingFactory;
 import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.utilities.Utilities;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * {@link BitPackingWithOverflowAreaTest} provides unit tests for {@link BitPackingWithOverflowArea}
@@ -14,4 +17,75 @@ class BitPackingWithOverflowAreaTest extends BitPackingVersionsBaseTest {
     protected BitPacking createBitPacking() {
         return BitPackingFactory.createBitPacking(CompressionVersion.WITH_OVERFLOW_AREA);
     }
-}
\ No newline at end of file
+
+    @Override
+    protected BitPacking createSignedBitPacking() {
+        return BitPackingFactory.createBitPacking(CompressionVersion.WITH_OVERFLOW_AREA, true);
+    }
+
+    @Test
+    void testGetMethodWithOverflowValues() {
+        BitPacking bitPacking = createBitPacking();
+
+        int[] inputArray = {1, 2, 3, 1024, 4, 5, 2048};
+        bitPacking.compress(inputArray);
+
+        // Test for each element, including the ones located inside the overflow area
+        for (int i = 0; i < inputArray.length; i++) {
+            assertEquals(inputArray[i], bitPacking.get(i), "Failed to get the element at index " + i);
+        }
+    }
+
+    @Test
+    void testOverflowAreaIsSmallerThanOverlapWithSkewedValues() {
+        BitPacking bitPacking = createBitPacking();
+        BitPacking withOverlap = BitPackingFactory.createBitPacking(CompressionVersion.WITH_OVERLAP);
+
+        int[] inputArray = new int[1000];
+        Utilities.initializeArrayWithRandomSkewedValues(inputArray, 1000, Integer.MAX_VALUE, 1);
+        inputArray[0] = Integer.MAX_VALUE - 1;
+
+        bitPacking.compress(inputArray);
+        withOverlap.compress(inputArray);
+
+        assertTrue(bitPacking.getCompressedArray().length < withOverlap.getCompressedArray().length);
+        for (int i = 0; i < inputArray.length; i++) {
+            assertEquals(inputArray[i], bitPacking.get(i), "Failed to get the element at index " + i);
+        }
+    }
+
+    @Test
+    void testOverflowAreaFallsBackToOverlapWithUniformValues() {
+        BitPacking bitPacking = createBitPacking();
+        BitPacking withOverlap = BitPackingFactory.createBitPacking(CompressionVersion.WITH_OVERLAP);
+
+        int[] inputArray = {7, 6, 5, 4, 3, 2, 1, 0};
+
+        bitPacking.compress(inputArray);
+        withOverlap.compress(inputArray);
+
+        assertEquals(withOverlap.getBitSize(), bitPacking.getBitSize());
+        assertArrayEquals(withOverlap.getCompressedArray(), bitPacking.getCompressedArray());
+    }
+
+    @Test
+    void testRejectedCompressionKeepsPreviousData() {
+        BitPacking bitPacking = createBitPacking();
+
+        int[] inputArray = {5, 6, 1 << 20, 7};
+        bitPacking.compress(inputArray);
+
+        // The negative value is only found at the end of the array
+        int[] invalidArray = new int[10];
+        invalidArray[9] = -1;
+        assertThrows(IllegalArgumentException.class, () -> bitPacking.compress(invalidArray));
+
+        int[] decompressedArray = new int[inputArray.length];
+        bitPacking.decompress(decompressedArray);
+        assertArrayEquals(inputArray, decompressedArray);
+        assertEquals(inputArray.length, bitPacking.getOriginalLength());
+        for (int i = 0; i < inputArray.length; i++) {
+            assertEquals(inputArray[i], bitPacking.get(i), "Failed to get the element at index " + i);
+        }
+    }
+}
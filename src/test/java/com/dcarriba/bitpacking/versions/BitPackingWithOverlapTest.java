@@ -3,6 +3,13 @@ package com.dcarriba.bitpacking.versions;
 import com.dcarriba.bitpacking.BitPacking;
 import com.dcarriba.bitpacking.factory.BitPackingFactory;
 import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.utilities.Utilities;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * {@link BitPackingWithOverlapTest} provides unit tests for {@link BitPackingWithOverlap}
@@ -14,4 +21,32 @@ public class BitPackingWithOverlapTest extends BitPackingVersionsBaseTest {
     protected BitPacking createBitPacking() {
         return BitPackingFactory.createBitPacking(CompressionVersion.WITH_OVERLAP);
     }
+
+    @Override
+    protected BitPacking createSignedBitPacking() {
+        return BitPackingFactory.createBitPacking(CompressionVersion.WITH_OVERLAP, true);
+    }
+
+    @Test
+    void testParallelCompressionDecompression() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        BitPacking parallel = BitPackingFactory.createParallelBitPacking(CompressionVersion.WITH_OVERLAP, true, pool);
+        BitPacking sequential = createSignedBitPacking();
+
+        // Several chunks, with a last chunk which doesn't end on a complete group of values
+        int[] inputArray = new int[3 * (1 << 16) + 1000 + 17];
+        Utilities.initializeArrayWithRandomPositiveValues(inputArray, 100000);
+        inputArray[70000] = -5;
+        int[] decompressedArray = new int[inputArray.length + 1];
+
+        parallel.compress(inputArray);
+        sequential.compress(inputArray);
+        assertArrayEquals(sequential.getCompressedArray(), parallel.getCompressedArray());
+
+        parallel.decompress(decompressedArray, 1);
+        assertArrayEquals(inputArray, Arrays.copyOfRange(decompressedArray, 1, decompressedArray.length));
+        assertEquals(-5, parallel.get(70000));
+
+        pool.shutdown();
+    }
 }
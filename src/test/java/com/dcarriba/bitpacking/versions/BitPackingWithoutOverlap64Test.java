@@ -0,0 +1,102 @@
+package com.dcarriba.bitpacking.versions;
+
+import com.dcarriba.bitpacking.BitPacking;
+import com.dcarriba.bitpacking.factory.BitPackingFactory;
+import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.bitpacking.storage.OffHeapWordStorage;
+import com.dcarriba.bitpacking.storage.StorageType;
+import com.dcarriba.utilities.Utilities;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link BitPackingWithoutOverlap64Test} provides unit tests for {@link BitPackingWithoutOverlap64}
+ * and extends {@link BitPackingVersionsBaseTest} for the test logic
+ */
+public class BitPackingWithoutOverlap64Test extends BitPackingVersionsBaseTest {
+
+    @Override
+    protected BitPacking createBitPacking() {
+        return BitPackingFactory.createBitPacking(CompressionVersion.WITHOUT_OVERLAP_64);
+    }
+
+    @Override
+    protected BitPacking createSignedBitPacking() {
+        return BitPackingFactory.createBitPacking(CompressionVersion.WITHOUT_OVERLAP_64, true);
+    }
+
+    @Override
+    protected boolean compressesIntoIntArray() {
+        return false;
+    }
+
+    @Test
+    void testMoreValuesPerWordThanBitPackingWithoutOverlap() {
+        BitPacking bitPacking = createBitPacking();
+        BitPacking withoutOverlap = BitPackingFactory.createBitPacking(CompressionVersion.WITHOUT_OVERLAP);
+
+        // With 17 bits, a 64-bit word contains 3 values while a 32-bit integer only contains 1 value
+        int[] inputArray = new int[300];
+        inputArray[0] = (1 << 17) - 1;
+        bitPacking.compress(inputArray);
+        withoutOverlap.compress(inputArray);
+
+        assertEquals(17, bitPacking.getBitSize());
+        assertEquals(300, withoutOverlap.getCompressedArray().length);
+        assertEquals(200, bitPacking.getCompressedArray().length);
+        assertEquals((1 << 17) - 1, bitPacking.get(0));
+    }
+
+    @Test
+    void testOffHeapStorageFromDirectBuffer() {
+        int[] inputArray = new int[5000];
+        Utilities.initializeArrayWithRandomPositiveValues(inputArray, 1 << 20);
+
+        // Values arriving in a direct buffer (e.g. from native I/O), after a header of 3 integers
+        IntBuffer buffer = ByteBuffer.allocateDirect((inputArray.length + 3) * Integer.BYTES)
+                .order(ByteOrder.nativeOrder()).asIntBuffer();
+        buffer.position(3);
+        buffer.put(inputArray);
+        buffer.position(3);
+
+        BitPacking bitPacking = BitPackingFactory.createBitPacking(CompressionVersion.WITHOUT_OVERLAP_64, false,
+                StorageType.OFF_HEAP);
+        bitPacking.compressBuffer(buffer);
+        assertEquals(3, buffer.position());
+
+        int[] decompressedArray = new int[inputArray.length];
+        bitPacking.decompress(decompressedArray);
+        assertArrayEquals(inputArray, decompressedArray);
+        assertEquals(inputArray[1234], bitPacking.get(1234));
+
+        // The off-heap memory is released by close, the compressed data isn't available anymore
+        OffHeapWordStorage storage = (OffHeapWordStorage) ((BitPackingWithoutOverlap64) bitPacking).getStorage();
+        bitPacking.close();
+        assertFalse(storage.isOpen());
+        assertThrows(IllegalStateException.class, () -> bitPacking.decompress(decompressedArray));
+    }
+
+    @Test
+    void testRestoreKeepsTheWholeWords() {
+        BitPackingWithoutOverlap64 bitPacking = new BitPackingWithoutOverlap64();
+        int[] inputArray = new int[1000];
+        Utilities.initializeArrayWithRandomPositiveValues(inputArray, 1 << 17);
+        bitPacking.compress(inputArray);
+        int[] compressedArray = bitPacking.getCompressedArray();
+
+        BitPackingWithoutOverlap64 restored = new BitPackingWithoutOverlap64();
+        restored.restore(compressedArray, inputArray.length, bitPacking.getBitSize(), new int[0]);
+        assertArrayEquals(inputArray, restored.stream().toArray());
+
+        // An odd number of integers can't come from whole words: it is rejected without changing the restored data
+        int[] oddArray = new int[compressedArray.length - 1];
+        assertThrows(IllegalArgumentException.class, () -> restored.restore(oddArray, 10, 1, new int[0]));
+        assertEquals(inputArray.length, restored.getOriginalLength());
+        assertArrayEquals(inputArray, restored.stream().toArray());
+    }
+}
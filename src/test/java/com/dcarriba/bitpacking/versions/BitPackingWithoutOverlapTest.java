@@ -3,6 +3,13 @@ package com.dcarriba.bitpacking.versions;
 import com.dcarriba.bitpacking.BitPacking;
 import com.dcarriba.bitpacking.factory.BitPackingFactory;
 import com.dcarriba.bitpacking.factory.CompressionVersion;
+import com.dcarriba.utilities.Utilities;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * {@link BitPackingWithoutOverlapTest} provides unit tests for {@link BitPackingWithoutOverlap}
@@ -14,4 +21,35 @@ public class BitPackingWithoutOverlapTest extends BitPackingVersionsBaseTest {
     protected BitPacking createBitPacking() {
         return BitPackingFactory.createBitPacking(CompressionVersion.WITHOUT_OVERLAP);
     }
+
+    @Override
+    protected BitPacking createSignedBitPacking() {
+        return BitPackingFactory.createBitPacking(CompressionVersion.WITHOUT_OVERLAP, true);
+    }
+
+    @Test
+    void testParallelCompressionDecompression() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        BitPacking parallel = BitPackingFactory.createParallelBitPacking(CompressionVersion.WITHOUT_OVERLAP, true,
+                pool);
+        BitPacking sequential = createSignedBitPacking();
+
+        // 10 bits per value, i.e. 3 values per integer: 65536 isn't a multiple of 3, the chunks have 65535 values
+        int[] inputArray = new int[3 * (1 << 16) + 1000 + 17];
+        Utilities.initializeArrayWithRandomPositiveValues(inputArray, 500);
+        inputArray[10] = 499;
+        inputArray[70000] = -5;
+        int[] decompressedArray = new int[inputArray.length + 1];
+
+        parallel.compress(inputArray);
+        sequential.compress(inputArray);
+        assertEquals(10, parallel.getBitSize());
+        assertArrayEquals(sequential.getCompressedArray(), parallel.getCompressedArray());
+
+        parallel.decompress(decompressedArray, 1);
+        assertArrayEquals(inputArray, Arrays.copyOfRange(decompressedArray, 1, decompressedArray.length));
+        assertEquals(-5, parallel.get(70000));
+
+        pool.shutdown();
+    }
 }
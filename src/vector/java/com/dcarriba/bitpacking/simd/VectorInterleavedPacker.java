@@ -0,0 +1,92 @@
+package com.dcarriba.bitpacking.simd;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link VectorInterleavedPacker} is the {@link InterleavedPacker} packing the 4 lanes at once, with the (incubating)
+ * Vector API of the JDK.
+ * <p>
+ * This class is only loaded by {@link InterleavedPackers} when the {@code jdk.incubator.vector} module is available
+ * (i.e. when the JVM is started with {@code --add-modules jdk.incubator.vector}).
+ * </p>
+ */
+class VectorInterleavedPacker implements InterleavedPacker {
+    /** 128-bit vectors of 4 integers, one integer per lane */
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_128;
+
+    @Override
+    public void pack(int bitSize, int[] in, int inPos, int[] out, int outPos) {
+        ScalarInterleavedPacker.checkBitSize(bitSize);
+        int mask = (int) (-1L >>> (64 - bitSize));
+
+        int outIndex = outPos;
+        IntVector word = IntVector.zero(SPECIES);
+        int bitOffset = 0;
+
+        for (int k = 0; k < VALUES_PER_LANE; k++) {
+            // The k-th values of the 4 lanes are next to each other
+            IntVector value = IntVector.fromArray(SPECIES, in, inPos + k * LANES).and(mask);
+            int end = bitOffset + bitSize;
+
+            if (end < 32) {
+                word = word.or(value.lanewise(VectorOperators.LSHL, 32 - end));
+                bitOffset = end;
+            } else if (end == 32) {
+                word.or(value).intoArray(out, outIndex);
+                outIndex += LANES;
+                word = IntVector.zero(SPECIES);
+                bitOffset = 0;
+            } else {
+                // The values overlap to the next integer of their lane
+                word.or(value.lanewise(VectorOperators.LSHR, end - 32)).intoArray(out, outIndex);
+                outIndex += LANES;
+                word = value.lanewise(VectorOperators.LSHL, 64 - end);
+                bitOffset = end - 32;
+            }
+        }
+    }
+
+    @Override
+    public void unpack(int bitSize, int[] in, int inPos, int[] out, int outPos) {
+        ScalarInterleavedPacker.checkBitSize(bitSize);
+        int mask = (int) (-1L >>> (64 - bitSize));
+
+        int inIndex = inPos;
+        IntVector word = IntVector.fromArray(SPECIES, in, inIndex);
+        int bitOffset = 0;
+
+        for (int k = 0; k < VALUES_PER_LANE; k++) {
+            int end = bitOffset + bitSize;
+            int outIndex = outPos + k * LANES;
+
+            // Each branch stores its own result, so that the JIT compiler doesn't need to box the vectors
+            if (end < 32) {
+                word.lanewise(VectorOperators.LSHR, 32 - end).and(mask).intoArray(out, outIndex);
+                bitOffset = end;
+            } else if (end == 32) {
+                word.and(mask).intoArray(out, outIndex);
+                inIndex += LANES;
+                bitOffset = 0;
+                // The last integers of the block are fully read, there are no next integers to load
+                if (k < VALUES_PER_LANE - 1) word = IntVector.fromArray(SPECIES, in, inIndex);
+            } else {
+                // The values overlap to the next integer of their lane
+                inIndex += LANES;
+                IntVector next = IntVector.fromArray(SPECIES, in, inIndex);
+                word.lanewise(VectorOperators.LSHL, end - 32)
+                        .or(next.lanewise(VectorOperators.LSHR, 64 - end))
+                        .and(mask)
+                        .intoArray(out, outIndex);
+                word = next;
+                bitOffset = end - 32;
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "Vector API";
+    }
+}